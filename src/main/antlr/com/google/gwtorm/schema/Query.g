@@ -38,6 +38,7 @@ tokens {
   CONSTANT_STRING;
   TRUE;
   FALSE;
+  IN;
 }
 
 @header {
@@ -177,7 +178,7 @@ conditions
   ;
 
 condition
-  : field compare_op^ conditionValue
+  : field (compare_op^ conditionValue | IN^ PLACEHOLDER)
   ;
 
 compare_op
@@ -215,6 +216,7 @@ AND:   'AND'   ;
 ASC:   'ASC'   ;
 DESC:  'DESC'  ;
 LIMIT: 'LIMIT' ;
+IN:    'IN'    ;
 TRUE:  'true'  ;
 FALSE: 'false' ;
 
@@ -19,17 +19,18 @@ import com.google.gwtorm.schema.ColumnModel;
 import com.google.gwtorm.schema.KeyModel;
 import com.google.gwtorm.schema.QueryModel;
 import com.google.gwtorm.schema.RelationModel;
-import com.google.gwtorm.schema.Util;
 import com.google.gwtorm.schema.sql.SqlDialect;
 import com.google.gwtorm.server.Access;
 import com.google.gwtorm.server.CodeGenSupport;
 import com.google.gwtorm.server.GeneratedClassLoader;
+import com.google.gwtorm.server.ListResultSet;
 import com.google.gwtorm.server.OrmException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import org.objectweb.asm.ClassWriter;
@@ -78,6 +79,11 @@ class AccessGen implements Opcodes {
     implementConstructor();
     implementGetString("getRelationName", model.getRelationName());
     implementGetString("getInsertOneSql", model.getInsertOneSql(dialect));
+    implementGetInsertRowsSql();
+    final String bulkLoadSql = dialect.getBulkLoadSql(model);
+    if (bulkLoadSql != null) {
+      implementGetString("getBulkLoadSql", bulkLoadSql);
+    }
     implementGetRelationID();
 
     if (model.getPrimaryKey() != null) {
@@ -87,6 +93,11 @@ class AccessGen implements Opcodes {
         implementGetString("getUpdateOneSql", model.getUpdateOneSql(dialect));
       }
       implementGetString("getDeleteOneSql", model.getDeleteOneSql(dialect));
+
+      final String upsertSql = model.getUpsertOneSql(dialect);
+      if (upsertSql != null) {
+        implementGetString("getUpsertOneSql", upsertSql);
+      }
     } else {
       implementMissingGetString("getUpdateOneSql", "update");
       implementMissingGetString("getDeleteOneSql", "delete");
@@ -96,6 +107,7 @@ class AccessGen implements Opcodes {
     implementGetOne();
     implementNewEntityInstance();
     implementBindOne(DmlType.INSERT);
+    implementBindInsertRow();
     implementBindOne(DmlType.UPDATE);
     implementBindOne(DmlType.DELETE);
     implementBindOneFetch();
@@ -109,10 +121,29 @@ class AccessGen implements Opcodes {
       }
     }
 
+    final List<QueryModel> rowQueries = new ArrayList<>();
     for (final QueryModel q : model.getQueries()) {
-      implementQuery(q);
+      if (q.isReturnsKeys() || q.getProjectionClassName() != null) {
+        implementQuery(q, rowQueries.size());
+        rowQueries.add(q);
+      } else {
+        implementQuery(q, -1);
+      }
+      if (q.isCacheResults()) {
+        CodeGenSupport.implementCachedQuery(cw, implTypeName, q);
+      }
+    }
+    implementQuery(new QueryModel(model, "iterateAllEntities", ""), -1);
+    if (!rowQueries.isEmpty()) {
+      implementFetchRow(rowQueries);
+    }
+    final List<QueryModel> asyncQueries = new ArrayList<>(model.getAsyncQueries());
+    for (int i = 0; i < asyncQueries.size(); i++) {
+      CodeGenSupport.implementAsyncQuery(cw, asyncQueries.get(i), i);
+    }
+    if (!asyncQueries.isEmpty()) {
+      CodeGenSupport.implementRunQuery(cw, implTypeName, asyncQueries);
     }
-    implementQuery(new QueryModel(model, "iterateAllEntities", ""));
 
     cw.visitEnd();
     classLoader.defineClass(implClassName, cw.toByteArray());
@@ -134,7 +165,7 @@ class AccessGen implements Opcodes {
             + "_Access_"
             + model.getMethodName()
             + "_"
-            + Util.createRandomName();
+            + classLoader.newClassNameSuffix();
     implTypeName = implClassName.replace('.', '/');
 
     cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -299,6 +330,66 @@ class AccessGen implements Opcodes {
     mv.visitEnd();
   }
 
+  private void implementGetInsertRowsSql() {
+    final List<Integer> rows = new ArrayList<>();
+    final List<String> sql = new ArrayList<>();
+    for (final int n : JdbcAccess.INSERT_ROWS) {
+      final String s = model.getInsertRowsSql(dialect, n);
+      if (s != null) {
+        rows.add(n);
+        sql.add(s);
+      }
+    }
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            "getInsertRowsSql",
+            Type.getMethodDescriptor(Type.getType(String.class), new Type[] {Type.INT_TYPE}),
+            null,
+            null);
+    mv.visitCode();
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    for (int i = 0; i < rows.size(); i++) {
+      final Label next = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      cgs.push(rows.get(i));
+      mv.visitJumpInsn(IF_ICMPNE, next);
+      mv.visitLdcInsn(sql.get(i));
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(next);
+    }
+    mv.visitInsn(ACONST_NULL);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  private void implementBindInsertRow() {
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            "bindInsertRow",
+            Type.getMethodDescriptor(
+                Type.VOID_TYPE,
+                new Type[] {
+                  Type.getType(PreparedStatement.class), Type.getType(Object.class), Type.INT_TYPE
+                }),
+            null,
+            new String[] {Type.getType(SQLException.class).getInternalName()});
+    mv.visitCode();
+
+    // Parameters of the row start after those of all earlier rows.
+    mv.visitVarInsn(ILOAD, 3);
+    new CodeGenSupport(mv).push(model.getColumns().size());
+    mv.visitInsn(IMUL);
+    mv.visitVarInsn(ISTORE, 3);
+    implementBindOneBody(mv, DmlType.INSERT, 3);
+  }
+
   private void implementBindOne(final DmlType type) {
     final MethodVisitor mv =
         cw.visitMethod(
@@ -310,6 +401,11 @@ class AccessGen implements Opcodes {
             null,
             new String[] {Type.getType(SQLException.class).getInternalName()});
     mv.visitCode();
+    implementBindOneBody(mv, type, -1);
+  }
+
+  private void implementBindOneBody(
+      final MethodVisitor mv, final DmlType type, final int columnIndexOffset) {
 
     if (type != DmlType.INSERT && model.getPrimaryKey() == null) {
       throwUnsupported(mv, model.getMethodName() + " has no primary key");
@@ -324,6 +420,9 @@ class AccessGen implements Opcodes {
 
     final CodeGenSupport cgs = new CodeGenSupport(mv);
     cgs.setEntityType(entityType);
+    if (0 <= columnIndexOffset) {
+      cgs.setColumnIndexOffset(columnIndexOffset);
+    }
 
     for (final ColumnModel col : model.getRowVersionColumns()) {
       cgs.setFieldReference(col);
@@ -418,33 +517,126 @@ class AccessGen implements Opcodes {
 
     final CodeGenSupport cgs = new CodeGenSupport(mv);
     cgs.setEntityType(entityType);
+    newPrimaryKey(mv, cgs);
+
+    final List<ColumnModel> cols = new ArrayList<>();
+    cols.addAll(model.getDependentFields());
+    cols.addAll(model.getRowVersionFields());
+    cols.addAll(model.getPrimaryKeyColumns());
+    for (final ColumnModel field : cols) {
+      doFetchOne(mv, cgs, field, -1);
+    }
+
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
 
+  /** Store a new instance of a nested primary key into the entity, to fetch its columns into. */
+  private void newPrimaryKey(final MethodVisitor mv, final CodeGenSupport cgs) {
     if (model.getPrimaryKey() != null && model.getPrimaryKey().getField().isNested()) {
       final ColumnModel pkf = model.getPrimaryKey().getField();
-      final Type vType = CodeGenSupport.toType(pkf);
       final int oldIdx = cgs.getColumnIndex();
       cgs.setFieldReference(pkf);
       cgs.fieldSetBegin();
-      mv.visitTypeInsn(NEW, vType.getInternalName());
-      mv.visitInsn(DUP);
-      mv.visitMethodInsn(
-          INVOKESPECIAL,
-          vType.getInternalName(),
-          "<init>",
-          Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {}));
+      newInstance(mv, CodeGenSupport.toType(pkf));
       cgs.fieldSetEnd();
       cgs.resetColumnIndex(oldIdx);
     }
+  }
 
-    final List<ColumnModel> cols = new ArrayList<>();
-    cols.addAll(model.getDependentFields());
-    cols.addAll(model.getRowVersionFields());
-    cols.addAll(model.getPrimaryKeyColumns());
-    for (final ColumnModel field : cols) {
-      doFetchOne(mv, cgs, field, -1);
+  private static void newInstance(final MethodVisitor mv, final Type type) {
+    mv.visitTypeInsn(NEW, type.getInternalName());
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(
+        INVOKESPECIAL,
+        type.getInternalName(),
+        "<init>",
+        Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {}));
+  }
+
+  /**
+   * Implement fetchRow, reading the rows of queries returning keys or projections.
+   *
+   * @param queries the queries, numbered by their position.
+   */
+  private void implementFetchRow(final List<QueryModel> queries) {
+    final Type resultSet = Type.getType(ResultSet.class);
+    final Type object = Type.getType(Object.class);
+    final String fetchDesc = Type.getMethodDescriptor(object, new Type[] {resultSet});
+    for (int i = 0; i < queries.size(); i++) {
+      implementFetchRow(queries.get(i), "fetchRow_" + i, fetchDesc);
     }
 
-    mv.visitInsn(RETURN);
+    final String desc = Type.getMethodDescriptor(object, new Type[] {Type.INT_TYPE, resultSet});
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PROTECTED | ACC_FINAL,
+            "fetchRow",
+            desc,
+            null,
+            new String[] {Type.getType(SQLException.class).getInternalName()});
+    mv.visitCode();
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    for (int i = 0; i < queries.size(); i++) {
+      final Label next = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      cgs.push(i);
+      mv.visitJumpInsn(IF_ICMPNE, next);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitMethodInsn(INVOKESPECIAL, implTypeName, "fetchRow_" + i, fetchDesc);
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(next);
+    }
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKESPECIAL, superTypeName, "fetchRow", desc);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  private void implementFetchRow(final QueryModel info, final String name, final String desc) {
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PRIVATE | ACC_FINAL,
+            name,
+            desc,
+            null,
+            new String[] {Type.getType(SQLException.class).getInternalName()});
+    mv.visitCode();
+
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    if (info.isReturnsKeys()) {
+      // Fetch the key into an otherwise empty entity, then return the key.
+      newInstance(mv, entityType);
+      mv.visitVarInsn(ASTORE, 2);
+      cgs.setEntityType(entityType);
+      newPrimaryKey(mv, cgs);
+      for (final ColumnModel c : model.getPrimaryKeyColumns()) {
+        doFetchOne(mv, cgs, c, -1);
+      }
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          implTypeName,
+          "primaryKey",
+          Type.getMethodDescriptor(
+              Type.getType(Key.class), new Type[] {Type.getType(Object.class)}));
+    } else {
+      final Type pType = Type.getObjectType(info.getProjectionClassName().replace('.', '/'));
+      newInstance(mv, pType);
+      mv.visitVarInsn(ASTORE, 2);
+      cgs.setEntityType(pType);
+      for (final ColumnModel f : info.getProjectionFields()) {
+        doFetchOne(mv, cgs, f, -1);
+      }
+      mv.visitVarInsn(ALOAD, 2);
+    }
+    mv.visitInsn(ARETURN);
     mv.visitMaxs(-1, -1);
     mv.visitEnd();
   }
@@ -569,12 +761,31 @@ class AccessGen implements Opcodes {
     mv.visitCode();
 
     final int keyvar = 1, psvar = keyvar + keyType.getSize();
+    final boolean cached = info.getField().isNested();
+    if (cached) {
+      final Label miss = new Label();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, keyvar);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          "lookupCached",
+          Type.getMethodDescriptor(
+              Type.getType(Object.class), new Type[] {Type.getType(Key.class)}));
+      mv.visitInsn(DUP);
+      mv.visitJumpInsn(IFNULL, miss);
+      mv.visitTypeInsn(CHECKCAST, entityType.getInternalName());
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(miss);
+      mv.visitInsn(POP);
+    }
+
     mv.visitVarInsn(ALOAD, 0);
     mv.visitLdcInsn(query.toString());
     mv.visitMethodInsn(
         INVOKEVIRTUAL,
         superTypeName,
-        "prepareStatement",
+        "prepareQuery",
         Type.getMethodDescriptor(
             Type.getType(PreparedStatement.class), new Type[] {Type.getType(String.class)}));
     mv.visitVarInsn(ASTORE, psvar);
@@ -613,6 +824,16 @@ class AccessGen implements Opcodes {
         "queryOne",
         Type.getMethodDescriptor(
             Type.getType(Object.class), new Type[] {Type.getType(PreparedStatement.class)}));
+    if (cached) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitInsn(SWAP);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          "rememberLoaded",
+          Type.getMethodDescriptor(
+              Type.getType(Object.class), new Type[] {Type.getType(Object.class)}));
+    }
     mv.visitTypeInsn(CHECKCAST, entityType.getInternalName());
     mv.visitInsn(ARETURN);
     mv.visitMaxs(-1, -1);
@@ -640,24 +861,40 @@ class AccessGen implements Opcodes {
             null,
             new String[] {Type.getType(OrmException.class).getInternalName()});
     mv.visitCode();
-
-    final int keyset = 1;
-    final int psvar = 2;
-    final int itrvar = 3;
-    final int colvar = 4;
-    final int keyvar = 5;
-
     mv.visitVarInsn(ALOAD, 0);
     mv.visitLdcInsn(query.toString());
-    mv.visitVarInsn(ALOAD, keyset);
+    mv.visitVarInsn(ALOAD, 1);
     mv.visitMethodInsn(
         INVOKEVIRTUAL,
         superTypeName,
-        "prepareBySqlIn",
+        "queryBySqlIn",
         Type.getMethodDescriptor(
-            Type.getType(PreparedStatement.class),
+            Type.getType(com.google.gwtorm.server.ResultSet.class),
             new Type[] {Type.getType(String.class), Type.getType(Collection.class)}));
-    mv.visitVarInsn(ASTORE, psvar);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+
+    implementBindBySqlIn(pk, pkcol);
+  }
+
+  private void implementBindBySqlIn(final KeyModel pk, final ColumnModel pkcol) {
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            "bindBySqlIn",
+            Type.getMethodDescriptor(
+                Type.VOID_TYPE,
+                new Type[] {Type.getType(PreparedStatement.class), Type.getType(Collection.class)}),
+            null,
+            new String[] {Type.getType(SQLException.class).getInternalName()});
+    mv.visitCode();
+
+    final int psvar = 1;
+    final int keyset = 2;
+    final int itrvar = 3;
+    final int colvar = 4;
+    final int keyvar = 5;
 
     mv.visitVarInsn(ALOAD, keyset);
     mv.visitMethodInsn(
@@ -723,57 +960,60 @@ class AccessGen implements Opcodes {
     mv.visitJumpInsn(GOTO, again);
 
     mv.visitLabel(endbind);
-    mv.visitVarInsn(ALOAD, 0);
-    mv.visitVarInsn(ALOAD, psvar);
-    mv.visitMethodInsn(
-        INVOKEVIRTUAL,
-        superTypeName,
-        "queryList",
-        Type.getMethodDescriptor(
-            Type.getType(com.google.gwtorm.server.ResultSet.class),
-            new Type[] {Type.getType(PreparedStatement.class)}));
-    mv.visitInsn(ARETURN);
+    mv.visitInsn(RETURN);
     mv.visitMaxs(-1, -1);
     mv.visitEnd();
   }
 
-  private void implementQuery(final QueryModel info) {
+  /**
+   * @param info the query.
+   * @param rowQuery number of the query for fetchRow if it returns keys or projections; -1 if it
+   *     returns entities.
+   */
+  private void implementQuery(final QueryModel info, final int rowQuery) {
     final List<ColumnModel> pCols = info.getParameters();
+    final List<ColumnModel> inCols = info.getInParameters();
     final boolean hasLimitParam = info.hasLimitParameter();
-    final Type[] pTypes = new Type[pCols.size() + (hasLimitParam ? 1 : 0)];
+    final Type[] pTypes = CodeGenSupport.parameterTypes(info);
     final int[] pVars = new int[pTypes.length];
     int nextVar = 1;
-    for (int i = 0; i < pCols.size(); i++) {
-      pTypes[i] = CodeGenSupport.toType(pCols.get(i));
+    for (int i = 0; i < pTypes.length; i++) {
       pVars[i] = nextVar;
       nextVar += pTypes[i].getSize();
     }
-    if (hasLimitParam) {
-      pTypes[pTypes.length - 1] = Type.INT_TYPE;
-      pVars[pTypes.length - 1] = nextVar;
-      nextVar += Type.INT_TYPE.getSize();
-    }
 
+    final Class<?> countType = info.getCountType();
     final int psvar = nextVar++;
+    final int shiftvar = nextVar++;
+    final int itrvar = nextVar++;
+    final int elemvar = nextVar;
     final MethodVisitor mv =
         cw.visitMethod(
             ACC_PUBLIC | ACC_FINAL,
-            info.getName(),
+            CodeGenSupport.uncachedQueryName(info),
             Type.getMethodDescriptor(
-                Type.getType(com.google.gwtorm.server.ResultSet.class), pTypes),
+                countType != null
+                    ? Type.getType(countType)
+                    : Type.getType(com.google.gwtorm.server.ResultSet.class),
+                pTypes),
             null,
             new String[] {Type.getType(OrmException.class).getInternalName()});
     mv.visitCode();
 
-    mv.visitVarInsn(ALOAD, 0);
-    mv.visitLdcInsn(info.getSelectSql(dialect, REL_ALIAS));
-    mv.visitMethodInsn(
-        INVOKEVIRTUAL,
-        superTypeName,
-        "prepareStatement",
-        Type.getMethodDescriptor(
-            Type.getType(PreparedStatement.class), new Type[] {Type.getType(String.class)}));
-    mv.visitVarInsn(ASTORE, psvar);
+    final Label empty = new Label();
+    if (info.hasInParameters()) {
+      prepareQueryIn(mv, info, pVars, psvar, empty);
+    } else {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitLdcInsn(info.getSelectSql(dialect, REL_ALIAS));
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          "prepareQuery",
+          Type.getMethodDescriptor(
+              Type.getType(PreparedStatement.class), new Type[] {Type.getType(String.class)}));
+      mv.visitVarInsn(ASTORE, psvar);
+    }
 
     final int argIdx[] = new int[] {0};
     final CodeGenSupport cgs =
@@ -791,15 +1031,25 @@ class AccessGen implements Opcodes {
           @Override
           protected void appendGetField(final ColumnModel c) {
             final int n = argIdx[0];
-            if (c == pCols.get(n)) {
+            if (c == pCols.get(n) && inCols.get(n) != null) {
+              loadVar(CodeGenSupport.toType(c), elemvar);
+            } else if (c == pCols.get(n)) {
               loadVar(pTypes[n], pVars[n]);
             } else {
               super.appendGetField(c);
             }
           }
         };
-    for (final ColumnModel c : pCols) {
-      if (c.isNested()) {
+    if (info.hasInParameters()) {
+      cgs.push(0);
+      mv.visitVarInsn(ISTORE, shiftvar);
+      cgs.setColumnIndexOffset(shiftvar);
+    }
+    for (int i = 0; i < pCols.size(); i++) {
+      final ColumnModel c = pCols.get(i);
+      if (inCols.get(i) != null) {
+        bindInList(mv, cgs, c, pVars[i], shiftvar, itrvar, elemvar);
+      } else if (c.isNested()) {
         for (final ColumnModel n : c.getAllLeafColumns()) {
           cgs.setFieldReference(n);
           dialect.getSqlTypeInfo(n).generatePreparedStatementSet(cgs);
@@ -830,6 +1080,9 @@ class AccessGen implements Opcodes {
                   }
                 };
             cgs2.resetColumnIndex(cgs.getColumnIndex() + 1);
+            if (info.hasInParameters()) {
+              cgs2.setColumnIndexOffset(shiftvar);
+            }
             dialect.getSqlTypeInfo(Integer.TYPE).generatePreparedStatementSet(cgs2);
           }
           mv.visitVarInsn(ILOAD, pVars[pTypes.length - 1]);
@@ -844,17 +1097,223 @@ class AccessGen implements Opcodes {
       }
     }
 
+    if (countType != null) {
+      implementCountResult(mv, psvar, countType);
+      implementEmptyResult(mv, info, empty);
+      return;
+    }
+
     mv.visitVarInsn(ALOAD, 0);
     mv.visitVarInsn(ALOAD, psvar);
+    cgs.push(info.getFetchSize());
+    if (rowQuery < 0) {
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          info.getName().equals("iterateAllEntities") ? "queryAll" : "queryList",
+          Type.getMethodDescriptor(
+              Type.getType(com.google.gwtorm.server.ResultSet.class),
+              new Type[] {Type.getType(PreparedStatement.class), Type.INT_TYPE}));
+    } else {
+      cgs.push(rowQuery);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          "queryRows",
+          Type.getMethodDescriptor(
+              Type.getType(com.google.gwtorm.server.ResultSet.class),
+              new Type[] {Type.getType(PreparedStatement.class), Type.INT_TYPE, Type.INT_TYPE}));
+    }
+    mv.visitInsn(ARETURN);
+    implementEmptyResult(mv, info, empty);
+  }
+
+  /**
+   * Prepare a query with parameters tested with {@code IN}, replacing each such parameter with
+   * the values to bind, and jumping to {@code empty} if any has none.
+   */
+  private void prepareQueryIn(
+      final MethodVisitor mv,
+      final QueryModel info,
+      final int[] pVars,
+      final int psvar,
+      final Label empty) {
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    final Type collection = Type.getType(Collection.class);
+    final Type list = Type.getType(List.class);
+    final List<ColumnModel> inCols = info.getInParameters();
+    final List<Integer> inVars = new ArrayList<>();
+    for (int i = 0; i < inCols.size(); i++) {
+      if (inCols.get(i) != null) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, pVars[i]);
+        mv.visitMethodInsn(
+            INVOKEVIRTUAL,
+            superTypeName,
+            "inList",
+            Type.getMethodDescriptor(list, new Type[] {collection}));
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ASTORE, pVars[i]);
+        mv.visitMethodInsn(
+            INVOKEINTERFACE,
+            list.getInternalName(),
+            "isEmpty",
+            Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[] {}));
+        mv.visitJumpInsn(IFNE, empty);
+        inVars.add(pVars[i]);
+      }
+    }
+
+    mv.visitVarInsn(ALOAD, 0);
+    final List<String> sql = info.getSelectSqlFragments(dialect, REL_ALIAS);
+    cgs.push(sql.size());
+    mv.visitTypeInsn(ANEWARRAY, Type.getInternalName(String.class));
+    for (int i = 0; i < sql.size(); i++) {
+      mv.visitInsn(DUP);
+      cgs.push(i);
+      mv.visitLdcInsn(sql.get(i));
+      mv.visitInsn(AASTORE);
+    }
+    cgs.push(inVars.size());
+    mv.visitTypeInsn(ANEWARRAY, list.getInternalName());
+    for (int i = 0; i < inVars.size(); i++) {
+      mv.visitInsn(DUP);
+      cgs.push(i);
+      mv.visitVarInsn(ALOAD, inVars.get(i));
+      mv.visitInsn(AASTORE);
+    }
     mv.visitMethodInsn(
         INVOKEVIRTUAL,
         superTypeName,
-        "queryList",
+        "prepareQueryIn",
         Type.getMethodDescriptor(
-            Type.getType(com.google.gwtorm.server.ResultSet.class),
-            new Type[] {Type.getType(PreparedStatement.class)}));
-    mv.visitInsn(ARETURN);
+            Type.getType(PreparedStatement.class),
+            new Type[] {Type.getType(String[].class), Type.getType(List[].class)}));
+    mv.visitVarInsn(ASTORE, psvar);
+  }
+
+  /**
+   * Bind each value of a parameter tested with {@code IN}, adding the number of extra
+   * placeholders to the column index offset in {@code shiftvar}.
+   */
+  private void bindInList(
+      final MethodVisitor mv,
+      final CodeGenSupport cgs,
+      final ColumnModel c,
+      final int listvar,
+      final int shiftvar,
+      final int itrvar,
+      final int elemvar) {
+    final Type iterator = Type.getType(Iterator.class);
+    final Type elemType = CodeGenSupport.toType(c);
+    final ColumnModel leaf = c.isNested() ? c.getAllLeafColumns().iterator().next() : c;
+    final int index = cgs.getColumnIndex();
+
+    mv.visitVarInsn(ALOAD, listvar);
+    mv.visitMethodInsn(
+        INVOKEINTERFACE,
+        Type.getInternalName(Collection.class),
+        "iterator",
+        Type.getMethodDescriptor(iterator, new Type[] {}));
+    mv.visitVarInsn(ASTORE, itrvar);
+
+    final Label again = new Label();
+    final Label done = new Label();
+    mv.visitLabel(again);
+    mv.visitVarInsn(ALOAD, itrvar);
+    mv.visitMethodInsn(
+        INVOKEINTERFACE,
+        iterator.getInternalName(),
+        "hasNext",
+        Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[] {}));
+    mv.visitJumpInsn(IFEQ, done);
+    mv.visitVarInsn(ALOAD, itrvar);
+    mv.visitMethodInsn(
+        INVOKEINTERFACE,
+        iterator.getInternalName(),
+        "next",
+        Type.getMethodDescriptor(Type.getType(Object.class), new Type[] {}));
+    CodeGenSupport.unbox(mv, elemType);
+    mv.visitVarInsn(elemType.getOpcode(ISTORE), elemvar);
+
+    cgs.resetColumnIndex(index);
+    cgs.setFieldReference(leaf);
+    dialect.getSqlTypeInfo(leaf).generatePreparedStatementSet(cgs);
+    mv.visitIincInsn(shiftvar, 1);
+    mv.visitJumpInsn(GOTO, again);
+
+    mv.visitLabel(done);
+    mv.visitIincInsn(shiftvar, -1);
+  }
+
+  /** Return no results from a query, where {@code empty} was jumped to. */
+  private static void implementEmptyResult(
+      final MethodVisitor mv, final QueryModel info, final Label empty) {
+    if (info.hasInParameters()) {
+      mv.visitLabel(empty);
+      final Class<?> countType = info.getCountType();
+      if (countType == Long.TYPE) {
+        mv.visitInsn(LCONST_0);
+        mv.visitInsn(LRETURN);
+      } else if (countType != null) {
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+      } else {
+        final Type rs = Type.getType(ListResultSet.class);
+        mv.visitTypeInsn(NEW, rs.getInternalName());
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(
+            INVOKESTATIC,
+            Type.getInternalName(Collections.class),
+            "emptyList",
+            Type.getMethodDescriptor(Type.getType(List.class), new Type[] {}));
+        mv.visitMethodInsn(
+            INVOKESPECIAL,
+            rs.getInternalName(),
+            "<init>",
+            Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {Type.getType(List.class)}));
+        mv.visitInsn(ARETURN);
+      }
+    }
     mv.visitMaxs(-1, -1);
     mv.visitEnd();
   }
+
+  private void implementCountResult(
+      final MethodVisitor mv, final int psvar, final Class<?> countType) {
+    final Type ps = Type.getType(PreparedStatement.class);
+    if (countType == Boolean.TYPE) {
+      if (!dialect.selectHasLimit()) {
+        mv.visitVarInsn(ALOAD, psvar);
+        mv.visitInsn(ICONST_1);
+        mv.visitMethodInsn(
+            INVOKEINTERFACE,
+            ps.getInternalName(),
+            "setMaxRows",
+            Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {Type.INT_TYPE}));
+      }
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, psvar);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          "queryExists",
+          Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[] {ps}));
+      mv.visitInsn(IRETURN);
+    } else {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, psvar);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          superTypeName,
+          "queryCount",
+          Type.getMethodDescriptor(Type.LONG_TYPE, new Type[] {ps}));
+      if (countType == Integer.TYPE) {
+        mv.visitInsn(L2I);
+        mv.visitInsn(IRETURN);
+      } else {
+        mv.visitInsn(LRETURN);
+      }
+    }
+  }
 }
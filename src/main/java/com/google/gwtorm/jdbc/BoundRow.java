@@ -0,0 +1,171 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Records the parameters a generated binder sets, instead of sending them to a database.
+ *
+ * <p>Lets bulk loads encode rows with exactly the values, and the column order, of a regular
+ * insert, and lets updates compare an entity with the row it was loaded from.
+ */
+class BoundRow implements InvocationHandler {
+  private final PreparedStatement statement;
+  private Method[] setters = new Method[8];
+  private Object[] args = new Object[8];
+  private int count;
+
+  BoundRow() {
+    statement =
+        (PreparedStatement)
+            Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class},
+                this);
+  }
+
+  /** @return statement to pass to the binder. */
+  PreparedStatement statement() {
+    return statement;
+  }
+
+  /** @return the values bound since the last call, by parameter position; null if set null. */
+  Object[] take() {
+    final Object[] r = new Object[count];
+    for (int i = 0; i < count; i++) {
+      r[i] = isNull(setters[i]) ? null : args[i];
+    }
+    clear();
+    return r;
+  }
+
+  /** @return the parameters bound since the last call, able to be bound again. */
+  Row takeRow() {
+    final Row r = new Row(Arrays.copyOf(setters, count), new Object[count]);
+    for (int i = 0; i < count; i++) {
+      r.args[i] = copyOf(args[i]);
+    }
+    clear();
+    return r;
+  }
+
+  private void clear() {
+    Arrays.fill(setters, 0, count, null);
+    Arrays.fill(args, 0, count, null);
+    count = 0;
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method m, final Object[] a) {
+    final String name = m.getName();
+    if (name.startsWith("set") && a != null && a.length == 2 && a[0] instanceof Integer) {
+      final int idx = (Integer) a[0] - 1;
+      if (setters.length <= idx) {
+        final int n = Math.max(idx + 1, 2 * setters.length);
+        setters = Arrays.copyOf(setters, n);
+        args = Arrays.copyOf(args, n);
+      }
+      setters[idx] = m;
+      args[idx] = a[1];
+      count = Math.max(count, idx + 1);
+      return null;
+    }
+    if (m.getDeclaringClass() == Object.class) {
+      if (name.equals("equals")) {
+        return proxy == a[0];
+      } else if (name.equals("hashCode")) {
+        return System.identityHashCode(proxy);
+      }
+      return "BoundRow" + Arrays.toString(Arrays.copyOf(args, count));
+    }
+    throw new UnsupportedOperationException(name + " is not supported while binding a row");
+  }
+
+  private static boolean isNull(final Method setter) {
+    return setter.getName().equals("setNull");
+  }
+
+  /** Copy mutable values, so later changes to the entity do not alter a recorded row. */
+  private static Object copyOf(final Object v) {
+    if (v instanceof byte[]) {
+      return ((byte[]) v).clone();
+    } else if (v instanceof Timestamp) {
+      final Timestamp t = new Timestamp(((Timestamp) v).getTime());
+      t.setNanos(((Timestamp) v).getNanos());
+      return t;
+    } else if (v instanceof Date) {
+      return ((Date) v).clone();
+    }
+    return v;
+  }
+
+  /** Parameters recorded by {@link BoundRow#takeRow()}. */
+  static final class Row {
+    private final Method[] setters;
+    private final Object[] args;
+
+    private Row(final Method[] setters, final Object[] args) {
+      this.setters = setters;
+      this.args = args;
+    }
+
+    int size() {
+      return args.length;
+    }
+
+    /** @return true if parameter {@code i} was bound the same way in both rows. */
+    boolean same(final Row other, final int i) {
+      if (!setters[i].equals(other.setters[i])) {
+        return false;
+      }
+      final Object a = args[i];
+      final Object b = other.args[i];
+      if (a instanceof byte[] && b instanceof byte[]) {
+        return Arrays.equals((byte[]) a, (byte[]) b);
+      }
+      return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Bind one recorded parameter to a statement.
+     *
+     * @param ps the statement.
+     * @param i position of the recorded parameter, starting at 0.
+     * @param index position to bind it to in {@code ps}, starting at 1.
+     * @throws SQLException the parameter could not be bound.
+     */
+    void bind(final PreparedStatement ps, final int i, final int index) throws SQLException {
+      try {
+        setters[i].invoke(ps, index, args[i]);
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof SQLException) {
+          throw (SQLException) e.getCause();
+        }
+        throw new SQLException("Cannot bind parameter " + index, e.getCause());
+      } catch (IllegalAccessException e) {
+        throw new SQLException("Cannot bind parameter " + index, e);
+      }
+    }
+  }
+}
@@ -17,16 +17,28 @@ package com.google.gwtorm.jdbc;
 import com.google.gwtorm.client.KeyUtil;
 import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.schema.SchemaModel;
+import com.google.gwtorm.schema.SequenceModel;
 import com.google.gwtorm.schema.java.JavaSchemaModel;
 import com.google.gwtorm.schema.sql.SqlDialect;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.EntityCacheConfig;
+import com.google.gwtorm.server.GeneratedClassCache;
 import com.google.gwtorm.server.GeneratedClassLoader;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.QueryCache;
 import com.google.gwtorm.server.Schema;
 import com.google.gwtorm.server.SchemaConstructorGen;
 import com.google.gwtorm.server.SchemaFactory;
 import com.google.gwtorm.server.SchemaGen;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.sql.DataSource;
 
 /**
@@ -49,10 +61,31 @@ public class Database<T extends Schema> implements SchemaFactory<T> {
   private final JavaSchemaModel schemaModel;
   private final SchemaFactory<T> implFactory;
   private final SqlDialect implDialect;
+  private final AtomicLong statementCacheHits = new AtomicLong();
+  private final AtomicLong statementCacheMisses = new AtomicLong();
+  private volatile int statementCacheSize;
+  private volatile boolean lazyConnections;
+  private volatile boolean identityMapEnabled;
+  private final EntityCache entityCache = new EntityCache();
+  private volatile QueryCache queryCache = new QueryCache(entityCache, 1000);
+  private volatile int maxBatchSize;
+  private volatile int defaultFetchSize;
+  private volatile AsyncAccessExecutor asyncExecutor;
+  private volatile AsyncAccessExecutor asyncReadOnlyExecutor;
+  private volatile ReplicaSet replicas;
+  private final ThreadLocal<ReplicaSet.Replica> openingReplica = new ThreadLocal<>();
+  private final Map<String, Integer> relationMaxBatchSize = new ConcurrentHashMap<>();
+  private final Map<String, SequencePool> sequencePools = new ConcurrentHashMap<>();
+  private final Map<String, PartialUpdate> partialUpdates = new HashMap<>();
+  private volatile boolean partialUpdatesEnabled;
+  private volatile boolean queryIndexesEnabled;
 
   /**
    * Create a new database interface, generating the interface implementations.
    *
+   * <p>If {@link SchemaClassWriter} wrote the implementations for the schema and the database's
+   * dialect ahead of time, they are loaded from the schema's class loader instead.
+   *
    * @param ds JDBC connection information
    * @param schema application extension of the Schema interface to implement.
    * @throws OrmException the schema interface is incorrectly defined, or the driver class is not
@@ -74,19 +107,50 @@ public class Database<T extends Schema> implements SchemaFactory<T> {
     }
 
     schemaModel = new JavaSchemaModel(schema);
-    final GeneratedClassLoader loader = newLoader(schema);
-    final Class<T> impl = generate(dialect, loader);
-    implFactory = new SchemaConstructorGen<>(loader, impl, this).create();
+    SchemaFactory<T> factory = pregenerated(schema, dialect);
+    if (factory == null) {
+      // Classes are generated for Database itself, so they can be shared with every database of
+      // the same schema and dialect.
+      final Class<?> factoryClass =
+          GeneratedClassCache.get(
+              schema,
+              Arrays.<Class<?>>asList(dialect.getClass()),
+              new GeneratedClassCache.Generator() {
+                @Override
+                public Class<?> generate() throws OrmException {
+                  final GeneratedClassLoader loader = newLoader(schema);
+                  final Class<T> impl =
+                      Database.generate(schemaModel, Database.class, dialect, loader);
+                  return new SchemaConstructorGen<>(loader, impl, Database.class).createClass();
+                }
+              });
+      factory = SchemaConstructorGen.newInstance(factoryClass, this);
+    }
+    implFactory = factory;
     implDialect = dialect;
+
+    for (final RelationModel rel : schemaModel.getRelations()) {
+      final PartialUpdate pu = PartialUpdate.create(rel, dialect);
+      if (pu != null) {
+        partialUpdates.put(rel.getRelationName().toLowerCase(), pu);
+      }
+    }
+    for (final SequenceModel seq : schemaModel.getSequences()) {
+      setSequenceBlockSize(seq.getSequenceName(), seq.getSequence().cache());
+    }
   }
 
   @SuppressWarnings({"unchecked", "rawtypes"})
-  private Class<T> generate(final SqlDialect dialect, final GeneratedClassLoader loader)
+  static <T> Class<T> generate(
+      final SchemaModel schemaModel,
+      final Class<?> databaseClass,
+      final SqlDialect dialect,
+      final GeneratedClassLoader loader)
       throws OrmException {
     return new SchemaGen(
             loader,
             schemaModel,
-            getClass(),
+            databaseClass,
             JdbcSchema.class,
             new SchemaGen.AccessGenerator() {
               @Override
@@ -98,6 +162,34 @@ public class Database<T extends Schema> implements SchemaFactory<T> {
         .create();
   }
 
+  /**
+   * Load the factory written for the schema and dialect by {@link SchemaClassWriter}, if any.
+   *
+   * @return the factory; null if no classes were written ahead of time.
+   * @throws OrmException the classes exist but cannot be used.
+   */
+  private SchemaFactory<T> pregenerated(final Class<T> schema, final SqlDialect dialect)
+      throws OrmException {
+    final String suffix = pregeneratedSuffix(schema, dialect);
+    final String name = schema.getName() + "_Schema_" + suffix + "_Factory_" + suffix;
+    final Class<?> c;
+    try {
+      c = Class.forName(name, true, schema.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    return SchemaConstructorGen.newInstance(c, this);
+  }
+
+  /** @return name suffix of the classes written ahead of time for the schema and dialect. */
+  static String pregeneratedSuffix(final Class<?> schema, final SqlDialect dialect) {
+    final String d = dialect.getClass().getName();
+    return "GwtOrm$$"
+        + d.substring(d.lastIndexOf('.') + 1).replace('$', '_')
+        + "_"
+        + schema.getSimpleName();
+  }
+
   SqlDialect getDialect() {
     return implDialect;
   }
@@ -106,6 +198,308 @@ public class Database<T extends Schema> implements SchemaFactory<T> {
     return schemaModel;
   }
 
+  /**
+   * Set the number of idle prepared statements each Schema keeps per connection.
+   *
+   * <p>Statements are keyed by their SQL text and evicted least recently used first. Only Schemas
+   * opened after this call are affected.
+   *
+   * <p>Statements are not cached on {@link #setLazyConnections(boolean) lazy connections}, or on
+   * the primary connection of a Schema reading from a replica, as such a connection is released
+   * with its statements as soon as it is idle.
+   *
+   * @param size maximum number of cached statements per Schema; 0 disables the cache.
+   */
+  public void setStatementCacheSize(final int size) {
+    statementCacheSize = Math.max(0, size);
+  }
+
+  /** @return maximum number of cached statements per Schema; 0 if caching is disabled. */
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /** @return number of statement borrows served from a cache, by all closed Schemas. */
+  public long getStatementCacheHitCount() {
+    return statementCacheHits.get();
+  }
+
+  /** @return number of statement borrows that prepared a new statement, by all closed Schemas. */
+  public long getStatementCacheMissCount() {
+    return statementCacheMisses.get();
+  }
+
+  void recordStatementCacheStats(final long hits, final long misses) {
+    statementCacheHits.addAndGet(hits);
+    statementCacheMisses.addAndGet(misses);
+  }
+
+  /**
+   * Set whether Schemas acquire their connection lazily.
+   *
+   * <p>When enabled, a Schema does not open a connection until its first statement, and closes it
+   * again as soon as no statement, result set or transaction is using it. Combined with a pooling
+   * DataSource this lets a Schema that is held open but idle avoid tying up a pooled connection.
+   * A connection exposed through {@link JdbcSchema#getConnection()} is held until the Schema is
+   * closed. Only Schemas opened after this call are affected.
+   *
+   * <p>Lazy connections do not cache statements; see {@link #setStatementCacheSize(int)}.
+   *
+   * @param lazy true to acquire connections per statement; false to hold one for the life of the
+   *     Schema.
+   */
+  public void setLazyConnections(final boolean lazy) {
+    lazyConnections = lazy;
+  }
+
+  /** @return true if Schemas acquire and release their connection per statement. */
+  public boolean isLazyConnections() {
+    return lazyConnections;
+  }
+
+  /**
+   * Limit the number of rows sent to the database in one JDBC batch.
+   *
+   * <p>Bulk insert, update, upsert and delete calls are split into batches of at most this many
+   * rows, each executed and checked for concurrent modification on its own. Rows within a batch are
+   * sorted by primary key, so concurrent writers acquire row locks in a consistent order.
+   *
+   * @param size maximum rows per batch; 0 sends all rows in a single batch, in caller order.
+   */
+  public void setMaxBatchSize(final int size) {
+    maxBatchSize = Math.max(0, size);
+  }
+
+  /**
+   * Limit the number of rows sent in one JDBC batch for a single relation.
+   *
+   * @param relationName name of the relation (table), as declared by its {@code @Relation}.
+   * @param size maximum rows per batch; 0 sends all rows in a single batch; negative removes the
+   *     override, so {@link #setMaxBatchSize(int)} applies.
+   * @see #setMaxBatchSize(int)
+   */
+  public void setMaxBatchSize(final String relationName, final int size) {
+    final String key = relationName.toLowerCase();
+    if (size < 0) {
+      relationMaxBatchSize.remove(key);
+    } else {
+      relationMaxBatchSize.put(key, size);
+    }
+  }
+
+  /**
+   * @param relationName name of the relation (table).
+   * @return maximum rows per JDBC batch for the relation; 0 if unlimited.
+   */
+  public int getMaxBatchSize(final String relationName) {
+    final Integer size = relationMaxBatchSize.get(relationName.toLowerCase());
+    return size != null ? size : maxBatchSize;
+  }
+
+  /**
+   * Reserve values of a sequence in blocks, handing them out from memory.
+   *
+   * <p>All Schemas of this database draw from the same block, so only one in {@code size} calls
+   * of the sequence reaches the database. Values still in memory when the block size is changed
+   * or the process ends are never used, leaving gaps in the sequence. Values are unique but not
+   * ordered across processes sharing the database.
+   *
+   * <p>By default a sequence uses its {@link com.google.gwtorm.server.Sequence#cache()} as the
+   * block size.
+   *
+   * @param sequenceName name of the sequence.
+   * @param size number of values to reserve at once; 1 or less draws each value from the database.
+   */
+  public void setSequenceBlockSize(final String sequenceName, final int size) {
+    final String key = sequenceName.toLowerCase();
+    if (size <= 1) {
+      sequencePools.remove(key);
+    } else {
+      sequencePools.put(key, new SequencePool(this, sequenceName, size));
+    }
+  }
+
+  /**
+   * @param sequenceName name of the sequence.
+   * @return number of values reserved at once; 1 if each value is drawn from the database.
+   */
+  public int getSequenceBlockSize(final String sequenceName) {
+    final SequencePool pool = sequencePools.get(sequenceName.toLowerCase());
+    return pool != null ? pool.getBlockSize() : 1;
+  }
+
+  SequencePool getSequencePool(final String sequenceName) {
+    return sequencePools.get(sequenceName.toLowerCase());
+  }
+
+  /** Reserve a block of sequence values on a connection of its own, outside any transaction. */
+  long[] reserveSequenceValues(final String sequenceName, final int count) throws OrmException {
+    final Connection c = newConnection();
+    try {
+      return implDialect.nextLongs(c, sequenceName, count);
+    } finally {
+      try {
+        c.close();
+      } catch (SQLException e) {
+        // Ignore the close failure; the values were already reserved.
+      }
+    }
+  }
+
+  /**
+   * Set the fetch size for queries that do not declare {@link
+   * com.google.gwtorm.server.Query#fetchSize()}.
+   *
+   * <p>With a fetch size the driver streams results from a forward-only cursor instead of reading
+   * them all into memory first. On PostgreSQL this needs auto-commit off, so a query outside a
+   * transaction runs in one that is committed when its result set is closed. On MySQL the fetch
+   * size is ignored and rows are streamed one at a time, and no other statement may use the
+   * connection until the result set is closed.
+   *
+   * @param size rows per round trip; 0 leaves the driver default, which usually buffers all rows.
+   */
+  public void setDefaultFetchSize(final int size) {
+    defaultFetchSize = Math.max(0, size);
+  }
+
+  /** @return the fetch size for queries that do not declare one; 0 if unset. */
+  public int getDefaultFetchSize() {
+    return defaultFetchSize;
+  }
+
+  /**
+   * Keep an identity map in each Schema opened from now on.
+   *
+   * <p>With the map, repeated lookups of the same primary key within a Schema return the instance
+   * loaded or written first, without reading the database again. Callers that modify an entity
+   * without writing it back see their modification in later lookups.
+   *
+   * @param enabled true to give each Schema an identity map; false (the default) to disable it.
+   * @see JdbcSchema#getIdentityMap()
+   */
+  public void setIdentityMapEnabled(final boolean enabled) {
+    identityMapEnabled = enabled;
+  }
+
+  /** @return true if each Schema keeps an identity map. */
+  public boolean isIdentityMapEnabled() {
+    return identityMapEnabled;
+  }
+
+  /**
+   * Update only the columns an entity changed since it was loaded.
+   *
+   * <p>Each Schema then remembers the column values of the entities it reads. {@code update}
+   * compares an entity with those values, sets only the changed columns, and sends nothing at all
+   * for an unchanged entity, which therefore is not checked for a concurrent delete either.
+   * Entities not read through the Schema, or read by {@code iterateAllEntities} or a query
+   * streaming its results with a fetch size, are updated in full, as are relations with row
+   * version columns.
+   *
+   * @param enabled true to update only changed columns; false (the default) to always set every
+   *     column.
+   */
+  public void setPartialUpdatesEnabled(final boolean enabled) {
+    partialUpdatesEnabled = enabled;
+  }
+
+  /** @return true if updates set only the changed columns. */
+  public boolean isPartialUpdatesEnabled() {
+    return partialUpdatesEnabled;
+  }
+
+  /**
+   * Manage the secondary indexes derived from the {@code @Query} methods of each relation.
+   *
+   * <p>When enabled, {@code updateSchema} creates the indexes the queries need, and {@code
+   * pruneSchema} drops derived indexes no query needs any more. Building an index on a large table
+   * takes time and, except where the dialect builds it concurrently, locks the table for writes.
+   *
+   * @param enabled true to create and prune derived indexes; false (the default) to leave the
+   *     indexes of the database untouched.
+   */
+  public void setQueryIndexesEnabled(final boolean enabled) {
+    queryIndexesEnabled = enabled;
+  }
+
+  /** @return true if schema updates create and prune the indexes derived from queries. */
+  public boolean isQueryIndexesEnabled() {
+    return queryIndexesEnabled;
+  }
+
+  /** @return partial updates of the relation; null if disabled or not possible for it. */
+  PartialUpdate getPartialUpdate(final String relationName) {
+    return partialUpdatesEnabled ? partialUpdates.get(relationName.toLowerCase()) : null;
+  }
+
+  /**
+   * Cache a relation in memory, shared by all Schemas of this database.
+   *
+   * <p>Primary key lookups on the relation are answered from the cache when possible. Writes
+   * through any Schema of this database invalidate the written entities, and do so again when
+   * their transaction commits. Writes made by other processes are only picked up once the cached
+   * entity expires.
+   *
+   * @param relationName name of the relation.
+   * @param config how to cache the relation; null to stop caching it.
+   */
+  public void setEntityCache(final String relationName, final EntityCacheConfig config) {
+    entityCache.configure(relationName, config);
+  }
+
+  /** @return the cache shared by all Schemas of this database, for statistics. */
+  public EntityCache getEntityCache() {
+    return entityCache;
+  }
+
+  /**
+   * Limit the number of results held for queries declared with {@code cacheResults = true}.
+   *
+   * <p>Changing the size discards all cached results.
+   *
+   * @param maxResults maximum number of query results held (default 1000); 0 disables caching.
+   */
+  public void setQueryCacheSize(final int maxResults) {
+    queryCache = 0 < maxResults ? new QueryCache(entityCache, maxResults) : null;
+  }
+
+  /** @return the query result cache shared by all Schemas; null if disabled. */
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * Run asynchronous access methods on an executor.
+   *
+   * <p>Once set, {@code getAsync} and the {@code Async} variants of query methods open a Schema
+   * of their own on the executor, so they should be paired with a pooling DataSource such as
+   * {@link PooledDataSource}. {@link AsyncAccessExecutor#newDefaultExecutor(int)} creates a
+   * suitable executor. Calls made through a Schema opened by {@link #openReadOnly()} open theirs
+   * the same way, and calls made inside a transaction run on the calling thread, so they see its
+   * uncommitted writes.
+   *
+   * @param executor executor to run calls on; null runs them on the calling thread (the default).
+   */
+  public void setAsyncExecutor(final Executor executor) {
+    if (executor != null) {
+      asyncExecutor = new AsyncAccessExecutor(this, executor);
+      asyncReadOnlyExecutor = new AsyncAccessExecutor(this, executor, true);
+    } else {
+      asyncExecutor = null;
+      asyncReadOnlyExecutor = null;
+    }
+  }
+
+  /** @return executor for asynchronous access methods; null if they run on the calling thread. */
+  public AsyncAccessExecutor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  /** @return executor for the asynchronous access methods of read-only Schemas; null if none. */
+  AsyncAccessExecutor getAsyncReadOnlyExecutor() {
+    return asyncReadOnlyExecutor;
+  }
+
   /**
    * Open a new connection to the database and get a Schema wrapper.
    *
@@ -118,6 +512,55 @@ public class Database<T extends Schema> implements SchemaFactory<T> {
     return implFactory.open();
   }
 
+  /**
+   * Open a Schema that reads from a replica, if one is configured and usable.
+   *
+   * <p>The Schema's {@code get} and query methods run on a read-only connection to the replica
+   * chosen by {@link #setReadReplicas(ReplicaSet)}. Writes, and reads made while a transaction is
+   * in progress, use a connection to the primary, opened only when first needed. Reads may not
+   * see recent writes made through other Schemas, so such Schemas neither consult nor fill the
+   * shared entity and query caches.
+   */
+  @Override
+  public T openReadOnly() throws OrmException {
+    final ReplicaSet set = replicas;
+    final ReplicaSet.Replica replica = set != null ? set.select() : null;
+    if (replica == null) {
+      return open();
+    }
+    openingReplica.set(replica);
+    try {
+      return implFactory.open();
+    } catch (OrmException e) {
+      replica.release();
+      throw e;
+    } catch (RuntimeException e) {
+      replica.release();
+      throw e;
+    } finally {
+      openingReplica.remove();
+    }
+  }
+
+  /**
+   * Serve the reads of Schemas opened by {@link #openReadOnly()} from replicas.
+   *
+   * @param set the replicas; null to serve all reads from the primary (the default).
+   */
+  public void setReadReplicas(final ReplicaSet set) {
+    replicas = set;
+  }
+
+  /** @return the replicas serving read-only Schemas; null if there are none. */
+  public ReplicaSet getReadReplicas() {
+    return replicas;
+  }
+
+  /** @return the replica assigned to the Schema being opened on this thread; null if none. */
+  ReplicaSet.Replica getOpeningReplica() {
+    return openingReplica.get();
+  }
+
   Connection newConnection() throws OrmException {
     final Connection conn;
     try {
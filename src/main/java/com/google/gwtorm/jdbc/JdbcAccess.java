@@ -15,24 +15,45 @@
 package com.google.gwtorm.jdbc;
 
 import com.google.common.base.Preconditions;
+import com.google.gwtorm.client.CompoundKey;
 import com.google.gwtorm.client.Key;
 import com.google.gwtorm.schema.sql.DialectDB2;
+import com.google.gwtorm.schema.sql.SqlDialect;
 import com.google.gwtorm.server.AbstractAccess;
 import com.google.gwtorm.server.Access;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.IdentityMap;
 import com.google.gwtorm.server.ListResultSet;
 import com.google.gwtorm.server.OrmConcurrencyException;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.QueryCache;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /** Internal base class for implementations of {@link Access}. */
 public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T, K> {
+  /** Sizes IN lists are padded to, so only a few distinct statements are ever prepared. */
+  private static final int[] IN_LIST_SIZES = {1, 4, 16, 64, 256};
+
+  /** Rows carried by the multi-row INSERT statements, largest first. */
+  static final int[] INSERT_ROWS = {128, 32, 8};
+
   private final JdbcSchema schema;
+  private BoundRow boundRow;
 
   protected JdbcAccess(final JdbcSchema s) {
     schema = s;
@@ -41,7 +62,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
   @Override
   public void beginTransaction(K key) throws OrmException {
     try {
-      schema.getConnection().setAutoCommit(false);
+      schema.beginTransaction();
     } catch (SQLException e) {
       throw convertError("beginTransaction", e);
     }
@@ -60,6 +81,15 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       }
     }
 
+    if (isCaching()) {
+      return getThroughCache(keySet);
+    }
+    return fetchUncached(keySet);
+  }
+
+  @Override
+  protected com.google.gwtorm.server.ResultSet<T> fetchUncached(final Collection<K> keySet)
+      throws OrmException {
     switch (keySet.size()) {
       case 0:
         // Nothing requested, nothing to return.
@@ -87,14 +117,181 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
     return super.get(keys);
   }
 
+  /**
+   * Run asynchronous calls on the calling thread while a transaction is open, as a Schema of
+   * their own would not see its uncommitted writes.
+   */
+  @Override
+  protected AsyncAccessExecutor getAsyncExecutor() {
+    try {
+      if (schema.hasOpenTransaction()) {
+        return null;
+      }
+    } catch (SQLException e) {
+      return null;
+    }
+    return schema.getAsyncExecutor();
+  }
+
+  @Override
+  protected IdentityMap getIdentityMap() {
+    return schema.getIdentityMap();
+  }
+
+  @Override
+  protected EntityCache getEntityCache() {
+    return schema.getEntityCache();
+  }
+
+  @Override
+  protected QueryCache getQueryCache() {
+    return schema.getQueryCache();
+  }
+
+  @Override
+  protected boolean canShareReads() {
+    if (schema.isReadingFromReplica()) {
+      return false;
+    }
+    try {
+      return !schema.hasOpenTransaction();
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  @Override
+  protected void invalidateShared(final Collection<K> keys) {
+    super.invalidateShared(keys);
+    schema.invalidateOnCommit(getRelationName(), keys);
+  }
+
   protected PreparedStatement prepareStatement(final String sql) throws OrmException {
     try {
-      return schema.getConnection().prepareStatement(sql);
+      return schema.prepareStatement(sql);
+    } catch (SQLException e) {
+      throw convertError("prepare SQL\n" + sql + "\n", e);
+    }
+  }
+
+  /**
+   * Prepare a statement that only reads, possibly on a replica of the database.
+   *
+   * @param sql the SQL text of the query.
+   * @return the statement.
+   * @throws OrmException the statement cannot be prepared.
+   */
+  protected PreparedStatement prepareQuery(final String sql) throws OrmException {
+    try {
+      return schema.prepareQuery(sql);
     } catch (SQLException e) {
       throw convertError("prepare SQL\n" + sql + "\n", e);
     }
   }
 
+  /**
+   * Hand back a statement obtained from {@link #prepareStatement(String)} or {@link
+   * #prepareQuery(String)}.
+   *
+   * <p>The statement may be retained by the schema's statement cache instead of being closed.
+   */
+  void releaseStatement(final PreparedStatement ps) throws SQLException {
+    schema.releaseStatement(ps);
+  }
+
+  /**
+   * Fetch entities by primary key using one or more {@code IN (...)} queries.
+   *
+   * <p>Keys are split into chunks no larger than the dialect permits, and each chunk is padded to
+   * one of a few fixed sizes by repeating its last key. The SQL therefore takes only a handful of
+   * distinct forms, letting both the database's plan cache and the statement cache reuse them.
+   *
+   * @param sql the SELECT statement, ending in {@code IN}, to which the placeholder list is added.
+   * @param keys the keys to fetch.
+   * @return the matching entities.
+   * @throws OrmException the query failed.
+   */
+  protected com.google.gwtorm.server.ResultSet<T> queryBySqlIn(
+      final String sql, final Collection<K> keys) throws OrmException {
+    if (keys.isEmpty() || !isSingleColumn(keys.iterator().next())) {
+      // bindBySqlIn only binds keys of a single column; fetch other keys one by one.
+      return super.get(keys);
+    }
+
+    final List<List<K>> chunks = inListChunks(keys);
+    if (chunks.size() == 1) {
+      return queryChunkBySqlIn(sql, chunks.get(0));
+    }
+
+    final List<T> r = new ArrayList<>();
+    for (final List<K> chunk : chunks) {
+      r.addAll(queryChunkBySqlIn(sql, chunk).toList());
+    }
+    return new ListResultSet<>(r);
+  }
+
+  private static boolean isSingleColumn(final Key<?> key) {
+    return key.getParentKey() == null && !(key instanceof CompoundKey);
+  }
+
+  private com.google.gwtorm.server.ResultSet<T> queryChunkBySqlIn(
+      final String sql, final List<K> chunk) throws OrmException {
+    final PreparedStatement ps = prepareBySqlIn(sql, chunk);
+    try {
+      bindBySqlIn(ps, chunk);
+    } catch (SQLException e) {
+      try {
+        releaseStatement(ps);
+      } catch (SQLException e2) {
+        // Ignored.
+      }
+      throw convertError("fetch", e);
+    }
+    return queryList(ps);
+  }
+
+  private List<List<K>> inListChunks(final Collection<K> keys) {
+    final int limit = schema.getDialect().getMaxInListSize();
+    int max = IN_LIST_SIZES[0];
+    for (final int size : IN_LIST_SIZES) {
+      if (size <= limit) {
+        max = size;
+      }
+    }
+
+    // Duplicate keys would return duplicate rows if they landed in different chunks.
+    final List<K> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+    final List<List<K>> chunks = new ArrayList<>();
+    for (int start = 0; start < distinct.size(); start += max) {
+      final List<K> chunk =
+          new ArrayList<>(distinct.subList(start, Math.min(start + max, distinct.size())));
+      int padded = max;
+      for (final int size : IN_LIST_SIZES) {
+        if (chunk.size() <= size) {
+          padded = size;
+          break;
+        }
+      }
+      final K last = chunk.get(chunk.size() - 1);
+      while (chunk.size() < padded) {
+        chunk.add(last);
+      }
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  /**
+   * Bind keys to the placeholders of a statement created by {@link #prepareBySqlIn(String,
+   * Collection)}.
+   *
+   * <p>Implemented by generated code for relations whose primary key is a single column.
+   */
+  protected void bindBySqlIn(final PreparedStatement ps, final Collection<K> keys)
+      throws SQLException {
+    throw new UnsupportedOperationException("Fetch by key IN list of " + getRelationName());
+  }
+
   protected PreparedStatement prepareBySqlIn(final String sql, final Collection<K> keys)
       throws OrmException {
     final int n = keys.size();
@@ -108,7 +305,88 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       buf.append('?');
     }
     buf.append(')');
-    return prepareStatement(buf.toString());
+    return prepareQuery(buf.toString());
+  }
+
+  /**
+   * Prepare the values of a query parameter tested with {@code IN}.
+   *
+   * <p>Like the keys of {@link #queryBySqlIn(String, Collection)}, the distinct values are padded
+   * by repeating the last one, to one of a few fixed sizes or else to a multiple of the largest.
+   *
+   * @param values values passed to the query.
+   * @return the values to bind; empty if no value was passed, and so no row can match.
+   */
+  protected List<Object> inList(final Collection<?> values) {
+    if (values.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<Object> r = new ArrayList<Object>(new LinkedHashSet<>(values));
+    final int max = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+    int padded = (r.size() + max - 1) / max * max;
+    for (final int size : IN_LIST_SIZES) {
+      if (r.size() <= size) {
+        padded = size;
+        break;
+      }
+    }
+    final Object last = r.get(r.size() - 1);
+    while (r.size() < padded) {
+      r.add(last);
+    }
+    return r;
+  }
+
+  /**
+   * Prepare a query with parameters tested with {@code IN}.
+   *
+   * <p>Each {@code IN} condition is given one placeholder per value. Lists longer than the dialect
+   * permits are split into several conditions joined with {@code OR}.
+   *
+   * @param sql the query split as by {@code QueryModel.getSelectSqlFragments}: SQL text, then the
+   *     column and the following SQL text of each {@code IN} condition.
+   * @param lists values of each {@code IN} condition, from {@link #inList(Collection)}.
+   * @return the statement.
+   * @throws OrmException the statement cannot be prepared.
+   */
+  protected PreparedStatement prepareQueryIn(final String[] sql, final List<?>[] lists)
+      throws OrmException {
+    final int limit = schema.getDialect().getMaxInListSize();
+    int max = IN_LIST_SIZES[0];
+    for (final int size : IN_LIST_SIZES) {
+      if (size <= limit) {
+        max = size;
+      }
+    }
+
+    final StringBuilder buf = new StringBuilder();
+    buf.append(sql[0]);
+    for (int i = 0; i < lists.length; i++) {
+      final String column = sql[2 * i + 1];
+      final int n = lists[i].size();
+      if (max < n) {
+        buf.append('(');
+      }
+      for (int start = 0; start < n; start += max) {
+        if (start > 0) {
+          buf.append(" OR ");
+        }
+        buf.append(column);
+        buf.append(" IN (");
+        for (int j = start; j < Math.min(start + max, n); j++) {
+          if (j > start) {
+            buf.append(',');
+          }
+          buf.append('?');
+        }
+        buf.append(')');
+      }
+      if (max < n) {
+        buf.append(')');
+      }
+      buf.append(sql[2 * i + 2]);
+    }
+    return prepareQuery(buf.toString());
   }
 
   protected T queryOne(final PreparedStatement ps) throws OrmException {
@@ -120,6 +398,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
           if (rs.next()) {
             r = newEntityInstance();
             bindOneFetch(rs, r);
+            loaded(r);
             if (rs.next()) {
               throw new OrmException("Multiple results");
             }
@@ -129,7 +408,55 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
           rs.close();
         }
       } finally {
-        ps.close();
+        releaseStatement(ps);
+      }
+    } catch (SQLException e) {
+      throw convertError("fetch", e);
+    }
+  }
+
+  /**
+   * Execute a query selecting {@code COUNT(*)}.
+   *
+   * @param ps the query to execute; released before returning.
+   * @return the count.
+   * @throws OrmException the query failed.
+   */
+  protected long queryCount(final PreparedStatement ps) throws OrmException {
+    try {
+      try {
+        final ResultSet rs = ps.executeQuery();
+        try {
+          return rs.next() ? rs.getLong(1) : 0;
+        } finally {
+          rs.close();
+        }
+      } finally {
+        releaseStatement(ps);
+      }
+    } catch (SQLException e) {
+      throw convertError("fetch", e);
+    }
+  }
+
+  /**
+   * Execute a query probing for a matching row.
+   *
+   * @param ps the query to execute; released before returning.
+   * @return true if the query returned a row.
+   * @throws OrmException the query failed.
+   */
+  protected boolean queryExists(final PreparedStatement ps) throws OrmException {
+    try {
+      try {
+        final ResultSet rs = ps.executeQuery();
+        try {
+          return rs.next();
+        } finally {
+          rs.close();
+        }
+      } finally {
+        releaseStatement(ps);
       }
     } catch (SQLException e) {
       throw convertError("fetch", e);
@@ -138,38 +465,236 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
 
   protected com.google.gwtorm.server.ResultSet<T> queryList(final PreparedStatement ps)
       throws OrmException {
+    return queryList(ps, 0);
+  }
+
+  /**
+   * Execute a query, streaming its results if a fetch size applies.
+   *
+   * @param ps the query to execute; released when the result set is closed.
+   * @param fetchSize rows to fetch per round trip; 0 to use the database default.
+   * @return the results.
+   * @throws OrmException the query failed.
+   */
+  protected com.google.gwtorm.server.ResultSet<T> queryList(
+      final PreparedStatement ps, final int fetchSize) throws OrmException {
+    return query(ps, fetchSize, -1, true);
+  }
+
+  /**
+   * Execute a query reading the whole relation, like {@link #queryList(PreparedStatement, int)}.
+   *
+   * <p>The column values of the entities read are not remembered for partial updates.
+   */
+  protected com.google.gwtorm.server.ResultSet<T> queryAll(
+      final PreparedStatement ps, final int fetchSize) throws OrmException {
+    return query(ps, fetchSize, -1, false);
+  }
+
+  /**
+   * Execute a query returning keys or projections, read by {@link #fetchRow(int, ResultSet)}.
+   *
+   * @param ps the query to execute; released when the result set is closed.
+   * @param fetchSize rows to fetch per round trip; 0 to use the database default.
+   * @param query number of the query, passed to {@link #fetchRow(int, ResultSet)}.
+   * @return the results.
+   * @throws OrmException the query failed.
+   */
+  protected com.google.gwtorm.server.ResultSet<Object> queryRows(
+      final PreparedStatement ps, final int fetchSize, final int query) throws OrmException {
+    return query(ps, fetchSize, query, false);
+  }
+
+  /**
+   * @param remember whether to remember the column values of the entities read for partial
+   *     updates. Streamed results are never remembered, as they can be too large to copy.
+   */
+  private <R> com.google.gwtorm.server.ResultSet<R> query(
+      final PreparedStatement ps, final int fetchSize, final int query, final boolean remember)
+      throws OrmException {
+    final int n = 0 < fetchSize ? fetchSize : schema.getDefaultFetchSize();
+    boolean streaming = false;
+    boolean streamTransaction = false;
     final ResultSet rs;
     try {
+      if (0 < n) {
+        streaming = true;
+        streamTransaction = schema.beginStreaming(ps);
+        schema.getDialect().setFetchSize(ps, n);
+      }
       rs = ps.executeQuery();
       if (!rs.next()) {
         rs.close();
-        ps.close();
-        return new ListResultSet<>(Collections.<T>emptyList());
+        closeQuery(ps, streaming, streamTransaction);
+        return new ListResultSet<>(Collections.<R>emptyList());
       }
     } catch (SQLException err) {
       try {
-        ps.close();
-      } catch (SQLException e) {
-        // Ignored.
+        closeQuery(ps, streaming, streamTransaction);
+      } catch (OrmException e) {
+        // The fetch error is reported instead.
       }
       throw convertError("fetch", err);
     }
-    return new JdbcResultSet<>(this, rs, ps);
+    final boolean record = remember && !streaming;
+    return new JdbcResultSet<R>(this, rs, ps, streaming, streamTransaction) {
+      @Override
+      @SuppressWarnings("unchecked")
+      protected R fetch(final ResultSet rs) throws SQLException {
+        if (0 <= query) {
+          return (R) fetchRow(query, rs);
+        }
+        final T o = newEntityInstance();
+        bindOneFetch(rs, o);
+        if (record) {
+          loaded(o);
+        }
+        return (R) o;
+      }
+    };
+  }
+
+  /**
+   * Release a query's statement, undoing any streaming set up by queryList.
+   *
+   * @throws OrmException the transaction begun for streaming could not be committed.
+   */
+  void closeQuery(
+      final PreparedStatement ps, final boolean streaming, final boolean streamTransaction)
+      throws OrmException {
+    try {
+      if (streaming) {
+        // The statement may be reused from the statement cache.
+        ps.setFetchSize(0);
+      }
+    } catch (SQLException e) {
+      // Ignored.
+    }
+    try {
+      releaseStatement(ps);
+    } catch (SQLException e) {
+      // Ignored.
+    }
+    if (streamTransaction) {
+      schema.endStreaming();
+    }
   }
 
   @Override
   public void insert(final Iterable<T> instances) throws OrmException {
+    schema.checkNotStreaming();
+    final Iterable<T> list = forgetLoadedRows(beforeWrite(instances));
     try {
-      if (schema.getDialect().canDetermineTotalBatchUpdateCount()) {
-        insertAsBatch(instances);
-      } else {
-        insertIndividually(instances);
+      for (final List<T> chunk : batches(list)) {
+        final List<T> rest = insertMultiRow(chunk);
+        if (schema.getDialect().canDetermineTotalBatchUpdateCount()) {
+          insertAsBatch(rest);
+        } else {
+          insertIndividually(rest);
+        }
       }
     } catch (SQLException e) {
       throwOrDefer(convertError("insert", e));
     } catch (OrmException e) {
       throwOrDefer(e);
     }
+    afterWrite(list, false);
+  }
+
+  /**
+   * Insert many entities through the database's bulk load facility, such as PostgreSQL's {@code
+   * COPY}.
+   *
+   * <p>Entities are encoded and sent as they are read from {@code instances}, so the input is
+   * never held in memory as a whole. Rows are encoded from the same values a regular insert binds.
+   * The load is all or nothing, and unlike {@link #insert(Iterable)} does not check update counts.
+   * Loaded entities are not added to the identity map, and the relation is dropped from the
+   * database's entity cache.
+   *
+   * <p>Databases without a bulk load facility perform a regular {@link #insert(Iterable)}.
+   *
+   * @param instances the entities to insert.
+   * @throws OrmException the entities could not be inserted.
+   */
+  @Override
+  public void bulkInsert(final Iterable<T> instances) throws OrmException {
+    schema.checkNotStreaming();
+    final String sql = getBulkLoadSql();
+    if (sql == null) {
+      insert(instances);
+      return;
+    }
+
+    final IdentityMap map = getIdentityMap();
+    final Iterator<T> i = instances.iterator();
+    final BoundRow row = new BoundRow();
+    try {
+      schema.bulkLoad(
+          sql,
+          new SqlDialect.RowSource() {
+            @Override
+            public Object[] nextRow() throws SQLException {
+              if (!i.hasNext()) {
+                return null;
+              }
+              final T o = i.next();
+              if (map != null) {
+                map.remove(getRelationName(), primaryKey(o));
+              }
+              schema.forgetLoadedRow(o);
+              bindOneInsert(row.statement(), o);
+              return row.take();
+            }
+          });
+    } catch (SQLException e) {
+      throwOrDefer(convertError("insert", e));
+    }
+    if (getEntityCache() != null) {
+      getEntityCache().invalidateAll(getRelationName());
+    }
+  }
+
+  /**
+   * Insert as many rows as possible with multi-row INSERT statements.
+   *
+   * @param list one of the {@link #batches(Iterable)} to insert, so no statement carries more rows
+   *     than a batch may hold, and rows are written in the batch's order.
+   * @return the rows left to insert, fewer than the smallest multi-row statement carries.
+   */
+  private List<T> insertMultiRow(final List<T> list)
+      throws SQLException, OrmConcurrencyException {
+    if (getInsertRowsSql(INSERT_ROWS[INSERT_ROWS.length - 1]) == null) {
+      return list;
+    }
+    int done = 0;
+    boolean concurrencyViolationDetected = false;
+    for (final int rows : INSERT_ROWS) {
+      if (list.size() - done < rows) {
+        continue;
+      }
+      final String sql = getInsertRowsSql(rows);
+      if (sql == null) {
+        continue;
+      }
+      final PreparedStatement ps = schema.prepareStatement(sql);
+      try {
+        while (rows <= list.size() - done) {
+          for (int row = 0; row < rows; row++) {
+            bindInsertRow(ps, list.get(done + row), row);
+          }
+          if (ps.executeUpdate() != rows) {
+            concurrencyViolationDetected = true;
+          }
+          done += rows;
+        }
+      } finally {
+        releaseStatement(ps);
+      }
+    }
+    if (concurrencyViolationDetected) {
+      throw new OrmConcurrencyException();
+    }
+    return list.subList(done, list.size());
   }
 
   private void insertIndividually(Iterable<T> instances)
@@ -179,7 +704,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       boolean concurrencyViolationDetected = false;
       for (final T o : instances) {
         if (ps == null) {
-          ps = schema.getConnection().prepareStatement(getInsertOneSql());
+          ps = schema.prepareStatement(getInsertOneSql());
         }
         bindOneInsert(ps, o);
         int updateCount = ps.executeUpdate();
@@ -192,7 +717,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       }
     } finally {
       if (ps != null) {
-        ps.close();
+        releaseStatement(ps);
       }
     }
   }
@@ -201,36 +726,132 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       throws SQLException, OrmConcurrencyException {
     PreparedStatement ps = null;
     try {
-      int cnt = 0;
-      for (final T o : instances) {
+      for (final List<T> chunk : batches(instances)) {
         if (ps == null) {
-          ps = schema.getConnection().prepareStatement(getInsertOneSql());
+          ps = schema.prepareStatement(getInsertOneSql());
         }
-        bindOneInsert(ps, o);
-        ps.addBatch();
-        cnt++;
+        for (final T o : chunk) {
+          bindOneInsert(ps, o);
+          ps.addBatch();
+        }
+        execute(ps, chunk.size());
       }
-      execute(ps, cnt);
     } finally {
       if (ps != null) {
-        ps.close();
+        releaseStatement(ps);
       }
     }
   }
 
   @Override
   public void update(final Iterable<T> instances) throws OrmException {
+    schema.checkNotStreaming();
+    final Iterable<T> list = beforeWrite(instances);
     try {
+      final Iterable<T> rest = updateChanged(list);
       if (schema.getDialect().canDetermineTotalBatchUpdateCount()) {
-        updateAsBatch(instances);
+        updateAsBatch(rest);
       } else {
-        updateIndividually(instances);
+        updateIndividually(rest);
       }
     } catch (SQLException e) {
       throwOrDefer(convertError("update", e));
     } catch (OrmException e) {
       throwOrDefer(e);
     }
+    afterWrite(list, false);
+  }
+
+  /**
+   * Update entities read through this Schema, setting only the columns they changed.
+   *
+   * @return the entities whose column values when read are unknown, to update in full.
+   */
+  private Iterable<T> updateChanged(final Iterable<T> instances)
+      throws SQLException, OrmConcurrencyException {
+    final PartialUpdate pu = schema.getPartialUpdate(getRelationName());
+    if (pu == null || !schema.hasLoadedRows()) {
+      return instances;
+    }
+
+    final List<T> rest = new ArrayList<>();
+    final Map<BitSet, List<T>> groups = new LinkedHashMap<>();
+    final Map<T, BoundRow.Row> rows = new IdentityHashMap<>();
+    for (final T o : instances) {
+      final BoundRow.Row before = schema.getLoadedRow(o);
+      if (before == null) {
+        rest.add(o);
+        continue;
+      }
+      final BoundRow.Row now = record(o);
+      final BitSet changed = pu.changed(before, now);
+      if (changed.isEmpty()) {
+        continue;
+      }
+      List<T> group = groups.get(changed);
+      if (group == null) {
+        group = new ArrayList<>();
+        groups.put(changed, group);
+      }
+      group.add(o);
+      rows.put(o, now);
+    }
+
+    final boolean batch = schema.getDialect().canDetermineTotalBatchUpdateCount();
+    boolean concurrencyViolationDetected = false;
+    for (final Map.Entry<BitSet, List<T>> e : groups.entrySet()) {
+      final PreparedStatement ps = schema.prepareStatement(pu.getSql(e.getKey()));
+      try {
+        for (final T o : e.getValue()) {
+          pu.bind(ps, e.getKey(), rows.get(o));
+          if (batch) {
+            ps.addBatch();
+          } else if (ps.executeUpdate() != 1) {
+            concurrencyViolationDetected = true;
+          }
+        }
+        if (batch) {
+          execute(ps, e.getValue().size());
+        }
+      } finally {
+        releaseStatement(ps);
+      }
+      for (final T o : e.getValue()) {
+        schema.setLoadedRow(o, rows.get(o));
+      }
+    }
+    if (concurrencyViolationDetected) {
+      throw new OrmConcurrencyException();
+    }
+    return rest;
+  }
+
+  /** Remember the column values of an entity just read, for a later partial update. */
+  void loaded(final T o) throws SQLException {
+    if (schema.getPartialUpdate(getRelationName()) != null) {
+      schema.setLoadedRow(o, record(o));
+    }
+  }
+
+  private BoundRow.Row record(final T o) throws SQLException {
+    if (boundRow == null) {
+      boundRow = new BoundRow();
+    }
+    bindOneInsert(boundRow.statement(), o);
+    return boundRow.takeRow();
+  }
+
+  /** Forget the column values read of entities about to be inserted or deleted. */
+  private Iterable<T> forgetLoadedRows(final Iterable<T> instances) {
+    if (!schema.hasLoadedRows()) {
+      return instances;
+    }
+    final List<T> list = new ArrayList<>();
+    for (final T o : instances) {
+      schema.forgetLoadedRow(o);
+      list.add(o);
+    }
+    return list;
   }
 
   private void updateIndividually(Iterable<T> instances)
@@ -240,7 +861,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       boolean concurrencyViolationDetected = false;
       for (final T o : instances) {
         if (ps == null) {
-          ps = schema.getConnection().prepareStatement(getUpdateOneSql());
+          ps = schema.prepareStatement(getUpdateOneSql());
         }
         bindOneUpdate(ps, o);
         int updateCount = ps.executeUpdate();
@@ -253,7 +874,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       }
     } finally {
       if (ps != null) {
-        ps.close();
+        releaseStatement(ps);
       }
     }
   }
@@ -262,19 +883,19 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       throws SQLException, OrmConcurrencyException {
     PreparedStatement ps = null;
     try {
-      int cnt = 0;
-      for (final T o : instances) {
+      for (final List<T> chunk : batches(instances)) {
         if (ps == null) {
-          ps = schema.getConnection().prepareStatement(getUpdateOneSql());
+          ps = schema.prepareStatement(getUpdateOneSql());
         }
-        bindOneUpdate(ps, o);
-        ps.addBatch();
-        cnt++;
+        for (final T o : chunk) {
+          bindOneUpdate(ps, o);
+          ps.addBatch();
+        }
+        execute(ps, chunk.size());
       }
-      execute(ps, cnt);
     } finally {
       if (ps != null) {
-        ps.close();
+        releaseStatement(ps);
       }
     }
   }
@@ -301,7 +922,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
         List<T> allInstances = new ArrayList<>();
         for (final T o : instances) {
           if (ps == null) {
-            ps = schema.getConnection().prepareStatement(getUpdateOneSql());
+            ps = schema.prepareStatement(getUpdateOneSql());
           }
           bindOneUpdate(ps, o);
           int updateCount = ps.executeUpdate();
@@ -315,7 +936,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
         }
       } finally {
         if (ps != null) {
-          ps.close();
+          releaseStatement(ps);
         }
       }
     } catch (SQLException e) {
@@ -326,9 +947,24 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
 
   @Override
   public void upsert(final Iterable<T> instances) throws OrmException {
+    schema.checkNotStreaming();
+    final Iterable<T> list = forgetLoadedRows(beforeWrite(instances));
+    final String upsertSql = getUpsertOneSql();
+    if (upsertSql != null) {
+      try {
+        upsertAsBatch(upsertSql, list);
+      } catch (SQLException e) {
+        throwOrDefer(convertError("upsert", e));
+      } catch (OrmException e) {
+        throwOrDefer(e);
+      }
+      afterWrite(list, false);
+      return;
+    }
+
     try {
       // Assume update first, it will cheaply tell us if the row is missing.
-      Collection<T> inserts = attemptUpdate(instances);
+      Collection<T> inserts = attemptUpdate(list);
 
       if (inserts != null) {
         insert(inserts);
@@ -336,6 +972,47 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
     } catch (OrmException e) {
       throwOrDefer(e);
     }
+    afterWrite(list, false);
+  }
+
+  private void upsertAsBatch(final String sql, final Iterable<T> instances)
+      throws SQLException, OrmConcurrencyException {
+    PreparedStatement ps = null;
+    try {
+      for (final List<T> chunk : batches(instances)) {
+        if (ps == null) {
+          ps = schema.prepareStatement(sql);
+        }
+        for (final T o : chunk) {
+          bindOneInsert(ps, o);
+          ps.addBatch();
+        }
+        checkUpsertCounts(ps.executeBatch(), chunk.size());
+      }
+    } finally {
+      if (ps != null) {
+        releaseStatement(ps);
+      }
+    }
+  }
+
+  /**
+   * Check that every row of a batch of upserts was executed.
+   *
+   * <p>Counts of executed rows differ between databases: MySQL reports 2 for an updated row, a
+   * row left as it was reports 0, and some drivers report {@link Statement#SUCCESS_NO_INFO}. Only
+   * a missing or failed row is therefore detected.
+   */
+  private static void checkUpsertCounts(final int[] counts, final int cnt)
+      throws OrmConcurrencyException {
+    if (counts == null || counts.length != cnt) {
+      throw new OrmConcurrencyException();
+    }
+    for (final int n : counts) {
+      if (n < 0 && n != Statement.SUCCESS_NO_INFO) {
+        throw new OrmConcurrencyException();
+      }
+    }
   }
 
   private Collection<T> attemptUpdateAsBatch(final Iterable<T> instances) throws OrmException {
@@ -343,26 +1020,26 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
     try {
       PreparedStatement ps = null;
       try {
-        int cnt = 0;
-        List<T> allInstances = new ArrayList<>();
-        for (final T o : instances) {
+        for (final List<T> chunk : batches(instances)) {
           if (ps == null) {
-            ps = schema.getConnection().prepareStatement(getUpdateOneSql());
+            ps = schema.prepareStatement(getUpdateOneSql());
+          }
+          for (final T o : chunk) {
+            bindOneUpdate(ps, o);
+            ps.addBatch();
           }
-          bindOneUpdate(ps, o);
-          ps.addBatch();
-          allInstances.add(o);
-          cnt++;
-        }
 
-        if (0 < cnt) {
+          final int cnt = chunk.size();
           Preconditions.checkNotNull(ps);
           final int[] states = ps.executeBatch();
           if (states == null) {
-            inserts = allInstances;
+            if (inserts == null) {
+              inserts = new ArrayList<>(cnt);
+            }
+            inserts.addAll(chunk);
           } else {
             int i = 0;
-            for (T o : allInstances) {
+            for (T o : chunk) {
               if (states.length <= i || states[i] != 1) {
                 if (inserts == null) {
                   inserts = new ArrayList<>(cnt - i);
@@ -375,7 +1052,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
         }
       } finally {
         if (ps != null) {
-          ps.close();
+          releaseStatement(ps);
         }
       }
     } catch (SQLException e) {
@@ -387,17 +1064,20 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
 
   @Override
   public void delete(final Iterable<T> instances) throws OrmException {
+    schema.checkNotStreaming();
+    final Iterable<T> list = forgetLoadedRows(beforeWrite(instances));
     try {
       if (schema.getDialect().canDetermineTotalBatchUpdateCount()) {
-        deleteAsBatch(instances);
+        deleteAsBatch(list);
       } else {
-        deleteIndividually(instances);
+        deleteIndividually(list);
       }
     } catch (SQLException e) {
       throwOrDefer(convertError("delete", e));
     } catch (OrmException e) {
       throwOrDefer(e);
     }
+    afterWrite(list, true);
   }
 
   private void deleteIndividually(Iterable<T> instances)
@@ -407,7 +1087,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       boolean concurrencyViolationDetected = false;
       for (final T o : instances) {
         if (ps == null) {
-          ps = schema.getConnection().prepareStatement(getDeleteOneSql());
+          ps = schema.prepareStatement(getDeleteOneSql());
         }
         bindOneDelete(ps, o);
         int updateCount = ps.executeUpdate();
@@ -420,7 +1100,7 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       }
     } finally {
       if (ps != null) {
-        ps.close();
+        releaseStatement(ps);
       }
     }
   }
@@ -429,21 +1109,58 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
       throws SQLException, OrmConcurrencyException {
     PreparedStatement ps = null;
     try {
-      int cnt = 0;
-      for (final T o : instances) {
+      for (final List<T> chunk : batches(instances)) {
         if (ps == null) {
-          ps = schema.getConnection().prepareStatement(getDeleteOneSql());
+          ps = schema.prepareStatement(getDeleteOneSql());
         }
-        bindOneDelete(ps, o);
-        ps.addBatch();
-        cnt++;
+        for (final T o : chunk) {
+          bindOneDelete(ps, o);
+          ps.addBatch();
+        }
+        execute(ps, chunk.size());
       }
-      execute(ps, cnt);
     } finally {
       if (ps != null) {
-        ps.close();
+        releaseStatement(ps);
+      }
+    }
+  }
+
+  /**
+   * Split instances into the JDBC batches to execute.
+   *
+   * <p>If the database limits the batch size for this relation, each batch holds at most that many
+   * instances and is sorted by primary key, so that concurrent writers lock rows in the same order.
+   * Otherwise all instances are returned in one batch, in their original order.
+   */
+  private List<List<T>> batches(final Iterable<T> instances) {
+    final int max = schema.getMaxBatchSize(getRelationName());
+    final List<List<T>> batches = new ArrayList<>();
+    List<T> batch = new ArrayList<>();
+    for (final T o : instances) {
+      if (0 < max && batch.size() == max) {
+        batches.add(batch);
+        batch = new ArrayList<>(max);
+      }
+      batch.add(o);
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+
+    if (0 < max) {
+      final Comparator<T> byKey =
+          new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+              return KeyComparator.INSTANCE.compare(primaryKey(a), primaryKey(b));
+            }
+          };
+      for (final List<T> b : batches) {
+        Collections.sort(b, byKey);
       }
     }
+    return batches;
   }
 
   private void execute(final PreparedStatement ps, final int cnt)
@@ -492,11 +1209,60 @@ public abstract class JdbcAccess<T, K extends Key<?>> extends AbstractAccess<T,
 
   protected abstract String getDeleteOneSql();
 
+  /**
+   * @return SQL inserting or updating one row in a single statement, bound like {@link
+   *     #getInsertOneSql()}; null if the dialect has no native upsert for this relation.
+   */
+  protected String getUpsertOneSql() {
+    return null;
+  }
+
   protected abstract void bindOneInsert(PreparedStatement ps, T entity) throws SQLException;
 
+  /**
+   * @param rows number of rows inserted by the statement.
+   * @return SQL inserting several rows in one statement, each bound by {@link
+   *     #bindInsertRow(PreparedStatement, Object, int)}; null if the dialect cannot insert that
+   *     many rows at once.
+   */
+  protected String getInsertRowsSql(final int rows) {
+    return null;
+  }
+
+  /**
+   * @return statement starting a bulk load of this relation; null if the dialect has no bulk load
+   *     facility.
+   */
+  protected String getBulkLoadSql() {
+    return null;
+  }
+
+  /**
+   * Bind one row of a statement from {@link #getInsertRowsSql(int)}.
+   *
+   * @param ps the statement.
+   * @param entity the row's entity.
+   * @param row position of the row in the statement, starting at 0.
+   * @throws SQLException the values could not be bound.
+   */
+  protected abstract void bindInsertRow(PreparedStatement ps, T entity, int row)
+      throws SQLException;
+
   protected abstract void bindOneUpdate(PreparedStatement ps, T entity) throws SQLException;
 
   protected abstract void bindOneDelete(PreparedStatement ps, T entity) throws SQLException;
 
   protected abstract void bindOneFetch(ResultSet rs, T entity) throws SQLException;
+
+  /**
+   * Read the current row of a query that returns keys or projections instead of entities.
+   *
+   * @param query number of the query, as given to {@link #queryRows(PreparedStatement, int, int)}.
+   * @param rs the query's results, positioned on the row to read.
+   * @return the key or projection read from the row.
+   * @throws SQLException the row could not be read.
+   */
+  protected Object fetchRow(final int query, final ResultSet rs) throws SQLException {
+    throw new UnsupportedOperationException("Query " + query + " of " + getRelationName());
+  }
 }
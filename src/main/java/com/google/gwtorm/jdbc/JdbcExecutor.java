@@ -16,12 +16,15 @@ package com.google.gwtorm.jdbc;
 
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.StatementExecutor;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 public class JdbcExecutor implements StatementExecutor {
   private final Statement stmt;
+  private final boolean batchUpdates;
 
   public JdbcExecutor(final JdbcSchema schema) throws OrmException {
     this(schema.getConnection());
@@ -30,6 +33,7 @@ public class JdbcExecutor implements StatementExecutor {
   public JdbcExecutor(final Connection c) throws OrmException {
     try {
       stmt = c.createStatement();
+      batchUpdates = c.getMetaData().supportsBatchUpdates();
     } catch (SQLException e) {
       throw new OrmException("Cannot create statement for executor", e);
     }
@@ -44,6 +48,46 @@ public class JdbcExecutor implements StatementExecutor {
     }
   }
 
+  /** Send the statements to the database in one JDBC batch, if the driver supports batches. */
+  @Override
+  public void executeBatch(List<String> sql) throws OrmException {
+    if (!batchUpdates || sql.size() < 2) {
+      StatementExecutor.super.executeBatch(sql);
+      return;
+    }
+    try {
+      for (final String s : sql) {
+        stmt.addBatch(s);
+      }
+      stmt.executeBatch();
+    } catch (BatchUpdateException e) {
+      throw new OrmException("Cannot apply SQL\n" + sql.get(failed(e, sql.size())), e);
+    } catch (SQLException e) {
+      throw new OrmException("Cannot apply SQL\n" + String.join(";\n", sql), e);
+    } finally {
+      try {
+        stmt.clearBatch();
+      } catch (SQLException e) {
+        //
+      }
+    }
+  }
+
+  /** @return position of the statement that failed, as reported by the driver. */
+  private static int failed(BatchUpdateException e, int size) {
+    final int[] counts = e.getUpdateCounts();
+    if (counts == null) {
+      return 0;
+    }
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] == Statement.EXECUTE_FAILED) {
+        return i;
+      }
+    }
+    // Drivers that stop at the first failure report only the statements before it.
+    return Math.min(counts.length, size - 1);
+  }
+
   @Override
   public void close() {
     try {
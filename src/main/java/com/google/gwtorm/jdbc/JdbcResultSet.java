@@ -14,25 +14,34 @@
 
 package com.google.gwtorm.jdbc;
 
-import com.google.gwtorm.client.Key;
 import com.google.gwtorm.server.AbstractResultSet;
+import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.OrmRuntimeException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.NoSuchElementException;
 
-class JdbcResultSet<T, K extends Key<?>> extends AbstractResultSet<T> {
-  private final JdbcAccess<T, K> access;
+abstract class JdbcResultSet<T> extends AbstractResultSet<T> {
+  private final JdbcAccess<?, ?> access;
   private final ResultSet rs;
   private final PreparedStatement ps;
+  private final boolean streaming;
+  private final boolean streamTransaction;
   private Boolean haveRow;
   private boolean closed;
 
-  JdbcResultSet(JdbcAccess<T, K> jdbcAccess, ResultSet rs, PreparedStatement ps) {
+  JdbcResultSet(
+      JdbcAccess<?, ?> jdbcAccess,
+      ResultSet rs,
+      PreparedStatement ps,
+      boolean streaming,
+      boolean streamTransaction) {
     this.access = jdbcAccess;
     this.rs = rs;
     this.ps = ps;
+    this.streaming = streaming;
+    this.streamTransaction = streamTransaction;
     this.haveRow = Boolean.TRUE;
   }
 
@@ -65,9 +74,9 @@ class JdbcResultSet<T, K extends Key<?>> extends AbstractResultSet<T> {
       throw new NoSuchElementException();
     }
 
-    final T o = access.newEntityInstance();
+    final T o;
     try {
-      access.bindOneFetch(rs, o);
+      o = fetch(rs);
     } catch (SQLException err) {
       close();
       throw new OrmRuntimeException(access.convertError("fetch", err));
@@ -78,6 +87,9 @@ class JdbcResultSet<T, K extends Key<?>> extends AbstractResultSet<T> {
     return o;
   }
 
+  /** @return object read from the current row of {@code rs}. */
+  protected abstract T fetch(ResultSet rs) throws SQLException;
+
   @Override
   public void close() {
     if (!closed) {
@@ -90,9 +102,9 @@ class JdbcResultSet<T, K extends Key<?>> extends AbstractResultSet<T> {
       }
 
       try {
-        ps.close();
-      } catch (SQLException e) {
-        // Ignore
+        access.closeQuery(ps, streaming, streamTransaction);
+      } catch (OrmException e) {
+        throw new OrmRuntimeException(e);
       }
     }
   }
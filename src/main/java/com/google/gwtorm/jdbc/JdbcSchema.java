@@ -15,48 +15,382 @@
 package com.google.gwtorm.jdbc;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gwtorm.client.Key;
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.IndexModel;
 import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.schema.SchemaModel;
 import com.google.gwtorm.schema.SequenceModel;
+import com.google.gwtorm.schema.sql.SchemaSnapshot;
 import com.google.gwtorm.schema.sql.SqlDialect;
 import com.google.gwtorm.server.AbstractSchema;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.IdentityMap;
 import com.google.gwtorm.server.OrmConcurrencyException;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.OrmRuntimeException;
+import com.google.gwtorm.server.QueryCache;
 import com.google.gwtorm.server.Schema;
 import com.google.gwtorm.server.StatementExecutor;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /** Internal base class for implementations of {@link Schema}. */
 public abstract class JdbcSchema extends AbstractSchema {
   private final Database<?> dbDef;
+  private final boolean lazy;
   private Connection conn;
+  private boolean pinned;
+  private boolean streamTransaction;
+  private int openStatements;
+  private StatementCache statementCache;
+  private ReplicaSet.Replica replica;
+  private Connection replicaConn;
+  private boolean replicaStreamTransaction;
+  private StatementCache replicaStatementCache;
+  private Set<PreparedStatement> replicaStatements;
+  private IdentityMap identityMap;
+  private Cache<Object, BoundRow.Row> loadedRows;
+  private Map<String, Set<Key<?>>> pendingInvalidations;
   private OrmException transactionException;
 
   protected JdbcSchema(final Database<?> d) throws OrmException {
     dbDef = d;
-    conn = dbDef.newConnection();
+    replica = dbDef.getOpeningReplica();
+    // A Schema reading from a replica needs the primary only for writes.
+    lazy = dbDef.isLazyConnections() || replica != null;
+    if (!lazy) {
+      conn = dbDef.newConnection();
+    }
+    if (0 < dbDef.getStatementCacheSize()) {
+      // A lazy connection goes back to the data source, with its statements, whenever it is
+      // idle, so its statements could never be reused from a cache.
+      if (!lazy) {
+        statementCache = new StatementCache(dbDef.getStatementCacheSize());
+      }
+      if (replica != null) {
+        replicaStatementCache = new StatementCache(dbDef.getStatementCacheSize());
+      }
+    }
+    if (replica != null) {
+      replicaStatements =
+          Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+    }
+    if (dbDef.isIdentityMapEnabled()) {
+      identityMap = new IdentityMap();
+    }
   }
 
+  /**
+   * Get the connection backing this schema.
+   *
+   * <p>If the database uses lazy connections, the connection is opened if necessary and then held
+   * until the schema is closed, as the caller may retain it.
+   *
+   * @return the connection.
+   * @throws OrmRuntimeException the connection could not be opened.
+   */
   public final Connection getConnection() {
+    try {
+      final Connection c = connection();
+      pinned = true;
+      return c;
+    } catch (SQLException e) {
+      throw new OrmRuntimeException(new OrmException("Cannot open database connection", e));
+    }
+  }
+
+  /** Get the connection, opening it if the database uses lazy connections. */
+  private Connection connection() throws SQLException {
+    if (conn == null) {
+      try {
+        conn = dbDef.newConnection();
+      } catch (OrmException e) {
+        if (e.getCause() instanceof SQLException) {
+          throw (SQLException) e.getCause();
+        }
+        throw new SQLException(e.getMessage(), e);
+      }
+    }
     return conn;
   }
 
+  /**
+   * Hand a lazily opened connection back to the data source once it is idle.
+   *
+   * <p>A connection is idle when no statement is open on it, no transaction is in progress and
+   * {@link #getConnection()} has not exposed it to the application.
+   */
+  private void releaseIfIdle() {
+    if (!lazy || pinned || conn == null || 0 < openStatements) {
+      return;
+    }
+    try {
+      if (!conn.getAutoCommit()) {
+        return;
+      }
+    } catch (SQLException e) {
+      // Assume the connection is broken and release it anyway.
+    }
+    closeConnection();
+  }
+
+  private void closeConnection() {
+    try {
+      conn.close();
+    } catch (SQLException err) {
+      // TODO Handle an exception while closing a connection
+    }
+    conn = null;
+  }
+
+  /**
+   * Start a transaction, holding the connection until it is committed or rolled back.
+   *
+   * @throws SQLException the connection cannot be opened or switched out of auto-commit mode.
+   */
+  void beginTransaction() throws SQLException {
+    connection().setAutoCommit(false);
+    // The application now owns the transaction; a stream must not commit it.
+    streamTransaction = false;
+  }
+
+  /**
+   * Prepare the connection for a query streamed with a fetch size.
+   *
+   * <p>Some drivers (PostgreSQL) only honor the fetch size when auto-commit is off. If the dialect
+   * requires it and no transaction is in progress, one is started for the life of the stream.
+   * Writes are refused until the stream ends (see {@link #checkNotStreaming()}), so the stream's
+   * transaction never holds work the application believes is already committed.
+   *
+   * @param ps the query to be streamed.
+   * @return true if a transaction was started and {@link #endStreaming()} must be called once the
+   *     result set is closed.
+   * @throws SQLException the connection cannot be opened or switched out of auto-commit mode.
+   */
+  boolean beginStreaming(final PreparedStatement ps) throws SQLException {
+    if (!getDialect().isStreamingRequiresTransaction()) {
+      return false;
+    }
+    final boolean onReplica = replicaStatements != null && replicaStatements.contains(ps);
+    final Connection c = onReplica ? replicaConn : connection();
+    if (!c.getAutoCommit()) {
+      return false;
+    }
+    c.setAutoCommit(false);
+    if (onReplica) {
+      replicaStreamTransaction = true;
+    } else {
+      streamTransaction = true;
+    }
+    return true;
+  }
+
+  /**
+   * Commit the transactions started by {@link #beginStreaming(PreparedStatement)}, if any.
+   *
+   * @throws OrmException a transaction could not be committed.
+   */
+  void endStreaming() throws OrmException {
+    OrmException err = null;
+    if (replicaStreamTransaction && replicaConn != null) {
+      replicaStreamTransaction = false;
+      err = endStreaming(replicaConn);
+    }
+    if (streamTransaction && conn != null) {
+      streamTransaction = false;
+      final OrmException e = endStreaming(conn);
+      if (err == null) {
+        err = e;
+      }
+      invalidatePending();
+      releaseIfIdle();
+    }
+    if (err != null) {
+      throw err;
+    }
+  }
+
+  private static OrmException endStreaming(final Connection c) {
+    try {
+      if (!c.getAutoCommit()) {
+        c.commit();
+        c.setAutoCommit(true);
+      }
+      return null;
+    } catch (SQLException err) {
+      try {
+        c.rollback();
+        c.setAutoCommit(true);
+      } catch (SQLException e) {
+        // The next statement will report a broken connection.
+      }
+      return new OrmException("Cannot commit transaction of streamed query", err);
+    }
+  }
+
+  /**
+   * Refuse writes while a query streams its results in a transaction of its own.
+   *
+   * <p>The write would join the stream's transaction rather than commit at once, and be lost if
+   * the transaction later failed. Writes are allowed again once the result set is closed, or
+   * within a transaction begun by the application.
+   *
+   * @throws OrmException a query is being streamed.
+   */
+  void checkNotStreaming() throws OrmException {
+    if (streamTransaction) {
+      throw new OrmException("Cannot write while a query result is streamed; close it first");
+    }
+  }
+
+  /** @return rows fetched per round trip by queries without their own fetch size; 0 if unset. */
+  int getDefaultFetchSize() {
+    return dbDef.getDefaultFetchSize();
+  }
+
+  /**
+   * @return executor for asynchronous access methods, opening read-only Schemas if this one reads
+   *     from a replica; null if they run synchronously.
+   */
+  AsyncAccessExecutor getAsyncExecutor() {
+    return isReadingFromReplica() ? dbDef.getAsyncReadOnlyExecutor() : dbDef.getAsyncExecutor();
+  }
+
+  /** @return the identity map of this schema; null if the identity map is disabled. */
+  public final IdentityMap getIdentityMap() {
+    return identityMap;
+  }
+
+  /**
+   * @return the statement cache of this schema; null if statement caching is disabled or the
+   *     schema's connection is lazy.
+   */
+  public final StatementCache getStatementCache() {
+    return statementCache;
+  }
+
+  /**
+   * Prepare a statement, reusing an idle one from the statement cache if possible.
+   *
+   * @param sql the SQL text of the statement.
+   * @return the statement. Callers must pass it to {@link #releaseStatement(PreparedStatement)}
+   *     rather than closing it.
+   * @throws SQLException the statement cannot be prepared.
+   */
+  PreparedStatement prepareStatement(final String sql) throws SQLException {
+    final Connection c = connection();
+    final PreparedStatement ps;
+    try {
+      if (statementCache != null) {
+        ps = statementCache.borrow(c, sql);
+      } else {
+        ps = c.prepareStatement(sql);
+      }
+    } catch (SQLException e) {
+      releaseIfIdle();
+      throw e;
+    }
+    openStatements++;
+    return ps;
+  }
+
+  /**
+   * Prepare a query that only reads data.
+   *
+   * <p>If this schema was opened by {@link Database#openReadOnly()} with a replica and no
+   * transaction is in progress, the query is prepared on the replica.
+   *
+   * @param sql the SQL text of the query.
+   * @return the statement. Callers must pass it to {@link #releaseStatement(PreparedStatement)}
+   *     rather than closing it.
+   * @throws SQLException the statement cannot be prepared.
+   */
+  PreparedStatement prepareQuery(final String sql) throws SQLException {
+    if (replica == null || isInTransaction()) {
+      return prepareStatement(sql);
+    }
+    if (replicaConn == null) {
+      replicaConn = replica.newConnection();
+    }
+    final PreparedStatement ps;
+    if (replicaStatementCache != null) {
+      ps = replicaStatementCache.borrow(replicaConn, sql);
+    } else {
+      ps = replicaConn.prepareStatement(sql);
+    }
+    replicaStatements.add(ps);
+    return ps;
+  }
+
+  /** @return true if reads are served from a replica, which may lag behind the primary. */
+  public final boolean isReadingFromReplica() {
+    return replica != null;
+  }
+
+  /**
+   * Release a statement obtained from {@link #prepareStatement(String)} or {@link
+   * #prepareQuery(String)}.
+   *
+   * @param ps the statement; if statement caching is disabled it is closed.
+   * @throws SQLException the statement cannot be closed.
+   */
+  void releaseStatement(final PreparedStatement ps) throws SQLException {
+    if (replicaStatements != null && replicaStatements.remove(ps)) {
+      if (replicaStatementCache != null) {
+        replicaStatementCache.release(ps);
+      } else {
+        ps.close();
+      }
+      return;
+    }
+    try {
+      if (statementCache != null) {
+        statementCache.release(ps);
+      } else {
+        ps.close();
+      }
+    } finally {
+      openStatements = Math.max(0, openStatements - 1);
+      releaseIfIdle();
+    }
+  }
+
+  /** @return maximum number of rows per JDBC batch for the relation; 0 if unlimited. */
+  int getMaxBatchSize(final String relationName) {
+    return dbDef.getMaxBatchSize(relationName);
+  }
+
   public final SqlDialect getDialect() {
     return dbDef.getDialect();
   }
 
   @Override
   public void commit() throws OrmException {
+    if (conn == null) {
+      transactionException = null;
+      return;
+    }
     try {
-      if (isInTransaction()) {
+      if (hasOpenTransaction()) {
         if (transactionException != null) {
           OrmException e = transactionException;
           transactionException = null;
+          forgetLoadedEntities();
           if (e instanceof OrmConcurrencyException) {
             throw new OrmConcurrencyException(e.getMessage(), e);
           } else if (e instanceof OrmDuplicateKeyException) {
@@ -68,18 +402,26 @@ public abstract class JdbcSchema extends AbstractSchema {
         conn.commit();
       }
     } catch (SQLException err) {
+      forgetLoadedEntities();
       throw new OrmException("Cannot commit transaction", err);
     } finally {
+      invalidatePending();
       try {
         conn.setAutoCommit(true);
       } catch (SQLException err) {
         throw new OrmException("Cannot set auto commit mode", err);
       }
+      releaseIfIdle();
     }
   }
 
   @Override
   public void rollback() throws OrmException {
+    forgetLoadedEntities();
+    invalidatePending();
+    if (conn == null) {
+      return;
+    }
     try {
       if (!conn.getAutoCommit()) {
         transactionException = null;
@@ -93,59 +435,209 @@ public abstract class JdbcSchema extends AbstractSchema {
       } catch (SQLException err) {
         throw new OrmException("Cannot set auto commit mode", err);
       }
+      releaseIfIdle();
+    }
+  }
+
+  /** @return cache shared by all schemas of the database; null if there is none. */
+  EntityCache getEntityCache() {
+    return dbDef.getEntityCache();
+  }
+
+  QueryCache getQueryCache() {
+    return dbDef.getQueryCache();
+  }
+
+  /**
+   * Invalidate written entities in the shared cache again once the transaction ends.
+   *
+   * <p>Other schemas may read and cache the old row until the transaction commits.
+   *
+   * @param relationName relation the entities belong to.
+   * @param keys primary keys of the written entities.
+   */
+  void invalidateOnCommit(final String relationName, final Collection<? extends Key<?>> keys) {
+    try {
+      if (!hasOpenTransaction()) {
+        return;
+      }
+    } catch (SQLException e) {
+      // Invalidate when the schema ends whatever is left of the transaction.
+    }
+    if (pendingInvalidations == null) {
+      pendingInvalidations = new HashMap<>();
+    }
+    Set<Key<?>> pending = pendingInvalidations.get(relationName);
+    if (pending == null) {
+      pending = new HashSet<>();
+      pendingInvalidations.put(relationName, pending);
+    }
+    pending.addAll(keys);
+  }
+
+  private void invalidatePending() {
+    if (pendingInvalidations != null) {
+      final Map<String, Set<Key<?>>> pending = pendingInvalidations;
+      pendingInvalidations = null;
+      for (final Map.Entry<String, Set<Key<?>>> e : pending.entrySet()) {
+        dbDef.getEntityCache().invalidate(e.getKey(), e.getValue());
+      }
+    }
+  }
+
+  /** Forget entities read so far, as the database may no longer hold what was read. */
+  private void forgetLoadedEntities() {
+    if (identityMap != null) {
+      identityMap.clear();
+    }
+    if (loadedRows != null) {
+      loadedRows.invalidateAll();
+    }
+  }
+
+  /** @return partial updates of the relation; null if disabled or not possible for it. */
+  PartialUpdate getPartialUpdate(final String relationName) {
+    return dbDef.getPartialUpdate(relationName);
+  }
+
+  /** @return column values of the entity when it was last read or updated; null if unknown. */
+  BoundRow.Row getLoadedRow(final Object entity) {
+    return loadedRows != null ? loadedRows.getIfPresent(entity) : null;
+  }
+
+  void setLoadedRow(final Object entity, final BoundRow.Row row) {
+    if (loadedRows == null) {
+      // Weak keys are compared by identity, and let unused entities be collected.
+      loadedRows = CacheBuilder.newBuilder().weakKeys().build();
+    }
+    loadedRows.put(entity, row);
+  }
+
+  /** @return true if column values of any entity are remembered. */
+  boolean hasLoadedRows() {
+    return loadedRows != null && 0 < loadedRows.size();
+  }
+
+  void forgetLoadedRow(final Object entity) {
+    if (loadedRows != null) {
+      loadedRows.invalidate(entity);
     }
   }
 
   @Override
   public void updateSchema(final StatementExecutor e) throws OrmException {
     try {
-      createSequences(e);
-      createRelations(e);
+      final SchemaSnapshot have = getDialect().snapshot(connection());
+      final DdlBuffer ddl = new DdlBuffer();
+      createSequences(ddl, have);
+      final Set<String> created = createRelations(ddl, have);
 
       for (final RelationModel rel : dbDef.getSchemaModel().getRelations()) {
-        addColumns(e, rel);
+        if (!created.contains(rel.getRelationName().toLowerCase())) {
+          addColumns(ddl, rel, have);
+        }
+        if (dbDef.isQueryIndexesEnabled()) {
+          createIndexes(ddl, rel, have);
+        }
       }
+      apply(e, ddl);
     } catch (SQLException err) {
       throw new OrmException("Cannot update schema", err);
+    } finally {
+      releaseIfIdle();
     }
   }
 
-  private void createSequences(final StatementExecutor e) throws OrmException, SQLException {
+  private void createSequences(final StatementExecutor e, final SchemaSnapshot have)
+      throws OrmException {
     final SqlDialect dialect = dbDef.getDialect();
     final SchemaModel model = dbDef.getSchemaModel();
-
-    Set<String> have = dialect.listSequences(getConnection());
     for (final SequenceModel s : model.getSequences()) {
-      if (!have.contains(s.getSequenceName().toLowerCase())) {
+      if (!have.getSequences().contains(s.getSequenceName().toLowerCase())) {
         e.execute(s.getCreateSequenceSql(dialect));
       }
     }
   }
 
-  private void createRelations(final StatementExecutor e) throws SQLException, OrmException {
+  /** @return names of the tables created, in lowercase. */
+  private Set<String> createRelations(final StatementExecutor e, final SchemaSnapshot have)
+      throws OrmException {
     final SqlDialect dialect = dbDef.getDialect();
     final SchemaModel model = dbDef.getSchemaModel();
-    Set<String> have = dialect.listTables(getConnection());
+    final Set<String> created = new HashSet<>();
     for (final RelationModel r : model.getRelations()) {
-      if (!have.contains(r.getRelationName().toLowerCase())) {
+      final String name = r.getRelationName().toLowerCase();
+      if (!have.getTables().contains(name)) {
         e.execute(r.getCreateTableSql(dialect));
+        created.add(name);
       }
     }
+    return created;
   }
 
-  private void addColumns(final StatementExecutor e, final RelationModel rel)
-      throws SQLException, OrmException {
+  private void addColumns(
+      final StatementExecutor e, final RelationModel rel, final SchemaSnapshot have)
+      throws OrmException {
     final SqlDialect dialect = dbDef.getDialect();
-    Set<String> have =
-        dialect.listColumns( //
-            getConnection(), rel.getRelationName().toLowerCase());
+    final Set<String> columns = have.getColumns(rel.getRelationName());
     for (final ColumnModel c : rel.getColumns()) {
-      if (!have.contains(c.getColumnName().toLowerCase())) {
+      if (!columns.contains(c.getColumnName().toLowerCase())) {
         dialect.addColumn(e, rel.getRelationName(), c);
       }
     }
   }
 
+  private void createIndexes(
+      final StatementExecutor e, final RelationModel rel, final SchemaSnapshot have)
+      throws OrmException {
+    final SqlDialect dialect = dbDef.getDialect();
+    final Set<String> indexes = have.getIndexes(rel.getRelationName());
+    for (final IndexModel i : rel.getIndexes()) {
+      if (!indexes.contains(i.getIndexName())) {
+        e.execute(i.getCreateIndexSql(dialect));
+      }
+    }
+  }
+
+  /**
+   * Send planned DDL to the executor, batching the statements the dialect allows.
+   *
+   * @param e executor to apply the statements with.
+   * @param ddl statements in the order they must run.
+   * @throws OrmException a statement failed.
+   */
+  private void apply(final StatementExecutor e, final DdlBuffer ddl) throws OrmException {
+    final SqlDialect dialect = getDialect();
+    final List<String> batch = new ArrayList<>();
+    for (final String sql : ddl.statements) {
+      if (dialect.isBatchable(sql)) {
+        batch.add(sql);
+        continue;
+      }
+      if (!batch.isEmpty()) {
+        e.executeBatch(batch);
+        batch.clear();
+      }
+      e.execute(sql);
+    }
+    if (!batch.isEmpty()) {
+      e.executeBatch(batch);
+    }
+  }
+
+  /** Collects the statements dialects produce, so they can be sent together. */
+  private static class DdlBuffer implements StatementExecutor {
+    final List<String> statements = new ArrayList<>();
+
+    @Override
+    public void execute(final String sql) {
+      statements.add(sql);
+    }
+
+    @Override
+    public void close() {}
+  }
+
   public void renameTable(final StatementExecutor e, String from, String to) throws OrmException {
     Preconditions.checkNotNull(e);
     Preconditions.checkNotNull(from);
@@ -191,55 +683,79 @@ public abstract class JdbcSchema extends AbstractSchema {
   @Override
   public void pruneSchema(final StatementExecutor e) throws OrmException {
     try {
-      pruneSequences(e);
-      pruneRelations(e);
+      final SchemaSnapshot have = getDialect().snapshot(connection());
+      final DdlBuffer ddl = new DdlBuffer();
+      pruneSequences(ddl, have);
+      pruneRelations(ddl, have);
 
       for (final RelationModel rel : dbDef.getSchemaModel().getRelations()) {
-        pruneColumns(e, rel);
+        if (dbDef.isQueryIndexesEnabled()) {
+          pruneIndexes(ddl, rel, have);
+        }
+        pruneColumns(ddl, rel, have);
       }
+      apply(e, ddl);
     } catch (SQLException err) {
       throw new OrmException("Schema prune failure", err);
+    } finally {
+      releaseIfIdle();
     }
   }
 
-  private void pruneSequences(final StatementExecutor e) throws SQLException, OrmException {
+  private void pruneSequences(final StatementExecutor e, final SchemaSnapshot have)
+      throws OrmException {
     final SqlDialect dialect = dbDef.getDialect();
     final SchemaModel model = dbDef.getSchemaModel();
     HashSet<String> want = new HashSet<>();
     for (final SequenceModel s : model.getSequences()) {
       want.add(s.getSequenceName().toLowerCase());
     }
-    for (final String sequence : dialect.listSequences(getConnection())) {
+    for (final String sequence : have.getSequences()) {
       if (!want.contains(sequence)) {
         e.execute(dialect.getDropSequenceSql(sequence));
       }
     }
   }
 
-  private void pruneRelations(final StatementExecutor e) throws SQLException, OrmException {
-    final SqlDialect dialect = dbDef.getDialect();
+  private void pruneRelations(final StatementExecutor e, final SchemaSnapshot have)
+      throws OrmException {
     final SchemaModel model = dbDef.getSchemaModel();
     HashSet<String> want = new HashSet<>();
     for (final RelationModel r : model.getRelations()) {
       want.add(r.getRelationName().toLowerCase());
     }
-    for (final String table : dialect.listTables(getConnection())) {
+    for (final String table : have.getTables()) {
       if (!want.contains(table)) {
         e.execute("DROP TABLE " + table);
       }
     }
   }
 
-  private void pruneColumns(final StatementExecutor e, final RelationModel rel)
-      throws SQLException, OrmException {
+  private void pruneIndexes(
+      final StatementExecutor e, final RelationModel rel, final SchemaSnapshot have)
+      throws OrmException {
+    final SqlDialect dialect = dbDef.getDialect();
+    HashSet<String> want = new HashSet<>();
+    for (final IndexModel i : rel.getIndexes()) {
+      want.add(i.getIndexName());
+    }
+    for (String index : have.getIndexes(rel.getRelationName())) {
+      // Only indexes derived from queries are ours to drop.
+      if (IndexModel.isDerivedIndexName(rel.getRelationName(), index) && !want.contains(index)) {
+        dialect.dropIndex(e, rel.getRelationName(), index);
+      }
+    }
+  }
+
+  private void pruneColumns(
+      final StatementExecutor e, final RelationModel rel, final SchemaSnapshot have)
+      throws OrmException {
     final SqlDialect dialect = dbDef.getDialect();
     HashSet<String> want = new HashSet<>();
     for (final ColumnModel c : rel.getColumns()) {
       want.add(c.getColumnName().toLowerCase());
     }
-    for (String column :
-        dialect.listColumns( //
-            getConnection(), rel.getRelationName().toLowerCase())) {
+    for (String column : have.getColumns(rel.getRelationName())) {
       if (!want.contains(column)) {
         dialect.dropColumn(e, rel.getRelationName(), column);
       }
@@ -248,24 +764,103 @@ public abstract class JdbcSchema extends AbstractSchema {
 
   @Override
   protected long nextLong(final String poolName) throws OrmException {
-    return getDialect().nextLong(getConnection(), poolName);
+    final SequencePool pool = dbDef.getSequencePool(poolName);
+    if (pool != null) {
+      return pool.next();
+    }
+    try {
+      return getDialect().nextLong(connection(), poolName);
+    } catch (SQLException e) {
+      throw new OrmException("Cannot open database connection", e);
+    } finally {
+      releaseIfIdle();
+    }
+  }
+
+  /**
+   * Draw many values of a sequence at once, for example to assign keys to imported rows.
+   *
+   * <p>Where the dialect supports it the values are drawn in a single round trip. They bypass any
+   * {@link Database#setSequenceBlockSize(String, int) block} of the sequence held in memory.
+   *
+   * @param sequenceName name of the sequence, as declared by its {@code @Sequence} method.
+   * @param count number of values to draw.
+   * @return the values.
+   * @throws OrmException the values could not be drawn.
+   */
+  public long[] nextLongs(final String sequenceName, final int count) throws OrmException {
+    if (count <= 0) {
+      return new long[0];
+    }
+    try {
+      return getDialect().nextLongs(connection(), sequenceName, count);
+    } catch (SQLException e) {
+      throw new OrmException("Cannot open database connection", e);
+    } finally {
+      releaseIfIdle();
+    }
+  }
+
+  /** Stream rows to the dialect's bulk load facility on this Schema's connection. */
+  long bulkLoad(final String sql, final SqlDialect.RowSource rows) throws SQLException {
+    try {
+      return getDialect().bulkLoad(connection(), sql, rows);
+    } finally {
+      releaseIfIdle();
+    }
   }
 
   @Override
   public void close() {
     transactionException = null;
+    loadedRows = null;
+    if (statementCache != null) {
+      dbDef.recordStatementCacheStats(statementCache.getHitCount(), statementCache.getMissCount());
+      statementCache.clear();
+      statementCache = null;
+    }
     if (conn != null) {
+      closeConnection();
+    }
+    pinned = false;
+    openStatements = 0;
+    closeReplica();
+  }
+
+  private void closeReplica() {
+    if (replica == null) {
+      return;
+    }
+    if (replicaStatementCache != null) {
+      dbDef.recordStatementCacheStats(
+          replicaStatementCache.getHitCount(), replicaStatementCache.getMissCount());
+      replicaStatementCache.clear();
+      replicaStatementCache = null;
+    }
+    replicaStatements.clear();
+    if (replicaConn != null) {
       try {
-        conn.close();
+        replicaConn.close();
       } catch (SQLException err) {
-        // TODO Handle an exception while closing a connection
+        // Ignored.
       }
-      conn = null;
+      replicaConn = null;
     }
+    replica.release();
+    replica = null;
   }
 
+  /**
+   * @return true if the application began a transaction it has not yet ended. A transaction begun
+   *     only to stream a query does not count, as no writes are allowed in it.
+   */
   boolean isInTransaction() throws SQLException {
-    return !conn.getAutoCommit();
+    return conn != null && !streamTransaction && !conn.getAutoCommit();
+  }
+
+  /** @return true if writes are not yet visible to other connections, including while streaming. */
+  boolean hasOpenTransaction() throws SQLException {
+    return conn != null && !conn.getAutoCommit();
   }
 
   void setTransactionException(OrmException ex) {
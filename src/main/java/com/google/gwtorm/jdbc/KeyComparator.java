@@ -0,0 +1,79 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.gwtorm.client.CompoundKey;
+import com.google.gwtorm.client.IntKey;
+import com.google.gwtorm.client.Key;
+import com.google.gwtorm.client.LongKey;
+import com.google.gwtorm.client.ShortKey;
+import com.google.gwtorm.client.StringKey;
+import java.util.Comparator;
+
+/**
+ * Orders keys by the values of their primary key columns.
+ *
+ * <p>Parent keys are compared before the key itself, and compound keys member by member, matching
+ * the column order of the primary key. Keys of other types fall back to their string encoding.
+ */
+final class KeyComparator implements Comparator<Key<?>> {
+  static final KeyComparator INSTANCE = new KeyComparator();
+
+  private KeyComparator() {}
+
+  @Override
+  public int compare(final Key<?> a, final Key<?> b) {
+    if (a == b) {
+      return 0;
+    } else if (a == null) {
+      return -1;
+    } else if (b == null) {
+      return 1;
+    }
+
+    int cmp = compare(a.getParentKey(), b.getParentKey());
+    if (cmp != 0) {
+      return cmp;
+    }
+
+    if (a instanceof IntKey && b instanceof IntKey) {
+      return Integer.compare(((IntKey<?>) a).get(), ((IntKey<?>) b).get());
+    } else if (a instanceof LongKey && b instanceof LongKey) {
+      return Long.compare(((LongKey<?>) a).get(), ((LongKey<?>) b).get());
+    } else if (a instanceof ShortKey && b instanceof ShortKey) {
+      return Short.compare(((ShortKey<?>) a).get(), ((ShortKey<?>) b).get());
+    } else if (a instanceof StringKey && b instanceof StringKey) {
+      return compare(((StringKey<?>) a).get(), ((StringKey<?>) b).get());
+    } else if (a instanceof CompoundKey && b instanceof CompoundKey) {
+      final Key<?>[] am = ((CompoundKey<?>) a).members();
+      final Key<?>[] bm = ((CompoundKey<?>) b).members();
+      for (int i = 0; i < Math.min(am.length, bm.length); i++) {
+        cmp = compare(am[i], bm[i]);
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return Integer.compare(am.length, bm.length);
+    }
+    return compare(a.toString(), b.toString());
+  }
+
+  private static int compare(final String a, final String b) {
+    if (a == null) {
+      return b == null ? 0 : -1;
+    }
+    return b == null ? 1 : a.compareTo(b);
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.schema.sql.SqlDialect;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+/**
+ * UPDATE statements of one relation that set only the columns an entity changed.
+ *
+ * <p>Rows are compared as recorded by {@link BoundRow} from the generated insert binder, whose
+ * parameters are the dependent columns followed by the primary key columns.
+ *
+ * <p>Instances are thread-safe.
+ */
+final class PartialUpdate {
+  /** Number of distinct column subsets whose SQL is kept. */
+  private static final int MAX_STATEMENTS = 64;
+
+  /**
+   * @return partial updates of the relation; null if the relation has no primary key or has row
+   *     version columns.
+   */
+  static PartialUpdate create(final RelationModel model, final SqlDialect dialect) {
+    if (model.getPrimaryKey() == null
+        || !model.getRowVersionColumns().isEmpty()
+        || model.getDependentColumns().isEmpty()) {
+      return null;
+    }
+    return new PartialUpdate(model, dialect);
+  }
+
+  private final RelationModel model;
+  private final SqlDialect dialect;
+  private final int dependentColumns;
+  private final Cache<BitSet, String> statements =
+      CacheBuilder.newBuilder().maximumSize(MAX_STATEMENTS).build();
+
+  private PartialUpdate(final RelationModel model, final SqlDialect dialect) {
+    this.model = model;
+    this.dialect = dialect;
+    this.dependentColumns = model.getDependentColumns().size();
+  }
+
+  /** @return positions of the dependent columns that differ between the rows. */
+  BitSet changed(final BoundRow.Row loaded, final BoundRow.Row current) {
+    final BitSet r = new BitSet(dependentColumns);
+    for (int i = 0; i < dependentColumns; i++) {
+      if (!loaded.same(current, i)) {
+        r.set(i);
+      }
+    }
+    return r;
+  }
+
+  /** @return UPDATE setting the changed columns. */
+  String getSql(final BitSet changed) {
+    String sql = statements.getIfPresent(changed);
+    if (sql == null) {
+      sql = model.getUpdateSomeSql(dialect, changed);
+      statements.put((BitSet) changed.clone(), sql);
+    }
+    return sql;
+  }
+
+  /** Bind the changed columns, then the primary key, of the current row. */
+  void bind(final PreparedStatement ps, final BitSet changed, final BoundRow.Row current)
+      throws SQLException {
+    int index = 1;
+    for (int i = changed.nextSetBit(0); 0 <= i; i = changed.nextSetBit(i + 1)) {
+      current.bind(ps, i, index++);
+    }
+    for (int i = dependentColumns; i < current.size(); i++) {
+      current.bind(ps, i, index++);
+    }
+  }
+}
@@ -0,0 +1,657 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * A connection pooling DataSource.
+ *
+ * <p>Connections are opened through a {@link SimpleDataSource}, so the same <code>url</code>,
+ * <code>driver</code>, <code>classpath</code> and driver specific properties are understood. The
+ * following additional properties control the pool, and are not passed to the driver:
+ *
+ * <ul>
+ *   <li><code>pool.minIdle</code>: idle connections kept open even when they exceed <code>
+ *       pool.idleTimeout</code>; opened when the pool is created, and again in the background
+ *       whenever closed or evicted connections leave fewer idle. Default 0.
+ *   <li><code>pool.maxActive</code>: maximum number of connections open at once. Default 8.
+ *   <li><code>pool.maxWait</code>: milliseconds a caller waits for a connection when the pool is
+ *       exhausted before failing; negative waits forever. Default 30000.
+ *   <li><code>pool.idleTimeout</code>: milliseconds an idle connection may sit unused before it is
+ *       closed; 0 disables idle eviction. Default 600000.
+ *   <li><code>pool.maxLifetime</code>: milliseconds after which a connection is closed instead of
+ *       being reused; 0 disables the limit. Default 1800000.
+ *   <li><code>pool.evictionInterval</code>: milliseconds between background passes closing idle
+ *       connections that exceeded <code>pool.idleTimeout</code> or <code>pool.maxLifetime</code>;
+ *       0 disables the background pass. Default 30000.
+ *   <li><code>pool.validationTimeout</code>: seconds allowed for {@link Connection#isValid(int)}
+ *       when a connection is borrowed; negative skips validation. Default 5.
+ * </ul>
+ *
+ * <p>Callers waiting for a connection are served in arrival order. Closing a connection obtained
+ * from the pool rolls back any uncommitted work, restores auto-commit, and restores the read-only
+ * mode, transaction isolation and catalog the connection was opened with before returning it to
+ * the pool. Statements and metadata obtained from a pooled connection return the pooled
+ * connection, not the physical one, from their <code>getConnection()</code> method.
+ */
+public class PooledDataSource implements DataSource {
+  private final SimpleDataSource source;
+  private final int minIdle;
+  private final int maxActive;
+  private final long maxWaitMillis;
+  private final long idleTimeoutMillis;
+  private final long maxLifetimeMillis;
+  private final long evictionIntervalMillis;
+  private final int validationTimeout;
+
+  private final Semaphore permits;
+  private final ArrayDeque<PooledConnection> idle;
+  private final ScheduledExecutorService maintenance;
+  private boolean closed;
+  private boolean refillPending;
+
+  private int active;
+  private int opening;
+  private long borrowCount;
+  private long createdCount;
+  private long destroyedCount;
+  private long waitCount;
+  private long totalWaitNanos;
+  private long maxWaitNanos;
+
+  /**
+   * Create a pooling data source.
+   *
+   * @param dbInfo JDBC connection and pool configuration. The property table is copied.
+   * @throws SQLException the driver class is not available, the pool configuration is invalid, or
+   *     the <code>pool.minIdle</code> connections cannot be opened.
+   */
+  public PooledDataSource(final Properties dbInfo) throws SQLException {
+    final Properties connectionInfo = new Properties();
+    connectionInfo.putAll(dbInfo);
+
+    minIdle = (int) remove(connectionInfo, "pool.minIdle", 0);
+    maxActive = (int) remove(connectionInfo, "pool.maxActive", 8);
+    maxWaitMillis = remove(connectionInfo, "pool.maxWait", 30000);
+    idleTimeoutMillis = remove(connectionInfo, "pool.idleTimeout", 600000);
+    maxLifetimeMillis = remove(connectionInfo, "pool.maxLifetime", 1800000);
+    evictionIntervalMillis = remove(connectionInfo, "pool.evictionInterval", 30000);
+    validationTimeout = (int) remove(connectionInfo, "pool.validationTimeout", 5);
+
+    if (maxActive <= 0) {
+      throw new SQLException("pool.maxActive must be positive");
+    }
+    if (minIdle < 0 || maxActive < minIdle) {
+      throw new SQLException("pool.minIdle must be between 0 and pool.maxActive");
+    }
+    if (evictionIntervalMillis < 0) {
+      throw new SQLException("pool.evictionInterval must not be negative");
+    }
+
+    source = new SimpleDataSource(connectionInfo);
+    permits = new Semaphore(maxActive, true);
+    idle = new ArrayDeque<>(maxActive);
+    maintenance =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("gwtorm-pool-%d").setDaemon(true).build());
+    if (0 < evictionIntervalMillis) {
+      maintenance.scheduleWithFixedDelay(
+          new Runnable() {
+            @Override
+            public void run() {
+              evictIdle();
+            }
+          },
+          evictionIntervalMillis,
+          evictionIntervalMillis,
+          TimeUnit.MILLISECONDS);
+    }
+
+    try {
+      for (int i = 0; i < minIdle; i++) {
+        idle.addLast(open());
+      }
+    } catch (SQLException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private static long remove(final Properties info, final String name, final long def)
+      throws SQLException {
+    final String value = (String) info.remove(name);
+    if (value == null || value.trim().isEmpty()) {
+      return def;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      final SQLException sqle = new SQLException("Invalid " + name + " " + value);
+      sqle.initCause(e);
+      throw sqle;
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    final long start = System.nanoTime();
+    try {
+      acquire();
+    } finally {
+      final long waited = System.nanoTime() - start;
+      synchronized (this) {
+        waitCount++;
+        totalWaitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+      }
+    }
+
+    try {
+      for (; ; ) {
+        PooledConnection pc;
+        synchronized (this) {
+          if (closed) {
+            throw new SQLException("Connection pool is closed");
+          }
+          pc = idle.pollFirst();
+        }
+
+        if (pc == null) {
+          pc = open();
+        } else if (isExpired(pc, System.currentTimeMillis()) || !isValid(pc)) {
+          destroy(pc);
+          continue;
+        }
+
+        synchronized (this) {
+          active++;
+          borrowCount++;
+        }
+        return pc.newHandle();
+      }
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Open a connection directly, bypassing the pool.
+   *
+   * <p>Connections for a different user cannot be shared with the pool, so they are always opened
+   * fresh and closed when the caller closes them.
+   */
+  @Override
+  public Connection getConnection(String user, String password) throws SQLException {
+    return source.getConnection(user, password);
+  }
+
+  private void acquire() throws SQLException {
+    try {
+      if (maxWaitMillis < 0) {
+        permits.acquire();
+      } else if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+        throw new SQLException(
+            "Timed out after " + maxWaitMillis + " ms waiting for a connection; pool exhausted");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      final SQLException sqle = new SQLException("Interrupted waiting for a connection");
+      sqle.initCause(e);
+      throw sqle;
+    }
+  }
+
+  private PooledConnection open() throws SQLException {
+    final PooledConnection pc = new PooledConnection(source.getConnection());
+    synchronized (this) {
+      createdCount++;
+    }
+    return pc;
+  }
+
+  private boolean isValid(final PooledConnection pc) {
+    if (validationTimeout < 0) {
+      return true;
+    }
+    try {
+      return pc.conn.isValid(validationTimeout);
+    } catch (SQLException | AbstractMethodError e) {
+      return false;
+    }
+  }
+
+  private boolean isExpired(final PooledConnection pc, final long now) {
+    return 0 < maxLifetimeMillis && maxLifetimeMillis <= now - pc.createdAt;
+  }
+
+  private void release(final PooledConnection pc) {
+    boolean reuse;
+    try {
+      if (!pc.conn.getAutoCommit()) {
+        pc.conn.rollback();
+        pc.conn.setAutoCommit(true);
+      }
+      if (pc.modified) {
+        pc.restore();
+      }
+      pc.conn.clearWarnings();
+      reuse = !pc.conn.isClosed();
+    } catch (SQLException e) {
+      reuse = false;
+    }
+
+    final long now = System.currentTimeMillis();
+    pc.lastUsed = now;
+    if (reuse && isExpired(pc, now)) {
+      reuse = false;
+    }
+
+    final List<PooledConnection> evicted;
+    synchronized (this) {
+      active--;
+      if (reuse && !closed) {
+        idle.addFirst(pc);
+      } else {
+        reuse = false;
+      }
+      evicted = evictIdle(now);
+      if (needsRefill() && !refillPending) {
+        // Opening connections may be slow; don't make the caller returning one wait for it.
+        refillPending = true;
+        maintenance.execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                synchronized (PooledDataSource.this) {
+                  refillPending = false;
+                }
+                refill();
+              }
+            });
+      }
+    }
+    permits.release();
+
+    if (!reuse) {
+      destroy(pc);
+    }
+    for (final PooledConnection e : evicted) {
+      destroy(e);
+    }
+  }
+
+  /**
+   * Close idle connections that exceeded the idle timeout or maximum lifetime.
+   *
+   * <p>Eviction also runs each time a connection is returned to the pool, and every <code>
+   * pool.evictionInterval</code> in the background. Connections are then opened to bring the pool
+   * back to <code>pool.minIdle</code>.
+   */
+  public void evictIdle() {
+    final List<PooledConnection> evicted;
+    synchronized (this) {
+      evicted = evictIdle(System.currentTimeMillis());
+    }
+    for (final PooledConnection pc : evicted) {
+      destroy(pc);
+    }
+    refill();
+  }
+
+  private boolean needsRefill() {
+    return !closed
+        && idle.size() + opening < minIdle
+        && active + idle.size() + opening < maxActive;
+  }
+
+  /** Open connections until <code>pool.minIdle</code> are idle, or the pool is full. */
+  private void refill() {
+    for (; ; ) {
+      // Hold a permit while opening, so borrowers opening their own cannot exceed maxActive.
+      if (!permits.tryAcquire()) {
+        return;
+      }
+      synchronized (this) {
+        if (!needsRefill()) {
+          permits.release();
+          return;
+        }
+        opening++;
+      }
+
+      PooledConnection pc = null;
+      try {
+        pc = open();
+      } catch (SQLException e) {
+        // Retried by the next eviction pass.
+      }
+      final boolean added;
+      synchronized (this) {
+        opening--;
+        added = pc != null && !closed;
+        if (added) {
+          idle.addLast(pc);
+        }
+      }
+      permits.release();
+      if (added) {
+        continue;
+      }
+      if (pc != null) {
+        destroy(pc);
+      }
+      return;
+    }
+  }
+
+  private List<PooledConnection> evictIdle(final long now) {
+    final List<PooledConnection> evicted = new ArrayList<>();
+    int keep = idle.size();
+    // Least recently used connections are at the tail of the deque.
+    for (final Iterator<PooledConnection> i = idle.descendingIterator(); i.hasNext(); ) {
+      final PooledConnection pc = i.next();
+      final boolean idleTooLong =
+          0 < idleTimeoutMillis && idleTimeoutMillis <= now - pc.lastUsed && minIdle < keep;
+      if (isExpired(pc, now) || idleTooLong) {
+        i.remove();
+        evicted.add(pc);
+        keep--;
+      }
+    }
+    return evicted;
+  }
+
+  private void destroy(final PooledConnection pc) {
+    synchronized (this) {
+      destroyedCount++;
+    }
+    try {
+      pc.conn.close();
+    } catch (SQLException e) {
+      // Ignored.
+    }
+  }
+
+  /**
+   * Close all idle connections and stop handing out new ones.
+   *
+   * <p>Connections currently borrowed are closed when they are returned.
+   */
+  public void close() {
+    final List<PooledConnection> all;
+    synchronized (this) {
+      closed = true;
+      all = new ArrayList<>(idle);
+      idle.clear();
+    }
+    maintenance.shutdown();
+    for (final PooledConnection pc : all) {
+      destroy(pc);
+    }
+  }
+
+  /** @return number of connections currently borrowed from the pool. */
+  public synchronized int getActiveCount() {
+    return active;
+  }
+
+  /** @return number of open connections waiting in the pool to be borrowed. */
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  /** @return number of callers currently blocked waiting for a connection. */
+  public int getWaitingCount() {
+    return permits.getQueueLength();
+  }
+
+  /** @return total number of connections handed out by the pool. */
+  public synchronized long getBorrowCount() {
+    return borrowCount;
+  }
+
+  /** @return total number of physical connections opened by the pool. */
+  public synchronized long getCreatedCount() {
+    return createdCount;
+  }
+
+  /** @return total number of physical connections closed by the pool. */
+  public synchronized long getDestroyedCount() {
+    return destroyedCount;
+  }
+
+  /** @return average milliseconds callers waited for a connection. */
+  public synchronized double getAverageWaitMillis() {
+    return waitCount == 0 ? 0 : totalWaitNanos / (waitCount * 1e6);
+  }
+
+  /** @return longest time, in milliseconds, a caller waited for a connection. */
+  public synchronized long getMaxWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() {
+    return source.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(final PrintWriter out) {
+    source.setLogWriter(out);
+  }
+
+  @Override
+  public int getLoginTimeout() {
+    return 0;
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) {}
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return false;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    throw new SQLException(getClass().getName() + " wraps nothing");
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  /** A physical connection owned by the pool. */
+  private class PooledConnection {
+    final Connection conn;
+    final long createdAt;
+    long lastUsed;
+
+    /** Settings the connection was opened with, restored when it is returned. */
+    final boolean readOnly;
+    final int isolation;
+    final String catalog;
+
+    /** Whether a borrower may have changed the settings above. */
+    volatile boolean modified;
+
+    PooledConnection(final Connection conn) throws SQLException {
+      this.conn = conn;
+      this.createdAt = System.currentTimeMillis();
+      this.lastUsed = createdAt;
+      try {
+        this.readOnly = conn.isReadOnly();
+        this.isolation = conn.getTransactionIsolation();
+        this.catalog = conn.getCatalog();
+      } catch (SQLException e) {
+        try {
+          conn.close();
+        } catch (SQLException e2) {
+          // Ignored.
+        }
+        throw e;
+      }
+    }
+
+    void restore() throws SQLException {
+      if (conn.isReadOnly() != readOnly) {
+        conn.setReadOnly(readOnly);
+      }
+      if (conn.getTransactionIsolation() != isolation) {
+        conn.setTransactionIsolation(isolation);
+      }
+      if (catalog != null && !catalog.equals(conn.getCatalog())) {
+        conn.setCatalog(catalog);
+      }
+      modified = false;
+    }
+
+    Connection newHandle() {
+      return (Connection)
+          Proxy.newProxyInstance(
+              Connection.class.getClassLoader(),
+              new Class<?>[] {Connection.class},
+              new Handle(this));
+    }
+  }
+
+  /**
+   * Connection handed to callers; closing it returns the physical connection to the pool.
+   *
+   * <p>Each borrow gets a new handle, so a stale reference kept after close cannot reach a
+   * connection that has since been lent to someone else.
+   */
+  private class Handle implements InvocationHandler {
+    private PooledConnection pc;
+
+    Handle(final PooledConnection pc) {
+      this.pc = pc;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      final String name = method.getName();
+      switch (name) {
+        case "close":
+          synchronized (this) {
+            if (pc != null) {
+              final PooledConnection c = pc;
+              pc = null;
+              release(c);
+            }
+          }
+          return null;
+
+        case "isClosed":
+          synchronized (this) {
+            return pc == null || pc.conn.isClosed();
+          }
+
+        case "equals":
+          return proxy == args[0];
+
+        case "hashCode":
+          return System.identityHashCode(proxy);
+
+        case "toString":
+          return "PooledConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+
+        default:
+          final PooledConnection c;
+          synchronized (this) {
+            c = pc;
+          }
+          if (c == null) {
+            throw new SQLException("Connection is closed");
+          }
+          if (name.equals("setReadOnly")
+              || name.equals("setTransactionIsolation")
+              || name.equals("setCatalog")) {
+            c.modified = true;
+          }
+          final Object result;
+          try {
+            result = method.invoke(c.conn, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+          if (result instanceof Statement || result instanceof DatabaseMetaData) {
+            return Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {method.getReturnType()},
+                new Child(proxy, result));
+          }
+          return result;
+      }
+    }
+  }
+
+  /** Statement or metadata of a handle, reporting the handle as its connection. */
+  private static class Child implements InvocationHandler {
+    private final Object handle;
+    private final Object target;
+
+    Child(final Object handle, final Object target) {
+      this.handle = handle;
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "getConnection":
+          return handle;
+
+        case "equals":
+          return proxy == args[0];
+
+        case "hashCode":
+          return System.identityHashCode(proxy);
+
+        default:
+          try {
+            return method.invoke(target, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * Read replicas of a database, and the policy assigning one to each read-only Schema.
+ *
+ * <p>A replica is assigned when {@link Database#openReadOnly()} opens a Schema, and serves that
+ * Schema's reads until it is closed. An optional {@link LagCheck} excludes replicas that have
+ * fallen too far behind the primary; if no replica is usable the Schema reads from the primary.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class ReplicaSet {
+  /** How a replica is chosen for a new read-only Schema. */
+  public enum Policy {
+    /** Use each usable replica in turn. */
+    ROUND_ROBIN,
+
+    /** Use the usable replica serving the fewest open Schemas. */
+    LEAST_LOADED
+  }
+
+  /** Decides whether a replica is current enough to serve reads. */
+  public interface LagCheck {
+    /**
+     * Check a replica.
+     *
+     * @param replica connection information of the replica.
+     * @return true if the replica may serve reads.
+     * @throws SQLException the check failed; the replica is treated as unusable.
+     */
+    boolean isUsable(DataSource replica) throws SQLException;
+  }
+
+  private final Policy policy;
+  private final List<Replica> replicas;
+  private final AtomicInteger next = new AtomicInteger();
+  private volatile LagCheck lagCheck;
+  private volatile long checkIntervalMillis;
+
+  /**
+   * Create a new replica set.
+   *
+   * @param policy how to choose a replica for each read-only Schema.
+   * @param dataSources connection information of each replica.
+   */
+  public ReplicaSet(final Policy policy, final List<? extends DataSource> dataSources) {
+    this.policy = policy;
+    final List<Replica> r = new ArrayList<>(dataSources.size());
+    for (final DataSource ds : dataSources) {
+      r.add(new Replica(ds));
+    }
+    this.replicas = Collections.unmodifiableList(r);
+  }
+
+  /**
+   * Exclude replicas that are lagging behind the primary.
+   *
+   * @param check the check; null to consider every replica usable (the default).
+   * @param intervalMillis minimum time between two checks of the same replica; a replica keeps
+   *     the result of its last check in between.
+   */
+  public void setLagCheck(final LagCheck check, final long intervalMillis) {
+    checkIntervalMillis = Math.max(0, intervalMillis);
+    lagCheck = check;
+    for (final Replica r : replicas) {
+      r.usable = true;
+      r.checkedAt = 0;
+    }
+  }
+
+  /** @return number of replicas in the set. */
+  public int size() {
+    return replicas.size();
+  }
+
+  /**
+   * @param index position of the replica, in the order given to the constructor.
+   * @return number of open Schemas reading from the replica.
+   */
+  public int getOpenCount(final int index) {
+    return replicas.get(index).open.get();
+  }
+
+  /**
+   * @param index position of the replica, in the order given to the constructor.
+   * @return number of Schemas that were assigned the replica.
+   */
+  public long getSelectCount(final int index) {
+    return replicas.get(index).selected.get();
+  }
+
+  /**
+   * Choose a replica for a new read-only Schema.
+   *
+   * @return the replica, which the Schema must {@link Replica#release()} when closed; null if no
+   *     replica is usable.
+   */
+  Replica select() {
+    final int n = replicas.size();
+    Replica best = null;
+    if (policy == Policy.LEAST_LOADED) {
+      for (final Replica r : replicas) {
+        if (isUsable(r) && (best == null || r.open.get() < best.open.get())) {
+          best = r;
+        }
+      }
+    } else {
+      final int start = next.getAndIncrement() & Integer.MAX_VALUE;
+      for (int i = 0; i < n && best == null; i++) {
+        final Replica r = replicas.get((start + i) % n);
+        if (isUsable(r)) {
+          best = r;
+        }
+      }
+    }
+    if (best != null) {
+      best.open.incrementAndGet();
+      best.selected.incrementAndGet();
+    }
+    return best;
+  }
+
+  private boolean isUsable(final Replica r) {
+    final LagCheck check = lagCheck;
+    if (check == null) {
+      return true;
+    }
+    final long now = System.currentTimeMillis();
+    if (r.checkedAt == 0 || checkIntervalMillis <= now - r.checkedAt) {
+      // Concurrent callers may both run the check; either result is as good as the other.
+      r.checkedAt = now;
+      try {
+        r.usable = check.isUsable(r.dataSource);
+      } catch (SQLException e) {
+        r.usable = false;
+      } catch (RuntimeException e) {
+        r.usable = false;
+      }
+    }
+    return r.usable;
+  }
+
+  /** One replica of the set. */
+  static final class Replica {
+    final DataSource dataSource;
+    final AtomicInteger open = new AtomicInteger();
+    final AtomicLong selected = new AtomicLong();
+    volatile boolean usable = true;
+    volatile long checkedAt;
+
+    Replica(final DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    /** Open a read-only connection to the replica. */
+    Connection newConnection() throws SQLException {
+      final Connection c = dataSource.getConnection();
+      try {
+        if (!c.getAutoCommit()) {
+          c.setAutoCommit(true);
+        }
+        c.setReadOnly(true);
+      } catch (SQLException e) {
+        c.close();
+        throw e;
+      }
+      return c;
+    }
+
+    /** Note that a Schema assigned by {@link ReplicaSet#select()} was closed. */
+    void release() {
+      open.decrementAndGet();
+    }
+  }
+}
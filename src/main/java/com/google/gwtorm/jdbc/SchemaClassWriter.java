@@ -0,0 +1,94 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.gwtorm.protobuf.CodecFactory;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.schema.SchemaModel;
+import com.google.gwtorm.schema.java.JavaSchemaModel;
+import com.google.gwtorm.schema.sql.SqlDialect;
+import com.google.gwtorm.server.GeneratedClassWriter;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.SchemaConstructorGen;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the classes a {@link Database} generates for a schema as class files, at build time.
+ *
+ * <p>When the written classes are on the class path of the schema interface, a Database for the
+ * same schema and dialect loads them instead of generating and injecting them at startup. Entity
+ * codecs are written too, and used by {@link CodecFactory}. The classes must be written again
+ * whenever the schema or its entities change.
+ *
+ * <p>Run it once the application is compiled, for example from the {@code java} goal of the exec
+ * plugin in the {@code process-classes} phase:
+ *
+ * <pre>
+ * java com.google.gwtorm.jdbc.SchemaClassWriter target/classes com.example.MyDb \
+ *     com.google.gwtorm.schema.sql.DialectPostgreSQL com.google.gwtorm.schema.sql.DialectH2
+ * </pre>
+ */
+public final class SchemaClassWriter {
+  public static void main(final String[] argv) throws Exception {
+    if (argv.length < 3) {
+      System.err.println(
+          "usage: " + SchemaClassWriter.class.getName() + " outputDir schemaClass dialectClass...");
+      System.exit(1);
+    }
+
+    final File outputDir = new File(argv[0]);
+    final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    final Class<?> schema = Class.forName(argv[1], false, loader);
+    for (int i = 2; i < argv.length; i++) {
+      final SqlDialect dialect = (SqlDialect) Class.forName(argv[i], true, loader).newInstance();
+      write(outputDir, schema, dialect);
+    }
+  }
+
+  /**
+   * Write the classes of a schema for one dialect.
+   *
+   * @param outputDir root of the class file tree to write to, such as {@code target/classes}.
+   * @param schema application extension of the Schema interface.
+   * @param dialect dialect the classes are generated for.
+   * @throws OrmException the schema is incorrectly defined, or a class could not be written.
+   */
+  public static void write(final File outputDir, final Class<?> schema, final SqlDialect dialect)
+      throws OrmException {
+    final ClassLoader loader = schema.getClassLoader();
+    final SchemaModel model = new JavaSchemaModel(schema);
+    final GeneratedClassWriter out =
+        new GeneratedClassWriter(loader, outputDir, Database.pregeneratedSuffix(schema, dialect));
+
+    // Generated for the Database class itself, so subclasses can use them too.
+    final Class<?> impl = Database.generate(model, Database.class, dialect, out);
+    new SchemaConstructorGen<>(out, impl.asSubclass(JdbcSchema.class), Database.class)
+        .defineClass();
+
+    final List<Class<?>> entities = new ArrayList<>();
+    for (final RelationModel rel : model.getRelations()) {
+      try {
+        entities.add(Class.forName(rel.getEntityTypeClassName(), false, loader));
+      } catch (ClassNotFoundException e) {
+        throw new OrmException("Cannot load entity " + rel.getEntityTypeClassName(), e);
+      }
+    }
+    CodecFactory.writeEncoders(loader, outputDir, entities);
+  }
+
+  private SchemaClassWriter() {}
+}
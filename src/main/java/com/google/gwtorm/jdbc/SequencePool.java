@@ -0,0 +1,69 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.gwtorm.server.OrmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Values of one sequence reserved in blocks and handed out to all Schemas of a {@link Database}.
+ *
+ * <p>Taking a value from the current block is lock-free; only the thread that finds the block
+ * exhausted reserves the next one, and other threads wait for it.
+ */
+final class SequencePool {
+  private static final Block EMPTY = new Block(new long[0]);
+
+  private final Database<?> db;
+  private final String sequenceName;
+  private final int blockSize;
+  private volatile Block block = EMPTY;
+
+  SequencePool(final Database<?> db, final String sequenceName, final int blockSize) {
+    this.db = db;
+    this.sequenceName = sequenceName;
+    this.blockSize = blockSize;
+  }
+
+  int getBlockSize() {
+    return blockSize;
+  }
+
+  long next() throws OrmException {
+    for (; ; ) {
+      final Block b = block;
+      final int i = b.next.getAndIncrement();
+      if (i < b.values.length) {
+        return b.values[i];
+      }
+      refill(b);
+    }
+  }
+
+  private synchronized void refill(final Block exhausted) throws OrmException {
+    if (block == exhausted) {
+      block = new Block(db.reserveSequenceValues(sequenceName, blockSize));
+    }
+  }
+
+  private static final class Block {
+    final long[] values;
+    final AtomicInteger next = new AtomicInteger();
+
+    Block(final long[] values) {
+      this.values = values;
+    }
+  }
+}
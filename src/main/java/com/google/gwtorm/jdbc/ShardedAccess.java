@@ -0,0 +1,578 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.common.util.concurrent.Callables;
+import com.google.gwtorm.client.Key;
+import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.QueryModel;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.schema.java.JavaColumnModel;
+import com.google.gwtorm.server.AbstractAccess;
+import com.google.gwtorm.server.Access;
+import com.google.gwtorm.server.AtomicUpdate;
+import com.google.gwtorm.server.ListResultSet;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.ResultSet;
+import com.google.gwtorm.server.Schema;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Internal base class for the Access implementations of a {@link ShardedDatabase}.
+ *
+ * <p>Implementations are generated at runtime by {@link ShardedAccessGen}, routing each method to
+ * the same relation in the Schema of one or all shards.
+ *
+ * <p>Asynchronous variants run on the calling thread; the per-shard parts of a call are run in
+ * parallel only if {@link ShardedDatabase#setExecutor(java.util.concurrent.Executor)} was given an
+ * executor.
+ */
+public abstract class ShardedAccess<E, K extends Key<?>> extends AbstractAccess<E, K> {
+  private final ShardedSchema schema;
+  private final RelationModel model;
+  private final ColumnModel keyField;
+  private final List<ColumnModel> keyColumns;
+  private final List<QueryModel> queries;
+  private final List<QueryPlan> plans;
+
+  /**
+   * @param s the Schema this Access belongs to.
+   * @param relation name of the Schema method returning this Access.
+   */
+  protected ShardedAccess(final ShardedSchema s, final String relation) {
+    schema = s;
+    model = relationModel(s.getDatabase(), relation);
+    keyField = model.getPrimaryKey() != null ? model.getPrimaryKey().getField() : null;
+    keyColumns = new ArrayList<>(model.getPrimaryKeyColumns());
+    queries = new ArrayList<>(model.getQueries());
+    plans = new ArrayList<>(Collections.<QueryPlan>nCopies(queries.size(), null));
+  }
+
+  private static RelationModel relationModel(final ShardedDatabase<?> db, final String relation) {
+    for (final RelationModel rm : db.getSchemaModel().getRelations()) {
+      if (rm.getMethodName().equals(relation)) {
+        return rm;
+      }
+    }
+    throw new IllegalArgumentException("No relation " + relation);
+  }
+
+  /**
+   * Get this relation in the Schema of a shard; implemented by generated code.
+   *
+   * @param shard Schema of the shard.
+   * @return the shard's Access for this relation.
+   */
+  protected abstract Access<E, K> access(Schema shard);
+
+  /**
+   * Run a query method on one shard; implemented by generated code.
+   *
+   * @param query index of the query method among the relation's queries.
+   * @param shard the shard's Access for this relation.
+   * @param args arguments to pass to the query method.
+   * @return the query results, or the boxed count of a count query.
+   * @throws OrmException the query failed, or there is no query with that index.
+   */
+  protected Object queryShard(final int query, final Access<E, K> shard, final Object[] args)
+      throws OrmException {
+    throw new OrmException("Query " + query + " not defined on " + getRelationName());
+  }
+
+  /**
+   * Get this relation in the shard owning a primary key.
+   *
+   * @param key the primary key, or the value of its only column.
+   * @return the owning shard's Access for this relation.
+   * @throws OrmException the shard could not be opened.
+   */
+  protected Access<E, K> keyShard(final Object key) throws OrmException {
+    return access(schema.shard(shardIndex(key)));
+  }
+
+  /**
+   * Run a query method on the shards that can hold its results.
+   *
+   * <p>Generated query methods delegate here, numbering the query method to run.
+   *
+   * @param query index of the query method among the relation's queries.
+   * @param args arguments of the query method.
+   * @return the merged query results, or the boxed count of a count query.
+   * @throws OrmException the query failed.
+   */
+  protected Object query(final int query, final Object[] args) throws OrmException {
+    final QueryPlan plan = plan(query);
+    final int shard = plan.shardOf(args);
+    if (0 <= shard) {
+      return queryShard(query, access(schema.shard(shard)), args);
+    }
+
+    final Class<?> count = plan.query.getCountType();
+    if (count == Boolean.TYPE) {
+      for (int i = 0; i < schema.getDatabase().getShardCount(); i++) {
+        if ((Boolean) queryShard(query, access(schema.shard(i)), args)) {
+          return true;
+        }
+      }
+      return false;
+    } else if (count != null) {
+      final List<Callable<Object>> calls =
+          onEachShard(
+              new ShardCall<Object>() {
+                @Override
+                Object call(final Access<E, K> a) throws OrmException {
+                  return queryShard(query, a, args);
+                }
+              });
+      long n = 0;
+      for (final Object v : schema.getDatabase().fanOut(calls)) {
+        n += ((Number) v).longValue();
+      }
+      return count == Integer.TYPE ? (Object) (int) n : (Object) n;
+    }
+
+    int limit = -1;
+    if (plan.query.hasLimitParameter()) {
+      limit = (Integer) args[args.length - 1];
+    } else if (plan.query.hasLimit()) {
+      limit = plan.query.getStaticLimit();
+    }
+    return scatter(
+        new ShardCall<ResultSet<Object>>() {
+          @SuppressWarnings("unchecked")
+          @Override
+          ResultSet<Object> call(final Access<E, K> a) throws OrmException {
+            return (ResultSet<Object>) queryShard(query, a, args);
+          }
+        },
+        plan.order(),
+        limit);
+  }
+
+  @Override
+  public String getRelationName() {
+    return model.getRelationName();
+  }
+
+  @Override
+  public int getRelationID() {
+    return model.getRelationID();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  public ResultSet<E> iterateAllEntities() throws OrmException {
+    return (ResultSet)
+        scatter(
+            new ShardCall<ResultSet<Object>>() {
+              @Override
+              ResultSet<Object> call(final Access<E, K> a) throws OrmException {
+                return (ResultSet) a.iterateAllEntities();
+              }
+            },
+            null,
+            -1);
+  }
+
+  @Override
+  public E get(final K key) throws OrmException {
+    return keyShard(key).get(key);
+  }
+
+  @Override
+  public ResultSet<E> get(final Iterable<K> keys) throws OrmException {
+    final List<List<K>> groups = keysByShard(keys);
+    final List<Callable<List<E>>> calls = new ArrayList<>();
+    for (int i = 0; i < groups.size(); i++) {
+      if (!groups.get(i).isEmpty()) {
+        final Access<E, K> a = access(schema.shard(i));
+        final List<K> group = groups.get(i);
+        calls.add(
+            new Callable<List<E>>() {
+              @Override
+              public List<E> call() throws OrmException {
+                return a.get(group).toList();
+              }
+            });
+      }
+    }
+    final List<E> r = new ArrayList<>();
+    for (final List<E> part : schema.getDatabase().fanOut(calls)) {
+      r.addAll(part);
+    }
+    return new ListResultSet<>(r);
+  }
+
+  @Override
+  public void insert(final Iterable<E> instances) throws OrmException {
+    write(
+        entitiesByShard(instances),
+        new GroupCall<E>() {
+          @Override
+          void call(final Access<E, K> a, final List<E> group) throws OrmException {
+            a.insert(group);
+          }
+        });
+  }
+
+  @Override
+  public void update(final Iterable<E> instances) throws OrmException {
+    write(
+        entitiesByShard(instances),
+        new GroupCall<E>() {
+          @Override
+          void call(final Access<E, K> a, final List<E> group) throws OrmException {
+            a.update(group);
+          }
+        });
+  }
+
+  @Override
+  public void upsert(final Iterable<E> instances) throws OrmException {
+    write(
+        entitiesByShard(instances),
+        new GroupCall<E>() {
+          @Override
+          void call(final Access<E, K> a, final List<E> group) throws OrmException {
+            a.upsert(group);
+          }
+        });
+  }
+
+  @Override
+  public void delete(final Iterable<E> instances) throws OrmException {
+    write(
+        entitiesByShard(instances),
+        new GroupCall<E>() {
+          @Override
+          void call(final Access<E, K> a, final List<E> group) throws OrmException {
+            a.delete(group);
+          }
+        });
+  }
+
+  @Override
+  public void deleteKeys(final Iterable<K> keys) throws OrmException {
+    write(
+        keysByShard(keys),
+        new GroupCall<K>() {
+          @Override
+          void call(final Access<E, K> a, final List<K> group) throws OrmException {
+            a.deleteKeys(group);
+          }
+        });
+  }
+
+  @Override
+  public void beginTransaction(final K key) throws OrmException {
+    keyShard(key).beginTransaction(key);
+  }
+
+  @Override
+  public E atomicUpdate(final K key, final AtomicUpdate<E> update) throws OrmException {
+    return keyShard(key).atomicUpdate(key, update);
+  }
+
+  /** A call made on this relation in one shard. */
+  private abstract class ShardCall<R> {
+    abstract R call(Access<E, K> a) throws OrmException;
+  }
+
+  /** A call made on this relation in one shard, with the items owned by that shard. */
+  private abstract class GroupCall<T> {
+    abstract void call(Access<E, K> a, List<T> group) throws OrmException;
+  }
+
+  private <T> void write(final List<List<T>> groups, final GroupCall<T> c) throws OrmException {
+    for (int i = 0; i < groups.size(); i++) {
+      if (!groups.get(i).isEmpty()) {
+        c.call(access(schema.shard(i)), groups.get(i));
+      }
+    }
+  }
+
+  /** Prepare a call on every shard, opening the shards on the calling thread. */
+  private <R> List<Callable<R>> onEachShard(final ShardCall<R> c) throws OrmException {
+    final List<Callable<R>> calls = new ArrayList<>();
+    for (int i = 0; i < schema.getDatabase().getShardCount(); i++) {
+      final Access<E, K> a = access(schema.shard(i));
+      calls.add(
+          new Callable<R>() {
+            @Override
+            public R call() throws OrmException {
+              return c.call(a);
+            }
+          });
+    }
+    return calls;
+  }
+
+  /**
+   * Run a query on every shard, returning their results as one lazily read result.
+   *
+   * <p>Unordered results are read shard after shard, querying each shard only once the previous
+   * ones are exhausted, unless an executor is set to query them in parallel. Ordered results need
+   * the first row of every shard, so all shards are queried up front and merged as they are read.
+   */
+  private ResultSet<Object> scatter(
+      final ShardCall<ResultSet<Object>> c, final Comparator<Object> order, final int limit)
+      throws OrmException {
+    List<Callable<ResultSet<Object>>> calls = onEachShard(c);
+    if (order != null || schema.getDatabase().hasExecutor()) {
+      final List<Callable<ResultSet<Object>>> started = new ArrayList<>(calls.size());
+      for (final ResultSet<Object> rs : schema.getDatabase().fanOut(calls)) {
+        started.add(Callables.returning(rs));
+      }
+      calls = started;
+    }
+    return new ShardedResultSet<>(calls, order, limit);
+  }
+
+  private QueryPlan plan(final int query) {
+    QueryPlan plan = plans.get(query);
+    if (plan == null) {
+      plan = new QueryPlan(queries.get(query));
+      plans.set(query, plan);
+    }
+    return plan;
+  }
+
+  private List<List<E>> entitiesByShard(final Iterable<E> instances) throws OrmException {
+    final List<List<E>> r = newGroups();
+    for (final E e : instances) {
+      r.get(shardIndex(primaryKey(e))).add(e);
+    }
+    return r;
+  }
+
+  private List<List<K>> keysByShard(final Iterable<K> keys) throws OrmException {
+    final List<List<K>> r = newGroups();
+    for (final K k : keys) {
+      r.get(shardIndex(k)).add(k);
+    }
+    return r;
+  }
+
+  private <T> List<List<T>> newGroups() {
+    final int n = schema.getDatabase().getShardCount();
+    final List<List<T>> r = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      r.add(new ArrayList<T>());
+    }
+    return r;
+  }
+
+  private int shardIndex(final Object key) throws OrmException {
+    final List<Object> values = new ArrayList<>(keyColumns.size());
+    for (final ColumnModel c : keyColumns) {
+      values.add(valueOf(key, keyField, c));
+    }
+    return schema.getDatabase().shardOf(values);
+  }
+
+  /**
+   * Read a column from an object.
+   *
+   * @param obj instance of the class holding {@code root}'s nested columns, or the value of
+   *     {@code root} itself if it is not nested.
+   * @param root column whose nested columns {@code obj} holds; null if {@code obj} is an entity.
+   * @param c the column to read, nested below {@code root}.
+   */
+  private static Object valueOf(final Object obj, final ColumnModel root, final ColumnModel c)
+      throws OrmException {
+    return valueOf(obj, path(root, c), c);
+  }
+
+  private static Object valueOf(final Object obj, final List<Field> path, final ColumnModel c)
+      throws OrmException {
+    Object v = obj;
+    try {
+      for (final Field f : path) {
+        if (v == null) {
+          return null;
+        }
+        f.setAccessible(true);
+        v = f.get(v);
+      }
+    } catch (IllegalAccessException e) {
+      throw new OrmException("Cannot read " + c.getPathToFieldName(), e);
+    }
+    return v;
+  }
+
+  /** @return fields leading from {@code root}'s nested columns down to {@code c}. */
+  private static List<Field> path(final ColumnModel root, final ColumnModel c) {
+    final List<Field> path = new ArrayList<>();
+    for (ColumnModel p = c; p != root && p != null; p = p.getParent()) {
+      path.add(0, ((JavaColumnModel) p).getField());
+    }
+    return path;
+  }
+
+  /** How a query is spread over the shards. */
+  private class QueryPlan {
+    final QueryModel query;
+    private Comparator<Object> order;
+    private boolean ordered;
+
+    /** Index of the argument holding the primary key; -1 if the key is bound per column. */
+    private int keyArg = -1;
+
+    /** Index of the argument binding each primary key column; null if not fully bound. */
+    private int[] columnArgs;
+
+    QueryPlan(final QueryModel query) {
+      this.query = query;
+
+      final List<ColumnModel> eq = query.getEqualityParameters();
+      final int[] args = new int[keyColumns.size()];
+      Arrays.fill(args, -1);
+      int bound = 0;
+      for (int i = 0; i < eq.size(); i++) {
+        final ColumnModel c = eq.get(i);
+        if (c == null) {
+          continue;
+        } else if (c == keyField) {
+          keyArg = i;
+        } else if (keyColumns.contains(c) && args[keyColumns.indexOf(c)] < 0) {
+          args[keyColumns.indexOf(c)] = i;
+          bound++;
+        }
+      }
+      columnArgs = !keyColumns.isEmpty() && bound == keyColumns.size() ? args : null;
+    }
+
+    /** @return the only shard that can hold results; -1 if every shard must be queried. */
+    int shardOf(final Object[] args) throws OrmException {
+      if (0 <= keyArg) {
+        return shardIndex(args[keyArg]);
+      } else if (columnArgs != null) {
+        final List<Object> values = new ArrayList<>(columnArgs.length);
+        for (final int i : columnArgs) {
+          values.add(args[i]);
+        }
+        return schema.getDatabase().shardOf(values);
+      }
+      return -1;
+    }
+
+    /** @return how to merge the results of all shards; null if the query has no order. */
+    Comparator<Object> order() throws OrmException {
+      if (!ordered) {
+        order = comparator(query);
+        ordered = true;
+      }
+      return order;
+    }
+  }
+
+  /**
+   * Compare rows as the database orders them, to merge the sorted results of each shard.
+   *
+   * <p>NULLs are placed where the shards' database sorts them. Other values are compared with
+   * {@link Comparable#compareTo(Object)}, which for strings only agrees with a binary collation.
+   */
+  private Comparator<Object> comparator(final QueryModel query) throws OrmException {
+    final List<ColumnModel> columns = new ArrayList<>();
+    final List<List<Field>> paths = new ArrayList<>();
+    final List<Boolean> descending = new ArrayList<>();
+    for (final QueryModel.OrderBy o : query.getOrderBy()) {
+      final Collection<ColumnModel> leaves =
+          o.column.isNested()
+              ? o.column.getAllLeafColumns()
+              : Collections.singletonList(o.column);
+      for (final ColumnModel c : leaves) {
+        columns.add(c);
+        paths.add(resultPath(query, c));
+        descending.add(o.descending);
+      }
+    }
+    if (columns.isEmpty()) {
+      return null;
+    }
+    final ShardedDatabase<?> db = schema.getDatabase();
+    return new Comparator<Object>() {
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      @Override
+      public int compare(final Object a, final Object b) {
+        try {
+          for (int i = 0; i < columns.size(); i++) {
+            final Comparable va = (Comparable) valueOf(a, paths.get(i), columns.get(i));
+            final Comparable vb = (Comparable) valueOf(b, paths.get(i), columns.get(i));
+            final boolean desc = descending.get(i);
+            if (va == null || vb == null) {
+              if (va != vb) {
+                return (va == null) == db.isNullSortedFirst(desc) ? -1 : 1;
+              }
+              continue;
+            }
+            final int cmp = va.compareTo(vb);
+            if (cmp != 0) {
+              return desc ? -cmp : cmp;
+            }
+          }
+          return 0;
+        } catch (OrmException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Find where a column is held in the rows a query returns.
+   *
+   * @param query the query.
+   * @param c an entity column the query orders by.
+   * @return fields leading from a returned row down to the column.
+   * @throws OrmException the rows do not hold the column, so results cannot be merged.
+   */
+  private List<Field> resultPath(final QueryModel query, final ColumnModel c)
+      throws OrmException {
+    if (query.isReturnsKeys()) {
+      for (ColumnModel p = c; p != null; p = p.getParent()) {
+        if (p == keyField) {
+          return path(keyField, c);
+        }
+      }
+    } else if (query.getProjectionFields() != null) {
+      ColumnModel top = c;
+      while (top.getParent() != null) {
+        top = top.getParent();
+      }
+      for (final ColumnModel f : query.getProjectionFields()) {
+        if (f.getColumnID() == top.getColumnID()) {
+          final List<Field> path = path(top, c);
+          path.add(0, ((JavaColumnModel) f).getField());
+          return path;
+        }
+      }
+    } else {
+      return path(null, c);
+    }
+    throw new OrmException(
+        "Query "
+            + query.getName()
+            + " cannot be merged across shards: its results do not hold ORDER BY column "
+            + c.getPathToFieldName());
+  }
+}
@@ -0,0 +1,302 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.gwtorm.client.Key;
+import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.KeyModel;
+import com.google.gwtorm.schema.QueryModel;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.server.Access;
+import com.google.gwtorm.server.CodeGenSupport;
+import com.google.gwtorm.server.GeneratedClassLoader;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.ResultSet;
+import com.google.gwtorm.server.Schema;
+import java.util.ArrayList;
+import java.util.List;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/** Generates the {@link ShardedAccess} implementation of an {@link Access} extension. */
+class ShardedAccessGen implements Opcodes {
+  private final GeneratedClassLoader classLoader;
+  private final RelationModel model;
+  private final Type schemaType;
+  private final Type accessType;
+  private final Type entityType;
+
+  private ClassWriter cw;
+  private String superTypeName;
+  private String implClassName;
+  private String implTypeName;
+
+  ShardedAccessGen(
+      final GeneratedClassLoader loader, final RelationModel rm, final String schemaClassName) {
+    classLoader = loader;
+    model = rm;
+    schemaType = Type.getObjectType(schemaClassName.replace('.', '/'));
+    accessType = Type.getObjectType(model.getAccessInterfaceName().replace('.', '/'));
+    entityType = Type.getObjectType(model.getEntityTypeClassName().replace('.', '/'));
+  }
+
+  public Class<?> create() throws OrmException {
+    init();
+    implementConstructor();
+    implementAccess();
+    implementPrimaryKey();
+    if (model.getPrimaryKey() != null) {
+      implementKeyQuery(model.getPrimaryKey());
+    }
+
+    final List<QueryModel> queries = new ArrayList<>(model.getQueries());
+    for (int i = 0; i < queries.size(); i++) {
+      implementQuery(queries.get(i), i);
+    }
+    implementQueryShard(queries);
+
+    final List<QueryModel> asyncQueries = new ArrayList<>(model.getAsyncQueries());
+    for (int i = 0; i < asyncQueries.size(); i++) {
+      CodeGenSupport.implementAsyncQuery(cw, asyncQueries.get(i), i);
+    }
+    if (!asyncQueries.isEmpty()) {
+      CodeGenSupport.implementRunQuery(cw, implTypeName, asyncQueries);
+    }
+
+    cw.visitEnd();
+    classLoader.defineClass(implClassName, cw.toByteArray());
+    try {
+      return Class.forName(implClassName, false, classLoader);
+    } catch (ClassNotFoundException err) {
+      throw new OrmException("Cannot load generated class", err);
+    }
+  }
+
+  private void init() {
+    superTypeName = Type.getInternalName(ShardedAccess.class);
+    implClassName =
+        model.getEntityTypeClassName()
+            + "_ShardedAccess_"
+            + model.getMethodName()
+            + "_"
+            + classLoader.newClassNameSuffix();
+    implTypeName = implClassName.replace('.', '/');
+
+    cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(
+        V1_3,
+        ACC_PUBLIC | ACC_FINAL | ACC_SUPER,
+        implTypeName,
+        null,
+        superTypeName,
+        new String[] {accessType.getInternalName()});
+  }
+
+  private void implementConstructor() {
+    final String consName = "<init>";
+    final Type schema = Type.getType(ShardedSchema.class);
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC,
+            consName,
+            Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {schema}),
+            null,
+            null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitLdcInsn(model.getMethodName());
+    mv.visitMethodInsn(
+        INVOKESPECIAL,
+        superTypeName,
+        consName,
+        Type.getMethodDescriptor(
+            Type.VOID_TYPE, new Type[] {schema, Type.getType(String.class)}));
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  private void implementAccess() {
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PROTECTED | ACC_FINAL,
+            "access",
+            Type.getMethodDescriptor(
+                Type.getType(Access.class), new Type[] {Type.getType(Schema.class)}),
+            null,
+            null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitTypeInsn(CHECKCAST, schemaType.getInternalName());
+    mv.visitMethodInsn(
+        INVOKEINTERFACE,
+        schemaType.getInternalName(),
+        model.getMethodName(),
+        Type.getMethodDescriptor(accessType, new Type[] {}));
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  private void implementPrimaryKey() {
+    final KeyModel pk = model.getPrimaryKey();
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            "primaryKey",
+            Type.getMethodDescriptor(
+                Type.getType(Key.class), new Type[] {Type.getType(Object.class)}),
+            null,
+            null);
+    mv.visitCode();
+    if (pk != null && pk.getField().isNested()) {
+      final ColumnModel pkf = pk.getField();
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitTypeInsn(CHECKCAST, entityType.getInternalName());
+      mv.visitFieldInsn(
+          GETFIELD,
+          entityType.getInternalName(),
+          pkf.getFieldName(),
+          CodeGenSupport.toType(pkf).getDescriptor());
+    } else {
+      mv.visitInsn(ACONST_NULL);
+    }
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /** Call the primary key method of the shard owning the key. */
+  private void implementKeyQuery(final KeyModel info) {
+    final Type keyType = CodeGenSupport.toType(info.getField());
+    final String desc = Type.getMethodDescriptor(entityType, new Type[] {keyType});
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            info.getName(),
+            desc,
+            null,
+            new String[] {Type.getType(OrmException.class).getInternalName()});
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(keyType.getOpcode(ILOAD), 1);
+    CodeGenSupport.box(mv, keyType);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        superTypeName,
+        "keyShard",
+        Type.getMethodDescriptor(
+            Type.getType(Access.class), new Type[] {Type.getType(Object.class)}));
+    mv.visitTypeInsn(CHECKCAST, accessType.getInternalName());
+    mv.visitVarInsn(keyType.getOpcode(ILOAD), 1);
+    mv.visitMethodInsn(INVOKEINTERFACE, accessType.getInternalName(), info.getName(), desc);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /** Delegate a query method to {@code ShardedAccess.query(int, Object[])}. */
+  private void implementQuery(final QueryModel info, final int index) {
+    final Type[] pTypes = CodeGenSupport.parameterTypes(info);
+    final Type resultType = resultType(info);
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            info.getName(),
+            Type.getMethodDescriptor(resultType, pTypes),
+            null,
+            new String[] {Type.getType(OrmException.class).getInternalName()});
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    new CodeGenSupport(mv).push(index);
+    CodeGenSupport.pushArgs(mv, pTypes);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        superTypeName,
+        "query",
+        Type.getMethodDescriptor(
+            Type.getType(Object.class),
+            new Type[] {Type.INT_TYPE, Type.getType(Object[].class)}));
+    CodeGenSupport.unbox(mv, resultType);
+    mv.visitInsn(resultType.getOpcode(IRETURN));
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /**
+   * Implement {@code ShardedAccess.queryShard(int, Access, Object[])}, calling the query method at
+   * the requested index on the shard's Access with the unboxed arguments.
+   */
+  private void implementQueryShard(final List<QueryModel> queries) {
+    final String desc =
+        Type.getMethodDescriptor(
+            Type.getType(Object.class),
+            new Type[] {
+              Type.INT_TYPE, Type.getType(Access.class), Type.getType(Object[].class)
+            });
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PROTECTED | ACC_FINAL,
+            "queryShard",
+            desc,
+            null,
+            new String[] {Type.getType(OrmException.class).getInternalName()});
+    mv.visitCode();
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    for (int i = 0; i < queries.size(); i++) {
+      final QueryModel info = queries.get(i);
+      final Type[] pTypes = CodeGenSupport.parameterTypes(info);
+      final Type resultType = resultType(info);
+      final Label next = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      cgs.push(i);
+      mv.visitJumpInsn(IF_ICMPNE, next);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitTypeInsn(CHECKCAST, accessType.getInternalName());
+      for (int p = 0; p < pTypes.length; p++) {
+        mv.visitVarInsn(ALOAD, 3);
+        cgs.push(p);
+        mv.visitInsn(AALOAD);
+        CodeGenSupport.unbox(mv, pTypes[p]);
+      }
+      mv.visitMethodInsn(
+          INVOKEINTERFACE,
+          accessType.getInternalName(),
+          info.getName(),
+          Type.getMethodDescriptor(resultType, pTypes));
+      CodeGenSupport.box(mv, resultType);
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(next);
+    }
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitVarInsn(ALOAD, 3);
+    mv.visitMethodInsn(INVOKESPECIAL, superTypeName, "queryShard", desc);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  private static Type resultType(final QueryModel info) {
+    return info.getCountType() != null
+        ? Type.getType(info.getCountType())
+        : Type.getType(ResultSet.class);
+  }
+}
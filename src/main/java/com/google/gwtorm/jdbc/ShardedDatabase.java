@@ -0,0 +1,367 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.schema.SchemaModel;
+import com.google.gwtorm.server.GeneratedClassCache;
+import com.google.gwtorm.server.GeneratedClassLoader;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.Schema;
+import com.google.gwtorm.server.SchemaConstructorGen;
+import com.google.gwtorm.server.SchemaFactory;
+import com.google.gwtorm.server.SchemaGen;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import javax.sql.DataSource;
+
+/**
+ * Spreads the rows of every relation over several databases by a hash of their primary key.
+ *
+ * <p>Each shard is a regular {@link Database} with identical tables. Schemas returned by {@link
+ * #open()} route {@code get}, {@code insert}, {@code update}, {@code upsert}, {@code delete},
+ * {@code beginTransaction} and {@code atomicUpdate} to the shard owning each key, grouping
+ * multi-key calls per shard. A query whose WHERE clause binds every primary key column with
+ * {@code =} runs on the owning shard only; any other query runs on every shard and the results
+ * are merged, honoring the query's ORDER BY and LIMIT. Results are read from the shards lazily;
+ * NULLs are ordered as the first shard's database sorts them, and strings by {@link
+ * String#compareTo(String)}, so merged results follow the database's order only under a binary
+ * collation.
+ *
+ * <p>Multi-shard calls, including the {@code Async} variants of queries, query the shards one
+ * after the other on the calling thread unless {@link #setExecutor(Executor)} is given an executor.
+ *
+ * <p>Sequences are allocated by the first shard, so their values are unique across shards.
+ * Committing a Schema commits each shard it used in turn; a transaction spanning several shards
+ * is therefore not atomic.
+ *
+ * <p>The shard of a key is a consistent hash of its column values, so adding a shard moves only
+ * about 1/N of the rows, which the application must migrate itself.
+ *
+ * @param <T> the application's Schema interface.
+ */
+public class ShardedDatabase<T extends Schema> implements SchemaFactory<T> {
+  private final List<Database<T>> shards;
+  private final SchemaFactory<T> implFactory;
+  private final boolean nullsFirstAscending;
+  private final boolean nullsFirstDescending;
+  private volatile Executor executor;
+
+  /**
+   * Create a new sharded database, generating the interface implementations for each shard.
+   *
+   * @param dataSources JDBC connection information of each shard, in a fixed order.
+   * @param schema application extension of the Schema interface to implement.
+   * @throws OrmException no shard was given, or a shard could not be initialized.
+   */
+  public ShardedDatabase(final List<? extends DataSource> dataSources, final Class<T> schema)
+      throws OrmException {
+    if (dataSources.isEmpty()) {
+      throw new OrmException("At least one shard is required");
+    }
+    final List<Database<T>> r = new ArrayList<>(dataSources.size());
+    for (final DataSource ds : dataSources) {
+      r.add(new Database<>(ds, schema));
+    }
+    shards = Collections.unmodifiableList(r);
+
+    try {
+      final Connection c = dataSources.get(0).getConnection();
+      try {
+        final DatabaseMetaData meta = c.getMetaData();
+        nullsFirstAscending = meta.nullsAreSortedAtStart() || meta.nullsAreSortedLow();
+        nullsFirstDescending = meta.nullsAreSortedAtStart() || meta.nullsAreSortedHigh();
+      } finally {
+        c.close();
+      }
+    } catch (SQLException e) {
+      throw new OrmException("Unable to determine the order of NULLs", e);
+    }
+
+    final SchemaModel schemaModel = getSchemaModel();
+    final Class<?> factoryClass =
+        GeneratedClassCache.get(
+            schema,
+            Arrays.<Class<?>>asList(ShardedDatabase.class),
+            new GeneratedClassCache.Generator() {
+              @Override
+              public Class<?> generate() throws OrmException {
+                final GeneratedClassLoader loader =
+                    new GeneratedClassLoader(schema.getClassLoader());
+                final Class<T> impl = ShardedDatabase.generate(schemaModel, loader);
+                return new SchemaConstructorGen<>(loader, impl, ShardedDatabase.class)
+                    .createClass();
+              }
+            });
+    implFactory = SchemaConstructorGen.newInstance(factoryClass, this);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <T> Class<T> generate(
+      final SchemaModel schemaModel, final GeneratedClassLoader loader) throws OrmException {
+    return new SchemaGen(
+            loader,
+            schemaModel,
+            ShardedDatabase.class,
+            ShardedSchema.class,
+            new SchemaGen.AccessGenerator() {
+              @Override
+              public Class<?> create(GeneratedClassLoader loader, RelationModel rm)
+                  throws OrmException {
+                return new ShardedAccessGen(loader, rm, schemaModel.getSchemaClassName())
+                    .create();
+              }
+            })
+        .create();
+  }
+
+  /** @return number of shards. */
+  public int getShardCount() {
+    return shards.size();
+  }
+
+  /**
+   * Get one shard, for example to configure it or to update its schema.
+   *
+   * @param index position of the shard, in the order given to the constructor.
+   * @return the shard's database.
+   */
+  public Database<T> getShard(final int index) {
+    return shards.get(index);
+  }
+
+  /**
+   * Run the per-shard parts of multi-shard calls in parallel.
+   *
+   * @param e executor for the per-shard calls; null runs them one after the other on the calling
+   *     thread (the default).
+   */
+  public void setExecutor(final Executor e) {
+    executor = e;
+  }
+
+  /**
+   * Update the schema of every shard.
+   *
+   * @throws OrmException a shard could not be updated.
+   */
+  public void updateSchema() throws OrmException {
+    onEachShard(
+        new SchemaChange() {
+          @Override
+          void apply(final JdbcSchema s, final JdbcExecutor e) throws OrmException {
+            s.updateSchema(e);
+          }
+        });
+  }
+
+  /**
+   * Prune unused tables and columns from every shard.
+   *
+   * @throws OrmException a shard could not be pruned.
+   * @see Schema#pruneSchema(com.google.gwtorm.server.StatementExecutor)
+   */
+  public void pruneSchema() throws OrmException {
+    onEachShard(
+        new SchemaChange() {
+          @Override
+          void apply(final JdbcSchema s, final JdbcExecutor e) throws OrmException {
+            s.pruneSchema(e);
+          }
+        });
+  }
+
+  /**
+   * Rename a table in every shard.
+   *
+   * @param from current name of the table.
+   * @param to new name of the table.
+   * @throws OrmException a shard could not be changed.
+   * @see JdbcSchema#renameTable(com.google.gwtorm.server.StatementExecutor, String, String)
+   */
+  public void renameTable(final String from, final String to) throws OrmException {
+    onEachShard(
+        new SchemaChange() {
+          @Override
+          void apply(final JdbcSchema s, final JdbcExecutor e) throws OrmException {
+            s.renameTable(e, from, to);
+          }
+        });
+  }
+
+  /**
+   * Rename a field's column in every shard.
+   *
+   * @param table name of the table.
+   * @param from current name of the field.
+   * @param to new name of the field.
+   * @throws OrmException a shard could not be changed.
+   * @see JdbcSchema#renameField(com.google.gwtorm.server.StatementExecutor, String, String,
+   *     String)
+   */
+  public void renameField(final String table, final String from, final String to)
+      throws OrmException {
+    onEachShard(
+        new SchemaChange() {
+          @Override
+          void apply(final JdbcSchema s, final JdbcExecutor e) throws OrmException {
+            s.renameField(e, table, from, to);
+          }
+        });
+  }
+
+  /**
+   * Rename a column in every shard.
+   *
+   * @param table name of the table.
+   * @param from current name of the column.
+   * @param to new name of the column.
+   * @throws OrmException a shard could not be changed.
+   * @see JdbcSchema#renameColumn(com.google.gwtorm.server.StatementExecutor, String, String,
+   *     String)
+   */
+  public void renameColumn(final String table, final String from, final String to)
+      throws OrmException {
+    onEachShard(
+        new SchemaChange() {
+          @Override
+          void apply(final JdbcSchema s, final JdbcExecutor e) throws OrmException {
+            s.renameColumn(e, table, from, to);
+          }
+        });
+  }
+
+  /** A change to the schema of one shard. */
+  private abstract static class SchemaChange {
+    abstract void apply(JdbcSchema s, JdbcExecutor e) throws OrmException;
+  }
+
+  private void onEachShard(final SchemaChange change) throws OrmException {
+    for (final Database<T> db : shards) {
+      final JdbcSchema s = (JdbcSchema) db.open();
+      try {
+        final JdbcExecutor e = new JdbcExecutor(s);
+        try {
+          change.apply(s, e);
+        } finally {
+          e.close();
+        }
+      } finally {
+        s.close();
+      }
+    }
+  }
+
+  @Override
+  public T open() throws OrmException {
+    return implFactory.open();
+  }
+
+  SchemaModel getSchemaModel() {
+    return shards.get(0).getSchemaModel();
+  }
+
+  /**
+   * Choose the shard of a primary key.
+   *
+   * @param values the key's column values, in the order of the relation's primary key columns.
+   * @return index of the shard owning the key.
+   */
+  int shardOf(final List<Object> values) {
+    final Hasher h = Hashing.murmur3_32().newHasher();
+    for (final Object v : values) {
+      if (v == null) {
+        h.putByte((byte) 0);
+      } else if (v instanceof Number && !(v instanceof Double || v instanceof Float)) {
+        h.putLong(((Number) v).longValue());
+      } else {
+        h.putString(v.toString(), StandardCharsets.UTF_8);
+      }
+    }
+    return Hashing.consistentHash(h.hash(), shards.size());
+  }
+
+  /** @return true if multi-shard calls are run in parallel. */
+  boolean hasExecutor() {
+    return executor != null;
+  }
+
+  /**
+   * Determine where the database sorts NULLs.
+   *
+   * @param descending true for a descending order.
+   * @return true if NULLs come before all other values in that order.
+   */
+  boolean isNullSortedFirst(final boolean descending) {
+    return descending ? nullsFirstDescending : nullsFirstAscending;
+  }
+
+  /**
+   * Run one call per shard, in parallel if an executor is configured.
+   *
+   * @param calls the calls.
+   * @return the results, in the order of {@code calls}.
+   * @throws OrmException a call failed.
+   */
+  <R> List<R> fanOut(final List<Callable<R>> calls) throws OrmException {
+    final Executor e = executor;
+    final List<R> r = new ArrayList<>(calls.size());
+    if (e == null || calls.size() <= 1) {
+      for (final Callable<R> c : calls) {
+        try {
+          r.add(c.call());
+        } catch (OrmException err) {
+          throw err;
+        } catch (Exception err) {
+          throw new OrmException(err);
+        }
+      }
+      return r;
+    }
+
+    final List<ListenableFutureTask<R>> tasks = new ArrayList<>(calls.size());
+    for (final Callable<R> c : calls) {
+      final ListenableFutureTask<R> t = ListenableFutureTask.create(c);
+      tasks.add(t);
+      e.execute(t);
+    }
+    for (final ListenableFutureTask<R> t : tasks) {
+      try {
+        r.add(t.get());
+      } catch (InterruptedException err) {
+        Thread.currentThread().interrupt();
+        throw new OrmException("Interrupted waiting for shard", err);
+      } catch (ExecutionException err) {
+        if (err.getCause() instanceof OrmException) {
+          throw (OrmException) err.getCause();
+        }
+        throw new OrmException(err.getCause());
+      }
+    }
+    return r;
+  }
+}
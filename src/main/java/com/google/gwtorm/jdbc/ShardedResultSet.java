@@ -0,0 +1,171 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.gwtorm.server.AbstractResultSet;
+import com.google.gwtorm.server.OrmRuntimeException;
+import com.google.gwtorm.server.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+
+/**
+ * Results of a query run on several shards, read lazily from the result of each shard.
+ *
+ * <p>Without an order, the results of the shards are returned one after the other; a shard's query
+ * is called only once the results of the shards before it are exhausted. With an order, each
+ * shard's results must already be sorted by it, and they are merged row by row.
+ */
+final class ShardedResultSet<T> extends AbstractResultSet<T> {
+  private final List<Callable<ResultSet<T>>> shards;
+  private final Comparator<? super T> order;
+  private final List<ResultSet<T>> started = new ArrayList<>();
+  private int remaining;
+  private int nextShard;
+  private Iterator<T> current;
+  private PriorityQueue<Head<T>> heads;
+  private boolean closed;
+
+  /**
+   * @param shards query of each shard, returning its results.
+   * @param order order of the rows within each shard's results; null to chain them.
+   * @param limit maximum number of rows to return; -1 for no limit.
+   */
+  ShardedResultSet(
+      final List<Callable<ResultSet<T>>> shards,
+      final Comparator<? super T> order,
+      final int limit) {
+    this.shards = shards;
+    this.order = order;
+    this.remaining = limit;
+  }
+
+  @Override
+  protected boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    if (remaining == 0 || !(order != null ? hasNextMerged() : hasNextChained())) {
+      close();
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  protected T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    if (0 < remaining) {
+      remaining--;
+    }
+    if (order == null) {
+      return current.next();
+    }
+
+    final Head<T> h = heads.poll();
+    final T row = h.row;
+    if (h.rest.hasNext()) {
+      h.row = h.rest.next();
+      heads.add(h);
+    }
+    return row;
+  }
+
+  private boolean hasNextChained() {
+    while (current == null || !current.hasNext()) {
+      if (nextShard == shards.size()) {
+        return false;
+      }
+      current = start(nextShard++).iterator();
+    }
+    return true;
+  }
+
+  private boolean hasNextMerged() {
+    if (heads == null) {
+      heads =
+          new PriorityQueue<>(
+              Math.max(1, shards.size()),
+              new Comparator<Head<T>>() {
+                @Override
+                public int compare(final Head<T> a, final Head<T> b) {
+                  final int cmp = order.compare(a.row, b.row);
+                  return cmp != 0 ? cmp : Integer.compare(a.shard, b.shard);
+                }
+              });
+      for (int i = 0; i < shards.size(); i++) {
+        final Iterator<T> rest = start(i).iterator();
+        if (rest.hasNext()) {
+          heads.add(new Head<>(rest.next(), rest, i));
+        }
+      }
+    }
+    return !heads.isEmpty();
+  }
+
+  private ResultSet<T> start(final int shard) {
+    final ResultSet<T> rs;
+    try {
+      rs = shards.get(shard).call();
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    } catch (Exception e) {
+      close();
+      throw new OrmRuntimeException(e);
+    }
+    started.add(rs);
+    return rs;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      RuntimeException err = null;
+      for (final ResultSet<T> rs : started) {
+        try {
+          rs.close();
+        } catch (RuntimeException e) {
+          if (err == null) {
+            err = e;
+          }
+        }
+      }
+      if (err != null) {
+        throw err;
+      }
+    }
+  }
+
+  /** Next row of a shard, and the shard's remaining rows. */
+  private static final class Head<T> {
+    T row;
+    final Iterator<T> rest;
+    final int shard;
+
+    Head(final T row, final Iterator<T> rest, final int shard) {
+      this.row = row;
+      this.rest = rest;
+      this.shard = shard;
+    }
+  }
+}
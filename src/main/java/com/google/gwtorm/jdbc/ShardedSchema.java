@@ -0,0 +1,121 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import com.google.gwtorm.server.AbstractSchema;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.Schema;
+import com.google.gwtorm.server.StatementExecutor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Internal base class for the Schemas of a {@link ShardedDatabase}.
+ *
+ * <p>Implementations are generated at runtime; each relation is a {@link ShardedAccess} over the
+ * Schemas of the shards, which are opened on first use.
+ */
+public abstract class ShardedSchema extends AbstractSchema {
+  private final ShardedDatabase<?> db;
+  private final List<Schema> shards;
+
+  protected ShardedSchema(final ShardedDatabase<?> d) {
+    db = d;
+    shards = new ArrayList<>(d.getShardCount());
+    for (int i = 0; i < d.getShardCount(); i++) {
+      shards.add(null);
+    }
+  }
+
+  ShardedDatabase<?> getDatabase() {
+    return db;
+  }
+
+  /** Get the Schema of a shard, opening it on first use. */
+  Schema shard(final int index) throws OrmException {
+    Schema s = shards.get(index);
+    if (s == null) {
+      s = db.getShard(index).open();
+      shards.set(index, s);
+    }
+    return s;
+  }
+
+  /** Commit each shard used by this Schema in turn; the shards are not committed atomically. */
+  @Override
+  public void commit() throws OrmException {
+    for (final Schema s : shards) {
+      if (s != null) {
+        s.commit();
+      }
+    }
+  }
+
+  @Override
+  public void rollback() throws OrmException {
+    OrmException err = null;
+    for (final Schema s : shards) {
+      if (s != null) {
+        try {
+          s.rollback();
+        } catch (OrmException e) {
+          if (err == null) {
+            err = e;
+          }
+        }
+      }
+    }
+    if (err != null) {
+      throw err;
+    }
+  }
+
+  /**
+   * Not supported, as the executor can only apply statements to one shard.
+   *
+   * @throws OrmException always; use {@link ShardedDatabase#updateSchema()} instead.
+   */
+  @Override
+  public void updateSchema(final StatementExecutor e) throws OrmException {
+    throw new OrmException("Update each shard with ShardedDatabase.updateSchema()");
+  }
+
+  /**
+   * Not supported, as the executor can only apply statements to one shard.
+   *
+   * @throws OrmException always; use {@link ShardedDatabase#pruneSchema()} instead.
+   */
+  @Override
+  public void pruneSchema(final StatementExecutor e) throws OrmException {
+    throw new OrmException("Prune each shard with ShardedDatabase.pruneSchema()");
+  }
+
+  /** Sequences are allocated by the first shard, so their values are unique across shards. */
+  @Override
+  protected long nextLong(final String poolName) throws OrmException {
+    return ((JdbcSchema) shard(0)).nextLong(poolName);
+  }
+
+  @Override
+  public void close() {
+    for (int i = 0; i < shards.size(); i++) {
+      final Schema s = shards.get(i);
+      if (s != null) {
+        s.close();
+        shards.set(i, null);
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Bounded LRU cache of idle {@link PreparedStatement}s for a single connection.
+ *
+ * <p>Statements are keyed by their SQL text. A statement is removed from the cache while it is
+ * borrowed, so two concurrent users of the same SQL (for example, nested iteration over the same
+ * query) each get their own statement. When a statement is released it is put back into the cache,
+ * evicting (and closing) the least recently used idle statement if the cache is full.
+ *
+ * <p>Like the connection it belongs to, a cache is not thread-safe.
+ */
+public class StatementCache {
+  private final int maxSize;
+  private final LinkedHashMap<String, PreparedStatement> idle;
+  private final Map<PreparedStatement, String> borrowed;
+  private long hits;
+  private long misses;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxSize maximum number of idle statements to retain. Must be positive.
+   */
+  @SuppressWarnings("serial")
+  StatementCache(final int maxSize) {
+    this.maxSize = maxSize;
+    this.idle =
+        new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Entry<String, PreparedStatement> entry) {
+            if (StatementCache.this.maxSize < size()) {
+              closeQuietly(entry.getValue());
+              return true;
+            }
+            return false;
+          }
+        };
+    this.borrowed = new IdentityHashMap<>();
+  }
+
+  /**
+   * Borrow a statement for the given SQL, preparing a new one if none is idle.
+   *
+   * @param conn connection to prepare the statement on, if necessary.
+   * @param sql the SQL text of the statement.
+   * @return the statement; must be handed back with {@link #release(PreparedStatement)}.
+   * @throws SQLException the statement cannot be prepared.
+   */
+  PreparedStatement borrow(final Connection conn, final String sql) throws SQLException {
+    PreparedStatement ps = idle.remove(sql);
+    if (ps != null) {
+      hits++;
+    } else {
+      misses++;
+      ps = conn.prepareStatement(sql);
+    }
+    borrowed.put(ps, sql);
+    return ps;
+  }
+
+  /**
+   * Return a statement previously obtained from {@link #borrow(Connection, String)}.
+   *
+   * <p>Statements not borrowed from this cache are closed.
+   *
+   * @param ps the statement to return.
+   */
+  void release(final PreparedStatement ps) {
+    final String sql = borrowed.remove(ps);
+    if (sql == null) {
+      closeQuietly(ps);
+      return;
+    }
+
+    try {
+      ps.clearParameters();
+      ps.clearBatch();
+    } catch (SQLException e) {
+      closeQuietly(ps);
+      return;
+    }
+
+    final PreparedStatement old = idle.put(sql, ps);
+    if (old != null) {
+      // Another copy was released first; keep only the newest one.
+      closeQuietly(old);
+    }
+  }
+
+  /** Close every idle and borrowed statement, and empty the cache. */
+  void clear() {
+    final List<PreparedStatement> all = new ArrayList<>(idle.values());
+    all.addAll(borrowed.keySet());
+    idle.clear();
+    borrowed.clear();
+    for (final PreparedStatement ps : all) {
+      closeQuietly(ps);
+    }
+  }
+
+  /** @return number of idle statements currently held. */
+  public int size() {
+    return idle.size();
+  }
+
+  /** @return number of borrows satisfied by an idle statement. */
+  public long getHitCount() {
+    return hits;
+  }
+
+  /** @return number of borrows that had to prepare a new statement. */
+  public long getMissCount() {
+    return misses;
+  }
+
+  private static void closeQuietly(final PreparedStatement ps) {
+    try {
+      ps.close();
+    } catch (SQLException e) {
+      // Ignored.
+    }
+  }
+}
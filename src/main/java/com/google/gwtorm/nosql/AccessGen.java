@@ -22,7 +22,6 @@ import com.google.gwtorm.schema.KeyModel;
 import com.google.gwtorm.schema.QueryModel;
 import com.google.gwtorm.schema.QueryParser;
 import com.google.gwtorm.schema.RelationModel;
-import com.google.gwtorm.schema.Util;
 import com.google.gwtorm.server.CodeGenSupport;
 import com.google.gwtorm.server.GeneratedClassLoader;
 import com.google.gwtorm.server.OrmException;
@@ -31,9 +30,11 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import org.antlr.runtime.tree.Tree;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -49,6 +50,7 @@ class AccessGen implements Opcodes {
   private static final Type ormException = Type.getType(OrmException.class);
   private static final Type resultSet = Type.getType(ResultSet.class);
   private static final Type indexKeyBuilder = Type.getType(IndexKeyBuilder.class);
+  private static final Type indexKeyReader = Type.getType(IndexKeyReader.class);
 
   private static final String F_OBJECT_CODEC = "objectCodec";
   private static final String F_INDEXES = "indexes";
@@ -101,12 +103,32 @@ class AccessGen implements Opcodes {
 
     implementPrimaryKey();
     implementEncodePrimaryKey();
+    implementDecodePrimaryKey();
     implementKeyQuery(key);
 
+    final List<QueryModel> projections = new ArrayList<>();
     for (final QueryModel q : model.getQueries()) {
-      implementQuery(q);
+      if (q.getProjectionClassName() != null) {
+        implementQuery(q, projections.size());
+        projections.add(q);
+      } else {
+        implementQuery(q, -1);
+      }
+      if (q.isCacheResults()) {
+        CodeGenSupport.implementCachedQuery(cw, implTypeName, q);
+      }
+    }
+    implementQuery(new QueryModel(model, "iterateAllEntities", ""), -1);
+    if (!projections.isEmpty()) {
+      implementProjectRow(projections);
+    }
+    final List<QueryModel> asyncQueries = new ArrayList<>(model.getAsyncQueries());
+    for (int i = 0; i < asyncQueries.size(); i++) {
+      CodeGenSupport.implementAsyncQuery(cw, asyncQueries.get(i), i);
+    }
+    if (!asyncQueries.isEmpty()) {
+      CodeGenSupport.implementRunQuery(cw, implTypeName, asyncQueries);
     }
-    implementQuery(new QueryModel(model, "iterateAllEntities", ""));
 
     cw.visitEnd();
     classLoader.defineClass(implClassName, cw.toByteArray());
@@ -188,7 +210,7 @@ class AccessGen implements Opcodes {
             + "_Access_"
             + model.getMethodName()
             + "_"
-            + Util.createRandomName();
+            + classLoader.newClassNameSuffix();
     implTypeName = implClassName.replace('.', '/');
 
     cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -348,6 +370,184 @@ class AccessGen implements Opcodes {
     mv.visitEnd();
   }
 
+  private void implementDecodePrimaryKey() throws OrmException {
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            "decodePrimaryKey",
+            Type.getMethodDescriptor(ormKey, new Type[] {indexKeyReader}),
+            null,
+            null);
+    mv.visitCode();
+
+    // Decode into an otherwise empty entity, then return its key.
+    newInstance(mv, entityType);
+    mv.visitVarInsn(ASTORE, 2);
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    cgs.setEntityType(entityType);
+    decodeField(mv, cgs, key.getField(), true);
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        implTypeName,
+        "primaryKey",
+        Type.getMethodDescriptor(ormKey, new Type[] {object}));
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /**
+   * Decode a field written by {@link IndexFunctionGen#encodeField}, from the reader in variable 1.
+   *
+   * @return false, as the field has been read.
+   */
+  private static boolean decodeField(
+      final MethodVisitor mv, final CodeGenSupport cgs, final ColumnModel f, boolean first)
+      throws OrmException {
+    if (f.isNested()) {
+      cgs.setFieldReference(f);
+      cgs.fieldSetBegin();
+      newInstance(mv, CodeGenSupport.toType(f));
+      cgs.fieldSetEnd();
+      for (final ColumnModel c : f.getNestedColumns()) {
+        first = decodeField(mv, cgs, c, first);
+      }
+      return first;
+    }
+
+    if (!first) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          indexKeyReader.getInternalName(),
+          "delimiter",
+          Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {}));
+    }
+
+    cgs.setFieldReference(f);
+    cgs.fieldSetBegin();
+    final Class<?> type = f.getPrimitiveType();
+    switch (Type.getType(type).getSort()) {
+      case Type.BOOLEAN:
+      case Type.BYTE:
+      case Type.SHORT:
+      case Type.CHAR:
+      case Type.INT:
+        readValue(mv, "readLong", Type.LONG_TYPE);
+        mv.visitInsn(L2I);
+        if (type == Byte.TYPE) {
+          mv.visitInsn(I2B);
+        } else if (type == Short.TYPE) {
+          mv.visitInsn(I2S);
+        } else if (type == Character.TYPE) {
+          mv.visitInsn(I2C);
+        }
+        break;
+
+      case Type.LONG:
+        readValue(mv, "readLong", Type.LONG_TYPE);
+        break;
+
+      default:
+        if (type == byte[].class) {
+          readValue(mv, "readBytes", byteArray);
+        } else if (type == String.class) {
+          readValue(mv, "readString", string);
+        } else if (type == java.sql.Timestamp.class
+            || type == java.util.Date.class
+            || type == java.sql.Date.class) {
+          final Type tsType = Type.getType(type);
+          mv.visitTypeInsn(NEW, tsType.getInternalName());
+          mv.visitInsn(DUP);
+          readValue(mv, "readLong", Type.LONG_TYPE);
+          mv.visitMethodInsn(
+              INVOKESPECIAL,
+              tsType.getInternalName(),
+              "<init>",
+              Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {Type.LONG_TYPE}));
+        } else {
+          throw new OrmException(
+              "Type " + type + " not supported for field " + f.getPathToFieldName());
+        }
+        break;
+    }
+    cgs.fieldSetEnd();
+    return false;
+  }
+
+  private static void readValue(final MethodVisitor mv, final String method, final Type type) {
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        indexKeyReader.getInternalName(),
+        method,
+        Type.getMethodDescriptor(type, new Type[] {}));
+  }
+
+  private static void newInstance(final MethodVisitor mv, final Type type) {
+    mv.visitTypeInsn(NEW, type.getInternalName());
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(
+        INVOKESPECIAL,
+        type.getInternalName(),
+        "<init>",
+        Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {}));
+  }
+
+  /**
+   * Implement projectRow, copying objects into the types returned by projection queries.
+   *
+   * @param queries the queries, numbered by their position.
+   */
+  private void implementProjectRow(final List<QueryModel> queries) {
+    final String desc = Type.getMethodDescriptor(object, new Type[] {Type.INT_TYPE, object});
+    final MethodVisitor mv =
+        cw.visitMethod(ACC_PROTECTED | ACC_FINAL, "projectRow", desc, null, null);
+    mv.visitCode();
+
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    for (int i = 0; i < queries.size(); i++) {
+      final QueryModel info = queries.get(i);
+      final Type pType = Type.getObjectType(info.getProjectionClassName().replace('.', '/'));
+      final Label next = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      cgs.push(i);
+      mv.visitJumpInsn(IF_ICMPNE, next);
+
+      newInstance(mv, pType);
+      mv.visitVarInsn(ASTORE, 3);
+      for (final ColumnModel f : info.getProjectionFields()) {
+        ColumnModel e = null;
+        for (final ColumnModel c : model.getFields()) {
+          if (c.getColumnID() == f.getColumnID()) {
+            e = c;
+            break;
+          }
+        }
+        final String fType = CodeGenSupport.toType(f).getDescriptor();
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitTypeInsn(CHECKCAST, entityType.getInternalName());
+        mv.visitFieldInsn(GETFIELD, entityType.getInternalName(), e.getFieldName(), fType);
+        mv.visitFieldInsn(PUTFIELD, pType.getInternalName(), f.getFieldName(), fType);
+      }
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(next);
+    }
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKESPECIAL, accessType.getInternalName(), "projectRow", desc);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
   private void implementKeyQuery(KeyModel key) {
     final Type keyType = CodeGenSupport.toType(key.getField());
     final MethodVisitor mv =
@@ -373,90 +573,134 @@ class AccessGen implements Opcodes {
     mv.visitEnd();
   }
 
-  private void implementQuery(final QueryModel info) throws OrmException {
+  /**
+   * @param info the query.
+   * @param projection number of the query for projectRow if it returns a projection; -1 if it
+   *     does not.
+   */
+  private void implementQuery(final QueryModel info, final int projection)
+      throws OrmException {
     final List<ColumnModel> pCols = info.getParameters();
     final boolean hasLimitParam = info.hasLimitParameter();
-    final Type[] pTypes = new Type[pCols.size() + (hasLimitParam ? 1 : 0)];
+    final Type[] pTypes = CodeGenSupport.parameterTypes(info);
     final int[] pVars = new int[pTypes.length];
     int nextVar = 1;
-    for (int i = 0; i < pCols.size(); i++) {
-      pTypes[i] = CodeGenSupport.toType(pCols.get(i));
+    for (int i = 0; i < pTypes.length; i++) {
       pVars[i] = nextVar;
       nextVar += pTypes[i].getSize();
     }
-    if (hasLimitParam) {
-      pTypes[pTypes.length - 1] = Type.INT_TYPE;
-      pVars[pTypes.length - 1] = nextVar;
-      nextVar += Type.INT_TYPE.getSize();
-    }
+    final int inParam = inParameter(info);
 
+    final Class<?> countType = info.getCountType();
+    final boolean keysOnly = info.isReturnsKeys() || countType != null;
     final MethodVisitor mv =
         cw.visitMethod(
             ACC_PUBLIC | ACC_FINAL,
-            info.getName(),
-            Type.getMethodDescriptor(resultSet, pTypes),
+            CodeGenSupport.uncachedQueryName(info),
+            Type.getMethodDescriptor(
+                countType != null ? Type.getType(countType) : resultSet, pTypes),
             null,
             new String[] {ormException.getInternalName()});
     mv.visitCode();
 
     final List<Tree> ops = compareOpsOnly(info.getParseTree());
-
-    // Generate fromKey
-    //
     final int fromBuf = nextVar++;
-    mv.visitTypeInsn(NEW, indexKeyBuilder.getInternalName());
-    mv.visitInsn(DUP);
-    mv.visitMethodInsn(
-        INVOKESPECIAL,
-        indexKeyBuilder.getInternalName(),
-        "<init>",
-        Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {}));
-    mv.visitVarInsn(ASTORE, fromBuf);
-
-    QueryCGS cgs = new QueryCGS(mv, pTypes, pCols, pVars, fromBuf);
-    encodeFields(info, ops, mv, cgs, true /* fromKey */);
-
-    // Generate toKey
-    //
     final int toBuf = nextVar++;
-    mv.visitTypeInsn(NEW, indexKeyBuilder.getInternalName());
-    mv.visitInsn(DUP);
-    mv.visitMethodInsn(
-        INVOKESPECIAL,
-        indexKeyBuilder.getInternalName(),
-        "<init>",
-        Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {}));
-    mv.visitVarInsn(ASTORE, toBuf);
-
-    cgs = new QueryCGS(mv, pTypes, pCols, pVars, toBuf);
-    encodeFields(info, ops, mv, cgs, false /* fromKey */);
-    cgs.infinity();
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    final Type keyType;
+    final int fromKeys;
+    final int toKeys;
+    if (inParam < 0) {
+      encodeKeys(info, ops, mv, pTypes, pVars, fromBuf, toBuf);
+      keyType = byteArray;
+      fromKeys = fromBuf;
+      toKeys = toBuf;
+    } else {
+      // Scan one range of the index for each value tested with IN.
+      //
+      keyType = Type.getType(List.class);
+      fromKeys = nextVar++;
+      toKeys = nextVar++;
+      final int itrVar = nextVar++;
+      final int elemVar = nextVar;
+      final Type elemType = CodeGenSupport.toType(pCols.get(inParam));
+      final Type[] eTypes = pTypes.clone();
+      final int[] eVars = pVars.clone();
+      eTypes[inParam] = elemType;
+      eVars[inParam] = elemVar;
+
+      newInstance(mv, Type.getType(ArrayList.class));
+      mv.visitVarInsn(ASTORE, fromKeys);
+      newInstance(mv, Type.getType(ArrayList.class));
+      mv.visitVarInsn(ASTORE, toKeys);
+      mv.visitVarInsn(ALOAD, pVars[inParam]);
+      mv.visitMethodInsn(
+          INVOKEINTERFACE,
+          Type.getInternalName(Collection.class),
+          "iterator",
+          Type.getMethodDescriptor(Type.getType(Iterator.class), new Type[] {}));
+      mv.visitVarInsn(ASTORE, itrVar);
+
+      final Label again = new Label();
+      final Label done = new Label();
+      mv.visitLabel(again);
+      mv.visitVarInsn(ALOAD, itrVar);
+      mv.visitMethodInsn(
+          INVOKEINTERFACE,
+          Type.getInternalName(Iterator.class),
+          "hasNext",
+          Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[] {}));
+      mv.visitJumpInsn(IFEQ, done);
+      mv.visitVarInsn(ALOAD, itrVar);
+      mv.visitMethodInsn(
+          INVOKEINTERFACE,
+          Type.getInternalName(Iterator.class),
+          "next",
+          Type.getMethodDescriptor(object, new Type[] {}));
+      CodeGenSupport.unbox(mv, elemType);
+      mv.visitVarInsn(elemType.getOpcode(ISTORE), elemVar);
+
+      encodeKeys(info, ops, mv, eTypes, eVars, fromBuf, toBuf);
+      addKey(mv, fromKeys, fromBuf);
+      addKey(mv, toKeys, toBuf);
+      mv.visitJumpInsn(GOTO, again);
+      mv.visitLabel(done);
+    }
 
     // Make the scan call
     //
+    if (0 <= projection || countType != null) {
+      mv.visitVarInsn(ALOAD, 0);
+    }
     mv.visitVarInsn(ALOAD, 0);
     if (needsIndexFunction(info)) {
       mv.visitFieldInsn(
           GETSTATIC, implTypeName, "index_" + info.getName(), indexFunction.getDescriptor());
     }
 
-    mv.visitVarInsn(ALOAD, fromBuf);
-    mv.visitMethodInsn(
-        INVOKEVIRTUAL,
-        indexKeyBuilder.getInternalName(),
-        "toByteArray",
-        Type.getMethodDescriptor(byteArray, new Type[] {}));
+    mv.visitVarInsn(ALOAD, fromKeys);
+    if (inParam < 0) {
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          indexKeyBuilder.getInternalName(),
+          "toByteArray",
+          Type.getMethodDescriptor(byteArray, new Type[] {}));
+    }
 
-    mv.visitVarInsn(ALOAD, toBuf);
-    mv.visitMethodInsn(
-        INVOKEVIRTUAL,
-        indexKeyBuilder.getInternalName(),
-        "toByteArray",
-        Type.getMethodDescriptor(byteArray, new Type[] {}));
+    mv.visitVarInsn(ALOAD, toKeys);
+    if (inParam < 0) {
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          indexKeyBuilder.getInternalName(),
+          "toByteArray",
+          Type.getMethodDescriptor(byteArray, new Type[] {}));
+    }
 
     // Set the limit on the number of results.
     //
-    if (info.hasLimit()) {
+    if (countType == Boolean.TYPE) {
+      cgs.push(1);
+    } else if (info.hasLimit()) {
       if (hasLimitParam) {
         mv.visitVarInsn(ILOAD, pVars[pTypes.length - 1]);
       } else {
@@ -474,26 +718,137 @@ class AccessGen implements Opcodes {
       mv.visitMethodInsn(
           INVOKEVIRTUAL,
           accessType.getInternalName(),
-          "scanIndex",
+          keysOnly ? "scanIndexKeys" : "scanIndex",
           Type.getMethodDescriptor(
               resultSet,
-              new Type[] {indexFunction, byteArray, byteArray, Type.INT_TYPE, Type.BOOLEAN_TYPE}));
+              new Type[] {indexFunction, keyType, keyType, Type.INT_TYPE, Type.BOOLEAN_TYPE}));
     } else {
       // No where and no order by clause? Use the primary key instead.
       //
       mv.visitMethodInsn(
           INVOKEVIRTUAL,
           accessType.getInternalName(),
-          "scanPrimaryKey",
+          keysOnly ? "scanPrimaryKeyKeys" : "scanPrimaryKey",
           Type.getMethodDescriptor(
               resultSet, new Type[] {byteArray, byteArray, Type.INT_TYPE, Type.BOOLEAN_TYPE}));
     }
 
+    if (0 <= projection) {
+      cgs.push(projection);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          accessType.getInternalName(),
+          "project",
+          Type.getMethodDescriptor(resultSet, new Type[] {resultSet, Type.INT_TYPE}));
+    } else if (countType != null) {
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL,
+          accessType.getInternalName(),
+          "count",
+          Type.getMethodDescriptor(Type.LONG_TYPE, new Type[] {resultSet}));
+      if (countType == Boolean.TYPE) {
+        mv.visitInsn(LCONST_0);
+        mv.visitInsn(LCMP);
+        mv.visitInsn(IRETURN);
+      } else if (countType == Integer.TYPE) {
+        mv.visitInsn(L2I);
+        mv.visitInsn(IRETURN);
+      } else {
+        mv.visitInsn(LRETURN);
+      }
+      mv.visitMaxs(-1, -1);
+      mv.visitEnd();
+      return;
+    }
+
     mv.visitInsn(ARETURN);
     mv.visitMaxs(-1, -1);
     mv.visitEnd();
   }
 
+  /**
+   * @return position of the only parameter of the query tested with {@code IN}; -1 if there is
+   *     none.
+   * @throws OrmException there are several, or the results would not be in the requested order.
+   */
+  private int inParameter(final QueryModel info) throws OrmException {
+    final List<ColumnModel> inCols = info.getInParameters();
+    int r = -1;
+    for (int i = 0; i < inCols.size(); i++) {
+      if (inCols.get(i) != null) {
+        if (0 <= r) {
+          throw new OrmException(
+              "Query " + model.getMethodName() + "." + info.getName() + " has many IN parameters");
+        }
+        r = i;
+      }
+    }
+
+    // Ranges are scanned one after the other, which keeps the order of
+    // the index only if the IN column sorts the results first.
+    //
+    if (0 <= r && info.hasOrderBy()) {
+      final ColumnModel c = info.getOrderBy().get(0).column;
+      if (!c.equals(inCols.get(r)) || info.getOrderBy().get(0).descending) {
+        throw new OrmException(
+            "Query "
+                + model.getMethodName()
+                + "."
+                + info.getName()
+                + " must ORDER BY "
+                + inCols.get(r).getPathToFieldName()
+                + " first");
+      }
+    }
+    return r;
+  }
+
+  /** Encode the bounds of the index range matching a query into two new key builders. */
+  private void encodeKeys(
+      final QueryModel info,
+      final List<Tree> ops,
+      final MethodVisitor mv,
+      final Type[] pTypes,
+      final int[] pVars,
+      final int fromBuf,
+      final int toBuf)
+      throws OrmException {
+    final List<ColumnModel> pCols = info.getParameters();
+
+    // Generate fromKey
+    //
+    newInstance(mv, indexKeyBuilder);
+    mv.visitVarInsn(ASTORE, fromBuf);
+
+    QueryCGS cgs = new QueryCGS(mv, pTypes, pCols, pVars, fromBuf);
+    encodeFields(info, ops, mv, cgs, true /* fromKey */);
+
+    // Generate toKey
+    //
+    newInstance(mv, indexKeyBuilder);
+    mv.visitVarInsn(ASTORE, toBuf);
+
+    cgs = new QueryCGS(mv, pTypes, pCols, pVars, toBuf);
+    encodeFields(info, ops, mv, cgs, false /* fromKey */);
+    cgs.infinity();
+  }
+
+  private static void addKey(final MethodVisitor mv, final int listVar, final int bufVar) {
+    mv.visitVarInsn(ALOAD, listVar);
+    mv.visitVarInsn(ALOAD, bufVar);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        indexKeyBuilder.getInternalName(),
+        "toByteArray",
+        Type.getMethodDescriptor(byteArray, new Type[] {}));
+    mv.visitMethodInsn(
+        INVOKEINTERFACE,
+        Type.getInternalName(List.class),
+        "add",
+        Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[] {object}));
+    mv.visitInsn(POP);
+  }
+
   private boolean needsIndexFunction(final QueryModel info) {
     return info.hasWhere() || info.hasOrderBy();
   }
@@ -526,6 +881,7 @@ class AccessGen implements Opcodes {
           break;
 
         case QueryParser.EQ:
+        case QueryParser.IN:
           checkLastNode(qm, lastNode);
           encodeField(node, mv, cgs);
           cgs.delimiter();
@@ -600,6 +956,7 @@ class AccessGen implements Opcodes {
       case QueryParser.GT:
       case QueryParser.GE:
       case QueryParser.EQ:
+      case QueryParser.IN:
       case QueryParser.LE:
       case QueryParser.LT:
         {
@@ -17,7 +17,6 @@ package com.google.gwtorm.nosql;
 import com.google.gwtorm.schema.ColumnModel;
 import com.google.gwtorm.schema.QueryModel;
 import com.google.gwtorm.schema.QueryParser;
-import com.google.gwtorm.schema.Util;
 import com.google.gwtorm.server.CodeGenSupport;
 import com.google.gwtorm.server.GeneratedClassLoader;
 import com.google.gwtorm.server.OrmException;
@@ -145,7 +144,11 @@ class IndexFunctionGen<T> implements Opcodes {
   private void init() {
     superTypeName = Type.getInternalName(IndexFunction.class);
     implClassName =
-        pojo.getName() + "_IndexFunction_" + query.getName() + "_" + Util.createRandomName();
+        pojo.getName()
+            + "_IndexFunction_"
+            + query.getName()
+            + "_"
+            + classLoader.newClassNameSuffix();
     implTypeName = implClassName.replace('.', '/');
 
     cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -299,6 +302,7 @@ class IndexFunctionGen<T> implements Opcodes {
         // These don't impact the constant evaluation
       case QueryParser.ORDER:
       case QueryParser.LIMIT:
+      case QueryParser.IN:
         break;
 
       case 0: // nil node used to join other nodes together
@@ -0,0 +1,92 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.nosql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Decoder for strings built by {@link IndexKeyBuilder} in ascending order.
+ *
+ * <p>Callers must read the values, and skip the {@link #delimiter()} markers, in the same order
+ * they were added to the builder.
+ */
+public class IndexKeyReader {
+  private final byte[] buf;
+  private int pos;
+
+  /** @param bin the encoded string. */
+  public IndexKeyReader(final byte[] bin) {
+    this(bin, 0);
+  }
+
+  /**
+   * @param bin array holding the encoded string.
+   * @param start position of the encoded string within {@code bin}; it runs to the end.
+   */
+  public IndexKeyReader(final byte[] bin, final int start) {
+    buf = bin;
+    pos = start;
+  }
+
+  /**
+   * Skip a delimiter marker.
+   *
+   * @throws IllegalStateException the next token is not a delimiter.
+   */
+  public void delimiter() {
+    if (buf.length < pos + 2 || buf[pos] != 0x00 || buf[pos + 1] != 0x01) {
+      throw new IllegalStateException("Expected delimiter at " + pos);
+    }
+    pos += 2;
+  }
+
+  /** @return the next integer value. */
+  public long readLong() {
+    final int n = buf[pos++] & 0xff;
+    long val = 0;
+    for (int i = 0; i < n; i++) {
+      val = (val << 8) | (buf[pos++] & 0xff);
+    }
+    return val;
+  }
+
+  /** @return the next byte array; it ends at the next delimiter or at the end of the string. */
+  public byte[] readBytes() {
+    final ByteArrayOutputStream r = new ByteArrayOutputStream();
+    while (pos < buf.length) {
+      final byte b = buf[pos];
+      if (b == 0x00 && pos + 1 < buf.length && buf[pos + 1] == 0x01) {
+        break;
+      } else if ((b == 0x00 || b == -1) && pos + 1 < buf.length) {
+        r.write(b);
+        pos += 2;
+      } else {
+        r.write(b);
+        pos++;
+      }
+    }
+    return r.toByteArray();
+  }
+
+  /** @return the next string; it ends at the next delimiter or at the end of the string. */
+  public String readString() {
+    try {
+      return new String(readBytes(), "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException("JVM does not support UTF-8", e);
+    }
+  }
+}
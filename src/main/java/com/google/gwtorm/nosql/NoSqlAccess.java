@@ -14,16 +14,52 @@
 
 package com.google.gwtorm.nosql;
 
+import com.google.common.primitives.UnsignedBytes;
 import com.google.gwtorm.client.Key;
 import com.google.gwtorm.protobuf.ProtobufCodec;
 import com.google.gwtorm.server.AbstractAccess;
+import com.google.gwtorm.server.AbstractResultSet;
 import com.google.gwtorm.server.Access;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.IdentityMap;
+import com.google.gwtorm.server.ListResultSet;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.QueryCache;
 import com.google.gwtorm.server.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
 
 /** Internal base class for implementations of {@link Access}. */
 public abstract class NoSqlAccess<T, K extends Key<?>> extends AbstractAccess<T, K> {
-  protected NoSqlAccess(final NoSqlSchema s) {}
+  private final NoSqlSchema schema;
+
+  protected NoSqlAccess(final NoSqlSchema s) {
+    schema = s;
+  }
+
+  @Override
+  protected AsyncAccessExecutor getAsyncExecutor() {
+    return schema != null ? schema.getAsyncExecutor() : null;
+  }
+
+  @Override
+  protected IdentityMap getIdentityMap() {
+    return schema != null ? schema.getIdentityMap() : null;
+  }
+
+  @Override
+  protected EntityCache getEntityCache() {
+    return schema != null ? schema.getEntityCache() : null;
+  }
+
+  @Override
+  protected QueryCache getQueryCache() {
+    return schema != null ? schema.getQueryCache() : null;
+  }
 
   /**
    * Scan a range of keys from the data rows and return any matching objects.
@@ -69,6 +105,197 @@ public abstract class NoSqlAccess<T, K extends Key<?>> extends AbstractAccess<T,
       IndexFunction<T> index, byte[] fromKey, byte[] toKey, int limit, boolean order)
       throws OrmException;
 
+  /**
+   * Scan a range of keys from the data rows and return the primary keys of any matching objects.
+   *
+   * <p>The default implementation returns the keys of the objects found by {@link
+   * #scanPrimaryKey(byte[], byte[], int, boolean)}. Implementations may instead decode the keys
+   * from the row keys, without decoding the objects.
+   *
+   * @param fromKey key to start the scan on. This is inclusive.
+   * @param toKey key to stop the scan on. This is exclusive.
+   * @param limit maximum number of results to return, 0 for unlimited.
+   * @param order if true the order will be preserved, false if the result order order can be
+   *     arbitrary.
+   * @return result set for the requested range.
+   * @throws OrmException an error occurred preventing the scan from completing.
+   */
+  protected ResultSet<K> scanPrimaryKeyKeys(
+      byte[] fromKey, byte[] toKey, int limit, boolean order) throws OrmException {
+    return keysOf(scanPrimaryKey(fromKey, toKey, limit, order));
+  }
+
+  /**
+   * Scan a range of keys of an index and return the primary keys of any matching objects.
+   *
+   * <p>The default implementation returns the keys of the objects found by {@link
+   * #scanIndex(IndexFunction, byte[], byte[], int, boolean)}. Implementations may instead answer
+   * from the index rows alone, without reading the data rows.
+   *
+   * @param index definition of the index the scan occurs over.
+   * @param fromKey key to start the scan on. This is inclusive.
+   * @param toKey key to stop the scan on. This is exclusive.
+   * @param limit maximum number of results to return, 0 for unlimited.
+   * @param order if true the order will be preserved, false if the result order order can be
+   *     arbitrary.
+   * @return result set for the requested range.
+   * @throws OrmException an error occurred preventing the scan from completing.
+   */
+  protected ResultSet<K> scanIndexKeys(
+      IndexFunction<T> index, byte[] fromKey, byte[] toKey, int limit, boolean order)
+      throws OrmException {
+    return keysOf(scanIndex(index, fromKey, toKey, limit, order));
+  }
+
+  /**
+   * Scan several ranges of keys of an index and return any matching objects.
+   *
+   * <p>Used by queries testing a parameter with {@code IN}, which match one range per value. The
+   * ranges must not overlap; they are scanned in ascending order of their start keys, so results
+   * are in the order of the index. Ranges starting at the same key are scanned once.
+   *
+   * <p>The default implementation scans each range with {@link #scanIndex(IndexFunction, byte[],
+   * byte[], int, boolean)} until {@code limit} results are found.
+   *
+   * @param index definition of the index the scan occurs over.
+   * @param fromKeys keys to start the scans on. These are inclusive.
+   * @param toKeys keys to stop the scans on, parallel to {@code fromKeys}. These are exclusive.
+   * @param limit maximum number of results to return, 0 for unlimited.
+   * @param order if true the order will be preserved, false if the result order order can be
+   *     arbitrary.
+   * @return result set for the requested ranges.
+   * @throws OrmException an error occurred preventing a scan from completing.
+   */
+  protected ResultSet<T> scanIndex(
+      IndexFunction<T> index, List<byte[]> fromKeys, List<byte[]> toKeys, int limit, boolean order)
+      throws OrmException {
+    final List<T> r = new ArrayList<>();
+    for (final int i : distinctRanges(fromKeys)) {
+      final int n = 0 < limit ? limit - r.size() : 0;
+      r.addAll(scanIndex(index, fromKeys.get(i), toKeys.get(i), n, order).toList());
+      if (0 < limit && r.size() == limit) {
+        break;
+      }
+    }
+    return new ListResultSet<>(r);
+  }
+
+  /**
+   * Scan several ranges of keys of an index and return the primary keys of any matching objects.
+   *
+   * <p>The ranges are scanned as by {@link #scanIndex(IndexFunction, List, List, int, boolean)},
+   * each with {@link #scanIndexKeys(IndexFunction, byte[], byte[], int, boolean)}.
+   *
+   * @param index definition of the index the scan occurs over.
+   * @param fromKeys keys to start the scans on. These are inclusive.
+   * @param toKeys keys to stop the scans on, parallel to {@code fromKeys}. These are exclusive.
+   * @param limit maximum number of results to return, 0 for unlimited.
+   * @param order if true the order will be preserved, false if the result order order can be
+   *     arbitrary.
+   * @return result set for the requested ranges.
+   * @throws OrmException an error occurred preventing a scan from completing.
+   */
+  protected ResultSet<K> scanIndexKeys(
+      IndexFunction<T> index, List<byte[]> fromKeys, List<byte[]> toKeys, int limit, boolean order)
+      throws OrmException {
+    final List<K> r = new ArrayList<>();
+    for (final int i : distinctRanges(fromKeys)) {
+      final int n = 0 < limit ? limit - r.size() : 0;
+      r.addAll(scanIndexKeys(index, fromKeys.get(i), toKeys.get(i), n, order).toList());
+      if (0 < limit && r.size() == limit) {
+        break;
+      }
+    }
+    return new ListResultSet<>(r);
+  }
+
+  /** @return positions of the distinct start keys, in ascending order of the keys. */
+  private static Collection<Integer> distinctRanges(final List<byte[]> fromKeys) {
+    final TreeMap<byte[], Integer> r = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+    for (int i = 0; i < fromKeys.size(); i++) {
+      if (!r.containsKey(fromKeys.get(i))) {
+        r.put(fromKeys.get(i), i);
+      }
+    }
+    return r.values();
+  }
+
+  /**
+   * @param rs objects of this relation.
+   * @return the primary keys of the objects, in the same order.
+   */
+  protected ResultSet<K> keysOf(final ResultSet<T> rs) {
+    final Iterator<T> i = rs.iterator();
+    return new AbstractResultSet<K>() {
+      @Override
+      protected boolean hasNext() {
+        return i.hasNext();
+      }
+
+      @Override
+      protected K next() {
+        return primaryKey(i.next());
+      }
+
+      @Override
+      public void close() {
+        rs.close();
+      }
+    };
+  }
+
+  /**
+   * @param rs results to count; closed by this method.
+   * @return number of results.
+   */
+  protected long count(final ResultSet<?> rs) {
+    long n = 0;
+    try {
+      for (final Iterator<?> i = rs.iterator(); i.hasNext(); i.next()) {
+        n++;
+      }
+    } finally {
+      rs.close();
+    }
+    return n;
+  }
+
+  /**
+   * @param rs objects of this relation.
+   * @param query number of the query, passed to {@link #projectRow(int, Object)}.
+   * @return the projections of the objects, in the same order.
+   */
+  protected ResultSet<Object> project(final ResultSet<T> rs, final int query) {
+    final Iterator<T> i = rs.iterator();
+    return new AbstractResultSet<Object>() {
+      @Override
+      protected boolean hasNext() {
+        return i.hasNext();
+      }
+
+      @Override
+      protected Object next() {
+        return projectRow(query, i.next());
+      }
+
+      @Override
+      public void close() {
+        rs.close();
+      }
+    };
+  }
+
+  /**
+   * Copy an object into the projection type returned by a query.
+   *
+   * @param query number of the query, as given to {@link #project(ResultSet, int)}.
+   * @param obj the object.
+   * @return the projection of the object.
+   */
+  protected Object projectRow(final int query, final T obj) {
+    throw new UnsupportedOperationException("Query " + query + " of " + getRelationName());
+  }
+
   // -- These are all provided by AccessGen when it builds a subclass --
 
   /** @return encoder/decoder for the object data. */
@@ -91,4 +318,12 @@ public abstract class NoSqlAccess<T, K extends Key<?>> extends AbstractAccess<T,
    * @param key the object primary key.
    */
   protected abstract void encodePrimaryKey(IndexKeyBuilder dst, K key);
+
+  /**
+   * Decode a primary key encoded by {@link #encodePrimaryKey(IndexKeyBuilder, Key)}.
+   *
+   * @param src reader positioned at the start of the encoded key.
+   * @return the key.
+   */
+  protected abstract K decodePrimaryKey(IndexKeyReader src);
 }
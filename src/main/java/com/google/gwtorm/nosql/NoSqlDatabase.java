@@ -18,12 +18,19 @@ import com.google.gwtorm.client.KeyUtil;
 import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.schema.SchemaModel;
 import com.google.gwtorm.schema.java.JavaSchemaModel;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.EntityCacheConfig;
+import com.google.gwtorm.server.GeneratedClassCache;
 import com.google.gwtorm.server.GeneratedClassLoader;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.QueryCache;
 import com.google.gwtorm.server.Schema;
 import com.google.gwtorm.server.SchemaConstructorGen;
 import com.google.gwtorm.server.SchemaFactory;
 import com.google.gwtorm.server.SchemaGen;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
  * Base class for NoSQL typed databases.
@@ -51,6 +58,10 @@ public abstract class NoSqlDatabase<T extends Schema, S extends NoSqlSchema, A e
 
   private final SchemaModel schemaModel;
   private final SchemaFactory<T> implFactory;
+  private volatile AsyncAccessExecutor asyncExecutor;
+  private volatile boolean identityMapEnabled;
+  private final EntityCache entityCache = new EntityCache();
+  private volatile QueryCache queryCache = new QueryCache(entityCache, 1000);
 
   /**
    * Initialize a new database and generate the implementation.
@@ -68,9 +79,21 @@ public abstract class NoSqlDatabase<T extends Schema, S extends NoSqlSchema, A e
       final Class<S> schemaBaseType, final Class<A> accessBaseType, final Class<T> appSchema)
       throws OrmException {
     schemaModel = new JavaSchemaModel(appSchema);
-    final GeneratedClassLoader loader = newLoader(appSchema);
-    final Class<T> impl = generate(schemaBaseType, accessBaseType, loader);
-    implFactory = new SchemaConstructorGen<>(loader, impl, this).create();
+    final Class<?> factoryClass =
+        GeneratedClassCache.get(
+            appSchema,
+            Arrays.<Class<?>>asList(getClass(), schemaBaseType, accessBaseType),
+            new GeneratedClassCache.Generator() {
+              @Override
+              public Class<?> generate() throws OrmException {
+                final GeneratedClassLoader loader = newLoader(appSchema);
+                final Class<T> impl =
+                    NoSqlDatabase.this.generate(schemaBaseType, accessBaseType, loader);
+                return new SchemaConstructorGen<>(loader, impl, NoSqlDatabase.this.getClass())
+                    .createClass();
+              }
+            });
+    implFactory = SchemaConstructorGen.newInstance(factoryClass, this);
   }
 
   @Override
@@ -78,6 +101,77 @@ public abstract class NoSqlDatabase<T extends Schema, S extends NoSqlSchema, A e
     return implFactory.open();
   }
 
+  /**
+   * Keep an identity map in each Schema opened from now on.
+   *
+   * <p>With the map, repeated lookups of the same primary key within a Schema return the instance
+   * loaded or written first, without reading the data store again.
+   *
+   * @param enabled true to give each Schema an identity map; false (the default) to disable it.
+   * @see NoSqlSchema#getIdentityMap()
+   */
+  public void setIdentityMapEnabled(final boolean enabled) {
+    identityMapEnabled = enabled;
+  }
+
+  /** @return true if each Schema keeps an identity map. */
+  public boolean isIdentityMapEnabled() {
+    return identityMapEnabled;
+  }
+
+  /**
+   * Cache a relation in memory, shared by all Schemas of this database.
+   *
+   * <p>Primary key lookups on the relation are answered from the cache when possible. Writes
+   * through any Schema of this database invalidate the written entities. Writes made by other
+   * processes are only picked up once the cached entity expires.
+   *
+   * @param relationName name of the relation.
+   * @param config how to cache the relation; null to stop caching it.
+   */
+  public void setEntityCache(final String relationName, final EntityCacheConfig config) {
+    entityCache.configure(relationName, config);
+  }
+
+  /** @return the cache shared by all Schemas of this database, for statistics. */
+  public EntityCache getEntityCache() {
+    return entityCache;
+  }
+
+  /**
+   * Limit the number of results held for queries declared with {@code cacheResults = true}.
+   *
+   * <p>Changing the size discards all cached results.
+   *
+   * @param maxResults maximum number of query results held (default 1000); 0 disables caching.
+   */
+  public void setQueryCacheSize(final int maxResults) {
+    queryCache = 0 < maxResults ? new QueryCache(entityCache, maxResults) : null;
+  }
+
+  /** @return the query result cache shared by all Schemas; null if disabled. */
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * Run asynchronous access methods on an executor.
+   *
+   * <p>Once set, {@code getAsync} and the {@code Async} variants of query methods open a Schema
+   * of their own on the executor. {@link AsyncAccessExecutor#newDefaultExecutor(int)} creates a
+   * suitable executor.
+   *
+   * @param executor executor to run calls on; null runs them on the calling thread (the default).
+   */
+  public void setAsyncExecutor(final Executor executor) {
+    asyncExecutor = executor != null ? new AsyncAccessExecutor(this, executor) : null;
+  }
+
+  /** @return executor for asynchronous access methods; null if they run on the calling thread. */
+  public AsyncAccessExecutor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
   /** @return the derived model of the application's schema. */
   public SchemaModel getSchemaModel() {
     return schemaModel;
@@ -15,13 +15,49 @@
 package com.google.gwtorm.nosql;
 
 import com.google.gwtorm.server.AbstractSchema;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.IdentityMap;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.QueryCache;
 import com.google.gwtorm.server.Schema;
 import com.google.gwtorm.server.StatementExecutor;
 
 /** Internal base class for implementations of {@link Schema}. */
 public abstract class NoSqlSchema extends AbstractSchema {
-  protected NoSqlSchema(final NoSqlDatabase<?, ?, ?> d) {}
+  private final NoSqlDatabase<?, ?, ?> dbDef;
+  private final IdentityMap identityMap;
+
+  protected NoSqlSchema(final NoSqlDatabase<?, ?, ?> d) {
+    dbDef = d;
+    identityMap = d != null && d.isIdentityMapEnabled() ? new IdentityMap() : null;
+  }
+
+  /** @return the identity map of this schema; null if the identity map is disabled. */
+  public final IdentityMap getIdentityMap() {
+    return identityMap;
+  }
+
+  @Override
+  public void rollback() throws OrmException {
+    if (identityMap != null) {
+      identityMap.clear();
+    }
+  }
+
+  /** @return cache shared by all schemas of the database. */
+  EntityCache getEntityCache() {
+    return dbDef != null ? dbDef.getEntityCache() : null;
+  }
+
+  QueryCache getQueryCache() {
+    return dbDef != null ? dbDef.getQueryCache() : null;
+  }
+
+  /** @return executor for asynchronous access methods; null if they run synchronously. */
+  AsyncAccessExecutor getAsyncExecutor() {
+    return dbDef != null ? dbDef.getAsyncExecutor() : null;
+  }
 
   @Override
   public void pruneSchema(StatementExecutor e) throws OrmException {
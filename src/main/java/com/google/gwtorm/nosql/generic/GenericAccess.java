@@ -17,6 +17,7 @@ package com.google.gwtorm.nosql.generic;
 import com.google.gwtorm.client.Key;
 import com.google.gwtorm.nosql.IndexFunction;
 import com.google.gwtorm.nosql.IndexKeyBuilder;
+import com.google.gwtorm.nosql.IndexKeyReader;
 import com.google.gwtorm.nosql.IndexRow;
 import com.google.gwtorm.nosql.NoSqlAccess;
 import com.google.gwtorm.server.AbstractResultSet;
@@ -30,7 +31,10 @@ import com.google.gwtorm.server.ResultSet;
 import com.google.protobuf.ByteString;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -73,11 +77,16 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
    */
   @Override
   public T get(K key) throws OrmException, OrmDuplicateKeyException {
+    final T cached = lookupCached(key);
+    if (cached != null) {
+      return cached;
+    }
+
     byte[] bin = db.fetchRow(dataRowKey(key));
     if (bin != null) {
       T obj = getObjectCodec().decode(bin);
       cache().put(primaryKey(obj), bin);
-      return obj;
+      return rememberLoaded(obj);
     } else {
       return null;
     }
@@ -85,6 +94,18 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
 
   @Override
   public ResultSet<T> get(final Iterable<K> keys) throws OrmException {
+    if (isCaching()) {
+      return getThroughCache(keys);
+    }
+    return fetchUncached(keys);
+  }
+
+  @Override
+  protected ResultSet<T> fetchUncached(final Collection<K> keys) throws OrmException {
+    return fetchUncached((Iterable<K>) keys);
+  }
+
+  private ResultSet<T> fetchUncached(final Iterable<K> keys) throws OrmException {
     final ResultSet<Row> rs =
         db.fetchRows(
             new Iterable<byte[]>() {
@@ -337,12 +358,138 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
     return new ListResultSet<>(res);
   }
 
+  /**
+   * Scan a range of index keys and return the primary keys the index rows reference.
+   *
+   * <p>Unlike {@link #scanIndex(IndexFunction, byte[], byte[], int, boolean)}, the data rows are
+   * not read, so index rows are not checked against them. The result may therefore include keys
+   * of objects whose update is still in progress, or was abandoned before its old index rows were
+   * pruned; callers needing exact results should load the objects and test them.
+   *
+   * @param idx the index function describing the index to scan.
+   * @param fromKey key to start the scan on. This is inclusive.
+   * @param toKey key to stop the scan on. This is exclusive.
+   * @param limit maximum number of results to return.
+   * @param order if true the order will be preserved, false if the result order order can be
+   *     arbitrary.
+   * @return result set for the requested range.
+   * @throws OrmException an error occurred preventing the scan from completing.
+   */
+  @Override
+  protected ResultSet<K> scanIndexKeys(
+      IndexFunction<T> idx, byte[] fromKey, byte[] toKey, int limit, boolean order)
+      throws OrmException {
+    IndexKeyBuilder b;
+
+    b = new IndexKeyBuilder();
+    b.add(getRelationName());
+    b.add('.');
+    b.add(idx.getName());
+    b.delimiter();
+    b.addRaw(fromKey);
+    fromKey = b.toByteArray();
+
+    b = new IndexKeyBuilder();
+    b.add(getRelationName());
+    b.add('.');
+    b.add(idx.getName());
+    b.delimiter();
+    b.addRaw(toKey);
+    toKey = b.toByteArray();
+
+    final ArrayList<K> res = new ArrayList<>();
+    final HashSet<ByteString> seen = new HashSet<>();
+    byte[] lastKey = fromKey;
+
+    SCAN:
+    for (; ; ) {
+      int scanned = 0;
+      for (Row ent : db.scan(lastKey, toKey, limit, order)) {
+        scanned++;
+        lastKey = ent.getKey();
+
+        // An object is listed twice only if one of its index rows is stale.
+        IndexRow idxRow = IndexRow.CODEC.decode(ent.getValue());
+        K key;
+        if (idxRow.getDataKey() != null) {
+          if (!seen.add(ByteString.copyFrom(idxRow.getDataKey()))) {
+            continue;
+          }
+          key = decodePrimaryKey(new IndexKeyReader(idxRow.getDataKey()));
+        } else if (idxRow.getDataCopy() != null) {
+          key = primaryKey(getObjectCodec().decode(idxRow.getDataCopy()));
+          IndexKeyBuilder pk = new IndexKeyBuilder();
+          encodePrimaryKey(pk, key);
+          if (!seen.add(ByteString.copyFrom(pk.toByteArray()))) {
+            continue;
+          }
+        } else {
+          continue;
+        }
+        res.add(key);
+        if (limit > 0 && res.size() == limit) {
+          break SCAN;
+        }
+      }
+
+      if (limit == 0 || scanned < limit) {
+        break SCAN;
+      }
+
+      b = new IndexKeyBuilder();
+      b.addRaw(lastKey);
+      b.nul();
+      lastKey = b.toByteArray();
+    }
+    return new ListResultSet<>(res);
+  }
+
+  /**
+   * Scan a range of keys from the data rows and return the primary keys of any matching objects.
+   *
+   * <p>The keys are decoded from the row keys; the objects are not decoded.
+   *
+   * @param fromKey key to start the scan on. This is inclusive.
+   * @param toKey key to stop the scan on. This is exclusive.
+   * @param limit maximum number of results to return.
+   * @param order if true the order will be preserved, false if the result order order can be
+   *     arbitrary.
+   * @return result set for the requested range.
+   * @throws OrmException an error occurred preventing the scan from completing.
+   */
+  @Override
+  protected ResultSet<K> scanPrimaryKeyKeys(
+      byte[] fromKey, byte[] toKey, int limit, boolean order) throws OrmException {
+    IndexKeyBuilder b;
+
+    b = new IndexKeyBuilder();
+    b.add(getRelationName());
+    b.delimiter();
+    final int prefix = b.toByteArray().length;
+    b.addRaw(fromKey);
+    fromKey = b.toByteArray();
+
+    b = new IndexKeyBuilder();
+    b.add(getRelationName());
+    b.delimiter();
+    b.addRaw(toKey);
+    toKey = b.toByteArray();
+
+    final ArrayList<K> res = new ArrayList<>();
+    for (Row ent : db.scan(fromKey, toKey, limit, order)) {
+      res.add(decodePrimaryKey(new IndexKeyReader(ent.getKey(), prefix)));
+    }
+    return new ListResultSet<>(res);
+  }
+
   @Override
   public void insert(Iterable<T> instances) throws OrmException {
-    for (T obj : instances) {
+    final Iterable<T> list = beforeWrite(instances);
+    for (T obj : list) {
       insertOne(obj);
     }
     db.flush();
+    afterWrite(list, false);
   }
 
   private void insertOne(T nObj) throws OrmException {
@@ -354,18 +501,22 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
 
   @Override
   public void update(Iterable<T> instances) throws OrmException {
-    for (T obj : instances) {
+    final Iterable<T> list = beforeWrite(instances);
+    for (T obj : list) {
       upsertOne(obj, true);
     }
     db.flush();
+    afterWrite(list, false);
   }
 
   @Override
   public void upsert(Iterable<T> instances) throws OrmException {
-    for (T obj : instances) {
+    final Iterable<T> list = beforeWrite(instances);
+    for (T obj : list) {
       upsertOne(obj, false);
     }
     db.flush();
+    afterWrite(list, false);
   }
 
   private void upsertOne(T newObj, boolean mustExist) throws OrmException {
@@ -440,12 +591,14 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
 
   @Override
   public void delete(Iterable<T> instances) throws OrmException {
-    for (T oldObj : instances) {
+    final Iterable<T> list = beforeWrite(instances);
+    for (T oldObj : list) {
       db.delete(dataRowKey(primaryKey(oldObj)));
       pruneOldIndexes(oldObj, null);
       cache().remove(primaryKey(oldObj));
     }
     db.flush();
+    afterWrite(list, true);
   }
 
   @Override
@@ -454,6 +607,7 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
     b.add(getRelationName());
     b.delimiter();
     encodePrimaryKey(b, key);
+    forgetKey(key);
 
     try {
       @SuppressWarnings("unchecked")
@@ -484,6 +638,7 @@ public abstract class GenericAccess<T, K extends Key<?>> extends NoSqlAccess<T,
           });
       if (res[0] != null) {
         pruneOldIndexes(res[1], res[2]);
+        afterWrite(Collections.singletonList(res[2]), false);
       }
       return res[0];
     } catch (IndexException err) {
@@ -16,13 +16,19 @@ package com.google.gwtorm.protobuf;
 
 import com.google.gwtorm.client.Column;
 import com.google.gwtorm.server.GeneratedClassLoader;
+import com.google.gwtorm.server.GeneratedClassWriter;
 import com.google.gwtorm.server.OrmException;
+import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.WeakHashMap;
 
 /** Creates {@link ProtobufCodec} implementations on demand. */
 public final class CodecFactory {
+  /** Name suffix of the codecs written by {@link #writeEncoders(ClassLoader, File, Collection)}. */
+  private static final String PREGENERATED_SUFFIX = "GwtOrm$$Pregenerated";
+
   private static final Map<Class<?>, String> encoders =
       Collections.synchronizedMap(new WeakHashMap<Class<?>, String>());
 
@@ -45,6 +51,12 @@ public final class CodecFactory {
     if (cacheName != null) {
       encoder = get(loader, cacheName);
     }
+    if (encoder == null) {
+      encoder = get(loader, type.getName() + "_protobuf_" + PREGENERATED_SUFFIX);
+      if (encoder != null) {
+        encoders.put(type, encoder.getClass().getName());
+      }
+    }
     if (encoder == null) {
       final CodecGen<T> gen = new CodecGen<>(loader, type);
       try {
@@ -58,6 +70,60 @@ public final class CodecFactory {
     return encoder;
   }
 
+  /**
+   * Write the codecs of the types, and of the types nested in them, as class files.
+   *
+   * <p>Once the output directory is on the class path, {@link #encoder(Class)} uses these codecs
+   * rather than generating new ones. They must be written again whenever the types change.
+   *
+   * @param parent loader of the types.
+   * @param outputDir root of the class file tree to write to.
+   * @param types the types to write codecs for.
+   * @throws OrmException a codec could not be generated or written.
+   */
+  public static void writeEncoders(
+      final ClassLoader parent, final File outputDir, final Collection<Class<?>> types)
+      throws OrmException {
+    final GeneratedClassWriter out =
+        new GeneratedClassWriter(parent, outputDir, PREGENERATED_SUFFIX);
+    for (final Class<?> type : types) {
+      if (find(out, type) == null) {
+        new CodecGen<>(out, type).create();
+      }
+    }
+  }
+
+  /**
+   * Get the codec class of a type nested in a codec being generated.
+   *
+   * @param loader loader the outer codec is generated through.
+   * @param type the nested type.
+   * @return codec class for the nested type.
+   */
+  @SuppressWarnings("rawtypes")
+  static Class<? extends ProtobufCodec> nestedEncoder(
+      final GeneratedClassLoader loader, final Class<?> type) {
+    if (!(loader instanceof GeneratedClassWriter)) {
+      return encoder(type).getClass();
+    }
+    // Codecs written out must refer to nested codecs that are written out too.
+    final GeneratedClassWriter out = (GeneratedClassWriter) loader;
+    try {
+      final Class<?> c = find(out, type);
+      if (c != null) {
+        return c.asSubclass(ProtobufCodec.class);
+      }
+      return new CodecGen<>(out, type).create().getClass();
+    } catch (OrmException e) {
+      throw new IllegalArgumentException(
+          "Class " + type.getName() + " cannot be supported on protobuf", e);
+    }
+  }
+
+  private static Class<?> find(final GeneratedClassWriter out, final Class<?> type) {
+    return out.findGeneratedClass(type.getName() + "_protobuf_" + out.newClassNameSuffix());
+  }
+
   private static <T> GeneratedClassLoader newLoader(final Class<T> type) {
     return new GeneratedClassLoader(type.getClassLoader());
   }
@@ -16,7 +16,6 @@ package com.google.gwtorm.protobuf;
 
 import com.google.gwtorm.client.Column;
 import com.google.gwtorm.schema.ColumnModel;
-import com.google.gwtorm.schema.Util;
 import com.google.gwtorm.schema.java.JavaColumnModel;
 import com.google.gwtorm.server.CodeGenSupport;
 import com.google.gwtorm.server.GeneratedClassLoader;
@@ -141,7 +140,7 @@ class CodecGen<T> implements Opcodes {
 
   private void init() {
     superTypeName = Type.getInternalName(ProtobufCodec.class);
-    implClassName = pojo.getName() + "_protobuf_" + Util.createRandomName();
+    implClassName = pojo.getName() + "_protobuf_" + classLoader.newClassNameSuffix();
     implTypeName = implClassName.replace('.', '/');
 
     cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -362,7 +361,7 @@ class CodecGen<T> implements Opcodes {
         }
       }
       if (codec == null) {
-        codec = CodecFactory.encoder(clazz).getClass();
+        codec = CodecFactory.nestedEncoder(classLoader, clazz);
       }
 
       n = new NestedCodec("codec" + f.getColumnID(), codec, type);
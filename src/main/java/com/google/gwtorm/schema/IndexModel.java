@@ -0,0 +1,104 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.schema;
+
+import com.google.gwtorm.schema.sql.SqlDialect;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Secondary index of a relation, derived from the queries it serves.
+ *
+ * <p>The name is built from the relation name and a hash of the columns, so it is stable across
+ * restarts, fits the 30 character limit of older databases, and is recognized when the index is no
+ * longer needed.
+ */
+public class IndexModel {
+  /** Characters of the relation name kept in index names. */
+  private static final int RELATION_PREFIX = 20;
+
+  private static final Pattern HASH = Pattern.compile("_q[0-9a-f]{8}");
+
+  private final String relationName;
+  private final String name;
+  private final List<ColumnModel> columns;
+
+  IndexModel(final String relationName, final List<ColumnModel> columns) {
+    this.relationName = relationName;
+    this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+
+    final CRC32 crc = new CRC32();
+    for (final ColumnModel c : columns) {
+      crc.update(c.getColumnName().toLowerCase().getBytes(StandardCharsets.UTF_8));
+      crc.update(',');
+    }
+    this.name = prefix(relationName) + String.format("_q%08x", crc.getValue());
+  }
+
+  private static String prefix(final String relationName) {
+    final String n = relationName.toLowerCase();
+    return n.length() <= RELATION_PREFIX ? n : n.substring(0, RELATION_PREFIX);
+  }
+
+  /**
+   * @param relationName name of the relation the index is on.
+   * @param indexName name of an existing index, in any case.
+   * @return true if the name has the form given to derived indexes of the relation.
+   */
+  public static boolean isDerivedIndexName(final String relationName, final String indexName) {
+    final String n = indexName.toLowerCase();
+    final String p = prefix(relationName);
+    return n.startsWith(p) && HASH.matcher(n.substring(p.length())).matches();
+  }
+
+  public String getRelationName() {
+    return relationName;
+  }
+
+  public String getIndexName() {
+    return name;
+  }
+
+  /** @return the indexed leaf columns, most significant first. */
+  public List<ColumnModel> getColumns() {
+    return columns;
+  }
+
+  public String getCreateIndexSql(final SqlDialect dialect) {
+    return dialect.getCreateIndexSql(this);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder r = new StringBuilder();
+    r.append("Index[");
+    r.append(name);
+    r.append(" on ");
+    r.append(relationName);
+    r.append(" (");
+    for (int i = 0; i < columns.size(); i++) {
+      if (i > 0) {
+        r.append(", ");
+      }
+      r.append(columns.get(i).getColumnName());
+    }
+    r.append(")]");
+    return r.toString();
+  }
+}
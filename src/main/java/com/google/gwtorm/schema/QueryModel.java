@@ -20,20 +20,36 @@ import com.google.gwtorm.schema.sql.SqlDialect;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.Query;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.tree.CommonTree;
 import org.antlr.runtime.tree.Tree;
 
 public class QueryModel {
+  // Parameters reported by findParameters: all, or only those compared with = or tested with IN.
+  private static final int ALL = 0;
+  private static final int EQUALITY = 1;
+  private static final int IN_LIST = 2;
+
   private final RelationModel model;
   private final String name;
   private final Tree parsedQuery;
+  private int fetchSize;
+  private boolean cacheResults;
+  private boolean returnsKeys;
+  private String projectionClassName;
+  private List<ColumnModel> projectionFields;
+  private Class<?> countType;
 
   public QueryModel(final RelationModel rel, final String queryName, final Query q)
       throws OrmException {
     this(rel, queryName, queryTextOf(queryName, q));
+    fetchSize = q.fetchSize();
+    cacheResults = q.cacheResults();
   }
 
   private static String queryTextOf(String queryName, Query q) throws OrmException {
@@ -54,12 +70,160 @@ public class QueryModel {
     } catch (QueryParseException e) {
       throw new OrmException("Cannot parse query " + queryText, e);
     }
+    checkInConditions(parsedQuery);
+  }
+
+  private void checkInConditions(final Tree node) throws OrmException {
+    if (node == null) {
+      return;
+    }
+    if (node.getType() == QueryParser.IN) {
+      final ColumnModel c = ((QueryParser.Column) node.getChild(0)).getField();
+      if (c.isNested() && c.getAllLeafColumns().size() != 1) {
+        throw new OrmException(
+            "Query " + name + " cannot test multi-column " + c.getPathToFieldName() + " with IN");
+      }
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      checkInConditions(node.getChild(i));
+    }
   }
 
   public String getName() {
     return name;
   }
 
+  /** @return rows fetched per round trip, from {@link Query#fetchSize()}; 0 if not declared. */
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /** @return true if results are cached, from {@link Query#cacheResults()}. */
+  public boolean isCacheResults() {
+    return cacheResults;
+  }
+
+  /**
+   * Make the query return the primary keys of the matching entities.
+   *
+   * @throws OrmException the relation has no primary key.
+   */
+  public void setReturnsKeys() throws OrmException {
+    if (model.getPrimaryKey() == null) {
+      throw new OrmException(
+          "Query " + name + " cannot return keys of " + model.getRelationName() + " without one");
+    }
+    returnsKeys = true;
+  }
+
+  /**
+   * Make the query return a projection of the matching entities.
+   *
+   * @param className name of the projection type; it must have a no-argument constructor.
+   * @param fields the {@code @Column} fields of the projection type. Each must match a field of
+   *     the relation in column id, column name and type.
+   * @throws OrmException a field does not match the relation.
+   */
+  public void setReturnsProjection(
+      final String className, final Collection<? extends ColumnModel> fields) throws OrmException {
+    if (fields.isEmpty()) {
+      throw new OrmException("Projection " + className + " of query " + name + " has no columns");
+    }
+    for (final ColumnModel f : fields) {
+      ColumnModel e = null;
+      for (final ColumnModel c : model.getFields()) {
+        if (c.getColumnID() == f.getColumnID()) {
+          e = c;
+          break;
+        }
+      }
+      if (e == null || !sameColumn(e, f)) {
+        throw new OrmException(
+            "Field "
+                + f.getFieldName()
+                + " of "
+                + className
+                + " does not match @Column "
+                + f.getColumnID()
+                + " of "
+                + model.getEntityTypeClassName());
+      }
+    }
+    projectionClassName = className;
+    projectionFields = new ArrayList<>(fields);
+  }
+
+  private static boolean sameColumn(final ColumnModel a, final ColumnModel b) {
+    if (!a.getColumnName().equals(b.getColumnName()) || a.isNested() != b.isNested()) {
+      return false;
+    }
+    if (a.isNested()) {
+      return a.getNestedClassName().equals(b.getNestedClassName());
+    }
+    return a.getPrimitiveType() == b.getPrimitiveType();
+  }
+
+  /**
+   * Make the query count the matching entities instead of returning them.
+   *
+   * @param type {@code int} or {@code long} to return the number of matching entities, {@code
+   *     boolean} to return whether any entity matches.
+   * @throws OrmException the type is not supported, or the query orders or limits its results.
+   */
+  public void setReturnsCount(final Class<?> type) throws OrmException {
+    if (type != Integer.TYPE && type != Long.TYPE && type != Boolean.TYPE) {
+      throw new OrmException("Query " + name + " cannot return " + type.getName());
+    }
+    if (hasOrderBy() || hasLimit()) {
+      throw new OrmException("Query " + name + " returning " + type + " cannot ORDER BY or LIMIT");
+    }
+    if (cacheResults) {
+      throw new OrmException("Query " + name + " returning " + type + " cannot cache results");
+    }
+    countType = type;
+  }
+
+  /**
+   * @return {@code int}, {@code long} or {@code boolean} if the query counts or probes for
+   *     matching entities, see {@link #setReturnsCount(Class)}; null if it returns them.
+   */
+  public Class<?> getCountType() {
+    return countType;
+  }
+
+  /** @return true if the query returns primary keys rather than entities. */
+  public boolean isReturnsKeys() {
+    return returnsKeys;
+  }
+
+  /** @return name of the projection type the query returns; null if it returns no projection. */
+  public String getProjectionClassName() {
+    return projectionClassName;
+  }
+
+  /** @return fields of the projection type the query returns; null if it returns no projection. */
+  public List<ColumnModel> getProjectionFields() {
+    return projectionFields;
+  }
+
+  /** @return columns the query reads, in the order they are selected. */
+  public Collection<ColumnModel> getResultColumns() {
+    if (returnsKeys) {
+      return model.getPrimaryKeyColumns();
+    } else if (projectionFields != null) {
+      final List<ColumnModel> r = new ArrayList<>();
+      for (final ColumnModel f : projectionFields) {
+        if (f.isNested()) {
+          r.addAll(f.getAllLeafColumns());
+        } else {
+          r.add(f);
+        }
+      }
+      return r;
+    }
+    return model.getColumns();
+  }
+
   public Tree getParseTree() {
     return parsedQuery;
   }
@@ -113,21 +277,66 @@ public class QueryModel {
     return r;
   }
 
+  /**
+   * Get the parameters compared for equality.
+   *
+   * @return a list parallel to {@link #getParameters()}, holding the column of each parameter
+   *     compared with {@code =}, and null for parameters compared any other way.
+   */
+  public List<ColumnModel> getEqualityParameters() {
+    final ArrayList<ColumnModel> r = new ArrayList<>();
+    if (parsedQuery != null) {
+      findParameters(r, parsedQuery, EQUALITY);
+    }
+    return r;
+  }
+
+  /**
+   * Get the parameters tested with {@code IN}.
+   *
+   * <p>Such a parameter is a {@code java.util.Collection} of values of its column, matching any
+   * row whose column equals one of them.
+   *
+   * @return a list parallel to {@link #getParameters()}, holding the column of each parameter
+   *     tested with {@code IN}, and null for parameters compared any other way.
+   */
+  public List<ColumnModel> getInParameters() {
+    final ArrayList<ColumnModel> r = new ArrayList<>();
+    if (parsedQuery != null) {
+      findParameters(r, parsedQuery, IN_LIST);
+    }
+    return r;
+  }
+
+  /** @return true if any parameter is tested with {@code IN}. */
+  public boolean hasInParameters() {
+    for (final ColumnModel c : getInParameters()) {
+      if (c != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void findParameters(final List<ColumnModel> r, final Tree node) {
+    findParameters(r, node, ALL);
+  }
+
+  private void findParameters(final List<ColumnModel> r, final Tree node, final int which) {
     switch (node.getType()) {
       case QueryParser.WHERE:
-        extractParameters(r, node);
+        extractParameters(r, node, which);
         break;
 
       default:
         for (int i = 0; i < node.getChildCount(); i++) {
-          findParameters(r, node.getChild(i));
+          findParameters(r, node.getChild(i), which);
         }
         break;
     }
   }
 
-  private void extractParameters(final List<ColumnModel> r, final Tree node) {
+  private void extractParameters(final List<ColumnModel> r, final Tree node, final int which) {
     switch (node.getType()) {
       case QueryParser.LT:
       case QueryParser.LE:
@@ -135,18 +344,78 @@ public class QueryModel {
       case QueryParser.GE:
       case QueryParser.EQ:
         if (node.getChild(1).getType() == QueryParser.PLACEHOLDER) {
-          r.add(((QueryParser.Column) node.getChild(0)).getField());
+          final ColumnModel c = ((QueryParser.Column) node.getChild(0)).getField();
+          r.add(which == ALL || (which == EQUALITY && node.getType() == QueryParser.EQ) ? c : null);
+        }
+        break;
+
+      case QueryParser.IN:
+        {
+          final ColumnModel c = ((QueryParser.Column) node.getChild(0)).getField();
+          r.add(which == EQUALITY ? null : c);
+          break;
         }
+
+      default:
+        for (int i = 0; i < node.getChildCount(); i++) {
+          extractParameters(r, node.getChild(i), which);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Get the columns of an index serving the query.
+   *
+   * @return leaf columns compared with {@code =} or tested with {@code IN}, then leaf columns
+   *     compared by range, then the ORDER BY leaf columns; each listed once, in query order.
+   */
+  public List<ColumnModel> getIndexColumns() {
+    final List<ColumnModel> equality = new ArrayList<>();
+    final List<ColumnModel> range = new ArrayList<>();
+    if (parsedQuery != null) {
+      findConditionColumns(parsedQuery, equality, range);
+    }
+    final LinkedHashSet<ColumnModel> r = new LinkedHashSet<>();
+    r.addAll(equality);
+    r.addAll(range);
+    for (final OrderBy o : getOrderBy()) {
+      r.addAll(leaves(o.column));
+    }
+    return new ArrayList<>(r);
+  }
+
+  private static void findConditionColumns(
+      final Tree node, final List<ColumnModel> equality, final List<ColumnModel> range) {
+    switch (node.getType()) {
+      case QueryParser.EQ:
+      case QueryParser.IN:
+        equality.addAll(leaves(((QueryParser.Column) node.getChild(0)).getField()));
+        break;
+
+      case QueryParser.LT:
+      case QueryParser.LE:
+      case QueryParser.GT:
+      case QueryParser.GE:
+        range.addAll(leaves(((QueryParser.Column) node.getChild(0)).getField()));
+        break;
+
+      case QueryParser.ORDER:
+      case QueryParser.LIMIT:
         break;
 
       default:
         for (int i = 0; i < node.getChildCount(); i++) {
-          extractParameters(r, node.getChild(i));
+          findConditionColumns(node.getChild(i), equality, range);
         }
         break;
     }
   }
 
+  private static Collection<ColumnModel> leaves(final ColumnModel c) {
+    return c.isNested() ? c.getAllLeafColumns() : Collections.singletonList(c);
+  }
+
   public boolean hasWhere() {
     return findWhere(parsedQuery) != null;
   }
@@ -222,11 +491,53 @@ public class QueryModel {
     }
   }
 
+  /**
+   * Format the query, testing each {@code IN} parameter against a single placeholder.
+   *
+   * @see #getSelectSqlFragments(SqlDialect, String)
+   */
   public String getSelectSql(final SqlDialect dialect, final String tableAlias) {
+    return formatSelect(dialect, tableAlias, null);
+  }
+
+  /**
+   * Format the query, split around its {@code IN} conditions.
+   *
+   * <p>The first fragment is SQL text. It is followed, for each parameter tested with {@code IN},
+   * by the column tested and by the SQL text after the condition. The caller places a condition
+   * with as many placeholders as it binds values between each column and the text following it.
+   *
+   * @return the fragments; a single one if the query has no {@code IN} parameter.
+   */
+  public List<String> getSelectSqlFragments(final SqlDialect dialect, final String tableAlias) {
+    final List<int[]> inConditions = new ArrayList<>();
+    final String sql = formatSelect(dialect, tableAlias, inConditions);
+    final List<String> r = new ArrayList<>(1 + 2 * inConditions.size());
+    int last = 0;
+    for (final int[] c : inConditions) {
+      r.add(sql.substring(last, c[0]));
+      r.add(sql.substring(c[0], c[1]));
+      last = c[2];
+    }
+    r.add(sql.substring(last));
+    return r;
+  }
+
+  private String formatSelect(
+      final SqlDialect dialect, final String tableAlias, final List<int[]> inConditions) {
     final StringBuilder buf = new StringBuilder();
-    buf.append(model.getSelectSql(dialect, tableAlias));
+    if (countType == null) {
+      buf.append(model.getSelectSql(dialect, tableAlias, getResultColumns()));
+    } else {
+      buf.append(countType == Boolean.TYPE ? "SELECT 1" : "SELECT COUNT(*)");
+      buf.append(" FROM ");
+      buf.append(model.getRelationName());
+      buf.append(' ');
+      buf.append(tableAlias);
+    }
     if (parsedQuery != null) {
       final FormatInfo fmt = new FormatInfo(buf, dialect, tableAlias);
+      fmt.inConditions = inConditions;
       final Tree t = expand(parsedQuery);
       if (t.getType() == 0) {
         formatChilden(fmt, t);
@@ -234,6 +545,11 @@ public class QueryModel {
         format(fmt, t);
       }
     }
+    if (countType == Boolean.TYPE && dialect.selectHasLimit()) {
+      // Existence needs only the first matching row.
+      buf.append(' ');
+      buf.append(dialect.getLimitSql("1"));
+    }
     return buf.toString();
   }
 
@@ -269,6 +585,20 @@ public class QueryModel {
         format(fmt, node.getChild(1));
         break;
 
+      case QueryParser.IN:
+        {
+          final int start = fmt.buf.length();
+          format(fmt, node.getChild(0));
+          final int column = fmt.buf.length();
+          fmt.buf.append(" IN (");
+          format(fmt, node.getChild(1));
+          fmt.buf.append(')');
+          if (fmt.inConditions != null) {
+            fmt.inConditions.add(new int[] {start, column, fmt.buf.length()});
+          }
+          break;
+        }
+
       case QueryParser.ID:
         {
           final ColumnModel col = ((QueryParser.Column) node).getField();
@@ -362,6 +692,7 @@ public class QueryModel {
       case QueryParser.GT:
       case QueryParser.GE:
       case QueryParser.EQ:
+      case QueryParser.IN:
         {
           final Column qpc = (QueryParser.Column) node.getChild(0);
           final ColumnModel f = qpc.getField();
@@ -395,6 +726,9 @@ public class QueryModel {
     final String tableAlias;
     int nthParam = 1;
 
+    /** Start, end of column and end of each {@code IN} condition formatted; null to skip. */
+    List<int[]> inConditions;
+
     FormatInfo(StringBuilder r, SqlDialect dialect, String tableAlias) {
       this.buf = r;
       this.dialect = dialect;
@@ -21,6 +21,7 @@ import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.PrimaryKey;
 import com.google.gwtorm.server.Relation;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -37,12 +38,14 @@ public abstract class RelationModel {
   protected final SortedMap<Integer, ColumnModel> columnsById;
   protected KeyModel primaryKey;
   protected Collection<QueryModel> queries;
+  protected Collection<QueryModel> asyncQueries;
 
   protected RelationModel() {
     fieldsByFieldName = Maps.newLinkedHashMap();
     columnsByColumnName = Maps.newLinkedHashMap();
     columnsById = Maps.newTreeMap();
     queries = Lists.newArrayList();
+    asyncQueries = Lists.newArrayList();
   }
 
   protected void initName(final String method, final Relation rel) throws OrmException {
@@ -122,6 +125,10 @@ public abstract class RelationModel {
     queries.add(q);
   }
 
+  protected void addAsyncQuery(final QueryModel q) {
+    asyncQueries.add(q);
+  }
+
   public String getMethodName() {
     return methodName;
   }
@@ -189,6 +196,64 @@ public abstract class RelationModel {
     return queries;
   }
 
+  /** @return queries that also have an {@code Async} variant declared on the Access interface. */
+  public Collection<QueryModel> getAsyncQueries() {
+    return asyncQueries;
+  }
+
+  /**
+   * Get the secondary indexes the relation's queries need.
+   *
+   * <p>Each query asks for its {@link QueryModel#getIndexColumns() index columns}, cut before the
+   * first column that cannot be indexed. A request that is a prefix of another, or of the primary
+   * key, is served by that index and omitted.
+   *
+   * @return the indexes, in query order.
+   */
+  public List<IndexModel> getIndexes() {
+    final List<List<ColumnModel>> want = new ArrayList<>();
+    for (final QueryModel q : getQueries()) {
+      final List<ColumnModel> cols = new ArrayList<>();
+      for (final ColumnModel c : q.getIndexColumns()) {
+        if (!isIndexable(c)) {
+          break;
+        }
+        cols.add(c);
+      }
+      if (!cols.isEmpty() && !want.contains(cols)) {
+        want.add(cols);
+      }
+    }
+
+    final List<ColumnModel> pk = new ArrayList<>(getPrimaryKeyColumns());
+    final List<IndexModel> r = new ArrayList<>();
+    WANT:
+    for (final List<ColumnModel> cols : want) {
+      if (isPrefix(cols, pk)) {
+        continue;
+      }
+      for (final List<ColumnModel> other : want) {
+        if (cols.size() < other.size() && isPrefix(cols, other)) {
+          continue WANT;
+        }
+      }
+      r.add(new IndexModel(relationName, cols));
+    }
+    return r;
+  }
+
+  private static boolean isIndexable(final ColumnModel c) {
+    if (c.getPrimitiveType() == byte[].class) {
+      return false;
+    }
+    // Longer strings are stored as large objects; see SqlStringTypeInfo.
+    return c.getPrimitiveType() != String.class || c.getColumnAnnotation().length() <= 255;
+  }
+
+  private static boolean isPrefix(final List<ColumnModel> a, final List<ColumnModel> b) {
+    return a.size() <= b.size() && a.equals(b.subList(0, a.size()));
+  }
+
   public Collection<ColumnModel> getColumns() {
     final ArrayList<ColumnModel> r = new ArrayList<>();
     r.addAll(getDependentColumns());
@@ -252,9 +317,18 @@ public abstract class RelationModel {
   }
 
   public String getSelectSql(final SqlDialect dialect, final String tableAlias) {
+    return getSelectSql(dialect, tableAlias, getColumns());
+  }
+
+  /**
+   * @param columns leaf columns to select, in order.
+   * @return SELECT of the given columns, without any WHERE clause.
+   */
+  public String getSelectSql(
+      final SqlDialect dialect, final String tableAlias, final Collection<ColumnModel> columns) {
     final StringBuilder r = new StringBuilder();
     r.append("SELECT ");
-    for (final Iterator<ColumnModel> i = getColumns().iterator(); i.hasNext(); ) {
+    for (final Iterator<ColumnModel> i = columns.iterator(); i.hasNext(); ) {
       final ColumnModel col = i.next();
       r.append(tableAlias);
       r.append('.');
@@ -295,6 +369,44 @@ public abstract class RelationModel {
     return r.toString();
   }
 
+  /**
+   * Get a single statement inserting several rows.
+   *
+   * @param rows number of rows inserted by the statement.
+   * @return the SQL, binding each row like {@link #getInsertOneSql(SqlDialect)} in turn; null if
+   *     the dialect cannot insert that many rows of this relation in one statement.
+   */
+  public String getInsertRowsSql(final SqlDialect dialect, final int rows) {
+    final int width = getColumns().size();
+    if (rows < 2 || dialect.getMaxInsertRows(width) < rows) {
+      return null;
+    }
+    final StringBuilder r = new StringBuilder();
+    r.append("INSERT INTO ");
+    r.append(relationName);
+    r.append("(");
+    for (final Iterator<ColumnModel> i = getColumns().iterator(); i.hasNext(); ) {
+      final ColumnModel col = i.next();
+      r.append(col.getColumnName());
+      if (i.hasNext()) {
+        r.append(",");
+      }
+    }
+    r.append(")VALUES");
+    int nth = 1;
+    for (int row = 0; row < rows; row++) {
+      r.append(row == 0 ? "(" : ",(");
+      for (int c = 0; c < width; c++) {
+        if (c > 0) {
+          r.append(",");
+        }
+        r.append(dialect.getParameterPlaceHolder(nth++));
+      }
+      r.append(")");
+    }
+    return r.toString();
+  }
+
   public String getUpdateOneSql(final SqlDialect dialect) {
     final StringBuilder r = new StringBuilder();
     r.append("UPDATE ");
@@ -332,6 +444,59 @@ public abstract class RelationModel {
     return r.toString();
   }
 
+  /**
+   * Get an UPDATE setting only some of the relation's columns.
+   *
+   * @param changed positions, within {@link #getDependentColumns()}, of the columns to set.
+   * @return the SQL, binding the set columns in order, then the primary key columns; null if the
+   *     relation has no primary key or has row version columns, which every update must check.
+   */
+  public String getUpdateSomeSql(final SqlDialect dialect, final BitSet changed) {
+    if (getPrimaryKey() == null || !getRowVersionColumns().isEmpty() || changed.isEmpty()) {
+      return null;
+    }
+    final StringBuilder r = new StringBuilder();
+    r.append("UPDATE ");
+    r.append(relationName);
+    r.append(" SET ");
+    int nth = 1;
+    int pos = 0;
+    String sep = "";
+    for (final ColumnModel col : getDependentColumns()) {
+      if (changed.get(pos++)) {
+        r.append(sep);
+        r.append(col.getColumnName());
+        r.append("=");
+        r.append(dialect.getParameterPlaceHolder(nth++));
+        sep = ",";
+      }
+    }
+
+    r.append(" WHERE ");
+    sep = "";
+    for (final ColumnModel col : getPrimaryKeyColumns()) {
+      r.append(sep);
+      r.append(col.getColumnName());
+      r.append("=");
+      r.append(dialect.getParameterPlaceHolder(nth++));
+      sep = " AND ";
+    }
+    return r.toString();
+  }
+
+  /**
+   * Get the dialect's single statement upsert for this relation.
+   *
+   * @return the SQL, bound like {@link #getInsertOneSql(SqlDialect)}; null if the dialect has no
+   *     native upsert, or the relation has row version columns that an upsert must check.
+   */
+  public String getUpsertOneSql(final SqlDialect dialect) {
+    if (!getRowVersionColumns().isEmpty() || getPrimaryKeyColumns().isEmpty()) {
+      return null;
+    }
+    return dialect.getUpsertOneSql(this);
+  }
+
   public String getDeleteOneSql(final SqlDialect dialect) {
     final StringBuilder r = new StringBuilder();
     r.append("DELETE FROM ");
@@ -14,6 +14,7 @@
 
 package com.google.gwtorm.schema.java;
 
+import com.google.common.util.concurrent.CheckedFuture;
 import com.google.gwtorm.client.Column;
 import com.google.gwtorm.schema.QueryModel;
 import com.google.gwtorm.schema.RelationModel;
@@ -28,9 +29,14 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 class JavaRelationModel extends RelationModel {
+  private static final String ASYNC_SUFFIX = "Async";
+
   private final Method method;
   private final Class<?> accessType;
   private final Class<?> entityType;
@@ -77,6 +83,7 @@ class JavaRelationModel extends RelationModel {
   }
 
   private void initQueriesAndKeys() throws OrmException {
+    final List<Method> queries = new ArrayList<>();
     for (final Method m : accessType.getDeclaredMethods()) {
       if (m.getAnnotation(PrimaryKey.class) != null) {
         if (m.isBridge()) {
@@ -89,16 +96,80 @@ class JavaRelationModel extends RelationModel {
         initPrimaryKey(m.getName(), m.getAnnotation(PrimaryKey.class));
 
       } else if (m.getAnnotation(Query.class) != null) {
-        if (!ResultSet.class.isAssignableFrom(m.getReturnType())
-            || !(m.getGenericReturnType() instanceof ParameterizedType)
-            || ((ParameterizedType) m.getGenericReturnType()).getActualTypeArguments()[0]
-                != entityType) {
-          throw new OrmException(
-              "Query " + m.getName() + " must return" + " ResultSet<" + entityType.getName() + ">");
+        queries.add(m);
+      }
+    }
+
+    final Map<String, Method> queryMethods = new HashMap<>();
+    for (final Method m : queries) {
+      final Class<?> rt = m.getReturnType();
+      if (rt == Integer.TYPE || rt == Long.TYPE || rt == Boolean.TYPE) {
+        final QueryModel q = new QueryModel(this, m.getName(), m.getAnnotation(Query.class));
+        q.setReturnsCount(rt);
+        addQuery(q);
+        queryMethods.put(m.getName(), m);
+        continue;
+      }
+      if (!ResultSet.class.isAssignableFrom(m.getReturnType())
+          || !(m.getGenericReturnType() instanceof ParameterizedType)
+          || !(((ParameterizedType) m.getGenericReturnType()).getActualTypeArguments()[0]
+              instanceof Class)) {
+        throw new OrmException(
+            "Query " + m.getName() + " must return" + " ResultSet<" + entityType.getName() + ">");
+      }
+      final Class<?> resultType =
+          (Class<?>) ((ParameterizedType) m.getGenericReturnType()).getActualTypeArguments()[0];
+      final QueryModel q = new QueryModel(this, m.getName(), m.getAnnotation(Query.class));
+      if (resultType != entityType) {
+        if (getPrimaryKey() != null
+            && resultType == ((JavaColumnModel) getPrimaryKey().getField()).getNestedClass()) {
+          q.setReturnsKeys();
+        } else {
+          q.setReturnsProjection(resultType.getName(), projectionFields(resultType));
         }
-        addQuery(new QueryModel(this, m.getName(), m.getAnnotation(Query.class)));
       }
+      addQuery(q);
+      queryMethods.put(m.getName(), m);
+    }
+
+    for (final Method m : accessType.getDeclaredMethods()) {
+      if (m.isBridge()
+          || m.getAnnotation(Query.class) != null
+          || m.getReturnType() != CheckedFuture.class
+          || !m.getName().endsWith(ASYNC_SUFFIX)) {
+        continue;
+      }
+
+      final String name = m.getName().substring(0, m.getName().length() - ASYNC_SUFFIX.length());
+      final Method sync = queryMethods.get(name);
+      if (sync == null || !Arrays.equals(sync.getParameterTypes(), m.getParameterTypes())) {
+        throw new OrmException(
+            "Method " + m.getName() + " must match the parameters of a Query named " + name);
+      }
+      if (!ResultSet.class.isAssignableFrom(sync.getReturnType())) {
+        throw new OrmException("Query " + name + " must return a ResultSet to have " + m.getName());
+      }
+      for (final QueryModel q : getQueries()) {
+        if (q.getName().equals(name)) {
+          addAsyncQuery(q);
+        }
+      }
+    }
+  }
+
+  private static List<JavaColumnModel> projectionFields(final Class<?> type)
+      throws OrmException {
+    final List<JavaColumnModel> col = new ArrayList<>();
+    Class<?> in = type;
+    while (in != null) {
+      for (final Field f : JavaColumnModel.getDeclaredFields(in)) {
+        if (f.getAnnotation(Column.class) != null) {
+          col.add(new JavaColumnModel(f));
+        }
+      }
+      in = in.getSuperclass();
     }
+    return col;
   }
 
   @Override
@@ -15,6 +15,7 @@
 package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.StatementExecutor;
@@ -25,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /** Dialect for DB2 */
@@ -39,6 +41,22 @@ public class DialectDB2 extends SqlDialect {
     return url.startsWith("jdbc:db2:");
   }
 
+  @Override
+  public String getUpsertOneSql(final RelationModel rel) {
+    final StringBuilder values = new StringBuilder();
+    final StringBuilder names = new StringBuilder();
+    int nth = 1;
+    for (final ColumnModel col : rel.getColumns()) {
+      if (nth > 1) {
+        values.append(",");
+        names.append(",");
+      }
+      values.append(getCastParameterPlaceHolder(col, nth++));
+      names.append(col.getColumnName());
+    }
+    return getMergeSql(rel, "(VALUES(" + values + ")) AS s(" + names + ")");
+  }
+
   @Override
   public OrmException convertError(String op, String entity, SQLException err) {
     switch (getSQLStateInt(err)) {
@@ -50,6 +68,11 @@ public class DialectDB2 extends SqlDialect {
     }
   }
 
+  @Override
+  public int getMaxInsertRows(final int columns) {
+    return 32767 / Math.max(1, columns);
+  }
+
   @Override
   protected String getNextSequenceValueSql(String seqname) {
     return "VALUES NEXT VALUE FOR " + seqname;
@@ -120,6 +143,24 @@ public class DialectDB2 extends SqlDialect {
     }
   }
 
+  @Override
+  protected Map<String, Set<String>> listAllColumns(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT TABNAME, COLNAME" + " FROM SYSCAT.COLUMNS" + " WHERE TABSCHEMA = CURRENT_SCHEMA",
+        tables);
+  }
+
+  @Override
+  protected Map<String, Set<String>> listAllIndexes(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT TABNAME, INDNAME" + " FROM SYSCAT.INDEXES" + " WHERE TABSCHEMA = CURRENT_SCHEMA",
+        tables);
+  }
+
   @Override
   public void renameTable(StatementExecutor e, String from, String to) throws OrmException {
     StringBuilder r = new StringBuilder();
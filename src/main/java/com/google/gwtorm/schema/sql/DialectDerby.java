@@ -93,6 +93,12 @@ public class DialectDerby extends SqlDialect {
     e.execute(r.toString());
   }
 
+  @Override
+  public int getMaxInsertRows(final int columns) {
+    // Large statements compile into methods exceeding the JVM's 64 KiB limit.
+    return 2000 / Math.max(1, columns);
+  }
+
   @Override
   protected String getNextSequenceValueSql(String seqname) {
     return "VALUES (NEXT VALUE FOR " + seqname + ")";
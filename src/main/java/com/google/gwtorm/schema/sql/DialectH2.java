@@ -15,6 +15,7 @@
 package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.StatementExecutor;
@@ -23,6 +24,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /** Dialect for <a href="http://www.h2database.com/">H2</a> */
@@ -32,6 +34,24 @@ public class DialectH2 extends SqlDialect {
     return url.startsWith("jdbc:h2:");
   }
 
+  @Override
+  public String getUpsertOneSql(final RelationModel rel) {
+    // H2's MERGE replaces the row whose KEY columns match, or inserts a new one.
+    final StringBuilder r = new StringBuilder();
+    r.append(rel.getInsertOneSql(this));
+    r.replace(0, "INSERT INTO ".length(), "MERGE INTO ");
+    final int values = r.indexOf(")VALUES(");
+    final StringBuilder key = new StringBuilder(")KEY(");
+    String sep = "";
+    for (final ColumnModel col : rel.getPrimaryKeyColumns()) {
+      key.append(sep);
+      key.append(col.getColumnName());
+      sep = ",";
+    }
+    r.insert(values, key);
+    return r.toString();
+  }
+
   @Override
   public OrmException convertError(final String op, final String entity, final SQLException err) {
     switch (getSQLStateInt(err)) {
@@ -44,11 +64,21 @@ public class DialectH2 extends SqlDialect {
     }
   }
 
+  @Override
+  public int getMaxInsertRows(final int columns) {
+    return Integer.MAX_VALUE;
+  }
+
   @Override
   protected String getNextSequenceValueSql(final String seqname) {
     return "SELECT NEXT VALUE FOR " + seqname;
   }
 
+  @Override
+  protected String getNextSequenceValuesSql(final String seqname, final int count) {
+    return "SELECT NEXT VALUE FOR " + seqname + " FROM SYSTEM_RANGE(1, " + count + ")";
+  }
+
   @Override
   public Set<String> listSequences(Connection db) throws SQLException {
     Statement s = db.createStatement();
@@ -72,6 +102,17 @@ public class DialectH2 extends SqlDialect {
     }
   }
 
+  @Override
+  protected Map<String, Set<String>> listAllIndexes(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT TABLE_NAME, INDEX_NAME"
+            + " FROM INFORMATION_SCHEMA.INDEXES"
+            + " WHERE TABLE_SCHEMA = 'PUBLIC'",
+        tables);
+  }
+
   @Override
   public void addColumn(StatementExecutor stmt, String tableName, ColumnModel col)
       throws OrmException {
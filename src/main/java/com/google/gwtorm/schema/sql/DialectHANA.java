@@ -16,6 +16,7 @@ package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.client.Column;
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.StatementExecutor;
@@ -27,6 +28,7 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 public class DialectHANA extends SqlDialect {
@@ -60,6 +62,18 @@ public class DialectHANA extends SqlDialect {
 
             return r.toString();
           }
+
+          @Override
+          public String getCastType(ColumnModel col, SqlDialect dialect) {
+            Column column = col.getColumnAnnotation();
+            if (column.length() <= 0) {
+              return "NVARCHAR(255)";
+            } else if (column.length() <= 5000) {
+              return "NVARCHAR(" + column.length() + ")";
+            } else {
+              return "NCLOB";
+            }
+          }
         });
     types.put(
         Boolean.TYPE,
@@ -103,6 +117,20 @@ public class DialectHANA extends SqlDialect {
     return url.startsWith("jdbc:sap://");
   }
 
+  @Override
+  public String getUpsertOneSql(final RelationModel rel) {
+    return getMergeSql(rel, getMergeSourceSelect(rel, " AS ", "FROM DUMMY"));
+  }
+
+  @Override
+  protected String getCastParameterPlaceHolder(final ColumnModel col, final int nthParameter) {
+    // LOBs cannot be the target of a CAST; their parameters are typed by their binding.
+    if (getSqlTypeInfo(col).getCastType(col, this).endsWith("LOB")) {
+      return getParameterPlaceHolder(nthParameter);
+    }
+    return super.getCastParameterPlaceHolder(col, nthParameter);
+  }
+
   @Override
   public Set<String> listSequences(Connection db) throws SQLException {
     return listNamesFromSystemTable(db, "SEQUENCE_NAME", "SEQUENCES");
@@ -131,6 +159,24 @@ public class DialectHANA extends SqlDialect {
     }
   }
 
+  @Override
+  protected Map<String, Set<String>> listAllColumns(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT TABLE_NAME, COLUMN_NAME FROM TABLE_COLUMNS WHERE SCHEMA_NAME = CURRENT_SCHEMA",
+        tables);
+  }
+
+  @Override
+  protected Map<String, Set<String>> listAllIndexes(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT TABLE_NAME, INDEX_NAME FROM INDEXES WHERE SCHEMA_NAME = CURRENT_SCHEMA",
+        tables);
+  }
+
   @Override
   public boolean isStatementDelimiterSupported() {
     return false;
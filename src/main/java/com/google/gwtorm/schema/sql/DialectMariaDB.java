@@ -15,6 +15,8 @@
 package com.google.gwtorm.schema.sql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 /** Dialect for <a href="https://mariadb.com/">MariaDB</a> */
 public class DialectMariaDB extends DialectMySQL {
@@ -22,4 +24,10 @@ public class DialectMariaDB extends DialectMySQL {
   public boolean handles(String url, Connection c) {
     return url.startsWith("jdbc:mariadb:");
   }
+
+  @Override
+  public void setFetchSize(final PreparedStatement ps, final int fetchSize) throws SQLException {
+    // MariaDB Connector/J streams with a positive fetch size.
+    ps.setFetchSize(fetchSize);
+  }
 }
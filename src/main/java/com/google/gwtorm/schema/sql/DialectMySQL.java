@@ -16,18 +16,22 @@ package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.client.Column;
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.schema.SequenceModel;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.StatementExecutor;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /** Dialect for <a href="http://www.mysql.com/">MySQL</a> */
@@ -84,6 +88,33 @@ public class DialectMySQL extends SqlDialect {
     return url.startsWith("jdbc:mysql:");
   }
 
+  @Override
+  public void setFetchSize(final PreparedStatement ps, final int fetchSize) throws SQLException {
+    // Connector/J buffers the whole result unless asked to stream row by row.
+    ps.setFetchSize(Integer.MIN_VALUE);
+  }
+
+  @Override
+  public String getUpsertOneSql(final RelationModel rel) {
+    final StringBuilder r = new StringBuilder();
+    r.append(rel.getInsertOneSql(this));
+    r.append(" ON DUPLICATE KEY UPDATE ");
+    if (rel.getDependentColumns().isEmpty()) {
+      // Nothing to update; assign a key column to itself so the statement is a no-op.
+      final String pk = rel.getPrimaryKeyColumns().iterator().next().getColumnName();
+      r.append(pk).append("=").append(pk);
+      return r.toString();
+    }
+    String sep = "";
+    for (final ColumnModel col : rel.getDependentColumns()) {
+      r.append(sep);
+      r.append(col.getColumnName());
+      r.append("=VALUES(").append(col.getColumnName()).append(")");
+      sep = ",";
+    }
+    return r.toString();
+  }
+
   @Override
   public String getCreateSequenceSql(final SequenceModel seq) {
     final StringBuilder r = new StringBuilder();
@@ -103,6 +134,12 @@ public class DialectMySQL extends SqlDialect {
     return "DROP INDEX " + name + " ON " + tableName;
   }
 
+  @Override
+  public int getMaxInsertRows(final int columns) {
+    // Prepared statements accept at most 65535 placeholders.
+    return 65535 / Math.max(1, columns);
+  }
+
   @Override
   protected String getNextSequenceValueSql(final String seqname) {
     return seqname;
@@ -110,20 +147,46 @@ public class DialectMySQL extends SqlDialect {
 
   @Override
   public long nextLong(final Connection conn, final String seqname) throws OrmException {
+    return nextLongs(conn, seqname, 1)[0];
+  }
+
+  @Override
+  public long[] nextLongs(final Connection conn, final String seqname, final int count)
+      throws OrmException {
+    final long[] r = new long[count];
     try {
       final Statement st = conn.createStatement();
       try {
-        st.execute("INSERT INTO " + seqname + "(s)VALUES(NULL)", Statement.RETURN_GENERATED_KEYS);
-        final long r;
+        final StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(seqname).append("(s)VALUES");
+        for (int i = 0; i < count; i++) {
+          sql.append(i == 0 ? "(NULL)" : ",(NULL)");
+        }
+        st.execute(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+        int n = 0;
         final ResultSet rs = st.getGeneratedKeys();
         try {
-          if (!rs.next()) {
-            throw new SQLException("No result row for sequence query");
+          while (n < count && rs.next()) {
+            r[n++] = rs.getLong(1);
           }
-          r = rs.getLong(1);
         } finally {
           rs.close();
         }
+        if (n == 0) {
+          throw new SQLException("No result row for sequence query");
+        }
+
+        // Only the highest row is needed to continue the sequence, also after a
+        // restart of servers that recompute AUTO_INCREMENT from the table.
+        long max = 0;
+        for (int i = 0; i < n; i++) {
+          max = Math.max(max, r[i]);
+        }
+        st.executeUpdate("DELETE FROM " + seqname + " WHERE s < " + max);
+
+        for (; n < count; n++) {
+          r[n] = nextLong(conn, seqname);
+        }
         return r;
       } finally {
         st.close();
@@ -183,8 +246,7 @@ public class DialectMySQL extends SqlDialect {
       boolean serial = false;
       while (rs.next()) {
         cnt++;
-        if (rs.getInt("DATA_TYPE") == Types.BIGINT
-            && "YES".equalsIgnoreCase(rs.getString("IS_AUTOINCREMENT"))) {
+        if (isSerial(rs)) {
           serial = true;
         }
       }
@@ -194,6 +256,59 @@ public class DialectMySQL extends SqlDialect {
     }
   }
 
+  private static boolean isSerial(ResultSet columns) throws SQLException {
+    return columns.getInt("DATA_TYPE") == Types.BIGINT
+        && "YES".equalsIgnoreCase(columns.getString("IS_AUTOINCREMENT"));
+  }
+
+  @Override
+  public SchemaSnapshot snapshot(final Connection db) throws SQLException {
+    // Sequences are tables too; one pass over all columns tells them apart.
+    final Map<String, Set<String>> columns = new HashMap<>();
+    for (final String t : super.listTables(db)) {
+      columns.put(t, new HashSet<String>());
+    }
+    final Set<String> serial = new HashSet<>();
+    final ResultSet rs = db.getMetaData().getColumns(null, null, "%", null);
+    try {
+      while (rs.next()) {
+        final String table = rs.getString("TABLE_NAME").toLowerCase();
+        final Set<String> c = columns.get(table);
+        if (c != null) {
+          c.add(rs.getString("COLUMN_NAME").toLowerCase());
+          if (isSerial(rs)) {
+            serial.add(table);
+          }
+        }
+      }
+    } finally {
+      rs.close();
+    }
+
+    final Set<String> tables = new HashSet<>();
+    final Set<String> sequences = new HashSet<>();
+    for (final Map.Entry<String, Set<String>> e : columns.entrySet()) {
+      if (e.getValue().size() == 1 && serial.contains(e.getKey())) {
+        sequences.add(e.getKey());
+      } else {
+        tables.add(e.getKey());
+      }
+    }
+    columns.keySet().retainAll(tables);
+    return new SchemaSnapshot(tables, columns, listAllIndexes(db, tables), sequences);
+  }
+
+  @Override
+  protected Map<String, Set<String>> listAllIndexes(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT table_name, index_name"
+            + " FROM information_schema.statistics"
+            + " WHERE table_schema = DATABASE()",
+        tables);
+  }
+
   @Override
   public void renameTable(StatementExecutor e, String from, String to) throws OrmException {
     final StringBuilder r = new StringBuilder();
@@ -15,6 +15,7 @@
 package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.StatementExecutor;
@@ -25,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class DialectOracle extends SqlDialect {
@@ -49,6 +51,26 @@ public class DialectOracle extends SqlDialect {
     return false;
   }
 
+  @Override
+  public String getUpsertOneSql(final RelationModel rel) {
+    return getMergeSql(rel, getMergeSourceSelect(rel, " ", "FROM DUAL"));
+  }
+
+  @Override
+  protected String getCastParameterPlaceHolder(final ColumnModel col, final int nthParameter) {
+    // LOBs cannot be the target of a CAST; their parameters are typed by their binding.
+    if (getSqlTypeInfo(col).getCastType(col, this).endsWith("LOB")) {
+      return getParameterPlaceHolder(nthParameter);
+    }
+    return super.getCastParameterPlaceHolder(col, nthParameter);
+  }
+
+  @Override
+  public int getMaxInListSize() {
+    // ORA-01795: maximum number of expressions in a list is 1000
+    return 1000;
+  }
+
   @Override
   public Set<String> listTables(final Connection db) throws SQLException {
     Statement s = db.createStatement();
@@ -109,6 +131,18 @@ public class DialectOracle extends SqlDialect {
     }
   }
 
+  @Override
+  protected Map<String, Set<String>> listAllColumns(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(db, "SELECT table_name, column_name FROM user_tab_columns", tables);
+  }
+
+  @Override
+  protected Map<String, Set<String>> listAllIndexes(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(db, "SELECT table_name, index_name FROM user_indexes", tables);
+  }
+
   @Override
   public void addColumn(StatementExecutor stmt, String tableName, ColumnModel col)
       throws OrmException {
@@ -141,6 +175,11 @@ public class DialectOracle extends SqlDialect {
     return "SELECT " + seqname + ".nextval FROM dual";
   }
 
+  @Override
+  protected String getNextSequenceValuesSql(String seqname, int count) {
+    return "SELECT " + seqname + ".nextval FROM dual CONNECT BY LEVEL <= " + count;
+  }
+
   @Override
   public boolean selectHasLimit() {
     return false;
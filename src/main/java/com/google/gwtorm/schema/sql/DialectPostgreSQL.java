@@ -15,6 +15,7 @@
 package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.IndexModel;
 import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
@@ -25,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /** Dialect for <a href="http://www.postgresql.org/>PostgreSQL</a> */
@@ -45,10 +47,67 @@ public class DialectPostgreSQL extends SqlDialect {
     final int minor = c.getMetaData().getDatabaseMinorVersion();
     if (major < 8 || (major == 8 && minor < 2)) {
       return new Pre82();
+    } else if (major < 9 || (major == 9 && minor < 5)) {
+      return new Pre95();
     }
     return this;
   }
 
+  @Override
+  public boolean isStreamingRequiresTransaction() {
+    // The driver ignores the fetch size and buffers all rows in auto-commit mode.
+    return true;
+  }
+
+  @Override
+  public String getUpsertOneSql(final RelationModel rel) {
+    final StringBuilder r = new StringBuilder();
+    r.append(rel.getInsertOneSql(this));
+    r.append(" ON CONFLICT(");
+    String sep = "";
+    for (final ColumnModel col : rel.getPrimaryKeyColumns()) {
+      r.append(sep);
+      r.append(col.getColumnName());
+      sep = ",";
+    }
+    r.append(")");
+    if (rel.getDependentColumns().isEmpty()) {
+      r.append(" DO NOTHING");
+      return r.toString();
+    }
+    r.append(" DO UPDATE SET ");
+    sep = "";
+    for (final ColumnModel col : rel.getDependentColumns()) {
+      r.append(sep);
+      r.append(col.getColumnName());
+      r.append("=EXCLUDED.").append(col.getColumnName());
+      sep = ",";
+    }
+    return r.toString();
+  }
+
+  @Override
+  public String getBulkLoadSql(final RelationModel rel) {
+    final StringBuilder r = new StringBuilder();
+    r.append("COPY ");
+    r.append(rel.getRelationName());
+    r.append("(");
+    String sep = "";
+    for (final ColumnModel col : rel.getColumns()) {
+      r.append(sep);
+      r.append(col.getColumnName());
+      sep = ",";
+    }
+    r.append(") FROM STDIN");
+    return r.toString();
+  }
+
+  @Override
+  public long bulkLoad(final Connection conn, final String sql, final RowSource rows)
+      throws SQLException {
+    return PostgreSQLCopy.copyIn(conn, sql, rows);
+  }
+
   @Override
   public OrmException convertError(final String op, final String entity, final SQLException err) {
     switch (getSQLStateInt(err)) {
@@ -64,17 +123,42 @@ public class DialectPostgreSQL extends SqlDialect {
     }
   }
 
+  @Override
+  public int getMaxInsertRows(final int columns) {
+    // The protocol's Bind message counts parameters in a 16 bit integer.
+    return 32767 / Math.max(1, columns);
+  }
+
   @Override
   protected String getNextSequenceValueSql(final String seqname) {
     return "SELECT nextval('" + seqname + "')";
   }
 
+  @Override
+  protected String getNextSequenceValuesSql(final String seqname, final int count) {
+    return "SELECT nextval('" + seqname + "') FROM generate_series(1, " + count + ")";
+  }
+
   @Override
   public void appendCreateTableStorage(
       final StringBuilder sqlBuffer, final RelationModel relationModel) {
     sqlBuffer.append("WITH (OIDS = FALSE)");
   }
 
+  @Override
+  public String getCreateIndexSql(final IndexModel index) {
+    if (!createIndexConcurrently()) {
+      return super.getCreateIndexSql(index);
+    }
+    // Builds the index without locking out writes; cannot run inside a transaction.
+    return "CREATE INDEX CONCURRENTLY " + index.getIndexName() + " ON " + getIndexTargetSql(index);
+  }
+
+  /** @return true if indexes can be created while writes continue, added in PostgreSQL 8.2. */
+  protected boolean createIndexConcurrently() {
+    return true;
+  }
+
   @Override
   public void renameColumn(
       StatementExecutor stmt, String tableName, String fromColumn, ColumnModel col)
@@ -108,11 +192,41 @@ public class DialectPostgreSQL extends SqlDialect {
     }
   }
 
-  private static class Pre82 extends DialectPostgreSQL {
+  @Override
+  protected Map<String, Set<String>> listAllIndexes(Connection db, Set<String> tables)
+      throws SQLException {
+    return queryByTable(
+        db,
+        "SELECT tablename, indexname"
+            + " FROM pg_indexes"
+            + " WHERE schemaname = ANY (current_schemas(false))",
+        tables);
+  }
+
+  @Override
+  public boolean isBatchable(final String sql) {
+    // A batch runs as one transaction, which CREATE INDEX CONCURRENTLY refuses.
+    return !sql.startsWith("CREATE INDEX CONCURRENTLY ");
+  }
+
+  /** ON CONFLICT was added in PostgreSQL 9.5. */
+  private static class Pre95 extends DialectPostgreSQL {
+    @Override
+    public String getUpsertOneSql(final RelationModel rel) {
+      return null;
+    }
+  }
+
+  private static class Pre82 extends Pre95 {
     @Override
     public void appendCreateTableStorage(
         final StringBuilder sqlBuffer, final RelationModel relationModel) {
       sqlBuffer.append("WITHOUT OIDS");
     }
+
+    @Override
+    protected boolean createIndexConcurrently() {
+      return false;
+    }
   }
 }
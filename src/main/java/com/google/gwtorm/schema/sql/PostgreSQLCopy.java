@@ -0,0 +1,186 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.schema.sql;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streams rows to {@code COPY ... FROM STDIN} in PostgreSQL's text format.
+ *
+ * <p>The driver's {@code CopyManager} is called by reflection, so the driver is only needed at
+ * runtime, and only by applications using PostgreSQL.
+ */
+class PostgreSQLCopy {
+  private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+  static long copyIn(final Connection conn, final String sql, final SqlDialect.RowSource rows)
+      throws SQLException {
+    final Object copyManager;
+    final Method copyIn;
+    try {
+      final Class<?> pgConnection =
+          Class.forName(PG_CONNECTION, true, PostgreSQLCopy.class.getClassLoader());
+      final Object pg = pgConnection.isInstance(conn) ? conn : conn.unwrap(pgConnection);
+      copyManager = pgConnection.getMethod("getCopyAPI").invoke(pg);
+      copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+    } catch (ClassNotFoundException e) {
+      throw new SQLException("COPY requires the PostgreSQL driver", e);
+    } catch (NoSuchMethodException e) {
+      throw new SQLException("PostgreSQL driver has no COPY API", e);
+    } catch (IllegalAccessException e) {
+      throw new SQLException("PostgreSQL driver has no COPY API", e);
+    } catch (InvocationTargetException e) {
+      throw asSQLException(e.getCause());
+    }
+
+    try {
+      return (Long) copyIn.invoke(copyManager, sql, new RowReader(rows));
+    } catch (IllegalAccessException e) {
+      throw new SQLException("PostgreSQL driver has no COPY API", e);
+    } catch (InvocationTargetException e) {
+      throw asSQLException(e.getCause());
+    }
+  }
+
+  private static SQLException asSQLException(final Throwable err) {
+    if (err instanceof RowException) {
+      return ((RowException) err).getCause();
+    } else if (err instanceof SQLException) {
+      return (SQLException) err;
+    } else if (err instanceof RuntimeException) {
+      throw (RuntimeException) err;
+    } else if (err instanceof Error) {
+      throw (Error) err;
+    }
+    return new SQLException("COPY failed", err);
+  }
+
+  /** Rows of a {@link SqlDialect.RowSource}, encoded as they are read. */
+  static final class RowReader extends Reader {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SqlDialect.RowSource rows;
+    private final StringBuilder buf = new StringBuilder();
+    private int pos;
+    private boolean done;
+
+    RowReader(final SqlDialect.RowSource rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+      if (pos == buf.length()) {
+        buf.setLength(0);
+        pos = 0;
+      }
+      while (buf.length() - pos < len && !done) {
+        final Object[] row;
+        try {
+          row = rows.nextRow();
+        } catch (SQLException e) {
+          throw new RowException(e);
+        }
+        if (row == null) {
+          done = true;
+        } else {
+          appendRow(row);
+        }
+      }
+      if (pos == buf.length()) {
+        return len == 0 ? 0 : -1;
+      }
+      final int n = Math.min(len, buf.length() - pos);
+      buf.getChars(pos, pos + n, cbuf, off);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public void close() {
+      done = true;
+    }
+
+    private void appendRow(final Object[] row) {
+      for (int i = 0; i < row.length; i++) {
+        if (i > 0) {
+          buf.append('\t');
+        }
+        appendValue(row[i]);
+      }
+      buf.append('\n');
+    }
+
+    private void appendValue(final Object v) {
+      if (v == null) {
+        buf.append("\\N");
+      } else if (v instanceof Boolean) {
+        buf.append((Boolean) v ? 't' : 'f');
+      } else if (v instanceof Number) {
+        buf.append(v);
+      } else if (v instanceof Timestamp) {
+        // ISO 8601 in UTC, independent of the JVM's and the session's time zone.
+        buf.append(((Timestamp) v).toInstant());
+      } else if (v instanceof byte[]) {
+        // bytea hex format, its backslash escaped for COPY.
+        buf.append("\\\\x");
+        for (final byte b : (byte[]) v) {
+          buf.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+      } else {
+        final String s = v.toString();
+        for (int i = 0; i < s.length(); i++) {
+          final char c = s.charAt(i);
+          switch (c) {
+            case '\\':
+              buf.append("\\\\");
+              break;
+            case '\n':
+              buf.append("\\n");
+              break;
+            case '\r':
+              buf.append("\\r");
+              break;
+            case '\t':
+              buf.append("\\t");
+              break;
+            default:
+              buf.append(c);
+              break;
+          }
+        }
+      }
+    }
+  }
+
+  /** Carries the failure of a {@link SqlDialect.RowSource} through the driver's reads. */
+  @SuppressWarnings("serial")
+  private static final class RowException extends IOException {
+    RowException(final SQLException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+      return (SQLException) super.getCause();
+    }
+  }
+}
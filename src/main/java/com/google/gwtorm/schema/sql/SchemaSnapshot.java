@@ -0,0 +1,82 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.schema.sql;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tables, columns, indexes and sequences of a database schema, read at one point in time.
+ *
+ * <p>Built by {@link SqlDialect#snapshot(java.sql.Connection)} so a schema update can be planned
+ * without asking the database about each relation in turn. All names are in lowercase.
+ */
+public class SchemaSnapshot {
+  private final Set<String> tables;
+  private final Map<String, Set<String>> columns;
+  private final Map<String, Set<String>> indexes;
+  private final Set<String> sequences;
+
+  /**
+   * @param tables names of the tables.
+   * @param columns names of the columns of each table.
+   * @param indexes names of the indexes of each table.
+   * @param sequences names of the sequences.
+   */
+  public SchemaSnapshot(
+      final Set<String> tables,
+      final Map<String, Set<String>> columns,
+      final Map<String, Set<String>> indexes,
+      final Set<String> sequences) {
+    this.tables = Collections.unmodifiableSet(new HashSet<>(tables));
+    this.columns = Collections.unmodifiableMap(new HashMap<>(columns));
+    this.indexes = Collections.unmodifiableMap(new HashMap<>(indexes));
+    this.sequences = Collections.unmodifiableSet(new HashSet<>(sequences));
+  }
+
+  /** @return names of the tables. */
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  /**
+   * @param tableName the table, in any case.
+   * @return names of its columns; empty if the table does not exist.
+   */
+  public Set<String> getColumns(final String tableName) {
+    return get(columns, tableName);
+  }
+
+  /**
+   * @param tableName the table, in any case.
+   * @return names of its indexes; empty if the table does not exist.
+   */
+  public Set<String> getIndexes(final String tableName) {
+    return get(indexes, tableName);
+  }
+
+  /** @return names of the sequences. */
+  public Set<String> getSequences() {
+    return sequences;
+  }
+
+  private static Set<String> get(final Map<String, Set<String>> m, final String tableName) {
+    final Set<String> r = m.get(tableName.toLowerCase());
+    return r != null ? Collections.unmodifiableSet(r) : Collections.<String>emptySet();
+  }
+}
@@ -26,7 +26,7 @@ public class SqlBooleanTypeInfo extends SqlTypeInfo {
   public String getSqlType(final ColumnModel column, final SqlDialect dialect) {
     final String f = getFalseLiteralValue();
     final StringBuilder r = new StringBuilder();
-    r.append("CHAR(1)");
+    r.append(getCastType(column, dialect));
     if (column.isNotNull()) {
       r.append(" DEFAULT " + f);
       r.append(" NOT NULL");
@@ -34,6 +34,11 @@ public class SqlBooleanTypeInfo extends SqlTypeInfo {
     return r.toString();
   }
 
+  @Override
+  public String getCastType(final ColumnModel column, final SqlDialect dialect) {
+    return "CHAR(1)";
+  }
+
   @Override
   public String getCheckConstraint(final ColumnModel column, final SqlDialect dialect) {
     final String name = column.getColumnName();
@@ -24,7 +24,7 @@ public class SqlCharTypeInfo extends SqlTypeInfo {
   @Override
   public String getSqlType(final ColumnModel column, final SqlDialect dialect) {
     final StringBuilder r = new StringBuilder();
-    r.append("CHAR(1)");
+    r.append(getCastType(column, dialect));
     if (column.isNotNull()) {
       r.append(" DEFAULT ' '");
       r.append(" NOT NULL");
@@ -32,6 +32,11 @@ public class SqlCharTypeInfo extends SqlTypeInfo {
     return r.toString();
   }
 
+  @Override
+  public String getCastType(final ColumnModel column, final SqlDialect dialect) {
+    return "CHAR(1)";
+  }
+
   @Override
   protected String getJavaSqlTypeAlias() {
     return "String";
@@ -15,6 +15,7 @@
 package com.google.gwtorm.schema.sql;
 
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.IndexModel;
 import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.schema.SequenceModel;
 import com.google.gwtorm.server.OrmException;
@@ -22,6 +23,7 @@ import com.google.gwtorm.server.Sequence;
 import com.google.gwtorm.server.StatementExecutor;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -37,6 +39,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public abstract class SqlDialect {
   private static final List<SqlDialect> DIALECTS = new CopyOnWriteArrayList<>();
 
+  /** Rows per JDBC batch of the default {@link #bulkLoad(Connection, String, RowSource)}. */
+  protected static final int BULK_LOAD_BATCH_SIZE = 1000;
+
   static {
     DIALECTS.add(new DialectDB2());
     DIALECTS.add(new DialectDerby());
@@ -185,6 +190,52 @@ public abstract class SqlDialect {
     }
   }
 
+  /**
+   * Reserve several values of a sequence at once.
+   *
+   * <p>Dialects that can draw many values in one statement do so in a single round trip; others
+   * call {@link #nextLong(Connection, String)} once per value.
+   *
+   * @param conn connection to draw the values on.
+   * @param poolName name of the sequence.
+   * @param count number of values to reserve.
+   * @return the reserved values, in the order the database returned them.
+   * @throws OrmException the values could not be reserved.
+   */
+  public long[] nextLongs(final Connection conn, final String poolName, final int count)
+      throws OrmException {
+    final long[] r = new long[count];
+    final String query = 1 < count ? getNextSequenceValuesSql(poolName, count) : null;
+    if (query == null) {
+      for (int i = 0; i < count; i++) {
+        r[i] = nextLong(conn, poolName);
+      }
+      return r;
+    }
+    try {
+      final Statement st = conn.createStatement();
+      try {
+        final ResultSet rs = st.executeQuery(query);
+        try {
+          int n = 0;
+          while (n < count && rs.next()) {
+            r[n++] = rs.getLong(1);
+          }
+          if (n < count) {
+            throw new SQLException("Expected " + count + " rows from sequence query, got " + n);
+          }
+          return r;
+        } finally {
+          rs.close();
+        }
+      } finally {
+        st.close();
+      }
+    } catch (SQLException e) {
+      throw convertError("sequence", query, e);
+    }
+  }
+
   public String getCreateSequenceSql(final SequenceModel seq) {
     final Sequence s = seq.getSequence();
     final StringBuilder r = new StringBuilder();
@@ -324,6 +375,133 @@ public abstract class SqlDialect {
     }
   }
 
+  /**
+   * Read the tables, columns, indexes and sequences of the current database schema.
+   *
+   * <p>Columns and indexes are read for all tables at once where the dialect can, rather than with
+   * one round trip per table.
+   *
+   * @param db connection to the schema.
+   * @return the schema as it is now.
+   * @throws SQLException the schema cannot be read.
+   */
+  public SchemaSnapshot snapshot(final Connection db) throws SQLException {
+    final Set<String> tables = listTables(db);
+    return new SchemaSnapshot(
+        tables, listAllColumns(db, tables), listAllIndexes(db, tables), listSequences(db));
+  }
+
+  /**
+   * List the columns of many tables.
+   *
+   * @param db connection to the schema.
+   * @param tables the tables, in lowercase.
+   * @return columns of each table, all in lowercase.
+   * @throws SQLException the columns cannot be listed.
+   */
+  protected Map<String, Set<String>> listAllColumns(final Connection db, final Set<String> tables)
+      throws SQLException {
+    final ResultSet rs = db.getMetaData().getColumns(null, null, "%", null);
+    try {
+      return groupByTable(rs, "TABLE_NAME", "COLUMN_NAME", tables);
+    } finally {
+      rs.close();
+    }
+  }
+
+  /**
+   * List the indexes of many tables.
+   *
+   * <p>JDBC can only describe the indexes of one table at a time, so by default this calls {@link
+   * #listIndexes(Connection, String)} for each table.
+   *
+   * @param db connection to the schema.
+   * @param tables the tables, in lowercase.
+   * @return indexes of each table, all in lowercase.
+   * @throws SQLException the indexes cannot be listed.
+   */
+  protected Map<String, Set<String>> listAllIndexes(final Connection db, final Set<String> tables)
+      throws SQLException {
+    final Map<String, Set<String>> indexes = new HashMap<>();
+    for (final String t : tables) {
+      indexes.put(t, listIndexes(db, t));
+    }
+    return indexes;
+  }
+
+  /**
+   * Run a catalog query and group its results by table.
+   *
+   * @param db connection to the schema.
+   * @param sql query returning a table name then an object name in each row.
+   * @param tables tables to keep, in lowercase; rows of other tables are skipped.
+   * @return names in lowercase, by table.
+   * @throws SQLException the query failed.
+   */
+  protected static Map<String, Set<String>> queryByTable(
+      final Connection db, final String sql, final Set<String> tables) throws SQLException {
+    final Statement s = db.createStatement();
+    try {
+      final ResultSet rs = s.executeQuery(sql);
+      try {
+        return groupByTable(rs, 1, 2, tables);
+      } finally {
+        rs.close();
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  /**
+   * Group names in a result set by the table they belong to.
+   *
+   * @param rs rows to read, to the end.
+   * @param tableColumn label of the column holding the table name.
+   * @param nameColumn label of the column holding the name.
+   * @param tables tables to keep, in lowercase; rows of other tables are skipped.
+   * @return names in lowercase, by table.
+   * @throws SQLException the rows cannot be read.
+   */
+  protected static Map<String, Set<String>> groupByTable(
+      final ResultSet rs,
+      final String tableColumn,
+      final String nameColumn,
+      final Set<String> tables)
+      throws SQLException {
+    return groupByTable(rs, rs.findColumn(tableColumn), rs.findColumn(nameColumn), tables);
+  }
+
+  private static Map<String, Set<String>> groupByTable(
+      final ResultSet rs, final int tableColumn, final int nameColumn, final Set<String> tables)
+      throws SQLException {
+    final Map<String, Set<String>> r = new HashMap<>();
+    for (final String t : tables) {
+      r.put(t, new HashSet<String>());
+    }
+    while (rs.next()) {
+      final String table = rs.getString(tableColumn);
+      final String name = rs.getString(nameColumn);
+      if (table != null && name != null) {
+        final Set<String> names = r.get(table.toLowerCase());
+        if (names != null) {
+          names.add(name.toLowerCase());
+        }
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Check if a DDL statement may be sent to the database in a batch with others.
+   *
+   * @param sql statement built by this dialect.
+   * @return true if the statement can be batched; false if it must be executed on its own.
+   */
+  public boolean isBatchable(final String sql) {
+    return true;
+  }
+
   /**
    * Add one column to an existing table.
    *
@@ -379,6 +557,34 @@ public abstract class SqlDialect {
       StatementExecutor e, String tableName, String fromColumn, ColumnModel col)
       throws OrmException;
 
+  /**
+   * Get the statement creating a secondary index derived from the queries of a relation.
+   *
+   * <p>Dialects able to build an index without blocking writes to the table should do so, as the
+   * index may be added to a large table of a running site.
+   *
+   * @param index definition of the index.
+   * @return the CREATE INDEX statement.
+   */
+  public String getCreateIndexSql(final IndexModel index) {
+    return "CREATE INDEX " + index.getIndexName() + " ON " + getIndexTargetSql(index);
+  }
+
+  /** @return the table and parenthesized column list of an index. */
+  protected String getIndexTargetSql(final IndexModel index) {
+    final StringBuilder r = new StringBuilder();
+    r.append(index.getRelationName());
+    r.append(" (");
+    for (int i = 0; i < index.getColumns().size(); i++) {
+      if (i > 0) {
+        r.append(",");
+      }
+      r.append(index.getColumns().get(i).getColumnName());
+    }
+    r.append(")");
+    return r.toString();
+  }
+
   /**
    * Drop one index from a table.
    *
@@ -397,6 +603,273 @@ public abstract class SqlDialect {
 
   protected abstract String getNextSequenceValueSql(String seqname);
 
+  /**
+   * Get a query returning {@code count} rows, each holding a new value of the sequence.
+   *
+   * @param seqname name of the sequence.
+   * @param count number of values to draw, at least 2.
+   * @return the query; null if the dialect cannot draw several values in one statement.
+   */
+  protected String getNextSequenceValuesSql(String seqname, int count) {
+    return null;
+  }
+
+  /**
+   * Get the maximum number of rows one multi-row {@code INSERT ... VALUES (...),(...)} may carry.
+   *
+   * @param columns number of columns bound for each row.
+   * @return maximum rows per statement; 0 if the database has no multi-row VALUES syntax.
+   */
+  public int getMaxInsertRows(final int columns) {
+    return 0;
+  }
+
+  /**
+   * Get the maximum number of values the database accepts in a single {@code IN (...)} list.
+   *
+   * @return maximum number of expressions in an IN list; {@link Integer#MAX_VALUE} if the database
+   *     has no practical limit.
+   */
+  public int getMaxInListSize() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Configure a query to stream its results rather than buffer them all in memory.
+   *
+   * @param ps the query, not yet executed.
+   * @param fetchSize number of rows to fetch per round trip to the database.
+   * @throws SQLException the driver rejected the fetch size.
+   */
+  public void setFetchSize(final PreparedStatement ps, final int fetchSize) throws SQLException {
+    ps.setFetchSize(fetchSize);
+  }
+
+  /**
+   * Does the driver only honor {@link #setFetchSize(PreparedStatement, int)} inside a transaction?
+   *
+   * @return true if auto-commit must be off for results to be streamed.
+   */
+  public boolean isStreamingRequiresTransaction() {
+    return false;
+  }
+
+  /**
+   * Get the SQL to insert a row, or update the existing row with the same primary key, in a single
+   * statement.
+   *
+   * <p>The statement must take the same parameters, in the same order, as {@link
+   * RelationModel#getInsertOneSql(SqlDialect)}, so that it can be bound like an insert.
+   *
+   * @param rel the relation to upsert into.
+   * @return the SQL; null if the database has no native upsert. Callers then update first and
+   *     insert the rows that were missing.
+   */
+  public String getUpsertOneSql(final RelationModel rel) {
+    return null;
+  }
+
+  /** Rows streamed to {@link SqlDialect#bulkLoad(Connection, String, RowSource)}. */
+  public interface RowSource {
+    /**
+     * @return values of the next row, in the order they are bound to {@link
+     *     RelationModel#getInsertOneSql(SqlDialect)}; null after the last row.
+     * @throws SQLException the row could not be produced.
+     */
+    Object[] nextRow() throws SQLException;
+  }
+
+  /**
+   * Get the statement starting a bulk load of the relation.
+   *
+   * @param rel the relation to load rows into.
+   * @return the SQL, taking the columns in the order of {@link
+   *     RelationModel#getInsertOneSql(SqlDialect)}; null if the database has no bulk load facility
+   *     usable through JDBC.
+   */
+  public String getBulkLoadSql(final RelationModel rel) {
+    return null;
+  }
+
+  /**
+   * Stream rows into a table through the database's bulk load facility.
+   *
+   * <p>Rows are read from the source as they are sent, so the whole input is never held in
+   * memory. Either all rows are loaded or, on failure, none are.
+   *
+   * <p>By default {@code sql} is a parameterized INSERT of one row, executed in JDBC batches of
+   * {@link #BULK_LOAD_BATCH_SIZE} rows within a transaction.
+   *
+   * @param conn connection to load the rows on.
+   * @param sql statement from {@link #getBulkLoadSql(RelationModel)}.
+   * @param rows the rows to load.
+   * @return number of rows loaded.
+   * @throws SQLException the rows could not be loaded.
+   */
+  public long bulkLoad(final Connection conn, final String sql, final RowSource rows)
+      throws SQLException {
+    final boolean autoCommit = conn.getAutoCommit();
+    if (autoCommit) {
+      conn.setAutoCommit(false);
+    }
+    boolean ok = false;
+    try {
+      long count = 0;
+      final PreparedStatement ps = conn.prepareStatement(sql);
+      try {
+        int[] types = null;
+        int batched = 0;
+        Object[] row;
+        while ((row = rows.nextRow()) != null) {
+          for (int i = 0; i < row.length; i++) {
+            if (row[i] != null) {
+              ps.setObject(i + 1, row[i]);
+            } else {
+              if (types == null) {
+                types = parameterTypes(ps, row.length);
+              }
+              ps.setNull(i + 1, types[i]);
+            }
+          }
+          ps.addBatch();
+          count++;
+          if (++batched == BULK_LOAD_BATCH_SIZE) {
+            ps.executeBatch();
+            batched = 0;
+          }
+        }
+        if (0 < batched) {
+          ps.executeBatch();
+        }
+      } finally {
+        ps.close();
+      }
+      ok = true;
+      return count;
+    } finally {
+      if (autoCommit) {
+        try {
+          if (ok) {
+            conn.commit();
+          } else {
+            conn.rollback();
+          }
+        } finally {
+          conn.setAutoCommit(true);
+        }
+      }
+    }
+  }
+
+  private static int[] parameterTypes(final PreparedStatement ps, final int count)
+      throws SQLException {
+    final int[] types = new int[count];
+    final ParameterMetaData md = ps.getParameterMetaData();
+    for (int i = 0; i < count; i++) {
+      types[i] = md.getParameterType(i + 1);
+    }
+    return types;
+  }
+
+  /**
+   * Build a standard SQL {@code MERGE} statement upserting one row into a relation.
+   *
+   * @param rel the relation to upsert into; its table is aliased as {@code t}.
+   * @param source the {@code USING} clause supplying one row, aliased as {@code s}, with one
+   *     column per column of the relation, named after it and bound in insert order.
+   * @return the MERGE statement.
+   */
+  protected String getMergeSql(final RelationModel rel, final String source) {
+    final StringBuilder r = new StringBuilder();
+    r.append("MERGE INTO ");
+    r.append(rel.getRelationName());
+    r.append(" t USING ");
+    r.append(source);
+    r.append(" ON (");
+    String sep = "";
+    for (final ColumnModel col : rel.getPrimaryKeyColumns()) {
+      r.append(sep);
+      r.append("t.").append(col.getColumnName());
+      r.append("=s.").append(col.getColumnName());
+      sep = " AND ";
+    }
+    r.append(")");
+
+    if (!rel.getDependentColumns().isEmpty()) {
+      r.append(" WHEN MATCHED THEN UPDATE SET ");
+      sep = "";
+      for (final ColumnModel col : rel.getDependentColumns()) {
+        r.append(sep);
+        r.append("t.").append(col.getColumnName());
+        r.append("=s.").append(col.getColumnName());
+        sep = ",";
+      }
+    }
+
+    r.append(" WHEN NOT MATCHED THEN INSERT(");
+    sep = "";
+    for (final ColumnModel col : rel.getColumns()) {
+      r.append(sep);
+      r.append(col.getColumnName());
+      sep = ",";
+    }
+    r.append(")VALUES(");
+    sep = "";
+    for (final ColumnModel col : rel.getColumns()) {
+      r.append(sep);
+      r.append("s.").append(col.getColumnName());
+      sep = ",";
+    }
+    r.append(")");
+    return r.toString();
+  }
+
+  /**
+   * Build a {@code SELECT} of one parameter per column of the relation, each cast to its column's
+   * type, for use as the source of {@link #getMergeSql(RelationModel, String)}.
+   *
+   * @param rel the relation.
+   * @param columnAlias text placed between a parameter and its column name, e.g. {@code " AS "}.
+   * @param from the FROM clause, including the keyword, selecting exactly one row.
+   * @return the parenthesized SELECT, aliased as {@code s}.
+   */
+  protected String getMergeSourceSelect(
+      final RelationModel rel, final String columnAlias, final String from) {
+    final StringBuilder r = new StringBuilder();
+    r.append("(SELECT ");
+    int nth = 1;
+    String sep = "";
+    for (final ColumnModel col : rel.getColumns()) {
+      r.append(sep);
+      r.append(getCastParameterPlaceHolder(col, nth++));
+      r.append(columnAlias);
+      r.append(col.getColumnName());
+      sep = ",";
+    }
+    r.append(" ");
+    r.append(from);
+    r.append(") s");
+    return r.toString();
+  }
+
+  /**
+   * Get the placeholder of a parameter cast to the type of its column.
+   *
+   * <p>Used where the database cannot infer the type of a parameter from its context, such as in
+   * the source row of a MERGE.
+   *
+   * @param col the column the parameter is a value of.
+   * @param nthParameter the position of the parameter.
+   * @return the placeholder, e.g. {@code CAST(? AS INT)}.
+   */
+  protected String getCastParameterPlaceHolder(final ColumnModel col, final int nthParameter) {
+    return "CAST("
+        + getParameterPlaceHolder(nthParameter)
+        + " AS "
+        + getSqlTypeInfo(col).getCastType(col, this)
+        + ")";
+  }
+
   /**
    * Does the array returned by the PreparedStatement.executeBatch method return the exact number of
    * rows updated for every row in the batch?
@@ -41,17 +41,8 @@ public class SqlStringTypeInfo extends SqlTypeInfo {
 
   @Override
   public String getSqlType(final ColumnModel col, final SqlDialect dialect) {
-    final Column column = col.getColumnAnnotation();
     final StringBuilder r = new StringBuilder();
-
-    if (column.length() <= 0) {
-      r.append("VARCHAR(255)");
-    } else if (column.length() <= 255) {
-      r.append("VARCHAR(" + column.length() + ")");
-    } else {
-      r.append(dialect.getSqlTypeName(Types.LONGVARCHAR));
-    }
-
+    r.append(getCastType(col, dialect));
     if (col.isNotNull()) {
       r.append(" DEFAULT ''");
       r.append(" NOT NULL");
@@ -60,6 +51,18 @@ public class SqlStringTypeInfo extends SqlTypeInfo {
     return r.toString();
   }
 
+  @Override
+  public String getCastType(final ColumnModel col, final SqlDialect dialect) {
+    final Column column = col.getColumnAnnotation();
+    if (column.length() <= 0) {
+      return "VARCHAR(255)";
+    } else if (column.length() <= 255) {
+      return "VARCHAR(" + column.length() + ")";
+    } else {
+      return dialect.getSqlTypeName(Types.LONGVARCHAR);
+    }
+  }
+
   @Override
   public void generatePreparedStatementSet(final CodeGenSupport cgs) {
     if (cgs.getFieldReference().getColumnAnnotation().length() <= 255) {
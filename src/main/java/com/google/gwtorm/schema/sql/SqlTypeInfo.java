@@ -25,6 +25,15 @@ public abstract class SqlTypeInfo {
 
   public abstract String getSqlType(ColumnModel column, SqlDialect dialect);
 
+  /**
+   * Get the type of the column's values, without the default and constraints of the column.
+   *
+   * @return the type, as named in {@code CAST(value AS type)}.
+   */
+  public String getCastType(final ColumnModel column, final SqlDialect dialect) {
+    return dialect.getSqlTypeName(getSqlTypeConstant());
+  }
+
   public String getCheckConstraint(final ColumnModel column, final SqlDialect dialect) {
     return null;
   }
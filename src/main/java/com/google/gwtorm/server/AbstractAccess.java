@@ -18,27 +18,383 @@ import com.google.common.util.concurrent.CheckedFuture;
 import com.google.common.util.concurrent.Futures;
 import com.google.gwtorm.client.Key;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 public abstract class AbstractAccess<E, K extends Key<?>> implements Access<E, K> {
   private static final int MAX_TRIES = 10;
 
+  private long readVersion;
+  private long queryVersion;
+  private boolean bypassCache;
+
   @Override
   public void beginTransaction(K key) throws OrmException {
     // Do nothing by default.
   }
 
   @Override
-  public CheckedFuture<E, OrmException> getAsync(K key) {
+  public CheckedFuture<E, OrmException> getAsync(final K key) {
+    return submitAsync(
+        new AsyncAccessExecutor.Call<E>() {
+          @Override
+          public E call(Access<?, ?> access) throws OrmException {
+            return cast(access).get(key);
+          }
+        });
+  }
+
+  @Override
+  public CheckedFuture<ResultSet<E>, OrmException> getAsync(final Iterable<K> keys) {
+    final List<K> copy = new ArrayList<>();
+    for (final K key : keys) {
+      copy.add(key);
+    }
+    return submitAsync(
+        new AsyncAccessExecutor.Call<ResultSet<E>>() {
+          @Override
+          public ResultSet<E> call(Access<?, ?> access) throws OrmException {
+            return new ListResultSet<>(cast(access).get(copy).toList());
+          }
+        });
+  }
+
+  /**
+   * Run a query method of this Access asynchronously.
+   *
+   * <p>Generated implementations of {@code fooAsync(...)} methods delegate here, numbering the
+   * synchronous {@code foo(...)} query method to run.
+   *
+   * @param query number of the query method, as understood by {@link #runQuery(int, Object[])}.
+   * @param args arguments to pass to the query method.
+   * @return a {@link CheckedFuture} for the fully read query results.
+   */
+  protected CheckedFuture<ResultSet<E>, OrmException> queryAsync(
+      final int query, final Object[] args) {
+    return submitAsync(
+        new AsyncAccessExecutor.Call<ResultSet<E>>() {
+          @Override
+          public ResultSet<E> call(Access<?, ?> access) throws OrmException {
+            return new ListResultSet<>(cast(access).runQuery(query, args).toList());
+          }
+        });
+  }
+
+  /**
+   * Run a query method; implemented by generated code for the queries with an Async variant.
+   *
+   * @param query number of the query method.
+   * @param args arguments to pass to the query method.
+   * @return the query results.
+   * @throws OrmException the query failed, or there is no query with that number.
+   */
+  protected ResultSet<E> runQuery(final int query, final Object[] args) throws OrmException {
+    throw new OrmException("Query " + query + " not defined on " + getRelationName());
+  }
+
+  /** @return executor for asynchronous calls; null to run them on the calling thread. */
+  protected AsyncAccessExecutor getAsyncExecutor() {
+    return null;
+  }
+
+  /** @return identity map of the Schema; null if it does not keep one. */
+  protected IdentityMap getIdentityMap() {
+    return null;
+  }
+
+  /** @return cache shared by all Schemas of the database; null if there is none. */
+  protected EntityCache getEntityCache() {
+    return null;
+  }
+
+  /** @return cache of query results shared by all Schemas; null if there is none. */
+  protected QueryCache getQueryCache() {
+    return null;
+  }
+
+  /**
+   * Determine if reads may use and fill the caches shared with other Schemas.
+   *
+   * <p>Implementations should return false while the Schema may see writes not yet visible to
+   * other Schemas, such as inside a transaction.
+   *
+   * @return true if shared caches may be used.
+   */
+  protected boolean canShareReads() {
+    return true;
+  }
+
+  /**
+   * Lookup the result of a cached query.
+   *
+   * <p>If the result is not cached, the caller should run the query and pass the result to {@link
+   * #rememberQuery(String, Object[], ResultSet)}.
+   *
+   * @param queryName name of the query method.
+   * @param args the arguments of the query method.
+   * @return the cached result; null if the query must be run.
+   */
+  @SuppressWarnings("unchecked")
+  protected ResultSet<E> lookupQuery(final String queryName, final Object[] args) {
+    final QueryCache cache = getQueryCache();
+    if (cache == null || !canShareReads()) {
+      return null;
+    }
+    queryVersion = cache.getVersion(getRelationName());
+    final List<Object> rows = cache.get(getRelationName(), queryName, args);
+    return rows != null ? new ListResultSet<>((List<E>) rows) : null;
+  }
+
+  /**
+   * Store the result of a cached query.
+   *
+   * @param queryName name of the query method.
+   * @param args the arguments of the query method.
+   * @param rs the result of the query; consumed by this method.
+   * @return the result, to be returned to the caller.
+   */
+  protected ResultSet<E> rememberQuery(
+      final String queryName, final Object[] args, final ResultSet<E> rs) {
+    final QueryCache cache = getQueryCache();
+    if (cache == null || !canShareReads()) {
+      return rs;
+    }
+    final List<E> rows = rs.toList();
+    cache.put(getRelationName(), queryName, args, queryVersion, rows);
+    return new ListResultSet<>(rows);
+  }
+
+  /**
+   * Lookup an entity in the Schema's identity map, then in the database's shared cache.
+   *
+   * <p>If neither holds the entity, the caller should read it and pass the result to {@link
+   * #rememberLoaded(Object)}.
+   *
+   * @param key primary key of the entity.
+   * @return the entity; null if no cache holds it.
+   * @throws OrmException a fully resident relation could not be read.
+   */
+  @SuppressWarnings("unchecked")
+  protected E lookupCached(final K key) throws OrmException {
+    if (bypassCache) {
+      return null;
+    }
+    final IdentityMap map = getIdentityMap();
+    if (map != null) {
+      final E e = (E) map.get(getRelationName(), key);
+      if (e != null) {
+        return e;
+      }
+    }
+
+    final EntityCache.RelationCache rc = relationCache();
+    if (rc != null && canShareReads()) {
+      if (rc.config.isFullyResident() && !rc.loaded) {
+        loadResident(rc);
+      }
+      readVersion = rc.getVersion();
+      final E e = (E) rc.get(key);
+      if (e != null && map != null) {
+        map.put(getRelationName(), key, e);
+      }
+      return e;
+    }
+    return null;
+  }
+
+  /**
+   * Lookup several entities in the caches, reading the missing ones from the data store.
+   *
+   * @param keys primary keys of the entities.
+   * @return the entities found; duplicate keys are returned only once.
+   * @throws OrmException the data lookup failed.
+   */
+  protected ResultSet<E> getThroughCache(final Iterable<K> keys) throws OrmException {
+    final List<E> found = new ArrayList<>();
+    final List<K> missing = new ArrayList<>();
+    for (final K key : new LinkedHashSet<>(toList(keys))) {
+      final E e = lookupCached(key);
+      if (e != null) {
+        found.add(e);
+      } else {
+        missing.add(key);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      // The keys were just looked up; don't count them again as misses.
+      bypassCache = true;
+      try {
+        for (final E e : fetchUncached(missing)) {
+          found.add(rememberLoaded(e));
+        }
+      } finally {
+        bypassCache = false;
+      }
+    }
+    return new ListResultSet<>(found);
+  }
+
+  /**
+   * Read entities from the data store for {@link #getThroughCache(Iterable)}.
+   *
+   * @param keys distinct primary keys of the entities.
+   * @return the entities found.
+   * @throws OrmException the data lookup failed.
+   */
+  protected ResultSet<E> fetchUncached(final Collection<K> keys) throws OrmException {
+    return get(keys);
+  }
+
+  /** @return true if lookups should go through {@link #lookupCached(Key)}. */
+  protected boolean isCaching() {
+    return getIdentityMap() != null || relationCache() != null;
+  }
+
+  /**
+   * Store an entity read from the data store in the caches.
+   *
+   * @param entity the entity; may be null.
+   * @return {@code entity}.
+   */
+  protected E rememberLoaded(final E entity) {
+    if (entity != null) {
+      final IdentityMap map = getIdentityMap();
+      if (map != null) {
+        map.put(getRelationName(), primaryKey(entity), entity);
+      }
+      final EntityCache.RelationCache rc = relationCache();
+      if (rc != null && !rc.config.isFullyResident() && canShareReads()) {
+        rc.put(primaryKey(entity), entity, readVersion);
+      }
+    }
+    return entity;
+  }
+
+  /**
+   * Remove entities about to be written or deleted from the caches.
+   *
+   * @param instances the entities; iterated only once.
+   * @return the same entities, safe to iterate again if any cache is enabled.
+   */
+  protected Iterable<E> beforeWrite(final Iterable<E> instances) {
+    if (getIdentityMap() == null && getEntityCache() == null) {
+      return instances;
+    }
+    final List<E> list = toList(instances);
+    forget(list);
+    return list;
+  }
+
+  /**
+   * Update the caches after entities were written or deleted.
+   *
+   * @param instances the entities returned by {@link #beforeWrite(Iterable)}.
+   * @param deleted true if the entities were deleted; false to remember them in the identity map.
+   */
+  protected void afterWrite(final Iterable<E> instances, final boolean deleted) {
+    final IdentityMap map = getIdentityMap();
+    if (map != null && !deleted) {
+      for (final E e : instances) {
+        map.put(getRelationName(), primaryKey(e), e);
+      }
+    }
+    if (getEntityCache() != null) {
+      final List<K> keys = new ArrayList<>();
+      for (final E e : instances) {
+        keys.add(primaryKey(e));
+      }
+      invalidateShared(keys);
+    }
+  }
+
+  /**
+   * Remove an entity about to be modified from the caches.
+   *
+   * @param key primary key of the entity.
+   */
+  protected void forgetKey(final K key) {
+    final IdentityMap map = getIdentityMap();
+    if (map != null) {
+      map.remove(getRelationName(), key);
+    }
+    if (getEntityCache() != null) {
+      invalidateShared(Collections.singletonList(key));
+    }
+  }
+
+  /**
+   * Discard copies of written entities from the database's shared cache.
+   *
+   * <p>Called before a write and again once it completed. Implementations with transactions should
+   * also invalidate the keys again when the transaction commits.
+   *
+   * @param keys primary keys of the written entities.
+   */
+  protected void invalidateShared(final Collection<K> keys) {
+    getEntityCache().invalidate(getRelationName(), keys);
+  }
+
+  private void forget(final List<E> instances) {
+    final IdentityMap map = getIdentityMap();
+    final List<K> keys = new ArrayList<>(instances.size());
+    for (final E e : instances) {
+      final K key = primaryKey(e);
+      keys.add(key);
+      if (map != null) {
+        map.remove(getRelationName(), key);
+      }
+    }
+    if (getEntityCache() != null) {
+      invalidateShared(keys);
+    }
+  }
+
+  private EntityCache.RelationCache relationCache() {
+    final EntityCache cache = getEntityCache();
+    return cache != null ? cache.get(getRelationName()) : null;
+  }
+
+  private void loadResident(final EntityCache.RelationCache rc) throws OrmException {
+    final long version = rc.getVersion();
+    for (final E e : iterateAllEntities()) {
+      rc.put(primaryKey(e), e, version);
+    }
+    rc.loaded = rc.getVersion() == version;
+  }
+
+  private static <T> List<T> toList(final Iterable<T> items) {
+    if (items instanceof List) {
+      return (List<T>) items;
+    }
+    final List<T> list = new ArrayList<>();
+    for (final T i : items) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  private <R> CheckedFuture<R, OrmException> submitAsync(final AsyncAccessExecutor.Call<R> call) {
+    final AsyncAccessExecutor executor = getAsyncExecutor();
+    if (executor != null) {
+      return executor.submit(getRelationName(), call);
+    }
     try {
-      return Futures.immediateCheckedFuture(get(key));
+      return Futures.immediateCheckedFuture(call.call(this));
     } catch (OrmException e) {
       return Futures.immediateFailedCheckedFuture(e);
     }
   }
 
+  @SuppressWarnings("unchecked")
+  private AbstractAccess<E, K> cast(final Access<?, ?> access) {
+    return (AbstractAccess<E, K>) access;
+  }
+
   @Override
   public ResultSet<E> get(final Iterable<K> keys) throws OrmException {
     final ArrayList<E> r = new ArrayList<>();
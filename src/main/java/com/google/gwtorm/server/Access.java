@@ -123,6 +123,19 @@ public interface Access<T extends Object, K extends Key<?>> {
    */
   ResultSet<T> get(Iterable<K> keys) throws OrmException;
 
+  /**
+   * Lookup multiple entities asynchronously via their primary key.
+   *
+   * <p>The returned result set is fully read before the future completes, so it may be iterated
+   * on any thread.
+   *
+   * @param keys collection of zero or more keys to perform lookup with.
+   * @return a {@link CheckedFuture} for all matching entities.
+   * @throws UnsupportedOperationException the key type doesn't implement Key.
+   * @see #get(Iterable)
+   */
+  CheckedFuture<ResultSet<T>, OrmException> getAsync(Iterable<K> keys);
+
   /**
    * Immediately insert new entities into the data store.
    *
@@ -131,6 +144,18 @@ public interface Access<T extends Object, K extends Key<?>> {
    */
   void insert(Iterable<T> instances) throws OrmException;
 
+  /**
+   * Immediately insert many new entities through the data store's bulk load facility.
+   *
+   * <p>Data stores without one, as by default, perform a regular {@link #insert(Iterable)}.
+   *
+   * @param instances the instances to insert. The iteration occurs only once.
+   * @throws OrmException data insertion failed.
+   */
+  default void bulkInsert(Iterable<T> instances) throws OrmException {
+    insert(instances);
+  }
+
   /**
    * Immediately update existing entities in the data store.
    *
@@ -0,0 +1,148 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link Access} calls in the background.
+ *
+ * <p>Schema instances are not thread-safe, so each call opens a Schema of its own from the
+ * factory, runs against the same relation in that Schema, and closes it again. Results must
+ * therefore be fully read before the call returns.
+ */
+public class AsyncAccessExecutor {
+  /** Work to perform against an Access of a freshly opened Schema. */
+  public interface Call<R> {
+    R call(Access<?, ?> access) throws OrmException;
+  }
+
+  static final Function<Exception, OrmException> MAPPER =
+      new Function<Exception, OrmException>() {
+        @Override
+        public OrmException apply(Exception e) {
+          if (e instanceof OrmException) {
+            return (OrmException) e;
+          } else if (e instanceof ExecutionException && e.getCause() instanceof OrmException) {
+            return (OrmException) e.getCause();
+          }
+          return new OrmException(e);
+        }
+      };
+
+  /**
+   * Create an executor suitable for database calls.
+   *
+   * <p>On JVMs with virtual threads every task gets a virtual thread of its own, and concurrency
+   * is bounded by the connection pool. Otherwise a pool of at most {@code maxThreads} daemon
+   * threads is used, queueing any excess tasks.
+   *
+   * @param maxThreads maximum number of platform threads, if virtual threads are unavailable.
+   * @return the executor.
+   */
+  public static ExecutorService newDefaultExecutor(final int maxThreads) {
+    try {
+      final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) m.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // Not available before Java 21.
+    }
+
+    final ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("gwtorm-async-%d").setDaemon(true).build());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  private final SchemaFactory<?> factory;
+  private final Executor executor;
+  private final boolean readOnly;
+
+  /**
+   * @param factory source of the Schema each call runs against.
+   * @param executor executor to run calls on.
+   */
+  public AsyncAccessExecutor(final SchemaFactory<?> factory, final Executor executor) {
+    this(factory, executor, false);
+  }
+
+  /**
+   * @param factory source of the Schema each call runs against.
+   * @param executor executor to run calls on.
+   * @param readOnly true to open each Schema with {@link SchemaFactory#openReadOnly()}, for calls
+   *     made through a read-only Schema.
+   */
+  public AsyncAccessExecutor(
+      final SchemaFactory<?> factory, final Executor executor, final boolean readOnly) {
+    this.factory = factory;
+    this.executor = executor;
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * Run a call in the background.
+   *
+   * @param relationName relation whose Access the call is given.
+   * @param call the work to perform.
+   * @return future for the result of the call.
+   */
+  public <R> CheckedFuture<R, OrmException> submit(
+      final String relationName, final Call<R> call) {
+    final ListenableFutureTask<R> task =
+        ListenableFutureTask.create(
+            new Callable<R>() {
+              @Override
+              public R call() throws OrmException {
+                final Schema schema = readOnly ? factory.openReadOnly() : factory.open();
+                try {
+                  return call.call(findAccess(schema, relationName));
+                } finally {
+                  schema.close();
+                }
+              }
+            });
+    executor.execute(task);
+    return Futures.makeChecked(task, MAPPER);
+  }
+
+  private static Access<?, ?> findAccess(final Schema schema, final String relationName)
+      throws OrmException {
+    for (final Access<?, ?> a : schema.allRelations()) {
+      if (a.getRelationName().equals(relationName)) {
+        return a;
+      }
+    }
+    throw new OrmException("Relation " + relationName + " not defined");
+  }
+}
@@ -14,12 +14,17 @@
 
 package com.google.gwtorm.server;
 
+import com.google.common.util.concurrent.CheckedFuture;
 import com.google.gwtorm.schema.ColumnModel;
+import com.google.gwtorm.schema.QueryModel;
 import java.lang.reflect.Method;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -29,6 +34,7 @@ public class CodeGenSupport implements Opcodes {
   private ColumnModel col;
   private int dupOnSet;
   private int columnIdx;
+  private int columnIdxOffsetVar = -1;
   private Type entityType;
 
   private int lastLocal = 2;
@@ -118,8 +124,22 @@ public class CodeGenSupport implements Opcodes {
     mv.visitVarInsn(ALOAD, 2);
   }
 
+  /**
+   * Add a local int variable to every column index pushed.
+   *
+   * @param index local variable holding the offset.
+   */
+  public void setColumnIndexOffset(final int index) {
+    columnIdxOffsetVar = index;
+    lastLocal = Math.max(lastLocal, index);
+  }
+
   public void pushColumnIndex() {
     push(columnIdx);
+    if (0 <= columnIdxOffsetVar) {
+      mv.visitVarInsn(ILOAD, columnIdxOffsetVar);
+      mv.visitInsn(IADD);
+    }
   }
 
   public void invokePreparedStatementSet(final String sqlTypeName) {
@@ -206,4 +226,283 @@ public class CodeGenSupport implements Opcodes {
     }
     return Type.getObjectType(c.getNestedClassName().replace('.', '/'));
   }
+
+  /**
+   * Get the name of the method running a query against the data store.
+   *
+   * @param info the query.
+   * @return the query's own name, or a derived name if the results are cached and the query's
+   *     method is implemented by {@link #implementCachedQuery(ClassWriter, String, QueryModel)}.
+   */
+  public static String uncachedQueryName(final QueryModel info) {
+    return info.isCacheResults() ? info.getName() + "$uncached" : info.getName();
+  }
+
+  /**
+   * Implement a query method that consults the query cache before running the query.
+   *
+   * <p>The generated method looks up its arguments with {@code AbstractAccess.lookupQuery}. On a
+   * miss it calls the method named by {@link #uncachedQueryName(QueryModel)} and stores the
+   * result with {@code AbstractAccess.rememberQuery}.
+   *
+   * @param cw class being generated; must extend {@link AbstractAccess}.
+   * @param implTypeName internal name of the class being generated.
+   * @param info the query.
+   */
+  public static void implementCachedQuery(
+      final ClassWriter cw, final String implTypeName, final QueryModel info) {
+    final Type[] pTypes = parameterTypes(info);
+    final Type resultSet = Type.getType(com.google.gwtorm.server.ResultSet.class);
+    final Type string = Type.getType(String.class);
+    final Type objects = Type.getType(Object[].class);
+    final String desc = Type.getMethodDescriptor(resultSet, pTypes);
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            info.getName(),
+            desc,
+            null,
+            new String[] {Type.getType(OrmException.class).getInternalName()});
+    mv.visitCode();
+
+    int argsVar = 1;
+    for (final Type t : pTypes) {
+      argsVar += t.getSize();
+    }
+    pushArgs(mv, pTypes);
+    mv.visitVarInsn(ASTORE, argsVar);
+
+    final Label miss = new Label();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitLdcInsn(info.getName());
+    mv.visitVarInsn(ALOAD, argsVar);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        implTypeName,
+        "lookupQuery",
+        Type.getMethodDescriptor(resultSet, new Type[] {string, objects}));
+    mv.visitInsn(DUP);
+    mv.visitJumpInsn(IFNULL, miss);
+    mv.visitInsn(ARETURN);
+    mv.visitLabel(miss);
+    mv.visitInsn(POP);
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitLdcInsn(info.getName());
+    mv.visitVarInsn(ALOAD, argsVar);
+    mv.visitVarInsn(ALOAD, 0);
+    int var = 1;
+    for (final Type t : pTypes) {
+      mv.visitVarInsn(t.getOpcode(ILOAD), var);
+      var += t.getSize();
+    }
+    mv.visitMethodInsn(INVOKEVIRTUAL, implTypeName, uncachedQueryName(info), desc);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        implTypeName,
+        "rememberQuery",
+        Type.getMethodDescriptor(resultSet, new Type[] {string, objects, resultSet}));
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /**
+   * Implement the {@code Async} variant of a query method.
+   *
+   * <p>The generated method boxes its arguments and delegates to {@code
+   * AbstractAccess.queryAsync(int, Object[])}, which runs the query through the method generated
+   * by {@link #implementRunQuery(ClassWriter, String, List)}.
+   *
+   * @param cw class being generated; must extend {@link AbstractAccess}.
+   * @param info the query to implement the variant of.
+   * @param index position of the query in the list passed to {@code implementRunQuery}.
+   */
+  public static void implementAsyncQuery(
+      final ClassWriter cw, final QueryModel info, final int index) {
+    final Type[] pTypes = parameterTypes(info);
+    final Type future = Type.getType(CheckedFuture.class);
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PUBLIC | ACC_FINAL,
+            info.getName() + "Async",
+            Type.getMethodDescriptor(future, pTypes),
+            null,
+            null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    new CodeGenSupport(mv).push(index);
+    pushArgs(mv, pTypes);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        Type.getInternalName(AbstractAccess.class),
+        "queryAsync",
+        Type.getMethodDescriptor(
+            future, new Type[] {Type.INT_TYPE, Type.getType(Object[].class)}));
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /**
+   * Implement {@code AbstractAccess.runQuery(int, Object[])}, calling the query method at the
+   * requested index directly with the unboxed arguments.
+   *
+   * @param cw class being generated; must extend {@link AbstractAccess}.
+   * @param implTypeName internal name of the class being generated.
+   * @param queries the queries with an {@code Async} variant.
+   */
+  public static void implementRunQuery(
+      final ClassWriter cw, final String implTypeName, final List<QueryModel> queries) {
+    final Type resultSet = Type.getType(com.google.gwtorm.server.ResultSet.class);
+    final String desc =
+        Type.getMethodDescriptor(
+            resultSet, new Type[] {Type.INT_TYPE, Type.getType(Object[].class)});
+    final MethodVisitor mv =
+        cw.visitMethod(
+            ACC_PROTECTED | ACC_FINAL,
+            "runQuery",
+            desc,
+            null,
+            new String[] {Type.getType(OrmException.class).getInternalName()});
+    mv.visitCode();
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    for (int i = 0; i < queries.size(); i++) {
+      final QueryModel info = queries.get(i);
+      final Type[] pTypes = parameterTypes(info);
+      final Label next = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      cgs.push(i);
+      mv.visitJumpInsn(IF_ICMPNE, next);
+      mv.visitVarInsn(ALOAD, 0);
+      for (int p = 0; p < pTypes.length; p++) {
+        mv.visitVarInsn(ALOAD, 2);
+        cgs.push(p);
+        mv.visitInsn(AALOAD);
+        unbox(mv, pTypes[p]);
+      }
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL, implTypeName, info.getName(), Type.getMethodDescriptor(resultSet, pTypes));
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(next);
+    }
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(AbstractAccess.class), "runQuery", desc);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  /**
+   * @return types of the parameters of a query method, in declaration order: a {@code Collection}
+   *     for each parameter tested with {@code IN}, and a trailing {@code int} for a LIMIT.
+   */
+  public static Type[] parameterTypes(final QueryModel info) {
+    final List<ColumnModel> pCols = info.getParameters();
+    final List<ColumnModel> inCols = info.getInParameters();
+    final Type[] pTypes = new Type[pCols.size() + (info.hasLimitParameter() ? 1 : 0)];
+    for (int i = 0; i < pCols.size(); i++) {
+      pTypes[i] = inCols.get(i) != null ? Type.getType(Collection.class) : toType(pCols.get(i));
+    }
+    if (info.hasLimitParameter()) {
+      pTypes[pTypes.length - 1] = Type.INT_TYPE;
+    }
+    return pTypes;
+  }
+
+  /**
+   * Push the arguments of the method being generated, boxed into a new {@code Object[]}.
+   *
+   * @param mv the method, an instance method whose arguments start at local variable 1.
+   * @param pTypes types of the method's arguments.
+   */
+  public static void pushArgs(final MethodVisitor mv, final Type[] pTypes) {
+    final CodeGenSupport cgs = new CodeGenSupport(mv);
+    cgs.push(pTypes.length);
+    mv.visitTypeInsn(ANEWARRAY, Type.getInternalName(Object.class));
+    int var = 1;
+    for (int i = 0; i < pTypes.length; i++) {
+      mv.visitInsn(DUP);
+      cgs.push(i);
+      cgs.loadVar(pTypes[i], var);
+      box(mv, pTypes[i]);
+      mv.visitInsn(AASTORE);
+      var += pTypes[i].getSize();
+    }
+  }
+
+  /**
+   * Convert the value on top of the stack to an object, boxing primitives.
+   *
+   * @param mv method to append the conversion to.
+   * @param t type of the value on the stack.
+   */
+  public static void box(final MethodVisitor mv, final Type t) {
+    final Class<?> boxed = boxedClass(t);
+    if (boxed == null) {
+      return;
+    }
+    final Type bt = Type.getType(boxed);
+    mv.visitMethodInsn(
+        INVOKESTATIC,
+        bt.getInternalName(),
+        "valueOf",
+        Type.getMethodDescriptor(bt, new Type[] {t}));
+  }
+
+  /**
+   * Convert the object on top of the stack to a value of a type, unboxing primitives.
+   *
+   * @param mv method to append the conversion to.
+   * @param t type of the value wanted.
+   */
+  public static void unbox(final MethodVisitor mv, final Type t) {
+    final Class<?> boxed = boxedClass(t);
+    if (boxed == null) {
+      mv.visitTypeInsn(CHECKCAST, t.getInternalName());
+      return;
+    }
+    final Type bt = Type.getType(boxed);
+    mv.visitTypeInsn(CHECKCAST, bt.getInternalName());
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        bt.getInternalName(),
+        t.getClassName() + "Value",
+        Type.getMethodDescriptor(t, new Type[] {}));
+  }
+
+  private static Class<?> boxedClass(final Type t) {
+    final Class<?> boxed;
+    switch (t.getSort()) {
+      case Type.BOOLEAN:
+        boxed = Boolean.class;
+        break;
+      case Type.CHAR:
+        boxed = Character.class;
+        break;
+      case Type.BYTE:
+        boxed = Byte.class;
+        break;
+      case Type.SHORT:
+        boxed = Short.class;
+        break;
+      case Type.INT:
+        boxed = Integer.class;
+        break;
+      case Type.LONG:
+        boxed = Long.class;
+        break;
+      case Type.FLOAT:
+        boxed = Float.class;
+        break;
+      case Type.DOUBLE:
+        boxed = Double.class;
+        break;
+      default:
+        return null;
+    }
+    return boxed;
+  }
 }
@@ -0,0 +1,222 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.gwtorm.client.Key;
+import com.google.gwtorm.protobuf.CodecFactory;
+import com.google.gwtorm.protobuf.ProtobufCodec;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entities shared by all Schema instances of a database, indexed by relation and primary key.
+ *
+ * <p>Only relations given an {@link EntityCacheConfig} are cached. Entities are held in their
+ * protobuf encoding, so every lookup returns a fresh instance that the caller may modify.
+ *
+ * <p>Each relation has a version that is incremented whenever a write to it is made visible. An
+ * entity read from the data store is only added to the cache if the version did not change while
+ * it was being read, so a lookup racing with a write cannot cache the old row.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class EntityCache {
+  private final ConcurrentMap<String, RelationCache> relations = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  /**
+   * Configure caching of a relation, discarding anything already cached for it.
+   *
+   * @param relationName name of the relation.
+   * @param config how to cache the relation; null to stop caching it.
+   */
+  public void configure(final String relationName, final EntityCacheConfig config) {
+    final String name = normalize(relationName);
+    if (config != null) {
+      relations.put(name, new RelationCache(config, version(name)));
+    } else {
+      relations.remove(name);
+    }
+  }
+
+  /**
+   * Get the current version of a relation.
+   *
+   * @param relationName name of the relation.
+   * @return a number that changes whenever a write to the relation becomes visible.
+   */
+  public long getVersion(final String relationName) {
+    return version(normalize(relationName)).get();
+  }
+
+  /**
+   * Discard cached copies of entities and advance the relation's version.
+   *
+   * @param relationName name of the relation.
+   * @param keys primary keys of the written entities.
+   */
+  public void invalidate(final String relationName, final Iterable<? extends Key<?>> keys) {
+    final String name = normalize(relationName);
+    version(name).incrementAndGet();
+    final RelationCache rc = relations.get(name);
+    if (rc != null) {
+      if (rc.config.isFullyResident()) {
+        rc.entries.invalidateAll();
+        rc.loaded = false;
+      } else {
+        rc.entries.invalidateAll(keys);
+      }
+    }
+  }
+
+  /**
+   * Discard every cached entity of a relation and advance its version.
+   *
+   * @param relationName name of the relation.
+   */
+  public void invalidateAll(final String relationName) {
+    final String name = normalize(relationName);
+    version(name).incrementAndGet();
+    final RelationCache rc = relations.get(name);
+    if (rc != null) {
+      rc.entries.invalidateAll();
+      rc.loaded = false;
+    }
+  }
+
+  /**
+   * Get the hit ratio of a relation.
+   *
+   * @param relationName name of the relation.
+   * @return fraction of lookups answered from the cache; 1.0 if there were no lookups.
+   */
+  public double getHitRatio(final String relationName) {
+    return getStats(relationName).hitRate();
+  }
+
+  /**
+   * Get the statistics of a relation.
+   *
+   * @param relationName name of the relation.
+   * @return hit, miss and eviction counts; all zero if the relation is not cached.
+   */
+  public CacheStats getStats(final String relationName) {
+    final RelationCache rc = relations.get(normalize(relationName));
+    return rc != null ? rc.entries.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
+  /** @return statistics summed over all cached relations. */
+  public CacheStats getStats() {
+    CacheStats sum = new CacheStats(0, 0, 0, 0, 0, 0);
+    for (final RelationCache rc : relations.values()) {
+      sum = sum.plus(rc.entries.stats());
+    }
+    return sum;
+  }
+
+  /** @return fraction of lookups answered from the cache over all relations. */
+  public double getHitRatio() {
+    return getStats().hitRate();
+  }
+
+  RelationCache get(final String relationName) {
+    return relations.isEmpty() ? null : relations.get(normalize(relationName));
+  }
+
+  private AtomicLong version(final String name) {
+    AtomicLong v = versions.get(name);
+    if (v == null) {
+      final AtomicLong n = new AtomicLong();
+      v = versions.putIfAbsent(name, n);
+      if (v == null) {
+        v = n;
+      }
+    }
+    return v;
+  }
+
+  private static String normalize(final String relationName) {
+    return relationName.toLowerCase(Locale.US);
+  }
+
+  /** Cached entities of one relation. */
+  static class RelationCache {
+    final EntityCacheConfig config;
+    final Cache<Key<?>, byte[]> entries;
+    private final AtomicLong version;
+    private volatile ProtobufCodec<Object> codec;
+    volatile boolean loaded;
+
+    RelationCache(final EntityCacheConfig config, final AtomicLong version) {
+      this.config = config;
+      this.version = version;
+
+      final CacheBuilder<Object, Object> b = CacheBuilder.newBuilder().recordStats();
+      if (!config.isFullyResident()) {
+        if (0 <= config.getMaxEntries()) {
+          b.maximumSize(config.getMaxEntries());
+        } else if (0 <= config.getMaxWeight()) {
+          b.maximumWeight(config.getMaxWeight())
+              .weigher(
+                  new Weigher<Key<?>, byte[]>() {
+                    @Override
+                    public int weigh(Key<?> key, byte[] value) {
+                      return value.length;
+                    }
+                  });
+        }
+        if (0 < config.getExpireAfterWriteMillis()) {
+          b.expireAfterWrite(config.getExpireAfterWriteMillis(), TimeUnit.MILLISECONDS);
+        }
+      }
+      entries = b.build();
+    }
+
+    long getVersion() {
+      return version.get();
+    }
+
+    Object get(final Key<?> key) {
+      final byte[] bin = entries.getIfPresent(key);
+      return bin != null ? codec.decode(bin) : null;
+    }
+
+    void put(final Key<?> key, final Object entity, final long readVersion) {
+      if (version.get() != readVersion) {
+        return;
+      }
+      entries.put(key, codec(entity).encodeToByteArray(entity));
+      if (version.get() != readVersion) {
+        // A write became visible while the entity was stored; it may be stale.
+        entries.invalidate(key);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProtobufCodec<Object> codec(final Object entity) {
+      if (codec == null) {
+        codec = (ProtobufCodec<Object>) CodecFactory.encoder(entity.getClass());
+      }
+      return codec;
+    }
+  }
+}
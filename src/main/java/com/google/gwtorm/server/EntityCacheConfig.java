@@ -0,0 +1,103 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How one relation is held in an {@link EntityCache}.
+ *
+ * <p>Instances are immutable; the {@code with} methods return a modified copy.
+ */
+public final class EntityCacheConfig {
+  /**
+   * Cache up to a number of entities, evicting the least recently used.
+   *
+   * @param maxEntries maximum number of entities held.
+   * @return the configuration.
+   */
+  public static EntityCacheConfig maxEntries(final long maxEntries) {
+    return new EntityCacheConfig(maxEntries, -1, 0, false);
+  }
+
+  /**
+   * Cache entities up to a total encoded size, evicting the least recently used.
+   *
+   * @param maxBytes maximum number of bytes of encoded entities held.
+   * @return the configuration.
+   */
+  public static EntityCacheConfig maxWeight(final long maxBytes) {
+    return new EntityCacheConfig(-1, maxBytes, 0, false);
+  }
+
+  /**
+   * Keep every row of the relation in memory.
+   *
+   * <p>The whole relation is read on the first lookup, and again on the first lookup after any
+   * write to it. Intended for small lookup tables.
+   *
+   * @return the configuration.
+   */
+  public static EntityCacheConfig fullyResident() {
+    return new EntityCacheConfig(-1, -1, 0, true);
+  }
+
+  private final long maxEntries;
+  private final long maxWeight;
+  private final long expireAfterWriteMillis;
+  private final boolean resident;
+
+  private EntityCacheConfig(
+      final long maxEntries,
+      final long maxWeight,
+      final long expireAfterWriteMillis,
+      final boolean resident) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.expireAfterWriteMillis = expireAfterWriteMillis;
+    this.resident = resident;
+  }
+
+  /**
+   * Expire entities some time after they were loaded.
+   *
+   * @param duration time to hold each entity; 0 to hold entities until evicted.
+   * @param unit unit of {@code duration}.
+   * @return a copy of this configuration with the expiry set.
+   */
+  public EntityCacheConfig withExpireAfterWrite(final long duration, final TimeUnit unit) {
+    return new EntityCacheConfig(maxEntries, maxWeight, unit.toMillis(duration), resident);
+  }
+
+  /** @return maximum number of entities held; negative if unbounded. */
+  public long getMaxEntries() {
+    return maxEntries;
+  }
+
+  /** @return maximum number of bytes of encoded entities held; negative if unbounded. */
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /** @return milliseconds each entity is held for; 0 if entities do not expire. */
+  public long getExpireAfterWriteMillis() {
+    return expireAfterWriteMillis;
+  }
+
+  /** @return true if the whole relation is held in memory. */
+  public boolean isFullyResident() {
+    return resident;
+  }
+}
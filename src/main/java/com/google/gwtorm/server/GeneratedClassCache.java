@@ -0,0 +1,68 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generated classes shared by all databases of the same application schema.
+ *
+ * <p>Entries are stored on the schema interface's class rather than in a global map, so they never
+ * keep the schema's class loader alive, and are dropped together with it.
+ */
+public final class GeneratedClassCache {
+  /** Generates a class on the first request for it. */
+  public interface Generator {
+    Class<?> generate() throws OrmException;
+  }
+
+  private static final ClassValue<Map<List<Class<?>>, Class<?>>> CLASSES =
+      new ClassValue<Map<List<Class<?>>, Class<?>>>() {
+        @Override
+        protected Map<List<Class<?>>, Class<?>> computeValue(final Class<?> schema) {
+          return new HashMap<>();
+        }
+      };
+
+  /**
+   * Get a generated class, generating it if this is the first request for it.
+   *
+   * <p>Concurrent requests for the same schema wait for each other, so a class is only generated
+   * once however many databases start at the same time.
+   *
+   * @param schema application extension of the Schema interface.
+   * @param variant everything else the generated class depends on, such as the SQL dialect class.
+   * @param gen generates the class.
+   * @return the class.
+   * @throws OrmException the class could not be generated.
+   */
+  public static Class<?> get(
+      final Class<?> schema, final List<Class<?>> variant, final Generator gen)
+      throws OrmException {
+    final Map<List<Class<?>>, Class<?>> classes = CLASSES.get(schema);
+    synchronized (classes) {
+      Class<?> c = classes.get(variant);
+      if (c == null) {
+        c = gen.generate();
+        classes.put(variant, c);
+      }
+      return c;
+    }
+  }
+
+  private GeneratedClassCache() {}
+}
@@ -14,6 +14,7 @@
 
 package com.google.gwtorm.server;
 
+import com.google.gwtorm.schema.Util;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -54,6 +55,11 @@ public class GeneratedClassLoader extends ClassLoader {
     super(parent);
   }
 
+  /** @return suffix for the name of a new generated class, unique within the parent. */
+  public String newClassNameSuffix() {
+    return Util.createRandomName();
+  }
+
   public void defineClass(final String name, final byte[] code) throws OrmException {
     if (debugCodeGen) {
       final File outClassFile = new File("generated_classes/" + name.replace('.', '/') + ".class");
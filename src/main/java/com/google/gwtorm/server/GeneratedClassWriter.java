@@ -0,0 +1,77 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes generated classes out as class files, for use by a later run of the application.
+ *
+ * <p>Classes are given a fixed name suffix, so the runtime can find them by name, and are defined
+ * in this loader rather than injected into the parent, so no access to the parent's {@code
+ * defineClass} is needed. The classes defined here are only for use while generating.
+ */
+public class GeneratedClassWriter extends GeneratedClassLoader {
+  private final File outputDir;
+  private final String suffix;
+
+  /**
+   * @param parent loader of the application classes the generated classes use.
+   * @param outputDir root of the class file tree to write to, such as {@code target/classes}.
+   * @param suffix suffix of the names of all classes generated through this writer.
+   */
+  public GeneratedClassWriter(final ClassLoader parent, final File outputDir, final String suffix) {
+    super(parent);
+    this.outputDir = outputDir;
+    this.suffix = suffix;
+  }
+
+  @Override
+  public String newClassNameSuffix() {
+    return suffix;
+  }
+
+  @Override
+  public void defineClass(final String name, final byte[] code) throws OrmException {
+    final File out = new File(outputDir, name.replace('.', '/') + ".class");
+    out.getParentFile().mkdirs();
+    try {
+      final FileOutputStream fos = new FileOutputStream(out);
+      try {
+        fos.write(code);
+      } finally {
+        fos.close();
+      }
+    } catch (IOException e) {
+      throw new OrmException("Cannot write class " + out, e);
+    }
+
+    try {
+      defineClass(name, code, 0, code.length);
+    } catch (LinkageError e) {
+      throw new OrmException("Unable to define class " + name, e);
+    }
+  }
+
+  /**
+   * @param name binary name of the class.
+   * @return the class, if it was generated through this writer; otherwise null.
+   */
+  public Class<?> findGeneratedClass(final String name) {
+    return findLoadedClass(name);
+  }
+}
@@ -0,0 +1,105 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import com.google.gwtorm.client.Key;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entities loaded by one Schema, indexed by relation and primary key.
+ *
+ * <p>While enabled, {@link Access#get(Key)} and {@link Access#get(Iterable)} return the instance
+ * already known to the Schema rather than reading it again. Writes through the Access refresh or
+ * evict entries, and the map is cleared when the Schema rolls back or fails to commit.
+ *
+ * <p>Like the Schema it belongs to, a map is not thread-safe.
+ */
+public class IdentityMap {
+  private final Map<String, Map<Key<?>, Object>> relations = new HashMap<>();
+  private long hits;
+  private long misses;
+
+  /**
+   * Lookup an entity.
+   *
+   * @param relationName relation the entity belongs to.
+   * @param key primary key of the entity.
+   * @return the entity; null if it is not in the map.
+   */
+  public Object get(final String relationName, final Key<?> key) {
+    final Map<Key<?>, Object> m = relations.get(relationName);
+    final Object e = m != null ? m.get(key) : null;
+    if (e != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return e;
+  }
+
+  /**
+   * Remember an entity.
+   *
+   * @param relationName relation the entity belongs to.
+   * @param key primary key of the entity.
+   * @param entity the entity.
+   */
+  public void put(final String relationName, final Key<?> key, final Object entity) {
+    Map<Key<?>, Object> m = relations.get(relationName);
+    if (m == null) {
+      m = new HashMap<>();
+      relations.put(relationName, m);
+    }
+    m.put(key, entity);
+  }
+
+  /**
+   * Forget an entity.
+   *
+   * @param relationName relation the entity belongs to.
+   * @param key primary key of the entity.
+   */
+  public void remove(final String relationName, final Key<?> key) {
+    final Map<Key<?>, Object> m = relations.get(relationName);
+    if (m != null) {
+      m.remove(key);
+    }
+  }
+
+  /** Forget all entities. */
+  public void clear() {
+    relations.clear();
+  }
+
+  /** @return number of entities in the map. */
+  public int size() {
+    int n = 0;
+    for (final Map<Key<?>, Object> m : relations.values()) {
+      n += m.size();
+    }
+    return n;
+  }
+
+  /** @return number of lookups answered from the map. */
+  public long getHitCount() {
+    return hits;
+  }
+
+  /** @return number of lookups that had to read the data store. */
+  public long getMissCount() {
+    return misses;
+  }
+}
@@ -0,0 +1,201 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gwtorm.client.Key;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single-key lookups into batched {@link Access#get(Iterable)} calls.
+ *
+ * <p>Keys passed to {@link #load(Key)} are collected until either {@code maxBatchSize} distinct
+ * keys are pending, the collection window expires, or {@link #dispatch()} is called. The pending
+ * keys are then fetched with one {@link Access#getAsync(Iterable)} call, and each caller's future
+ * is completed from the shared result. Concurrent loads of the same key share one future.
+ *
+ * <p>A loader with a collection window dispatches from a timer thread, so the Access must belong
+ * to a database with an asynchronous executor (see {@code setAsyncExecutor}), which then runs
+ * every batch; such a loader may be shared by many threads. Without a window, batches are
+ * dispatched only on the calling thread, and the loader must be confined to the thread owning the
+ * Access's Schema.
+ *
+ * @param <E> type of the entity.
+ * @param <K> type of the entity's primary key.
+ */
+public class KeyLoader<E, K extends Key<?>> {
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("gwtorm-key-loader").setDaemon(true).build());
+
+  private final Access<E, K> access;
+  private final int maxBatchSize;
+  private final long windowMillis;
+  private Map<K, SettableFuture<E>> pending = new LinkedHashMap<>();
+
+  /** Number of the batch now collecting keys, so a late timer skips batches already sent. */
+  private long generation;
+
+  private long loads;
+  private long batches;
+  private long batchedKeys;
+  private int largestBatch;
+
+  /**
+   * Create a new loader.
+   *
+   * @param access relation to load entities from.
+   * @param maxBatchSize maximum number of distinct keys per batch; must be positive.
+   * @param windowMillis how long to collect keys before dispatching a batch; 0 to dispatch only
+   *     when the batch is full or {@link #dispatch()} is called. A window requires the Access to
+   *     have an asynchronous executor.
+   */
+  public KeyLoader(final Access<E, K> access, final int maxBatchSize, final long windowMillis) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be positive");
+    }
+    if (0 < windowMillis
+        && !(access instanceof AbstractAccess
+            && ((AbstractAccess<?, ?>) access).getAsyncExecutor() != null)) {
+      // The timer thread would otherwise run the fetch on a Schema owned by another thread.
+      throw new IllegalArgumentException("windowMillis requires an asynchronous executor");
+    }
+    this.access = access;
+    this.maxBatchSize = maxBatchSize;
+    this.windowMillis = windowMillis;
+  }
+
+  /**
+   * Request an entity by its primary key.
+   *
+   * @param key the primary key; must not be null.
+   * @return future for the entity; the future will return null if no entity has this key.
+   */
+  public CheckedFuture<E, OrmException> load(final K key) {
+    final SettableFuture<E> f;
+    boolean full = false;
+    boolean first = false;
+    final long gen;
+    synchronized (this) {
+      gen = generation;
+      loads++;
+      final SettableFuture<E> existing = pending.get(key);
+      if (existing != null) {
+        f = existing;
+      } else {
+        f = SettableFuture.create();
+        first = pending.isEmpty();
+        pending.put(key, f);
+        full = maxBatchSize <= pending.size();
+      }
+    }
+
+    if (full) {
+      dispatch();
+    } else if (first && 0 < windowMillis) {
+      TIMER.schedule(
+          new Runnable() {
+            @Override
+            public void run() {
+              dispatch(gen);
+            }
+          },
+          windowMillis,
+          TimeUnit.MILLISECONDS);
+    }
+    return Futures.makeChecked(f, AsyncAccessExecutor.MAPPER);
+  }
+
+  /** Immediately fetch all pending keys, if any. */
+  public void dispatch() {
+    dispatch(-1);
+  }
+
+  /**
+   * Fetch all pending keys, if any.
+   *
+   * @param only number of the batch to fetch; -1 to fetch whichever batch is pending.
+   */
+  private void dispatch(final long only) {
+    final Map<K, SettableFuture<E>> batch;
+    synchronized (this) {
+      if (pending.isEmpty() || (0 <= only && only != generation)) {
+        return;
+      }
+      batch = pending;
+      pending = new LinkedHashMap<>();
+      generation++;
+      batches++;
+      batchedKeys += batch.size();
+      largestBatch = Math.max(largestBatch, batch.size());
+    }
+
+    Futures.addCallback(
+        access.getAsync(batch.keySet()),
+        new FutureCallback<ResultSet<E>>() {
+          @Override
+          public void onSuccess(final ResultSet<E> result) {
+            try {
+              final Map<K, E> found = access.toMap(result);
+              for (final Map.Entry<K, SettableFuture<E>> e : batch.entrySet()) {
+                e.getValue().set(found.get(e.getKey()));
+              }
+            } catch (RuntimeException err) {
+              onFailure(err);
+            }
+          }
+
+          @Override
+          public void onFailure(final Throwable err) {
+            for (final SettableFuture<E> f : batch.values()) {
+              f.setException(err);
+            }
+          }
+        });
+  }
+
+  /** @return number of calls to {@link #load(Key)}. */
+  public synchronized long getLoadCount() {
+    return loads;
+  }
+
+  /** @return number of batches dispatched. */
+  public synchronized long getBatchCount() {
+    return batches;
+  }
+
+  /** @return number of distinct keys fetched over all batches. */
+  public synchronized long getBatchedKeyCount() {
+    return batchedKeys;
+  }
+
+  /** @return number of keys in the largest batch dispatched. */
+  public synchronized int getLargestBatchSize() {
+    return largestBatch;
+  }
+
+  /** @return average number of keys per batch; 0 if no batch was dispatched. */
+  public synchronized double getAverageBatchSize() {
+    return batches == 0 ? 0 : ((double) batchedKeys) / batches;
+  }
+}
@@ -50,4 +50,18 @@ import java.lang.annotation.Target;
 public @interface Query {
   /** @return the query clause. Defaults to "", matching all entities, no order. */
   String value() default "";
+
+  /**
+   * @return rows fetched per round trip when iterating the results. Large result sets should set
+   *     this so rows are streamed instead of loaded into memory at once. Defaults to 0, using the
+   *     database's default fetch size.
+   */
+  int fetchSize() default 0;
+
+  /**
+   * @return true to cache the results in the database's {@link QueryCache}, keyed by the query
+   *     parameters. Cached results are discarded as soon as any write to the relation is made
+   *     through the same database. Defaults to false.
+   */
+  boolean cacheResults() default false;
 }
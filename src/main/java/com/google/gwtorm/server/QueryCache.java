@@ -0,0 +1,128 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.gwtorm.protobuf.CodecFactory;
+import com.google.gwtorm.protobuf.ProtobufCodec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results of {@link Query#cacheResults() cached} queries, shared by all Schema instances of a
+ * database.
+ *
+ * <p>Results are keyed by relation, query name and the bound parameters, and by the {@link
+ * EntityCache#getVersion(String) version} of the relation when they were read. A write to the
+ * relation changes its version, so older results are never returned again and are soon evicted as
+ * the least recently used.
+ *
+ * <p>Rows are held in their protobuf encoding, so every hit returns fresh instances.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class QueryCache {
+  private final EntityCache versions;
+  private final Cache<List<Object>, Result> results;
+
+  /**
+   * Create a new cache.
+   *
+   * @param versions source of relation versions.
+   * @param maxResults maximum number of query results held.
+   */
+  public QueryCache(final EntityCache versions, final long maxResults) {
+    this.versions = versions;
+    this.results = CacheBuilder.newBuilder().maximumSize(maxResults).recordStats().build();
+  }
+
+  /** @return current version of the relation, to pass to a later {@code put}. */
+  long getVersion(final String relationName) {
+    return versions.getVersion(relationName);
+  }
+
+  List<Object> get(final String relationName, final String queryName, final Object[] args) {
+    final long version = versions.getVersion(relationName);
+    final Result r = results.getIfPresent(key(relationName, version, queryName, args));
+    return r != null ? r.decode() : null;
+  }
+
+  void put(
+      final String relationName,
+      final String queryName,
+      final Object[] args,
+      final long readVersion,
+      final List<?> rows) {
+    if (versions.getVersion(relationName) == readVersion) {
+      results.put(key(relationName, readVersion, queryName, args), new Result(rows));
+    }
+  }
+
+  /** Discard all results. */
+  public void invalidateAll() {
+    results.invalidateAll();
+  }
+
+  /** @return number of results currently held. */
+  public long size() {
+    return results.size();
+  }
+
+  /** @return hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return results.stats();
+  }
+
+  private static List<Object> key(
+      final String relationName,
+      final long version,
+      final String queryName,
+      final Object[] args) {
+    final List<Object> key = new ArrayList<>(args.length + 3);
+    key.add(relationName);
+    key.add(version);
+    key.add(queryName);
+    key.addAll(Arrays.asList(args));
+    return key;
+  }
+
+  private static class Result {
+    final ProtobufCodec<Object> codec;
+    final List<byte[]> rows;
+
+    @SuppressWarnings("unchecked")
+    Result(final List<?> entities) {
+      this.codec =
+          entities.isEmpty()
+              ? null
+              : (ProtobufCodec<Object>) CodecFactory.encoder(entities.get(0).getClass());
+      this.rows = new ArrayList<>(entities.size());
+      for (final Object e : entities) {
+        rows.add(codec.encodeToByteArray(e));
+      }
+    }
+
+    List<Object> decode() {
+      final List<Object> r = new ArrayList<>(rows.size());
+      for (final byte[] bin : rows) {
+        r.add(codec.decode(bin));
+      }
+      return r;
+    }
+  }
+}
@@ -14,7 +14,6 @@
 
 package com.google.gwtorm.server;
 
-import com.google.gwtorm.schema.Util;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import org.objectweb.asm.ClassWriter;
@@ -29,6 +28,7 @@ public class SchemaConstructorGen<T extends Schema> implements Opcodes {
   private final GeneratedClassLoader classLoader;
   private final Class<T> schemaImpl;
   private final Object schemaArg;
+  private final Class<?> schemaArgType;
   private ClassWriter cw;
   private String implClassName;
   private String implTypeName;
@@ -37,6 +37,22 @@ public class SchemaConstructorGen<T extends Schema> implements Opcodes {
     classLoader = loader;
     schemaImpl = c;
     schemaArg = f;
+    schemaArgType = f.getClass();
+  }
+
+  /**
+   * Prepare to generate a factory class without creating a factory, for example to write it out.
+   *
+   * @param loader loader to define the factory class in.
+   * @param c the Schema implementation the factory creates.
+   * @param argType type of the argument the factory will be constructed with.
+   */
+  public SchemaConstructorGen(
+      final GeneratedClassLoader loader, final Class<T> c, final Class<?> argType) {
+    classLoader = loader;
+    schemaImpl = c;
+    schemaArg = null;
+    schemaArgType = argType;
   }
 
   public void defineClass() throws OrmException {
@@ -49,17 +65,42 @@ public class SchemaConstructorGen<T extends Schema> implements Opcodes {
   }
 
   public SchemaFactory<T> create() throws OrmException {
+    return newInstance(createClass(), schemaArg);
+  }
+
+  /**
+   * Define the factory class and load it, so factories can be made from it later.
+   *
+   * @return the factory class.
+   * @throws OrmException the class could not be defined.
+   */
+  public Class<?> createClass() throws OrmException {
     defineClass();
     try {
-      final Class<?> c = Class.forName(implClassName, true, classLoader);
-      final Constructor<?> n = c.getDeclaredConstructors()[0];
-      return cast(n.newInstance(new Object[] {schemaArg}));
+      return Class.forName(implClassName, true, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new OrmException("Cannot create schema factory", e);
+    }
+  }
+
+  /**
+   * Create a factory from a factory class generated earlier.
+   *
+   * @param factoryClass class returned by {@link #createClass()}, or written out ahead of time.
+   * @param arg argument to pass to each new Schema, such as the database.
+   * @return the factory.
+   * @throws OrmException the factory could not be created.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Schema> SchemaFactory<T> newInstance(
+      final Class<?> factoryClass, final Object arg) throws OrmException {
+    try {
+      final Constructor<?> n = factoryClass.getDeclaredConstructors()[0];
+      return (SchemaFactory<T>) n.newInstance(new Object[] {arg});
     } catch (InstantiationException e) {
       throw new OrmException("Cannot create schema factory", e);
     } catch (IllegalAccessException e) {
       throw new OrmException("Cannot create schema factory", e);
-    } catch (ClassNotFoundException e) {
-      throw new OrmException("Cannot create schema factory", e);
     } catch (IllegalArgumentException e) {
       throw new OrmException("Cannot create schema factory", e);
     } catch (InvocationTargetException e) {
@@ -67,13 +108,8 @@ public class SchemaConstructorGen<T extends Schema> implements Opcodes {
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private SchemaFactory<T> cast(final Object newInstance) {
-    return (SchemaFactory<T>) newInstance;
-  }
-
   private void init() {
-    implClassName = schemaImpl.getName() + "_Factory_" + Util.createRandomName();
+    implClassName = schemaImpl.getName() + "_Factory_" + classLoader.newClassNameSuffix();
     implTypeName = implClassName.replace('.', '/');
 
     cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -90,14 +126,14 @@ public class SchemaConstructorGen<T extends Schema> implements Opcodes {
     cw.visitField(
             ACC_PRIVATE | ACC_FINAL,
             CTX,
-            Type.getType(schemaArg.getClass()).getDescriptor(),
+            Type.getType(schemaArgType).getDescriptor(),
             null,
             null)
         .visitEnd();
   }
 
   private void implementConstructor() {
-    final Type ft = Type.getType(schemaArg.getClass());
+    final Type ft = Type.getType(schemaArgType);
     final String consName = "<init>";
     final String consDesc = Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] {ft});
     final MethodVisitor mv;
@@ -121,7 +157,7 @@ public class SchemaConstructorGen<T extends Schema> implements Opcodes {
   }
 
   private void implementNewInstance() {
-    final Type ft = Type.getType(schemaArg.getClass());
+    final Type ft = Type.getType(schemaArgType);
     final String typeName = Type.getType(schemaImpl).getInternalName();
     final MethodVisitor mv =
         cw.visitMethod(
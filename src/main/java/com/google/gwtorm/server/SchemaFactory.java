@@ -28,4 +28,18 @@ public interface SchemaFactory<S extends Schema> {
    *     should be examined to determine the root cause of the connection failure.
    */
   S open() throws OrmException;
+
+  /**
+   * Open a Schema intended mostly for reading.
+   *
+   * <p>Implementations may serve the Schema's reads from a replica of the database, which can lag
+   * behind writes made through other Schemas. Writes and transactions still go to the primary
+   * data store. By default this is the same as {@link #open()}.
+   *
+   * @return a new connection, wrapped up in the application's Schema.
+   * @throws OrmException the connection could not be opened to the database.
+   */
+  default S openReadOnly() throws OrmException {
+    return open();
+  }
 }
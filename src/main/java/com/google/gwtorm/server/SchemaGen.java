@@ -17,7 +17,6 @@ package com.google.gwtorm.server;
 import com.google.gwtorm.schema.RelationModel;
 import com.google.gwtorm.schema.SchemaModel;
 import com.google.gwtorm.schema.SequenceModel;
-import com.google.gwtorm.schema.Util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -115,7 +114,7 @@ public class SchemaGen<S extends AbstractSchema> implements Opcodes {
   }
 
   private void init() {
-    implClassName = getSchemaClassName() + "_Schema_" + Util.createRandomName();
+    implClassName = getSchemaClassName() + "_Schema_" + classLoader.newClassNameSuffix();
     implTypeName = implClassName.replace('.', '/');
 
     cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -50,7 +50,9 @@ public @interface Sequence {
    * @return maximum number of values to cache in memory from the sequence. Defaults to -1,
    *     indicating a default caching level should be determined by the database. Cached values may
    *     be lost (never returned by the sequence, creating gaps) if the application or the database
-   *     is shutdown and restarted.
+   *     is shutdown and restarted. On JDBC databases a value above 1 also makes the application
+   *     reserve that many values per round trip, handing them out from memory; see {@code
+   *     Database.setSequenceBlockSize}.
    */
   int cache() default -1;
 }
@@ -14,10 +14,24 @@
 
 package com.google.gwtorm.server;
 
+import java.util.List;
+
 /** Executes statements against the schema. */
 public interface StatementExecutor extends AutoCloseable {
   void execute(String sql) throws OrmException;
 
+  /**
+   * Execute several statements in order, sending them together if the executor can.
+   *
+   * @param sql the statements.
+   * @throws OrmException a statement failed; the statements before it may have been applied.
+   */
+  default void executeBatch(List<String> sql) throws OrmException {
+    for (final String s : sql) {
+      execute(s);
+    }
+  }
+
   @Override
   void close();
 }
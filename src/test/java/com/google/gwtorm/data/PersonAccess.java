@@ -14,11 +14,13 @@
 
 package com.google.gwtorm.data;
 
+import com.google.common.util.concurrent.CheckedFuture;
 import com.google.gwtorm.server.Access;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.PrimaryKey;
 import com.google.gwtorm.server.Query;
 import com.google.gwtorm.server.ResultSet;
+import java.util.Collection;
 
 public interface PersonAccess extends Access<Person, Person.Key> {
   @Override
@@ -31,9 +33,41 @@ public interface PersonAccess extends Access<Person, Person.Key> {
   @Query("WHERE age > ? ORDER BY age")
   ResultSet<Person> olderThan(int age) throws OrmException;
 
+  @Query("WHERE age > ? ORDER BY age")
+  ResultSet<Person.Key> olderThanKeys(int age) throws OrmException;
+
+  @Query("WHERE age > ? ORDER BY age")
+  ResultSet<PersonAge> olderThanAges(int age) throws OrmException;
+
+  @Query
+  ResultSet<Person.Key> allKeys() throws OrmException;
+
+  @Query("WHERE age > ?")
+  int countOlderThan(int age) throws OrmException;
+
+  @Query("WHERE age > ?")
+  boolean anyOlderThan(int age) throws OrmException;
+
+  @Query
+  long countAll() throws OrmException;
+
+  @Query("WHERE age IN ? ORDER BY age")
+  ResultSet<Person> withAges(Collection<Integer> ages) throws OrmException;
+
+  @Query("WHERE name IN ?")
+  int countNamed(Collection<Person.Key> names) throws OrmException;
+
+  CheckedFuture<ResultSet<Person>, OrmException> olderThanAsync(int age);
+
+  @Query(value = "WHERE age > ? ORDER BY age", cacheResults = true)
+  ResultSet<Person> olderThanCached(int age) throws OrmException;
+
   @Query("WHERE age > ? ORDER BY name DESC")
   ResultSet<Person> olderThanDescByName(int age) throws OrmException;
 
+  @Query("WHERE age > ? ORDER BY name DESC")
+  ResultSet<Person.Key> olderThanKeysDescByName(int age) throws OrmException;
+
   @Query("WHERE name = 'bob' LIMIT ?")
   ResultSet<Person> firstNBob(int n) throws OrmException;
 
@@ -45,4 +79,6 @@ public interface PersonAccess extends Access<Person, Person.Key> {
 
   @Query("ORDER BY age LIMIT ?")
   ResultSet<Person> youngestN(int n) throws OrmException;
+
+  CheckedFuture<ResultSet<Person>, OrmException> youngestNAsync(int n);
 }
@@ -0,0 +1,36 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.data;
+
+import com.google.gwtorm.client.Column;
+
+/** Projection of {@link Person} holding only its name and age. */
+public class PersonAge {
+  @Column(id = 1)
+  protected Person.Key name;
+
+  @Column(id = 2)
+  protected int age;
+
+  protected PersonAge() {}
+
+  public Person.Key key() {
+    return name;
+  }
+
+  public int age() {
+    return age;
+  }
+}
@@ -35,6 +35,7 @@ import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -51,8 +52,10 @@ public abstract class AbstractTestJdbcAccess {
   private static final String INSERT = "insert";
   private static final String UPDATE = "update";
   private static final String DELETE = "delete";
+  private static final String UPSERT = "upsert";
 
   private final JdbcAccess<Data, Data.DataKey> classUnderTest;
+  private final JdbcAccess<Data, Data.DataKey> upsertUnderTest;
 
   private final Iterable<Data> noData;
   private final Iterable<Data> oneRow;
@@ -113,6 +116,7 @@ public abstract class AbstractTestJdbcAccess {
     when(conn.getAutoCommit()).thenReturn(true);
     dialect = createDialect();
     classUnderTest = createJdbcAccess(dialect, conn);
+    upsertUnderTest = new UpsertDataJdbcAccess(setupSchema(dialect, conn));
   }
 
   protected abstract SqlDialect createDialect() throws SQLException;
@@ -385,6 +389,51 @@ public abstract class AbstractTestJdbcAccess {
     assertCorrectUpdating(insert, 1);
   }
 
+  @Test
+  public void upsertTwoNative() throws SQLException, OrmException {
+    PreparedStatement upsert = stubStatementWithUpdateCounts(UPSERT, 1, 2);
+
+    upsertUnderTest.upsert(twoRows);
+
+    assertUsedBatchingOnly(upsert, 1, 2);
+  }
+
+  @Test
+  public void upsertTwoNativeNoInfo() throws SQLException, OrmException {
+    PreparedStatement upsert =
+        stubStatementWithUpdateCounts(UPSERT, Statement.SUCCESS_NO_INFO, 0);
+
+    upsertUnderTest.upsert(twoRows);
+
+    assertUsedBatchingOnly(upsert, 1, 2);
+  }
+
+  @Test
+  public void upsertTwoNativeOneMissing() throws SQLException, OrmException {
+    PreparedStatement upsert = stubStatementWithUpdateCounts(UPSERT, 1);
+    try {
+      upsertUnderTest.upsert(twoRows);
+      fail("missing OrmConcurrencyException");
+    } catch (OrmConcurrencyException e) {
+      // expected
+    }
+
+    assertUsedBatchingOnly(upsert, 1, 2);
+  }
+
+  @Test
+  public void upsertTwoNativeOneFailed() throws SQLException, OrmException {
+    PreparedStatement upsert = stubStatementWithUpdateCounts(UPSERT, 1, Statement.EXECUTE_FAILED);
+    try {
+      upsertUnderTest.upsert(twoRows);
+      fail("missing OrmConcurrencyException");
+    } catch (OrmConcurrencyException e) {
+      // expected
+    }
+
+    assertUsedBatchingOnly(upsert, 1, 2);
+  }
+
   @Test
   public void deleteOneExisting() throws SQLException, OrmException {
     PreparedStatement delete = stubStatementWithUpdateCounts(DELETE, 1);
@@ -487,6 +536,11 @@ public abstract class AbstractTestJdbcAccess {
       ps.setInt(1, entity.id);
     }
 
+    @Override
+    protected void bindInsertRow(PreparedStatement ps, Data entity, int row) throws SQLException {
+      ps.setInt(row + 1, entity.id);
+    }
+
     @Override
     protected void bindOneUpdate(PreparedStatement ps, Data entity) throws SQLException {
       ps.setInt(1, entity.id);
@@ -512,4 +566,16 @@ public abstract class AbstractTestJdbcAccess {
       throw new UnsupportedOperationException();
     }
   }
+
+  private static class UpsertDataJdbcAccess extends DataJdbcAccess {
+
+    protected UpsertDataJdbcAccess(JdbcSchema s) {
+      super(s);
+    }
+
+    @Override
+    protected String getUpsertOneSql() {
+      return UPSERT;
+    }
+  }
 }
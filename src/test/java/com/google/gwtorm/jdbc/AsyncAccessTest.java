@@ -0,0 +1,99 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Asynchronous access methods run on an executor. */
+public class AsyncAccessTest {
+  private static int runCount;
+  private Properties props;
+  private Database<PhoneBookDb> db;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    props = new Properties();
+    props.setProperty("driver", org.h2.Driver.class.getName());
+    props.setProperty("url", "jdbc:h2:mem:AsyncAccessTest" + (runCount++) + ";DB_CLOSE_DELAY=-1");
+    db = new Database<>(new SimpleDataSource(props), PhoneBookDb.class);
+    executor = AsyncAccessExecutor.newDefaultExecutor(2);
+    db.setAsyncExecutor(executor);
+
+    final PhoneBookDb admin = db.open();
+    try {
+      final JdbcExecutor e = new JdbcExecutor((JdbcSchema) admin);
+      try {
+        admin.updateSchema(e);
+      } finally {
+        e.close();
+      }
+      admin.people().insert(Collections.singleton(new Person(new Person.Key("Bob"), 18)));
+    } finally {
+      admin.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testAsyncSeesTransactionWrites() throws Exception {
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    final PhoneBookDb schema = db.open();
+    try {
+      schema.people().beginTransaction(joe.key());
+      schema.people().insert(Collections.singleton(joe));
+      assertNotNull(schema.people().getAsync(joe.key()).checkedGet());
+      assertEquals(1, schema.people().olderThanAsync(20).checkedGet().toList().size());
+      schema.rollback();
+    } finally {
+      schema.close();
+    }
+  }
+
+  @Test
+  public void testAsyncOfReadOnlySchemaUsesReplica() throws Exception {
+    final PooledDataSource replica = new PooledDataSource(props);
+    db.setReadReplicas(
+        new ReplicaSet(ReplicaSet.Policy.ROUND_ROBIN, Collections.singletonList(replica)));
+
+    final PhoneBookDb schema = db.openReadOnly();
+    try {
+      assertTrue(((JdbcSchema) schema).isReadingFromReplica());
+      assertNotNull(schema.people().getAsync(new Person.Key("Bob")).checkedGet());
+      assertEquals(1, replica.getBorrowCount());
+      assertEquals(1, schema.people().olderThanAsync(10).checkedGet().toList().size());
+      assertEquals(2, replica.getBorrowCount());
+    } finally {
+      schema.close();
+      replica.close();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Writes split into batches of a bounded size. */
+public class BatchSizeTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:BatchSizeTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testInsertUpdateDeleteInBoundedBatches() throws Exception {
+    db.setMaxBatchSize(10);
+    db.setMaxBatchSize("people", 2);
+    assertEquals(2, db.getMaxBatchSize("PEOPLE"));
+    assertEquals(10, db.getMaxBatchSize("addresses"));
+
+    final PhoneBookDb schema = openAndCreate();
+    final ArrayList<Person> all = new ArrayList<>();
+    all.add(new Person(new Person.Key("Zak"), 33));
+    all.add(new Person(new Person.Key("Bob"), 18));
+    all.add(new Person(new Person.Key("Mary"), 22));
+    all.add(new Person(new Person.Key("Carl"), 41));
+    all.add(new Person(new Person.Key("Ann"), 29));
+    schema.people().insert(all);
+    assertEquals(5, schema.people().all().toList().size());
+
+    for (final Person p : all) {
+      p.growOlder();
+    }
+    schema.people().update(all);
+    assertEquals(34, schema.people().get(new Person.Key("Zak")).age());
+    assertEquals(30, schema.people().get(new Person.Key("Ann")).age());
+
+    schema.people().delete(all.subList(1, 4));
+    final List<Person> left = schema.people().all().toList();
+    assertEquals(2, left.size());
+    assertNotNull(schema.people().get(new Person.Key("Ann")));
+    assertNotNull(schema.people().get(new Person.Key("Zak")));
+
+    db.setMaxBatchSize("people", 10);
+    db.setStatementCacheSize(8);
+    final PhoneBookDb s2 = open();
+    final ArrayList<Person> more = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      more.add(new Person(new Person.Key(String.format("P%02d", 24 - i)), i));
+    }
+    s2.people().insert(more);
+    s2.close();
+    // Each 10 row batch is one 8 row statement and a JDBC batch of 2; the last 5 are a JDBC batch.
+    assertEquals(2, db.getStatementCacheMissCount());
+    assertEquals(3, db.getStatementCacheHitCount());
+    assertEquals(27, schema.people().all().toList().size());
+  }
+}
@@ -0,0 +1,224 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.schema.sql.DialectH2;
+import com.google.gwtorm.schema.sql.SqlDialect;
+import com.google.gwtorm.server.OrmDuplicateKeyException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Bulk inserts, through the dialect's bulk load facility or else regular inserts. */
+public class BulkInsertTest {
+  private static final String BULK_LOAD_URL = "jdbc:h2:mem:BulkInsertTestLoad";
+
+  /** H2, bulk loading through the default batched INSERT of {@link SqlDialect}. */
+  public static class DialectH2BulkLoad extends DialectH2 {
+    @Override
+    public boolean handles(final String url, final Connection c) {
+      return url.startsWith(BULK_LOAD_URL);
+    }
+
+    @Override
+    public String getBulkLoadSql(final RelationModel rel) {
+      return rel.getInsertOneSql(this);
+    }
+  }
+
+  static {
+    SqlDialect.register(new DialectH2BulkLoad());
+  }
+
+  private static int runCount;
+  private SimpleDataSource dataSource;
+  private PhoneBookDb schema;
+
+  private PhoneBookDb open(final String url) throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", url + (runCount++) + ";DB_CLOSE_DELAY=-1");
+    dataSource = new SimpleDataSource(p);
+    final PhoneBookDb s = new Database<>(dataSource, PhoneBookDb.class).open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) s);
+    try {
+      s.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return s;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    schema = open(BULK_LOAD_URL);
+  }
+
+  @After
+  public void tearDown() {
+    schema.close();
+  }
+
+  private static List<Person> people(final int count) {
+    final List<Person> all = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final Person p = new Person(new Person.Key("P" + i), i);
+      if (i % 3 == 0) {
+        p.register();
+      }
+      all.add(p);
+    }
+    return all;
+  }
+
+  @Test
+  public void testBulkInsertThroughBulkLoad() throws Exception {
+    assertEquals(DialectH2BulkLoad.class, ((JdbcSchema) schema).getDialect().getClass());
+    final List<Person> all = people(2500);
+    final Iterator<Person> once = all.iterator();
+    schema
+        .people()
+        .bulkInsert(
+            new Iterable<Person>() {
+              @Override
+              public Iterator<Person> iterator() {
+                return once;
+              }
+            });
+
+    assertEquals(2500L, schema.people().countAll());
+    assertEquals(all.get(3), schema.people().get(all.get(3).key()));
+    assertEquals(all.get(2499), schema.people().get(all.get(2499).key()));
+  }
+
+  @Test
+  public void testFailedBulkLoadInsertsNothing() throws Exception {
+    final List<Person> all = people(1500);
+    all.add(all.get(1200));
+    try {
+      schema.people().bulkInsert(all);
+      fail("Expected OrmDuplicateKeyException");
+    } catch (OrmDuplicateKeyException e) {
+      // Expected.
+    }
+    assertEquals(0L, schema.people().countAll());
+  }
+
+  @Test
+  public void testBulkInsertWithoutBulkLoad() throws Exception {
+    schema.close();
+    schema = open("jdbc:h2:mem:BulkInsertTest");
+    final List<Person> all = people(2);
+    schema.people().bulkInsert(all);
+    assertEquals(all, schema.people().all().toList());
+  }
+
+  @Test
+  public void testDefaultBulkLoadBindsNulls() throws Exception {
+    final Connection c = dataSource.getConnection();
+    try {
+      final Statement st = c.createStatement();
+      try {
+        st.execute("CREATE TABLE bulk_test (id INT NOT NULL PRIMARY KEY, note VARCHAR(10))");
+        final Iterator<Object[]> rows =
+            Arrays.asList(new Object[] {1, "one"}, new Object[] {2, null}).iterator();
+        final long n =
+            new DialectH2()
+                .bulkLoad(
+                    c,
+                    "INSERT INTO bulk_test (id, note) VALUES (?, ?)",
+                    new SqlDialect.RowSource() {
+                      @Override
+                      public Object[] nextRow() {
+                        return rows.hasNext() ? rows.next() : null;
+                      }
+                    });
+        assertEquals(2, n);
+
+        final ResultSet rs = st.executeQuery("SELECT note FROM bulk_test ORDER BY id");
+        try {
+          rs.next();
+          assertEquals("one", rs.getString(1));
+          rs.next();
+          assertNull(rs.getString(1));
+        } finally {
+          rs.close();
+        }
+      } finally {
+        st.close();
+      }
+    } finally {
+      c.close();
+    }
+  }
+
+  @Test
+  public void testDefaultBulkLoadRollsBackOnFailure() throws Exception {
+    final Connection c = dataSource.getConnection();
+    try {
+      final Statement st = c.createStatement();
+      try {
+        st.execute("CREATE TABLE bulk_test (id INT NOT NULL PRIMARY KEY)");
+        final Iterator<Object[]> rows = Collections.nCopies(2, new Object[] {1}).iterator();
+        try {
+          new DialectH2()
+              .bulkLoad(
+                  c,
+                  "INSERT INTO bulk_test (id) VALUES (?)",
+                  new SqlDialect.RowSource() {
+                    @Override
+                    public Object[] nextRow() {
+                      return rows.hasNext() ? rows.next() : null;
+                    }
+                  });
+          fail("Expected SQLException");
+        } catch (SQLException e) {
+          // Expected.
+        }
+        assertTrue(c.getAutoCommit());
+
+        final ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM bulk_test");
+        try {
+          rs.next();
+          assertEquals(0, rs.getInt(1));
+        } finally {
+          rs.close();
+        }
+      } finally {
+        st.close();
+      }
+    } finally {
+      c.close();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PersonAccess;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.EntityCache;
+import com.google.gwtorm.server.EntityCacheConfig;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Entities cached in memory, shared by all Schemas of a database. */
+public class EntityCacheTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:EntityCacheTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testEntityCache() throws Exception {
+    db.setEntityCache("people", EntityCacheConfig.maxEntries(100));
+    final EntityCache cache = db.getEntityCache();
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    final PersonAccess s1 = openAndCreate().people();
+    s1.insert(Arrays.asList(bob, joe));
+
+    final Person p1 = s1.get(bob.key());
+    assertEquals(0, cache.getStats("people").hitCount());
+
+    final PersonAccess s2 = open().people();
+    final Person p2 = s2.get(bob.key());
+    assertNotSame(p1, p2);
+    assertEquals(18, p2.age());
+    assertEquals(1, cache.getStats("people").hitCount());
+
+    p2.growOlder();
+    assertEquals(18, s1.get(bob.key()).age());
+    s2.update(Collections.singleton(p2));
+    assertEquals(19, s1.get(bob.key()).age());
+
+    assertEquals(2, s2.get(Arrays.asList(bob.key(), joe.key())).toList().size());
+    assertEquals(2, s1.get(Arrays.asList(bob.key(), joe.key())).toList().size());
+    assertEquals(5.0 / 8, cache.getHitRatio("people"), 0.001);
+
+    s1.delete(Collections.singleton(p2));
+    assertNull(s2.get(bob.key()));
+  }
+
+  @Test
+  public void testEntityCacheFullyResident() throws Exception {
+    db.setEntityCache("people", EntityCacheConfig.fullyResident());
+    final EntityCache cache = db.getEntityCache();
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    final PersonAccess sp = openAndCreate().people();
+    sp.insert(Arrays.asList(bob, joe));
+
+    assertEquals(18, sp.get(bob.key()).age());
+    assertEquals(30, sp.get(joe.key()).age());
+    assertEquals(2, cache.getStats("people").hitCount());
+
+    final Person p = sp.get(joe.key());
+    p.growOlder();
+    sp.update(Collections.singleton(p));
+    assertEquals(31, sp.get(joe.key()).age());
+    assertEquals(4, cache.getStats("people").hitCount());
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Lookups of many entities by their primary keys. */
+public class GetManyTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:GetManyTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testGetManyInPaddedChunks() throws Exception {
+    db.setStatementCacheSize(8);
+    final PhoneBookDb schema = openAndCreate();
+    final ArrayList<Person> all = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      all.add(new Person(new Person.Key("P" + i), i));
+    }
+    schema.people().insert(all);
+
+    final ArrayList<Person.Key> keys = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      keys.add(all.get(i).key());
+    }
+    keys.add(all.get(0).key());
+    keys.add(new Person.Key("Nobody"));
+    assertEquals(300, schema.people().get(keys).toList().size());
+
+    final StatementCache cache = ((JdbcSchema) schema).getStatementCache();
+    final long misses = cache.getMissCount();
+    assertEquals(5, schema.people().get(keys.subList(0, 5)).toList().size());
+    assertEquals(7, schema.people().get(keys.subList(10, 17)).toList().size());
+    assertEquals(misses + 1, cache.getMissCount());
+  }
+}
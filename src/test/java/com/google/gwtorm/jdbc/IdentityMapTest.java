@@ -0,0 +1,108 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PersonAccess;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.IdentityMap;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Entities read by a Schema shared by identity within it. */
+public class IdentityMapTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:IdentityMapTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testIdentityMap() throws Exception {
+    db.setIdentityMapEnabled(true);
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    openAndCreate().people().insert(Arrays.asList(bob, joe));
+
+    final PhoneBookDb schema = open();
+    final IdentityMap map = ((JdbcSchema) schema).getIdentityMap();
+    final PersonAccess sp = schema.people();
+    final Person p1 = sp.get(bob.key());
+    assertNotSame(bob, p1);
+    assertSame(p1, sp.get(bob.key()));
+    assertEquals(1, map.getHitCount());
+
+    final List<Person> both = sp.get(Arrays.asList(bob.key(), joe.key())).toList();
+    assertEquals(2, both.size());
+    assertSame(p1, both.get(0));
+    assertSame(both.get(1), sp.get(joe.key()));
+    assertEquals(2, map.size());
+
+    final Person p2 = new Person(bob.key(), 40);
+    sp.update(Collections.singleton(p2));
+    assertSame(p2, sp.get(bob.key()));
+
+    sp.delete(Collections.singleton(p2));
+    assertEquals(1, map.size());
+    assertNull(sp.get(bob.key()));
+
+    sp.beginTransaction(joe.key());
+    sp.get(joe.key());
+    schema.rollback();
+    assertEquals(0, map.size());
+  }
+}
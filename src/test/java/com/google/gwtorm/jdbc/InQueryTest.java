@@ -0,0 +1,96 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Queries with parameters tested with IN. */
+public class InQueryTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:InQueryTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testInParameters() throws Exception {
+    final PhoneBookDb schema = openAndCreate();
+    final ArrayList<Person> all = new ArrayList<>();
+    all.add(new Person(new Person.Key("Bob"), 18));
+    all.add(new Person(new Person.Key("Mary"), 22));
+    all.add(new Person(new Person.Key("Zak"), 33));
+    schema.people().insert(all);
+
+    final List<Person> r = schema.people().withAges(Arrays.asList(33, 18, 40, 18)).toList();
+    assertEquals(2, r.size());
+    assertEquals(all.get(0).key(), r.get(0).key());
+    assertEquals(all.get(2).key(), r.get(1).key());
+    assertTrue(schema.people().withAges(Collections.<Integer>emptyList()).toList().isEmpty());
+
+    final List<Integer> ages = new ArrayList<>();
+    for (int age = 0; age < 300; age++) {
+      ages.add(age);
+    }
+    assertEquals(3, schema.people().withAges(ages).toList().size());
+
+    final List<Person.Key> names =
+        Arrays.asList(new Person.Key("Zak"), new Person.Key("Al"), all.get(0).key());
+    assertEquals(2, schema.people().countNamed(names));
+    assertEquals(0, schema.people().countNamed(Collections.<Person.Key>emptyList()));
+  }
+}
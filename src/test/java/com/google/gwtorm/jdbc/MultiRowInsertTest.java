@@ -0,0 +1,103 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Inserts of several rows per statement. */
+public class MultiRowInsertTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:MultiRowInsertTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  private static Statement statement(final PhoneBookDb schema) throws SQLException {
+    return ((JdbcSchema) schema).getConnection().createStatement();
+  }
+
+  @Test
+  public void testInsertMultiRow() throws Exception {
+    final PhoneBookDb schema = openAndCreate();
+    final ArrayList<Person> all = new ArrayList<>();
+    // One statement each of 128, 32 and 8 rows, then 5 single rows.
+    for (int i = 0; i < 173; i++) {
+      final Person p = new Person(new Person.Key(String.format("p%03d", i)), i);
+      if (i % 2 == 0) {
+        p.register();
+      }
+      all.add(p);
+    }
+    schema.people().insert(all);
+
+    final Statement st = statement(schema);
+    final ResultSet rs;
+    rs = st.executeQuery("SELECT name,age,registered FROM people ORDER BY name");
+    for (int rowIdx = 0; rowIdx < all.size(); rowIdx++) {
+      assertTrue(rs.next());
+      assertEquals(all.get(rowIdx).name(), rs.getString(1));
+      assertEquals(all.get(rowIdx).age(), rs.getInt(2));
+      assertEquals(all.get(rowIdx).isRegistered(), rs.getBoolean(3));
+    }
+    assertFalse(rs.next());
+    rs.close();
+    st.close();
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PersonAccess;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmConcurrencyException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Updates setting only the columns an entity changed since it was read. */
+public class PartialUpdateTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private PhoneBookDb schema;
+  private Statement st;
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:PartialUpdateTest" + (runCount++) + ";DB_CLOSE_DELAY=-1");
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+    db.setPartialUpdatesEnabled(true);
+
+    schema = db.open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    schema.people().insert(Collections.singleton(new Person(new Person.Key("Bob"), 18)));
+    st = ((JdbcSchema) schema).getConnection().createStatement();
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    st.close();
+    schema.close();
+  }
+
+  /** Age Bob by a year while another writer registers him; @return whether he stayed registered. */
+  private boolean keepsConcurrentChange(final Person bob) throws Exception {
+    st.executeUpdate("UPDATE people SET registered='Y' WHERE name='Bob'");
+    bob.growOlder();
+    schema.people().update(Collections.singleton(bob));
+    final Person r = schema.people().get(bob.key());
+    assertEquals(19, r.age());
+    return r.isRegistered();
+  }
+
+  @Test
+  public void testPartialUpdates() throws Exception {
+    final PersonAccess sp = schema.people();
+    final Person bob = sp.get(new Person.Key("Bob"));
+
+    // Only the changed age is written, keeping this concurrent change.
+    assertTrue(keepsConcurrentChange(bob));
+
+    // An unchanged entity sends no statement, so the missing row is not noticed.
+    st.executeUpdate("DELETE FROM people");
+    sp.update(Collections.singleton(bob));
+    try {
+      bob.growOlder();
+      sp.update(Collections.singleton(bob));
+      fail("Expected OrmConcurrencyException");
+    } catch (OrmConcurrencyException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testStreamedResultsUpdatedInFull() throws Exception {
+    db.setDefaultFetchSize(2);
+    final Person bob = schema.people().all().toList().get(0);
+    assertFalse(keepsConcurrentChange(bob));
+  }
+
+  @Test
+  public void testIterateAllEntitiesUpdatedInFull() throws Exception {
+    final Person bob = schema.people().iterateAllEntities().toList().get(0);
+    assertFalse(keepsConcurrentChange(bob));
+  }
+}
@@ -0,0 +1,249 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gwtorm.data.PhoneBookDb;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PooledDataSourceTest {
+  private Properties info;
+  private PooledDataSource pool;
+
+  @Before
+  public void setUp() {
+    info = new Properties();
+    info.setProperty("driver", org.h2.Driver.class.getName());
+    info.setProperty("url", "jdbc:h2:mem:PooledDataSourceTest;DB_CLOSE_DELAY=-1");
+    info.setProperty("pool.maxActive", "2");
+    info.setProperty("pool.maxWait", "50");
+  }
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testReusesConnection() throws SQLException {
+    pool = new PooledDataSource(info);
+
+    final Connection c1 = pool.getConnection();
+    assertEquals(1, pool.getActiveCount());
+    c1.close();
+    assertTrue(c1.isClosed());
+    assertEquals(0, pool.getActiveCount());
+    assertEquals(1, pool.getIdleCount());
+
+    final Connection c2 = pool.getConnection();
+    c2.close();
+    assertEquals(1, pool.getCreatedCount());
+    assertEquals(2, pool.getBorrowCount());
+  }
+
+  @Test
+  public void testMinIdleOpenedUpFront() throws SQLException {
+    info.setProperty("pool.minIdle", "2");
+    pool = new PooledDataSource(info);
+    assertEquals(2, pool.getIdleCount());
+    assertEquals(2, pool.getCreatedCount());
+  }
+
+  @Test
+  public void testExhaustedPoolTimesOut() throws SQLException {
+    pool = new PooledDataSource(info);
+    final Connection c1 = pool.getConnection();
+    final Connection c2 = pool.getConnection();
+    try {
+      pool.getConnection();
+      fail("Expected pool exhaustion");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage().contains("pool exhausted"));
+    }
+    assertEquals(2, pool.getActiveCount());
+    assertTrue(pool.getMaxWaitMillis() >= 50);
+
+    c1.close();
+    pool.getConnection().close();
+    c2.close();
+  }
+
+  @Test
+  public void testClosedHandleCannotBeUsed() throws SQLException {
+    pool = new PooledDataSource(info);
+    final Connection c = pool.getConnection();
+    c.close();
+    c.close();
+    try {
+      c.createStatement();
+      fail("Expected closed connection");
+    } catch (SQLException e) {
+      assertEquals("Connection is closed", e.getMessage());
+    }
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void testReturnRollsBackAndRestoresAutoCommit() throws SQLException {
+    pool = new PooledDataSource(info);
+    Connection c = pool.getConnection();
+    try (Statement s = c.createStatement()) {
+      s.execute("CREATE TABLE pooled_rollback (id INT)");
+    }
+    c.setAutoCommit(false);
+    try (Statement s = c.createStatement()) {
+      s.execute("INSERT INTO pooled_rollback VALUES (1)");
+    }
+    c.close();
+
+    c = pool.getConnection();
+    assertTrue(c.getAutoCommit());
+    try (Statement s = c.createStatement()) {
+      try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM pooled_rollback")) {
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+      }
+      s.execute("DROP TABLE pooled_rollback");
+    }
+    c.close();
+  }
+
+  @Test
+  public void testReturnRestoresConnectionSettings() throws SQLException {
+    pool = new PooledDataSource(info);
+    Connection c = pool.getConnection();
+    final boolean readOnly = c.isReadOnly();
+    final int isolation = c.getTransactionIsolation();
+    c.setReadOnly(true);
+    c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+    c.close();
+
+    c = pool.getConnection();
+    assertEquals(readOnly, c.isReadOnly());
+    assertEquals(isolation, c.getTransactionIsolation());
+    c.close();
+    assertEquals(1, pool.getCreatedCount());
+  }
+
+  @Test
+  public void testBrokenConnectionIsReplaced() throws SQLException {
+    pool = new PooledDataSource(info);
+    final Connection c = pool.getConnection();
+    try (Statement s = c.createStatement()) {
+      s.execute("SHUTDOWN");
+    }
+    c.close();
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(1, pool.getDestroyedCount());
+
+    final Connection c2 = pool.getConnection();
+    assertFalse(c2.isClosed());
+    c2.close();
+    assertEquals(2, pool.getCreatedCount());
+  }
+
+  @Test
+  public void testMaxLifetime() throws Exception {
+    info.setProperty("pool.maxLifetime", "1");
+    pool = new PooledDataSource(info);
+    final Connection c = pool.getConnection();
+    Thread.sleep(5);
+    c.close();
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(1, pool.getDestroyedCount());
+  }
+
+  @Test
+  public void testIdleEviction() throws Exception {
+    info.setProperty("pool.idleTimeout", "1");
+    info.setProperty("pool.minIdle", "1");
+    pool = new PooledDataSource(info);
+    final Connection c1 = pool.getConnection();
+    final Connection c2 = pool.getConnection();
+    c1.close();
+    c2.close();
+    Thread.sleep(5);
+    pool.evictIdle();
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void testMinIdleRefilledAfterEviction() throws Exception {
+    info.setProperty("pool.maxLifetime", "20");
+    info.setProperty("pool.minIdle", "1");
+    pool = new PooledDataSource(info);
+    Thread.sleep(30);
+    pool.evictIdle();
+    assertEquals(1, pool.getDestroyedCount());
+    assertEquals(2, pool.getCreatedCount());
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void testMinIdleRefilledInBackground() throws Exception {
+    info.setProperty("pool.maxLifetime", "20");
+    info.setProperty("pool.minIdle", "1");
+    pool = new PooledDataSource(info);
+    final Connection c = pool.getConnection();
+    Thread.sleep(30);
+    c.close();
+    assertEquals(1, pool.getDestroyedCount());
+    for (int i = 0; i < 100 && pool.getIdleCount() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, pool.getIdleCount());
+    assertEquals(2, pool.getCreatedCount());
+  }
+
+  @Test
+  public void testStatementsReturnPooledConnection() throws SQLException {
+    pool = new PooledDataSource(info);
+    final Connection c = pool.getConnection();
+    try (Statement s = c.createStatement()) {
+      assertSame(c, s.getConnection());
+    }
+    try (PreparedStatement ps = c.prepareStatement("SELECT 1")) {
+      assertSame(c, ps.getConnection());
+    }
+    assertSame(c, c.getMetaData().getConnection());
+    c.close();
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void testDatabaseUsesPool() throws Exception {
+    pool = new PooledDataSource(info);
+    final Database<PhoneBookDb> db = new Database<>(pool, PhoneBookDb.class);
+    db.open().close();
+    db.open().close();
+    assertEquals(1, pool.getCreatedCount());
+    assertEquals(0, pool.getActiveCount());
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PersonAge;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Queries returning primary keys or projections of entities. */
+public class ProjectionQueryTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:ProjectionQueryTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testFetchKeysAndProjections() throws Exception {
+    final PhoneBookDb schema = openAndCreate();
+    final ArrayList<Person> all = new ArrayList<>();
+    all.add(new Person(new Person.Key("Bob"), 18));
+    all.add(new Person(new Person.Key("Mary"), 22));
+    all.add(new Person(new Person.Key("Zak"), 33));
+    schema.people().insert(all);
+
+    final List<Person.Key> keys = schema.people().olderThanKeys(20).toList();
+    assertEquals(Arrays.asList(all.get(1).key(), all.get(2).key()), keys);
+
+    final List<PersonAge> ages = schema.people().olderThanAges(20).toList();
+    assertEquals(2, ages.size());
+    assertEquals(all.get(1).key(), ages.get(0).key());
+    assertEquals(22, ages.get(0).age());
+    assertEquals(all.get(2).key(), ages.get(1).key());
+    assertEquals(33, ages.get(1).age());
+
+    final List<Person.Key> allKeys = schema.people().allKeys().toList();
+    assertEquals(3, allKeys.size());
+    assertTrue(allKeys.containsAll(keys));
+    assertTrue(allKeys.contains(all.get(0).key()));
+  }
+}
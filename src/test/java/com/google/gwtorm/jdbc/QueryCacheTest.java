@@ -0,0 +1,101 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PersonAccess;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.QueryCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Query results cached in memory, shared by all Schemas of a database. */
+public class QueryCacheTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private final List<PhoneBookDb> openSchemas = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:QueryCacheTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+  }
+
+  @After
+  public void tearDown() {
+    for (final PhoneBookDb schema : openSchemas) {
+      schema.close();
+    }
+  }
+
+  private PhoneBookDb open() throws OrmException {
+    final PhoneBookDb schema = db.open();
+    openSchemas.add(schema);
+    return schema;
+  }
+
+  private PhoneBookDb openAndCreate() throws OrmException {
+    final PhoneBookDb schema = open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    return schema;
+  }
+
+  @Test
+  public void testQueryCache() throws Exception {
+    final QueryCache cache = db.getQueryCache();
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    final PersonAccess s1 = openAndCreate().people();
+    s1.insert(Arrays.asList(bob, joe));
+
+    final List<Person> r1 = s1.olderThanCached(10).toList();
+    assertEquals(2, r1.size());
+    assertEquals(0, cache.getStats().hitCount());
+
+    final PersonAccess s2 = open().people();
+    final List<Person> r2 = s2.olderThanCached(10).toList();
+    assertEquals(2, r2.size());
+    assertEquals(bob.key(), r2.get(0).key());
+    assertNotSame(r1.get(0), r2.get(0));
+    assertEquals(1, cache.getStats().hitCount());
+
+    assertEquals(1, s2.olderThanCached(20).toList().size());
+    assertEquals(1, cache.getStats().hitCount());
+
+    s1.insert(Collections.singleton(new Person(new Person.Key("Sam"), 25)));
+    assertEquals(3, s2.olderThanCached(10).toList().size());
+    assertEquals(2, s2.olderThanCached(20).toList().size());
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(2, s1.olderThanCached(20).toList().size());
+    assertEquals(2, cache.getStats().hitCount());
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.schema.IndexModel;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Secondary indexes derived from the relations' queries. */
+public class QueryIndexTest {
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private PhoneBookDb schema;
+  private JdbcExecutor executor;
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:QueryIndexTest" + (runCount++));
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+    schema = db.open();
+    executor = new JdbcExecutor((JdbcSchema) schema);
+  }
+
+  @After
+  public void tearDown() {
+    executor.close();
+    schema.close();
+  }
+
+  private Set<String> derivedIndexes(final String table) throws SQLException {
+    final Set<String> r = new HashSet<>();
+    for (final String index :
+        db.getDialect().listIndexes(((JdbcSchema) schema).getConnection(), table)) {
+      if (IndexModel.isDerivedIndexName(table, index)) {
+        r.add(index);
+      }
+    }
+    return r;
+  }
+
+  @Test
+  public void testUpdateSchemaCreatesQueryIndexes() throws Exception {
+    schema.updateSchema(executor);
+    assertTrue(derivedIndexes("people").isEmpty());
+
+    db.setQueryIndexesEnabled(true);
+    schema.updateSchema(executor);
+    final Set<String> derived = derivedIndexes("people");
+    assertEquals(2, derived.size());
+
+    executor.execute("CREATE INDEX people_q00000000 ON people (name, age)");
+    assertEquals(3, derivedIndexes("people").size());
+    schema.pruneSchema(executor);
+    assertEquals(derived, derivedIndexes("people"));
+  }
+}
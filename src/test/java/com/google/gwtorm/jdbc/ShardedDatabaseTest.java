@@ -0,0 +1,349 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gwtorm.client.Column;
+import com.google.gwtorm.client.StringKey;
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PersonAge;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.server.Access;
+import com.google.gwtorm.server.ListResultSet;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.PrimaryKey;
+import com.google.gwtorm.server.Query;
+import com.google.gwtorm.server.Relation;
+import com.google.gwtorm.server.ResultSet;
+import com.google.gwtorm.server.Schema;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedDatabaseTest {
+  public static class Nick {
+    @SuppressWarnings("serial")
+    public static class Key extends StringKey<com.google.gwtorm.client.Key<?>> {
+      @Column(id = 1, length = 20)
+      protected String id;
+
+      protected Key() {}
+
+      public Key(final String id) {
+        this.id = id;
+      }
+
+      @Override
+      public String get() {
+        return id;
+      }
+
+      @Override
+      protected void set(String newValue) {
+        id = newValue;
+      }
+    }
+
+    @Column(id = 1)
+    protected Key id;
+
+    @Column(id = 2, length = 20, notNull = false)
+    protected String nick;
+
+    protected Nick() {}
+
+    public Nick(final String id, final String nick) {
+      this.id = new Key(id);
+      this.nick = nick;
+    }
+  }
+
+  public interface NickAccess extends Access<Nick, Nick.Key> {
+    @Override
+    @PrimaryKey("id")
+    Nick get(Nick.Key key) throws OrmException;
+
+    @Query("ORDER BY nick")
+    ResultSet<Nick> byNick() throws OrmException;
+
+    @Query("ORDER BY nick DESC")
+    ResultSet<Nick> byNickDesc() throws OrmException;
+  }
+
+  public interface NickDb extends Schema {
+    @Relation(id = 1)
+    NickAccess nicks();
+  }
+
+  private static int runCount;
+  private ShardedDatabase<PhoneBookDb> sdb;
+  private PhoneBookDb schema;
+  private ExecutorService executor;
+
+  private static List<DataSource> newDataSources(final int count) throws SQLException {
+    final List<DataSource> sources = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final Properties p = new Properties();
+      p.setProperty("driver", org.h2.Driver.class.getName());
+      p.setProperty(
+          "url", "jdbc:h2:mem:ShardedDatabaseTest" + (runCount++) + ";DB_CLOSE_DELAY=-1");
+      sources.add(new SimpleDataSource(p));
+    }
+    return sources;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    sdb = new ShardedDatabase<>(newDataSources(3), PhoneBookDb.class);
+    sdb.updateSchema();
+
+    final List<Person> all = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      all.add(new Person(new Person.Key("P" + i), 100 - i));
+    }
+    schema = sdb.open();
+    schema.people().insert(all);
+  }
+
+  @After
+  public void tearDown() {
+    schema.close();
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRowsAreSpreadOverShards() throws Exception {
+    int total = 0;
+    for (int i = 0; i < sdb.getShardCount(); i++) {
+      final PhoneBookDb shard = sdb.getShard(i).open();
+      try {
+        final int n = shard.people().iterateAllEntities().toList().size();
+        assertTrue(0 < n);
+        total += n;
+      } finally {
+        shard.close();
+      }
+    }
+    assertEquals(30, total);
+    assertEquals(30, schema.people().iterateAllEntities().toList().size());
+  }
+
+  @Test
+  public void testGetAndWrite() throws Exception {
+    assertEquals(95, schema.people().get(new Person.Key("P5")).age());
+    assertEquals(
+        3,
+        schema
+            .people()
+            .get(Arrays.asList(new Person.Key("P1"), new Person.Key("P2"), new Person.Key("P3")))
+            .toList()
+            .size());
+
+    final Person p = schema.people().get(new Person.Key("P5"));
+    p.growOlder();
+    schema.people().update(Collections.singleton(p));
+    assertEquals(96, schema.people().get(p.key()).age());
+    schema.people().deleteKeys(Collections.singleton(p.key()));
+    assertNull(schema.people().get(p.key()));
+    assertEquals(29, schema.people().iterateAllEntities().toList().size());
+  }
+
+  @Test
+  public void testMergedQueries() throws Exception {
+    final List<Person> youngest = schema.people().youngestN(4).toList();
+    assertEquals(4, youngest.size());
+    for (int i = 0; i < 4; i++) {
+      assertEquals(71 + i, youngest.get(i).age());
+    }
+    assertEquals(30, schema.people().olderThan(0).toList().size());
+    assertEquals(71, schema.people().youngest().toList().get(0).age());
+
+    final List<PersonAge> ages = schema.people().olderThanAges(90).toList();
+    assertEquals(10, ages.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(91 + i, ages.get(i).age());
+    }
+    final List<Person.Key> keys = schema.people().olderThanKeysDescByName(90).toList();
+    assertEquals(10, keys.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals("P" + (9 - i), keys.get(i).get());
+    }
+    try {
+      schema.people().olderThanKeys(90);
+      fail("Expected OrmException");
+    } catch (OrmException e) {
+      assertTrue(e.getMessage().contains("ORDER BY"));
+    }
+  }
+
+  @Test
+  public void testCountQueries() throws Exception {
+    assertEquals(9, schema.people().countOlderThan(91));
+    assertEquals(30L, schema.people().countAll());
+    assertEquals(
+        2, schema.people().countNamed(Arrays.asList(new Person.Key("P1"), new Person.Key("P2"))));
+    assertTrue(schema.people().anyOlderThan(99));
+    assertFalse(schema.people().anyOlderThan(100));
+  }
+
+  @Test
+  public void testAsyncQueries() throws Exception {
+    assertEquals(95, schema.people().getAsync(new Person.Key("P5")).checkedGet().age());
+    assertEquals(71, schema.people().youngestNAsync(1).checkedGet().toList().get(0).age());
+
+    executor = Executors.newFixedThreadPool(3);
+    sdb.setExecutor(executor);
+    final List<Person> older = schema.people().olderThanAsync(90).checkedGet().toList();
+    assertEquals(10, older.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(91 + i, older.get(i).age());
+    }
+    assertEquals(30, schema.people().all().toList().size());
+  }
+
+  @Test
+  public void testSchemaChangesApplyToEveryShard() throws Exception {
+    final JdbcSchema s = (JdbcSchema) sdb.getShard(0).open();
+    try {
+      schema.updateSchema(new JdbcExecutor(s));
+      fail("Expected OrmException");
+    } catch (OrmException e) {
+      assertTrue(e.getMessage().contains("ShardedDatabase.updateSchema()"));
+    } finally {
+      s.close();
+    }
+    schema.close();
+
+    sdb.renameTable("people", "people_old");
+    for (int i = 0; i < sdb.getShardCount(); i++) {
+      final PhoneBookDb shard = sdb.getShard(i).open();
+      try {
+        shard.people().countAll();
+        fail("Expected OrmException");
+      } catch (OrmException e) {
+        // Expected.
+      } finally {
+        shard.close();
+      }
+    }
+
+    sdb.renameTable("people_old", "people");
+    sdb.pruneSchema();
+    schema = sdb.open();
+    assertEquals(30L, schema.people().countAll());
+  }
+
+  @Test
+  public void testNullsMergedInDatabaseOrder() throws Exception {
+    final List<Nick> rows = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      rows.add(new Nick("N" + i, i % 3 == 0 ? null : "nick" + (i % 5)));
+    }
+
+    final Database<NickDb> single = new Database<>(newDataSources(1).get(0), NickDb.class);
+    final NickDb expected = single.open();
+    final ShardedDatabase<NickDb> sharded = new ShardedDatabase<>(newDataSources(3), NickDb.class);
+    sharded.updateSchema();
+    final NickDb actual = sharded.open();
+    try {
+      final JdbcExecutor e = new JdbcExecutor((JdbcSchema) expected);
+      try {
+        expected.updateSchema(e);
+      } finally {
+        e.close();
+      }
+      expected.nicks().insert(rows);
+      actual.nicks().insert(rows);
+
+      assertEquals(nicks(expected.nicks().byNick()), nicks(actual.nicks().byNick()));
+      assertEquals(nicks(expected.nicks().byNickDesc()), nicks(actual.nicks().byNickDesc()));
+    } finally {
+      actual.close();
+      expected.close();
+    }
+  }
+
+  private static List<String> nicks(final ResultSet<Nick> rs) {
+    final List<String> r = new ArrayList<>();
+    for (final Nick n : rs) {
+      r.add(n.nick);
+    }
+    return r;
+  }
+
+  @Test
+  public void testUnorderedShardsQueriedOnDemand() throws Exception {
+    final List<Integer> calls = new ArrayList<>();
+    final ShardedResultSet<Integer> rs =
+        new ShardedResultSet<>(
+            Arrays.asList(shard(calls, 0, 1, 2), shard(calls, 1, 3), shard(calls, 2, 4)),
+            null,
+            3);
+    final List<Integer> read = new ArrayList<>();
+    for (final Integer i : rs) {
+      read.add(i);
+      if (read.size() == 2) {
+        assertEquals(Collections.singletonList(0), calls);
+      }
+    }
+    assertEquals(Arrays.asList(1, 2, 3), read);
+    assertEquals(Arrays.asList(0, 1), calls);
+  }
+
+  @Test
+  public void testOrderedShardsMerged() throws Exception {
+    final List<Integer> calls = new ArrayList<>();
+    final ShardedResultSet<Integer> rs =
+        new ShardedResultSet<>(
+            Arrays.asList(shard(calls, 0, 1, 4, 7), shard(calls, 1), shard(calls, 2, 2, 3, 8)),
+            new Comparator<Integer>() {
+              @Override
+              public int compare(final Integer a, final Integer b) {
+                return a.compareTo(b);
+              }
+            },
+            -1);
+    assertEquals(Arrays.asList(1, 2, 3, 4, 7, 8), rs.toList());
+  }
+
+  private static Callable<ResultSet<Integer>> shard(
+      final List<Integer> calls, final int index, final Integer... rows) {
+    return new Callable<ResultSet<Integer>>() {
+      @Override
+      public ResultSet<Integer> call() {
+        calls.add(index);
+        return new ListResultSet<>(new ArrayList<>(Arrays.asList(rows)));
+      }
+    };
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import java.util.Collections;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCacheTest {
+  private static int runCount;
+  private PooledDataSource pool;
+  private Database<PhoneBookDb> db;
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:StatementCacheTest" + (runCount++) + ";DB_CLOSE_DELAY=-1");
+    pool = new PooledDataSource(p);
+    db = new Database<>(pool, PhoneBookDb.class);
+    db.setStatementCacheSize(8);
+
+    final PhoneBookDb admin = db.open();
+    try {
+      final JdbcExecutor e = new JdbcExecutor((JdbcSchema) admin);
+      try {
+        admin.updateSchema(e);
+      } finally {
+        e.close();
+      }
+      admin.people().insert(Collections.singleton(new Person(new Person.Key("Bob"), 18)));
+    } finally {
+      admin.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testHeldConnectionCachesStatements() throws Exception {
+    final PhoneBookDb schema = db.open();
+    try {
+      assertNotNull(((JdbcSchema) schema).getStatementCache());
+      for (int i = 0; i < 3; i++) {
+        assertEquals(1, schema.people().olderThan(10).toList().size());
+      }
+    } finally {
+      schema.close();
+    }
+    assertEquals(2, db.getStatementCacheHitCount());
+  }
+
+  @Test
+  public void testLazyConnectionsDoNotCacheStatements() throws Exception {
+    db.setLazyConnections(true);
+    final long misses = db.getStatementCacheMissCount();
+    final PhoneBookDb schema = db.open();
+    try {
+      assertNull(((JdbcSchema) schema).getStatementCache());
+      for (int i = 0; i < 3; i++) {
+        assertEquals(1, schema.people().olderThan(10).toList().size());
+        assertEquals(0, pool.getActiveCount());
+      }
+    } finally {
+      schema.close();
+    }
+    assertEquals(0, db.getStatementCacheHitCount());
+    assertEquals(misses, db.getStatementCacheMissCount());
+  }
+}
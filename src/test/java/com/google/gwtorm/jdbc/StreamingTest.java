@@ -0,0 +1,175 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gwtorm.data.Person;
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.schema.sql.DialectH2;
+import com.google.gwtorm.schema.sql.SqlDialect;
+import com.google.gwtorm.server.EntityCacheConfig;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.OrmRuntimeException;
+import com.google.gwtorm.server.ResultSet;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Streamed queries on a database that streams only inside a transaction, like PostgreSQL. */
+public class StreamingTest {
+  /** H2, streaming like PostgreSQL. */
+  public static class DialectStreamingH2 extends DialectH2 {
+    @Override
+    public boolean handles(final String url, final Connection c) {
+      return url.startsWith("jdbc:h2:mem:StreamingTest");
+    }
+
+    @Override
+    public boolean isStreamingRequiresTransaction() {
+      return true;
+    }
+  }
+
+  private static int runCount;
+  private Database<PhoneBookDb> db;
+  private PhoneBookDb p1;
+  private PhoneBookDb p2;
+
+  @BeforeClass
+  public static void registerDialect() {
+    SqlDialect.register(new DialectStreamingH2());
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:StreamingTest" + (runCount++) + ";DB_CLOSE_DELAY=-1");
+    db = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+    db.setDefaultFetchSize(2);
+    db.setEntityCache("people", EntityCacheConfig.maxEntries(100));
+    assertTrue(db.getDialect() instanceof DialectStreamingH2);
+
+    p1 = db.open();
+    p2 = db.open();
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) p1);
+    try {
+      p1.updateSchema(e);
+    } finally {
+      e.close();
+    }
+    final List<Person> all = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      all.add(new Person(new Person.Key("P" + i), i));
+    }
+    p1.people().insert(all);
+  }
+
+  @After
+  public void tearDown() {
+    p2.close();
+    p1.close();
+  }
+
+  @Test
+  public void testStreamWithDefaultFetchSize() throws Exception {
+    int n = 0;
+    for (final Person p : p1.people().iterateAllEntities()) {
+      assertNotNull(p.name());
+      n++;
+    }
+    assertEquals(5, n);
+    assertEquals(3, p1.people().olderThan(1).toList().size());
+    assertTrue(((JdbcSchema) p1).getConnection().getAutoCommit());
+  }
+
+  @Test
+  public void testWriteWhileStreamingIsRejected() throws Exception {
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final ResultSet<Person> rs = p1.people().olderThan(-1);
+    try {
+      assertFalse(((JdbcSchema) p1).getConnection().getAutoCommit());
+      p1.people().insert(Collections.singleton(bob));
+      fail("Expected OrmException");
+    } catch (OrmException e) {
+      // Expected.
+    } finally {
+      rs.close();
+    }
+    assertTrue(((JdbcSchema) p1).getConnection().getAutoCommit());
+    assertEquals(null, p2.people().get(bob.key()));
+
+    p1.people().insert(Collections.singleton(bob));
+    assertEquals(6, p2.people().all().toList().size());
+  }
+
+  @Test
+  public void testWriteInApplicationTransactionWhileStreaming() throws Exception {
+    final ResultSet<Person> rs = p1.people().olderThan(-1);
+    try {
+      p1.people().beginTransaction(new Person.Key("P0"));
+      p1.people().insert(Collections.singleton(new Person(new Person.Key("Bob"), 18)));
+      p1.commit();
+    } finally {
+      rs.close();
+    }
+    assertEquals(6, p2.people().all().toList().size());
+  }
+
+  @Test
+  public void testCacheConsistentAfterStream() throws Exception {
+    final Person.Key key = new Person.Key("P1");
+    assertEquals(1, p2.people().get(key).age());
+
+    final ResultSet<Person> rs = p1.people().olderThan(-1);
+    final Person p = p1.people().get(key);
+    p.growOlder();
+    try {
+      p1.people().update(Collections.singleton(p));
+      fail("Expected OrmException");
+    } catch (OrmException e) {
+      // Expected.
+    } finally {
+      rs.close();
+    }
+    assertEquals(1, p2.people().get(key).age());
+
+    p1.people().update(Collections.singleton(p));
+    assertEquals(2, p2.people().get(key).age());
+  }
+
+  @Test
+  public void testStreamCommitFailureIsReported() throws Exception {
+    final ResultSet<Person> rs = p1.people().olderThan(-1);
+    ((JdbcSchema) p1).getConnection().close();
+    try {
+      rs.close();
+      fail("Expected OrmRuntimeException");
+    } catch (OrmRuntimeException e) {
+      assertTrue(e.getCause() instanceof OrmException);
+    }
+  }
+}
@@ -15,22 +15,30 @@
 package com.google.gwtorm.nosql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.gwtorm.data.Person;
 import com.google.gwtorm.data.PersonAccess;
+import com.google.gwtorm.data.PersonAge;
 import com.google.gwtorm.data.PhoneBookDb;
 import com.google.gwtorm.nosql.heap.MemoryDatabase;
 import com.google.gwtorm.server.Access;
+import com.google.gwtorm.server.AsyncAccessExecutor;
+import com.google.gwtorm.server.AtomicUpdate;
+import com.google.gwtorm.server.IdentityMap;
 import com.google.gwtorm.server.OrmConcurrencyException;
 import com.google.gwtorm.server.OrmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -78,6 +86,21 @@ public class NoSqlPhoneBookTest {
     assertNotSame(schema1, schema2);
   }
 
+  @Test
+  public void testGeneratedClassesShared() throws Exception {
+    final PhoneBookDb mine = open();
+    final PhoneBookDb theirs = new MemoryDatabase<>(PhoneBookDb.class).open();
+    try {
+      assertSame(mine.getClass(), theirs.getClass());
+      assertSame(mine.people().getClass(), theirs.people().getClass());
+
+      mine.people().insert(Collections.singleton(new Person(new Person.Key("Bob"), 18)));
+      assertTrue(theirs.people().all().toList().isEmpty());
+    } finally {
+      theirs.close();
+    }
+  }
+
   @Test
   public void testGetPeopleAccess() throws Exception {
     final PhoneBookDb schema = open();
@@ -157,6 +180,73 @@ public class NoSqlPhoneBookTest {
     assertEquals(sp.primaryKey(p1), sp.primaryKey(p2));
   }
 
+  @Test
+  public void testAsyncExecutor() throws Exception {
+    final ExecutorService executor = AsyncAccessExecutor.newDefaultExecutor(2);
+    try {
+      db.setAsyncExecutor(executor);
+      final PhoneBookDb schema = open();
+      final PersonAccess sp = schema.people();
+      final Person bob = new Person(new Person.Key("Bob"), 18);
+      final Person joe = new Person(new Person.Key("Joe"), 30);
+      sp.insert(Arrays.asList(bob, joe));
+
+      final Person p = sp.getAsync(bob.key()).checkedGet();
+      assertNotNull(p);
+      assertEquals(bob.key(), p.key());
+
+      final List<Person> all =
+          sp.getAsync(Arrays.asList(bob.key(), joe.key())).checkedGet().toList();
+      assertEquals(2, all.size());
+
+      final List<Person> older = sp.olderThanAsync(20).checkedGet().toList();
+      assertEquals(1, older.size());
+      assertEquals(joe.key(), older.get(0).key());
+    } finally {
+      db.setAsyncExecutor(null);
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testIdentityMap() throws Exception {
+    db.setIdentityMapEnabled(true);
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    open().people().insert(Arrays.asList(bob, joe));
+
+    final PhoneBookDb schema = open();
+    final IdentityMap map = ((NoSqlSchema) schema).getIdentityMap();
+    final PersonAccess sp = schema.people();
+    final Person p1 = sp.get(bob.key());
+    assertNotSame(bob, p1);
+    assertSame(p1, sp.get(bob.key()));
+    assertEquals(1, map.getHitCount());
+
+    final List<Person> both = sp.get(Arrays.asList(bob.key(), joe.key())).toList();
+    assertEquals(2, both.size());
+    assertSame(p1, both.get(0));
+
+    final Person p2 =
+        sp.atomicUpdate(
+            bob.key(),
+            new AtomicUpdate<Person>() {
+              @Override
+              public Person update(Person p) {
+                p.growOlder();
+                return p;
+              }
+            });
+    assertSame(p2, sp.get(bob.key()));
+    assertEquals(19, p2.age());
+
+    sp.delete(Collections.singleton(p2));
+    assertNull(sp.get(bob.key()));
+
+    schema.rollback();
+    assertEquals(0, map.size());
+  }
+
   @Test
   public void testGetOnePersonIterator() throws Exception {
     final PhoneBookDb schema = open();
@@ -257,6 +347,77 @@ public class NoSqlPhoneBookTest {
     assertEquals(all.get(2).name(), r.get(1).name());
   }
 
+  @Test
+  public void testCountAndExists() throws Exception {
+    final PhoneBookDb schema = open();
+    assertEquals(0, schema.people().countAll());
+    assertFalse(schema.people().anyOlderThan(0));
+
+    final ArrayList<Person> all = new ArrayList<>();
+    all.add(new Person(new Person.Key("Bob"), 18));
+    all.add(new Person(new Person.Key("Mary"), 22));
+    all.add(new Person(new Person.Key("Zak"), 33));
+    schema.people().insert(all);
+
+    assertEquals(3, schema.people().countAll());
+    assertEquals(2, schema.people().countOlderThan(20));
+    assertEquals(0, schema.people().countOlderThan(40));
+    assertTrue(schema.people().anyOlderThan(30));
+    assertFalse(schema.people().anyOlderThan(33));
+  }
+
+  @Test
+  public void testInParameters() throws Exception {
+    final PhoneBookDb schema = open();
+    final ArrayList<Person> all = new ArrayList<>();
+    all.add(new Person(new Person.Key("Bob"), 18));
+    all.add(new Person(new Person.Key("Mary"), 22));
+    all.add(new Person(new Person.Key("Zak"), 33));
+    schema.people().insert(all);
+
+    final List<Person> r = schema.people().withAges(Arrays.asList(33, 18, 40, 18)).toList();
+    assertEquals(2, r.size());
+    assertEquals(all.get(0).key(), r.get(0).key());
+    assertEquals(all.get(2).key(), r.get(1).key());
+    assertTrue(schema.people().withAges(Collections.<Integer>emptyList()).toList().isEmpty());
+
+    final List<Integer> ages = new ArrayList<>();
+    for (int age = 0; age < 300; age++) {
+      ages.add(age);
+    }
+    assertEquals(3, schema.people().withAges(ages).toList().size());
+
+    final List<Person.Key> names =
+        Arrays.asList(new Person.Key("Zak"), new Person.Key("Al"), all.get(0).key());
+    assertEquals(2, schema.people().countNamed(names));
+    assertEquals(0, schema.people().countNamed(Collections.<Person.Key>emptyList()));
+  }
+
+  @Test
+  public void testFetchKeysAndProjections() throws Exception {
+    final PhoneBookDb schema = open();
+    final ArrayList<Person> all = new ArrayList<>();
+    all.add(new Person(new Person.Key("Bob"), 18));
+    all.add(new Person(new Person.Key("Mary"), 22));
+    all.add(new Person(new Person.Key("Zak"), 33));
+    schema.people().insert(all);
+
+    final List<Person.Key> keys = schema.people().olderThanKeys(20).toList();
+    assertEquals(Arrays.asList(all.get(1).key(), all.get(2).key()), keys);
+
+    final List<PersonAge> ages = schema.people().olderThanAges(20).toList();
+    assertEquals(2, ages.size());
+    assertEquals(all.get(1).key(), ages.get(0).key());
+    assertEquals(22, ages.get(0).age());
+    assertEquals(all.get(2).key(), ages.get(1).key());
+    assertEquals(33, ages.get(1).age());
+
+    final List<Person.Key> allKeys = schema.people().allKeys().toList();
+    assertEquals(3, allKeys.size());
+    assertTrue(allKeys.containsAll(keys));
+    assertTrue(allKeys.contains(all.get(0).key()));
+  }
+
   @Test
   public void testBooleanType() throws Exception {
     final PhoneBookDb schema = open();
@@ -18,10 +18,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import com.google.gwtorm.data.PersonAge;
 import com.google.gwtorm.data.PhoneBookDb;
 import com.google.gwtorm.schema.java.JavaSchemaModel;
 import com.google.gwtorm.schema.sql.DialectH2;
 import com.google.gwtorm.server.OrmException;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -59,4 +61,73 @@ public class QueryModelTest {
     String sql = qm.getSelectSql(new DialectH2(), "T");
     assertEquals("SELECT T.age,T.registered,T.name FROM people T LIMIT ?", sql);
   }
+
+  @Test
+  public void testKeysAndProjections() throws OrmException {
+    QueryModel keys = null;
+    QueryModel ages = null;
+    for (QueryModel q : people.getQueries()) {
+      if (q.getName().equals("olderThanKeys")) {
+        keys = q;
+      } else if (q.getName().equals("olderThanAges")) {
+        ages = q;
+      }
+    }
+    assertTrue(keys.isReturnsKeys());
+    assertEquals(
+        "SELECT T.name FROM people T WHERE T.age>? ORDER BY T.age",
+        keys.getSelectSql(new DialectH2(), "T"));
+    assertEquals(PersonAge.class.getName(), ages.getProjectionClassName());
+    assertEquals(
+        "SELECT T.name,T.age FROM people T WHERE T.age>? ORDER BY T.age",
+        ages.getSelectSql(new DialectH2(), "T"));
+  }
+
+  @Test
+  public void testCountAndExists() throws OrmException {
+    QueryModel count = new QueryModel(people, "count", "WHERE age > ?");
+    count.setReturnsCount(Integer.TYPE);
+    assertEquals(
+        "SELECT COUNT(*) FROM people T WHERE T.age>?", count.getSelectSql(new DialectH2(), "T"));
+
+    QueryModel exists = new QueryModel(people, "exists", "WHERE age > ?");
+    exists.setReturnsCount(Boolean.TYPE);
+    assertEquals(
+        "SELECT 1 FROM people T WHERE T.age>? LIMIT 1", exists.getSelectSql(new DialectH2(), "T"));
+  }
+
+  @Test
+  public void testInParameters() throws OrmException {
+    QueryModel q = new QueryModel(people, "in", "WHERE age IN ? AND registered = ? ORDER BY age");
+    ColumnModel age = people.getField("age");
+    ColumnModel registered = people.getField("registered");
+    assertEquals(Arrays.asList(age, null), q.getInParameters());
+    assertEquals(Arrays.asList(null, registered), q.getEqualityParameters());
+    assertEquals(
+        "SELECT T.age,T.registered,T.name FROM people T"
+            + " WHERE T.age IN (?) AND T.registered=? ORDER BY T.age",
+        q.getSelectSql(new DialectH2(), "T"));
+    assertEquals(
+        Arrays.asList(
+            "SELECT T.age,T.registered,T.name FROM people T WHERE ",
+            "T.age",
+            " AND T.registered=? ORDER BY T.age"),
+        q.getSelectSqlFragments(new DialectH2(), "T"));
+  }
+
+  @Test
+  public void testIndexColumns() throws OrmException {
+    ColumnModel age = people.getField("age");
+    ColumnModel registered = people.getField("registered");
+    ColumnModel name = people.getField("name").getAllLeafColumns().iterator().next();
+
+    QueryModel q = new QueryModel(people, "q", "WHERE age > ? AND registered = ? ORDER BY name");
+    assertEquals(Arrays.asList(registered, age, name), q.getIndexColumns());
+
+    List<IndexModel> indexes = people.getIndexes();
+    assertEquals(2, indexes.size());
+    assertEquals(Arrays.asList(age, name), indexes.get(0).getColumns());
+    assertEquals(Arrays.asList(registered, name), indexes.get(1).getColumns());
+    assertTrue(IndexModel.isDerivedIndexName("people", indexes.get(0).getIndexName()));
+  }
 }
@@ -220,4 +220,23 @@ public class QueryParserTest {
       assertEquals(QueryParser.PLACEHOLDER, c.getType());
     }
   }
+
+  @Test
+  public void testWhereAInAndBEq() throws QueryParseException {
+    final Tree t = parse("WHERE a IN ? AND b = ?");
+    assertNotNull(t);
+    assertEquals(QueryParser.WHERE, t.getType());
+
+    final Tree c = t.getChild(0);
+    assertEquals(QueryParser.AND, c.getType());
+    assertEquals(2, c.getChildCount());
+    {
+      final Tree in = c.getChild(0);
+      assertEquals(QueryParser.IN, in.getType());
+      assertEquals(2, in.getChildCount());
+      assertEquals("a", in.getChild(0).getText());
+      assertEquals(QueryParser.PLACEHOLDER, in.getChild(1).getType());
+    }
+    assertGoodEQ(c.getChild(1), "b");
+  }
 }
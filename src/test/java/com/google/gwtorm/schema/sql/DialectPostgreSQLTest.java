@@ -30,7 +30,9 @@ import com.google.gwtorm.jdbc.SimpleDataSource;
 import com.google.gwtorm.server.OrmException;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import org.junit.After;
@@ -198,6 +200,31 @@ public class DialectPostgreSQLTest extends SqlDialectTest {
     }
   }
 
+  @Test
+  public void testBulkInsert() throws SQLException, OrmException {
+    final PhoneBookDb p = phoneBook.open();
+    try {
+      p.updateSchema(executor);
+
+      final List<Person> all = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+        final Person bob = new Person(new Person.Key("Bob\t" + i + "\\"), i);
+        if (i % 3 == 0) {
+          bob.register();
+        }
+        all.add(bob);
+      }
+      p.people().bulkInsert(all);
+
+      assertEquals(all.size(), p.people().all().toList().size());
+      final Person last = all.get(all.size() - 1);
+      assertEquals(last, p.people().get(last.key()));
+      assertEquals(all.get(3), p.people().get(all.get(3).key()));
+    } finally {
+      p.close();
+    }
+  }
+
   @Test
   public void testRenameTable() throws SQLException, OrmException {
     assertTrue(dialect.listTables(db).isEmpty());
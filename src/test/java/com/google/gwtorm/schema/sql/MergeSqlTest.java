@@ -0,0 +1,72 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.schema.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gwtorm.data.PhoneBookDb;
+import com.google.gwtorm.schema.RelationModel;
+import com.google.gwtorm.schema.java.JavaSchemaModel;
+import com.google.gwtorm.server.OrmException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MergeSqlTest {
+  private RelationModel people;
+
+  @Before
+  public void setUp() throws OrmException {
+    people = new JavaSchemaModel(PhoneBookDb.class).getRelation("people");
+  }
+
+  @Test
+  public void testDB2() {
+    assertEquals(
+        "MERGE INTO people t USING"
+            + " (VALUES(CAST(? AS INT),CAST(? AS CHAR(1)),CAST(? AS VARCHAR(20))))"
+            + " AS s(age,registered,name)"
+            + " ON (t.name=s.name)"
+            + " WHEN MATCHED THEN UPDATE SET t.age=s.age,t.registered=s.registered"
+            + " WHEN NOT MATCHED THEN INSERT(age,registered,name)"
+            + "VALUES(s.age,s.registered,s.name)",
+        new DialectDB2().getUpsertOneSql(people));
+  }
+
+  @Test
+  public void testOracle() {
+    assertEquals(
+        "MERGE INTO people t USING"
+            + " (SELECT CAST(? AS INT) age,CAST(? AS CHAR(1)) registered,"
+            + "CAST(? AS VARCHAR(20)) name FROM DUAL) s"
+            + " ON (t.name=s.name)"
+            + " WHEN MATCHED THEN UPDATE SET t.age=s.age,t.registered=s.registered"
+            + " WHEN NOT MATCHED THEN INSERT(age,registered,name)"
+            + "VALUES(s.age,s.registered,s.name)",
+        new DialectOracle().getUpsertOneSql(people));
+  }
+
+  @Test
+  public void testHANA() {
+    assertEquals(
+        "MERGE INTO people t USING"
+            + " (SELECT CAST(? AS INTEGER) AS age,CAST(? AS CHAR(1)) AS registered,"
+            + "CAST(? AS NVARCHAR(20)) AS name FROM DUMMY) s"
+            + " ON (t.name=s.name)"
+            + " WHEN MATCHED THEN UPDATE SET t.age=s.age,t.registered=s.registered"
+            + " WHEN NOT MATCHED THEN INSERT(age,registered,name)"
+            + "VALUES(s.age,s.registered,s.name)",
+        new DialectHANA().getUpsertOneSql(people));
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gwtorm.schema.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class PostgreSQLCopyTest {
+  private static String encode(final int bufferSize, final Object[]... rows) throws IOException {
+    final Iterator<Object[]> i = Arrays.asList(rows).iterator();
+    final Reader r =
+        new PostgreSQLCopy.RowReader(
+            new SqlDialect.RowSource() {
+              @Override
+              public Object[] nextRow() {
+                return i.hasNext() ? i.next() : null;
+              }
+            });
+    final StringBuilder s = new StringBuilder();
+    final char[] buf = new char[bufferSize];
+    int n;
+    while ((n = r.read(buf)) > 0) {
+      s.append(buf, 0, n);
+    }
+    assertEquals(-1, n);
+    return s.toString();
+  }
+
+  @Test
+  public void testTextFormat() throws IOException {
+    assertEquals(
+        "a\\tb\\\\c\\nd\t\\N\tt\t42\t\\\\x00ff\nx\t\\N\tf\t-1\t\\\\x\n",
+        encode(
+            4096,
+            new Object[] {"a\tb\\c\nd", null, true, 42, new byte[] {0, (byte) 0xff}},
+            new Object[] {"x", null, false, -1L, new byte[0]}));
+  }
+
+  @Test
+  public void testRowsSplitOverReads() throws IOException {
+    final Object[][] rows = new Object[100][];
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = new Object[] {"row" + i, i};
+      expected.append("row").append(i).append('\t').append(i).append('\n');
+    }
+    assertEquals(expected.toString(), encode(7, rows));
+  }
+
+  @Test
+  public void testTimestampsInUtc() throws IOException {
+    final TimeZone tz = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+    try {
+      final Timestamp t = new Timestamp(1234567890123L);
+      t.setNanos(123456000);
+      assertEquals("2009-02-13T23:31:30.123456Z\n", encode(4096, new Object[] {t}));
+    } finally {
+      TimeZone.setDefault(tz);
+    }
+  }
+
+  @Test
+  public void testRowSourceFailure() throws IOException {
+    final SQLException err = new SQLException("broken");
+    final Reader r =
+        new PostgreSQLCopy.RowReader(
+            new SqlDialect.RowSource() {
+              @Override
+              public Object[] nextRow() throws SQLException {
+                throw err;
+              }
+            });
+    try {
+      r.read(new char[16]);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertSame(err, e.getCause());
+    }
+  }
+}
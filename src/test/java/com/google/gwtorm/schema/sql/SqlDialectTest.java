@@ -28,6 +28,7 @@ import com.google.gwtorm.jdbc.JdbcExecutor;
 import com.google.gwtorm.server.OrmConcurrencyException;
 import com.google.gwtorm.server.OrmDuplicateKeyException;
 import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.StatementExecutor;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -55,6 +56,29 @@ public abstract class SqlDialectTest {
     assertEquals(0, r.size());
   }
 
+  @Test
+  public void testUpsertInsertsAndUpdates() throws OrmException {
+    PhoneBookDb schema = phoneBook.open();
+    try {
+      schema.updateSchema(executor);
+      Person bob = new Person(new Person.Key("Bob"), 18);
+      schema.people().insert(Collections.singleton(bob));
+
+      bob.setAge(50);
+      Person joe = new Person(new Person.Key("Joe"), 22);
+      ArrayList<Person> all = new ArrayList<>();
+      all.add(bob);
+      all.add(joe);
+      schema.people().upsert(all);
+
+      assertEquals(50, schema.people().get(bob.key()).age());
+      assertEquals(22, schema.people().get(joe.key()).age());
+      assertEquals(2, schema.people().all().toList().size());
+    } finally {
+      schema.close();
+    }
+  }
+
   @Test
   public void testRollbackNoTransaction() throws Exception {
     PhoneBookDb schema = phoneBook.open();
@@ -261,6 +285,68 @@ public abstract class SqlDialectTest {
     }
   }
 
+  @Test
+  public void testSnapshotMatchesListings() throws Exception {
+    PhoneBookDb p = phoneBook.open();
+    try {
+      p.updateSchema(executor);
+    } finally {
+      p.close();
+    }
+
+    final SchemaSnapshot s = dialect.snapshot(db);
+    assertEquals(dialect.listTables(db), s.getTables());
+    assertEquals(dialect.listSequences(db), s.getSequences());
+    assertTrue(s.getTables().contains("people"));
+    for (String table : s.getTables()) {
+      assertEquals(dialect.listColumns(db, table), s.getColumns(table));
+      assertEquals(dialect.listIndexes(db, table), s.getIndexes(table));
+    }
+    assertTrue(s.getColumns("PEOPLE").contains("registered"));
+    assertTrue(s.getColumns("missing").isEmpty());
+  }
+
+  @Test
+  public void testUpdateSchemaSendsOneBatch() throws Exception {
+    final List<String> single = new ArrayList<>();
+    final List<List<String>> batches = new ArrayList<>();
+    final StatementExecutor recorder =
+        new StatementExecutor() {
+          @Override
+          public void execute(String sql) throws OrmException {
+            single.add(sql);
+            executor.execute(sql);
+          }
+
+          @Override
+          public void executeBatch(List<String> sql) throws OrmException {
+            batches.add(new ArrayList<>(sql));
+            executor.executeBatch(sql);
+          }
+
+          @Override
+          public void close() {}
+        };
+
+    PhoneBookDb p = phoneBook.open();
+    try {
+      p.updateSchema(recorder);
+      assertEquals(1, batches.size());
+      for (String sql : single) {
+        assertFalse(dialect.isBatchable(sql));
+      }
+      assertTrue(dialect.listTables(db).contains("people"));
+
+      single.clear();
+      batches.clear();
+      p.updateSchema(recorder);
+      assertEquals(Collections.emptyList(), single);
+      assertEquals(Collections.emptyList(), batches);
+    } finally {
+      p.close();
+    }
+  }
+
   private void assertContainsString(String string, String substring) {
     assertNotNull(string);
     assertTrue(string.contains(substring));
@@ -18,29 +18,47 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.common.util.concurrent.CheckedFuture;
 import com.google.gwtorm.data.Person;
 import com.google.gwtorm.data.PersonAccess;
 import com.google.gwtorm.data.PhoneBookDb;
 import com.google.gwtorm.jdbc.Database;
 import com.google.gwtorm.jdbc.JdbcExecutor;
 import com.google.gwtorm.jdbc.JdbcSchema;
+import com.google.gwtorm.jdbc.PooledDataSource;
+import com.google.gwtorm.jdbc.ReplicaSet;
+import com.google.gwtorm.jdbc.SchemaClassWriter;
 import com.google.gwtorm.jdbc.SimpleDataSource;
+import com.google.gwtorm.jdbc.StatementCache;
+import com.google.gwtorm.protobuf.CodecFactory;
+import com.google.gwtorm.schema.sql.DialectH2;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import javax.sql.DataSource;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class PhoneBookDbTestCase {
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
   private static int runCount;
   protected Database<PhoneBookDb> db;
   private List<PhoneBookDb> openSchemas;
@@ -147,6 +165,37 @@ public class PhoneBookDbTestCase {
     assertTrue(a != b);
   }
 
+  @Test
+  public void testSequenceBlocks() throws Exception {
+    db.setSequenceBlockSize("address_id", 10);
+    assertEquals(10, db.getSequenceBlockSize("address_id"));
+
+    final PhoneBookDb s1 = openAndCreate();
+    final PhoneBookDb s2 = db.open();
+    try {
+      final int a = s1.nextAddressId();
+      final int b = s2.nextAddressId();
+      assertEquals(a + 1, b);
+
+      // The block of 10 values was reserved by the first call.
+      final long[] bulk = ((JdbcSchema) s1).nextLongs("address_id", 3);
+      assertEquals(3, bulk.length);
+      assertEquals(a + 10, bulk[0]);
+      assertEquals(a + 11, bulk[1]);
+      assertEquals(a + 12, bulk[2]);
+
+      for (int i = 2; i < 10; i++) {
+        assertEquals(a + i, s2.nextAddressId());
+      }
+      assertEquals(a + 13, s1.nextAddressId());
+    } finally {
+      s2.close();
+    }
+
+    db.setSequenceBlockSize("address_id", 1);
+    assertEquals(1, db.getSequenceBlockSize("address_id"));
+  }
+
   @Test
   public void testPersonPrimaryKey() throws Exception {
     final PhoneBookDb schema = openAndCreate();
@@ -197,6 +246,127 @@ public class PhoneBookDbTestCase {
     assertEquals(sp.primaryKey(p1), sp.primaryKey(p2));
   }
 
+  @Test
+  public void testAsyncExecutor() throws Exception {
+    final ExecutorService executor = AsyncAccessExecutor.newDefaultExecutor(2);
+    try {
+      db.setAsyncExecutor(executor);
+      final PhoneBookDb schema = openAndCreate();
+      final PersonAccess sp = schema.people();
+      final Person bob = new Person(new Person.Key("Bob"), 18);
+      final Person joe = new Person(new Person.Key("Joe"), 30);
+      sp.insert(Arrays.asList(bob, joe));
+
+      final Person p = sp.getAsync(bob.key()).checkedGet();
+      assertNotNull(p);
+      assertNotSame(bob, p);
+      assertEquals(bob.key(), p.key());
+
+      final List<Person> all =
+          sp.getAsync(Arrays.asList(bob.key(), joe.key(), new Person.Key("Nobody")))
+              .checkedGet()
+              .toList();
+      assertEquals(2, all.size());
+
+      final List<Person> older = sp.olderThanAsync(20).checkedGet().toList();
+      assertEquals(1, older.size());
+      assertEquals(joe.key(), older.get(0).key());
+
+      final List<Person> youngest = sp.youngestNAsync(1).checkedGet().toList();
+      assertEquals(1, youngest.size());
+      assertEquals(bob.key(), youngest.get(0).key());
+    } finally {
+      db.setAsyncExecutor(null);
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testKeyLoaderCoalescesLookups() throws Exception {
+    final PhoneBookDb schema = openAndCreate();
+    final PersonAccess sp = schema.people();
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    final Person joe = new Person(new Person.Key("Joe"), 30);
+    sp.insert(Arrays.asList(bob, joe));
+
+    final KeyLoader<Person, Person.Key> loader = new KeyLoader<>(sp, 3, 0);
+    final CheckedFuture<Person, OrmException> f1 = loader.load(bob.key());
+    final CheckedFuture<Person, OrmException> f2 = loader.load(bob.key());
+    final CheckedFuture<Person, OrmException> f3 = loader.load(new Person.Key("Nobody"));
+    assertFalse(f1.isDone());
+    loader.dispatch();
+
+    assertEquals(bob.key(), f1.checkedGet().key());
+    assertSame(f1.checkedGet(), f2.checkedGet());
+    assertNull(f3.checkedGet());
+
+    final CheckedFuture<Person, OrmException> f4 = loader.load(bob.key());
+    loader.load(joe.key());
+    loader.load(new Person.Key("Nobody"));
+    assertTrue(f4.isDone());
+
+    assertEquals(6, loader.getLoadCount());
+    assertEquals(2, loader.getBatchCount());
+    assertEquals(5, loader.getBatchedKeyCount());
+    assertEquals(3, loader.getLargestBatchSize());
+    assertEquals(2.5, loader.getAverageBatchSize(), 0.001);
+  }
+
+  @Test
+  public void testKeyLoaderWindowWithAsyncExecutor() throws Exception {
+    final ExecutorService executor = AsyncAccessExecutor.newDefaultExecutor(2);
+    try {
+      db.setAsyncExecutor(executor);
+      final PhoneBookDb schema = openAndCreate();
+      final PersonAccess sp = schema.people();
+      final Person bob = new Person(new Person.Key("Bob"), 18);
+      final Person joe = new Person(new Person.Key("Joe"), 30);
+      sp.insert(Arrays.asList(bob, joe));
+
+      final KeyLoader<Person, Person.Key> loader = new KeyLoader<>(sp, 100, 20);
+      final CheckedFuture<Person, OrmException> f1 = loader.load(bob.key());
+      final CheckedFuture<Person, OrmException> f2 = loader.load(joe.key());
+      assertEquals(joe.key(), f2.checkedGet().key());
+      assertEquals(bob.key(), f1.checkedGet().key());
+      assertEquals(1, loader.getBatchCount());
+    } finally {
+      db.setAsyncExecutor(null);
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testKeyLoaderWindowIgnoresBatchSentWhenFull() throws Exception {
+    final ExecutorService executor = AsyncAccessExecutor.newDefaultExecutor(2);
+    try {
+      db.setAsyncExecutor(executor);
+      final PersonAccess sp = openAndCreate().people();
+      final Person bob = new Person(new Person.Key("Bob"), 18);
+      sp.insert(Collections.singleton(bob));
+
+      final KeyLoader<Person, Person.Key> loader = new KeyLoader<>(sp, 2, 500);
+      loader.load(bob.key());
+      loader.load(new Person.Key("Nobody"));
+      assertEquals(1, loader.getBatchCount());
+
+      Thread.sleep(250);
+      final CheckedFuture<Person, OrmException> f = loader.load(bob.key());
+      // The first batch's timer fires meanwhile, but must not send the second batch early.
+      Thread.sleep(375);
+      assertFalse(f.isDone());
+      assertEquals(bob.key(), f.checkedGet().key());
+      assertEquals(2, loader.getBatchCount());
+    } finally {
+      db.setAsyncExecutor(null);
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKeyLoaderWindowRequiresAsyncExecutor() throws Exception {
+    new KeyLoader<>(openAndCreate().people(), 100, 20);
+  }
+
   @Test
   public void testGetOnePersonIterator() throws Exception {
     final PhoneBookDb schema = openAndCreate();
@@ -375,4 +545,229 @@ public class PhoneBookDbTestCase {
 
     st.close();
   }
+
+  @Test
+  public void testStatementCacheReusesStatements() throws Exception {
+    db.setStatementCacheSize(8);
+    final PhoneBookDb schema = open();
+    final StatementCache cache = ((JdbcSchema) schema).getStatementCache();
+    assertNotNull(cache);
+
+    final JdbcExecutor e = new JdbcExecutor((JdbcSchema) schema);
+    try {
+      schema.updateSchema(e);
+    } finally {
+      e.close();
+    }
+
+    final Person bob = new Person(new Person.Key("Bob"), 18);
+    schema.people().insert(Collections.singleton(bob));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(bob, schema.people().get(bob.key()));
+      assertEquals(1, schema.people().olderThan(10).toList().size());
+    }
+    assertEquals(4, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(3, cache.size());
+
+    schema.close();
+    assertEquals(4, db.getStatementCacheHitCount());
+    assertEquals(3, db.getStatementCacheMissCount());
+  }
+
+  @Test
+  public void testReadReplicas() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:PhoneBookDb" + (runCount++));
+    final PooledDataSource replica1 = new PooledDataSource(p);
+    final PooledDataSource replica2 = new PooledDataSource(p);
+    final Database<PhoneBookDb> rdb = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+    final ReplicaSet replicas =
+        new ReplicaSet(ReplicaSet.Policy.ROUND_ROBIN, Arrays.asList(replica1, replica2));
+    rdb.setReadReplicas(replicas);
+
+    final PhoneBookDb admin = rdb.open();
+    try {
+      final JdbcExecutor e = new JdbcExecutor((JdbcSchema) admin);
+      try {
+        admin.updateSchema(e);
+      } finally {
+        e.close();
+      }
+      final Person bob = new Person(new Person.Key("Bob"), 18);
+      admin.people().insert(Collections.singleton(bob));
+
+      final PhoneBookDb r1 = rdb.openReadOnly();
+      final PhoneBookDb r2 = rdb.openReadOnly();
+      try {
+        assertTrue(((JdbcSchema) r1).isReadingFromReplica());
+        assertEquals(1, replicas.getOpenCount(0));
+        assertEquals(1, replicas.getOpenCount(1));
+
+        assertEquals(18, r1.people().get(bob.key()).age());
+        assertEquals(1, r2.people().olderThan(10).toList().size());
+        assertEquals(1, replica1.getBorrowCount());
+        assertEquals(1, replica2.getBorrowCount());
+
+        r1.people().beginTransaction(bob.key());
+        final Person b = r1.people().get(bob.key());
+        b.growOlder();
+        r1.people().update(Collections.singleton(b));
+        r1.commit();
+        assertEquals(19, r2.people().get(bob.key()).age());
+        assertEquals(1, replica1.getBorrowCount());
+      } finally {
+        r1.close();
+        r2.close();
+      }
+      assertEquals(0, replicas.getOpenCount(0));
+      assertEquals(0, replica1.getActiveCount());
+
+      replicas.setLagCheck(
+          new ReplicaSet.LagCheck() {
+            @Override
+            public boolean isUsable(javax.sql.DataSource ds) {
+              return ds == replica2;
+            }
+          },
+          60000);
+      final PhoneBookDb r3 = rdb.openReadOnly();
+      final PhoneBookDb r4 = rdb.openReadOnly();
+      r3.close();
+      r4.close();
+      assertEquals(1, replicas.getSelectCount(0));
+      assertEquals(3, replicas.getSelectCount(1));
+    } finally {
+      admin.close();
+      replica1.close();
+      replica2.close();
+    }
+  }
+
+  @Test
+  public void testLazyConnectionReleasedWhenIdle() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:PhoneBookDb" + (runCount++));
+    final PooledDataSource pool = new PooledDataSource(p);
+    try {
+      final Database<PhoneBookDb> lazyDb = new Database<>(pool, PhoneBookDb.class);
+      lazyDb.setLazyConnections(true);
+
+      final PhoneBookDb admin = lazyDb.open();
+      final JdbcExecutor e = new JdbcExecutor((JdbcSchema) admin);
+      try {
+        admin.updateSchema(e);
+      } finally {
+        e.close();
+        admin.close();
+      }
+
+      final PhoneBookDb schema = lazyDb.open();
+      try {
+        assertEquals(0, pool.getActiveCount());
+
+        final Person bob = new Person(new Person.Key("Bob"), 18);
+        schema.people().insert(Collections.singleton(bob));
+        assertEquals(0, pool.getActiveCount());
+
+        final com.google.gwtorm.server.ResultSet<Person> rs = schema.people().olderThan(10);
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(1, rs.toList().size());
+        assertEquals(0, pool.getActiveCount());
+
+        schema.people().beginTransaction(bob.key());
+        bob.growOlder();
+        schema.people().update(Collections.singleton(bob));
+        assertEquals(1, pool.getActiveCount());
+        schema.commit();
+        assertEquals(0, pool.getActiveCount());
+
+        assertEquals(19, schema.people().get(bob.key()).age());
+        assertEquals(0, pool.getActiveCount());
+      } finally {
+        schema.close();
+      }
+      assertEquals(0, pool.getActiveCount());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testGeneratedClassesShared() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("driver", org.h2.Driver.class.getName());
+    p.setProperty("url", "jdbc:h2:mem:PhoneBookDb" + (runCount++));
+    final Database<PhoneBookDb> other = new Database<>(new SimpleDataSource(p), PhoneBookDb.class);
+
+    final PhoneBookDb mine = openAndCreate();
+    final PhoneBookDb theirs = other.open();
+    try {
+      assertSame(mine.getClass(), theirs.getClass());
+      assertSame(mine.people().getClass(), theirs.people().getClass());
+
+      // Each schema still works on its own database.
+      mine.people().insert(Collections.singleton(new Person(new Person.Key("Bob"), 18)));
+      final JdbcExecutor e = new JdbcExecutor((JdbcSchema) theirs);
+      try {
+        theirs.updateSchema(e);
+      } finally {
+        e.close();
+      }
+      assertEquals(1, mine.people().all().toList().size());
+      assertTrue(theirs.people().all().toList().isEmpty());
+    } finally {
+      theirs.close();
+    }
+  }
+
+  @Test
+  public void testPregeneratedClasses() throws Exception {
+    final File out = tmp.newFolder();
+    SchemaClassWriter.write(out, PhoneBookDb.class, new DialectH2());
+    final String suffix = "GwtOrm$$DialectH2_PhoneBookDb";
+    final String schemaName = PhoneBookDb.class.getName() + "_Schema_" + suffix;
+    assertTrue(new File(out, schemaName.replace('.', '/') + ".class").isFile());
+
+    // Load the application again with the written classes on its class path.
+    final List<URL> path = new ArrayList<>();
+    path.add(out.toURI().toURL());
+    for (String e : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      path.add(new File(e).toURI().toURL());
+    }
+    final URLClassLoader app =
+        new URLClassLoader(
+            path.toArray(new URL[path.size()]), ClassLoader.getSystemClassLoader().getParent());
+    try {
+      final Properties p = new Properties();
+      p.setProperty("driver", org.h2.Driver.class.getName());
+      p.setProperty("url", "jdbc:h2:mem:PhoneBookDb" + (runCount++));
+      final Object database =
+          app.loadClass(Database.class.getName())
+              .getConstructor(DataSource.class, Class.class)
+              .newInstance(new SimpleDataSource(p), app.loadClass(PhoneBookDb.class.getName()));
+      final Object schema = database.getClass().getMethod("open").invoke(database);
+      try {
+        assertEquals(schemaName, schema.getClass().getName());
+        final Object people = schema.getClass().getMethod("people").invoke(schema);
+        assertTrue(people.getClass().getName().endsWith(suffix));
+        assertEquals("people", people.getClass().getMethod("getRelationName").invoke(people));
+
+        final Object codec =
+            app.loadClass(CodecFactory.class.getName())
+                .getMethod("encoder", Class.class)
+                .invoke(null, app.loadClass(Person.class.getName()));
+        assertTrue(codec.getClass().getName().endsWith("_protobuf_GwtOrm$$Pregenerated"));
+      } finally {
+        schema.getClass().getMethod("close").invoke(schema);
+      }
+    } finally {
+      app.close();
+    }
+  }
 }